@@ -33,6 +33,8 @@ import java.util.*;
  * <p>
  * This processor scans for types annotated with {@link Sps4jPlugin}, validates them,
  * and generates a {@code META-INF/sps4j/plugin-desc.yml} file containing the metadata for each plugin.
+ * Unless disabled with {@link Sps4jPlugin#generateProxy()}, it also generates the proxy of each plugin class
+ * (see {@link PluginProxyGenerator}) and records it in the metadata.
  *
  * @author Allan-QLB
  * @see Sps4jPlugin
@@ -127,6 +129,15 @@ public class PluginProcessor extends AbstractProcessor {
                 }
             }
 
+            final List<String> parentFirstPackages = Arrays.asList(annotation.parentFirstPackages());
+            final List<String> childFirstPackages = Arrays.asList(annotation.childFirstPackages());
+            if (!validPackageNames(className, parentFirstPackages, PluginDesc.Fields.parentFirstPackages, messager)
+                    || !validPackageNames(className, childFirstPackages, PluginDesc.Fields.childFirstPackages, messager)) {
+                hasErrors = true;
+                break;
+            }
+
+            final String proxyClassName = annotation.generateProxy() ? generateProxy(element, messager) : null;
             final PluginDesc desc = PluginDesc
                     .builder()
                     .type(pluginTypeWithIfName.getKey())
@@ -138,6 +149,9 @@ public class PluginProcessor extends AbstractProcessor {
                     .productVersionConstraint(versionSupport)
                     .tags(Arrays.asList(annotation.tags()))
                     .attributes(attributeMap)
+                    .parentFirstPackages(parentFirstPackages.isEmpty() ? null : parentFirstPackages)
+                    .childFirstPackages(childFirstPackages.isEmpty() ? null : childFirstPackages)
+                    .proxyClassName(proxyClassName)
                     .build();
             descs.add(desc);
         }
@@ -154,6 +168,31 @@ public class PluginProcessor extends AbstractProcessor {
         return false;
     }
 
+    /**
+     * Generates the proxy of a plugin class, unless it is not supported, in which case it is generated at runtime.
+     *
+     * @param element The plugin class.
+     * @param messager The messager reporting why the proxy is not generated.
+     * @return The name of the generated proxy class, or {@code null} if not generated.
+     */
+    private String generateProxy(TypeElement element, Messager messager) {
+        final PluginProxyGenerator generator = new PluginProxyGenerator(processingEnv);
+        final String unsupportedReason = generator.unsupportedReason(element);
+        if (unsupportedReason != null) {
+            messager.printMessage(Diagnostic.Kind.NOTE, "Proxy of plugin class " + element.getQualifiedName()
+                    + " is generated at runtime: " + unsupportedReason, element);
+            return null;
+        }
+        try {
+            generator.generate(element);
+            return generator.proxyClassName(element);
+        } catch (IOException e) {
+            messager.printMessage(Diagnostic.Kind.WARNING, "write proxy of plugin class "
+                    + element.getQualifiedName() + " error: " + e.getMessage(), element);
+            return null;
+        }
+    }
+
     private void genFile(List<PluginDesc> descriptors) throws IOException {
         final boolean singlePluginPackage = descriptors.size() == 1;
         final ObjectWriter writer = singlePluginPackage ? YamlUtils.getYamlMapper().writerFor(PluginDesc.class) : YamlUtils.getYamlMapper().writerFor(new TypeReference<List<PluginDesc>>() {});
@@ -176,6 +215,35 @@ public class PluginProcessor extends AbstractProcessor {
         return !blank;
     }
 
+    private static boolean validPackageNames(String clazz, List<String> packageNames, String fieldName, Messager messager) {
+        for (String packageName : packageNames) {
+            if (!isValidPackageName(packageName)) {
+                printErrorMessage(messager, clazz, fieldName, String.format("Invalid package name '%s'", packageName));
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Validates if a string is a package or class name usable as a class loading rule.
+     *
+     * @param name The name to validate.
+     * @return {@code true} if the name is a valid qualified name, {@code false} otherwise.
+     */
+    @VisibleForTesting
+    static boolean isValidPackageName(String name) {
+        if (StringUtils.isBlank(name)) {
+            return false;
+        }
+        for (String segment : name.split("\\.", -1)) {
+            if (!SourceVersion.isIdentifier(segment)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Detects the plugin interface type for a given plugin implementation class.
      * <p>
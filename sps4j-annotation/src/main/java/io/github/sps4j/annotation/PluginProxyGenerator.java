@@ -0,0 +1,337 @@
+package io.github.sps4j.annotation;
+
+import javax.annotation.Nullable;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.*;
+import javax.lang.model.type.*;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Types;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * Generates the proxy of a plugin class at build time, so that loading the plugin does not need to generate one.
+ * <p>
+ * The proxy is a subclass named after the plugin class with the {@value #PROXY_SUFFIX} suffix, in the same package.
+ * It implements {@code io.github.sps4j.core.load.Sps4jProxy} and overrides the methods that the runtime proxy
+ * intercepts, i.e. the public, non-static methods but the ones marked with {@value #NO_CONTEXT_SWITCH}, to call
+ * the plugin method with the plugin class loader as the thread context class loader.
+ * Plugin classes that cannot be subclassed that way are left to the runtime proxy, as well as the classes managed by
+ * Spring: Spring Boot application plugins and Spring components are registered as beans under their own class, so
+ * that a subclass would be bypassed by the beans the host calls.
+ *
+ * @author Allan-QLB
+ */
+final class PluginProxyGenerator {
+    static final String PROXY_SUFFIX = "$Sps4jProxy";
+    static final String PROXY_INTERFACE = "io.github.sps4j.core.load.Sps4jProxy";
+    static final String NO_CONTEXT_SWITCH = "io.github.sps4j.core.NoContextSwitch";
+    static final Set<String> SPRING_APP_PLUGINS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "io.github.sps4j.springboot2.SpringBoot2AppPlugin", "io.github.sps4j.springboot3.SpringBoot3AppPlugin")));
+    static final String SPRING_COMPONENT = "org.springframework.stereotype.Component";
+    private static final String INDENT = "    ";
+    private final ProcessingEnvironment processingEnv;
+
+    PluginProxyGenerator(ProcessingEnvironment processingEnv) {
+        this.processingEnv = processingEnv;
+    }
+
+    /**
+     * Gets the fully qualified name of the proxy of a plugin class.
+     *
+     * @param type The plugin class.
+     * @return The name of the proxy class.
+     */
+    String proxyClassName(TypeElement type) {
+        final String packageName = packageName(type);
+        return packageName.isEmpty() ? proxySimpleName(type) : packageName + "." + proxySimpleName(type);
+    }
+
+    /**
+     * Checks whether the proxy of a plugin class can be generated.
+     *
+     * @param type The plugin class.
+     * @return Why the proxy cannot be generated, or {@code null} if it can.
+     */
+    @Nullable
+    String unsupportedReason(TypeElement type) {
+        if (type.getModifiers().contains(Modifier.FINAL)) {
+            return "the class is final";
+        }
+        if (!type.getTypeParameters().isEmpty()) {
+            return "the class is generic";
+        }
+        for (Element e = type; e instanceof TypeElement; e = e.getEnclosingElement()) {
+            if (e.getModifiers().contains(Modifier.PRIVATE)) {
+                return "the class is private";
+            }
+            if (((TypeElement) e).getNestingKind() == NestingKind.MEMBER && !e.getModifiers().contains(Modifier.STATIC)) {
+                return "the class is an inner class";
+            }
+        }
+        for (TypeMirror t = type.asType(); t.getKind() == TypeKind.DECLARED; ) {
+            final TypeElement element = (TypeElement) ((DeclaredType) t).asElement();
+            if (SPRING_APP_PLUGINS.contains(element.getQualifiedName().toString())) {
+                return "the class is a Spring application plugin";
+            }
+            if (isSpringComponent(element, new HashSet<>())) {
+                return "the class is a Spring component";
+            }
+            t = element.getSuperclass();
+        }
+        if (noArgConstructor(type) == null) {
+            return "the class has no non-private constructor without parameters";
+        }
+        final Set<String> directMethods = directMethods(type);
+        for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+            if (isIntercepted(method) && method.getModifiers().contains(Modifier.FINAL)
+                    && !directMethods.contains(signature(method, (ExecutableType) method.asType()))) {
+                return "the method " + method.getSimpleName() + " is final";
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Generates the source file of the proxy of a plugin class.
+     *
+     * @param type The plugin class, supported according to {@link #unsupportedReason(TypeElement)}.
+     * @throws IOException if the source file cannot be written.
+     */
+    void generate(TypeElement type) throws IOException {
+        final JavaFileObject file = processingEnv.getFiler().createSourceFile(proxyClassName(type), type);
+        try (Writer writer = file.openWriter()) {
+            writer.write(source(type));
+        }
+    }
+
+    /**
+     * Writes the source of the proxy of a plugin class.
+     *
+     * @param type The plugin class.
+     * @return The Java source of the proxy class.
+     */
+    String source(TypeElement type) {
+        final String proxyName = proxySimpleName(type);
+        final StringBuilder out = new StringBuilder();
+        final String packageName = packageName(type);
+        if (!packageName.isEmpty()) {
+            out.append("package ").append(packageName).append(";\n\n");
+        }
+        out.append("/**\n * The proxy of {@link ").append(type.getQualifiedName())
+                .append("}, generated by the SPS4J annotation processor.\n */\n")
+                .append("@SuppressWarnings({\"deprecation\", \"unchecked\", \"rawtypes\"})\n")
+                .append("public class ").append(proxyName).append(" extends ").append(type.getQualifiedName())
+                .append(" implements ").append(PROXY_INTERFACE).append(" {\n")
+                .append(INDENT).append("private static final ClassLoader CLASS_LOADER = ")
+                .append(proxyName).append(".class.getClassLoader();\n\n")
+                .append(INDENT).append("public ").append(proxyName).append("()");
+        appendThrows(out, noArgConstructor(type).getThrownTypes());
+        out.append(" {\n")
+                .append(INDENT).append("}\n");
+        for (ExecutableElement method : interceptedMethods(type)) {
+            out.append('\n');
+            appendMethod(out, (DeclaredType) type.asType(), method);
+        }
+        out.append("}\n");
+        return out.toString();
+    }
+
+    /**
+     * Finds the methods the proxy overrides: the public, non-static and non-final methods of the plugin class,
+     * declared or inherited, whose names do not start with {@code java} and that are not marked with
+     * {@value #NO_CONTEXT_SWITCH}, as the runtime proxy does.
+     */
+    private Collection<ExecutableElement> interceptedMethods(TypeElement type) {
+        final Types types = processingEnv.getTypeUtils();
+        final DeclaredType owner = (DeclaredType) type.asType();
+        final Set<String> directMethods = directMethods(type);
+        final Map<String, ExecutableElement> methods = new LinkedHashMap<>();
+        final Map<String, TypeMirror> returnTypes = new HashMap<>();
+        for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(type))) {
+            if (!isIntercepted(method) || method.getModifiers().contains(Modifier.FINAL)) {
+                continue;
+            }
+            final ExecutableType member = (ExecutableType) types.asMemberOf(owner, method);
+            final String key = signature(method, member);
+            if (directMethods.contains(key)) {
+                continue;
+            }
+            final TypeMirror returnType = types.erasure(member.getReturnType());
+            final ExecutableElement existing = methods.get(key);
+            // an implementation wins over an abstract method, a covariant return type over the overridden one
+            if (existing == null
+                    || existing.getModifiers().contains(Modifier.ABSTRACT) && !method.getModifiers().contains(Modifier.ABSTRACT)
+                    || !types.isSameType(returnTypes.get(key), returnType) && types.isSubtype(returnType, returnTypes.get(key))) {
+                methods.put(key, method);
+                returnTypes.put(key, returnType);
+            }
+        }
+        return methods.values();
+    }
+
+    /**
+     * Finds the signatures of the methods marked with {@value #NO_CONTEXT_SWITCH}, directly or through the types
+     * declaring them, in the plugin class and its super types, seen as members of the plugin class.
+     */
+    private Set<String> directMethods(TypeElement type) {
+        final Set<String> directMethods = new HashSet<>();
+        addDirectMethods((DeclaredType) type.asType(), type.asType(), directMethods, new HashSet<>());
+        return directMethods;
+    }
+
+    private void addDirectMethods(DeclaredType owner, TypeMirror type, Set<String> directMethods, Set<String> visited) {
+        final Types types = processingEnv.getTypeUtils();
+        final TypeElement element = (TypeElement) types.asElement(type);
+        if (element == null || !visited.add(element.getQualifiedName().toString())) {
+            return;
+        }
+        final boolean all = isMarkedNoContextSwitch(element);
+        for (ExecutableElement method : ElementFilter.methodsIn(element.getEnclosedElements())) {
+            if (all || isMarkedNoContextSwitch(method)) {
+                directMethods.add(signature(method, (ExecutableType) types.asMemberOf(owner, method)));
+            }
+        }
+        for (TypeMirror supertype : types.directSupertypes(type)) {
+            addDirectMethods(owner, supertype, directMethods, visited);
+        }
+    }
+
+    /**
+     * Checks whether an element is annotated with {@value #SPRING_COMPONENT}, directly or through its annotations,
+     * such as {@code @Configuration} or {@code @SpringBootApplication}.
+     */
+    private static boolean isSpringComponent(Element element, Set<String> visited) {
+        for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+            final TypeElement annotationType = (TypeElement) annotation.getAnnotationType().asElement();
+            final String name = annotationType.getQualifiedName().toString();
+            if (SPRING_COMPONENT.equals(name) || visited.add(name) && isSpringComponent(annotationType, visited)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isMarkedNoContextSwitch(Element element) {
+        for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+            if (((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName()
+                    .contentEquals(NO_CONTEXT_SWITCH)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void appendMethod(StringBuilder out, DeclaredType owner, ExecutableElement method) {
+        final ExecutableType type = (ExecutableType) processingEnv.getTypeUtils().asMemberOf(owner, method);
+        final boolean returns = type.getReturnType().getKind() != TypeKind.VOID;
+        out.append(INDENT).append("@Override\n").append(INDENT).append("public ");
+        appendTypeVariables(out, type.getTypeVariables());
+        out.append(type.getReturnType()).append(' ').append(method.getSimpleName()).append('(');
+        final List<? extends TypeMirror> parameters = type.getParameterTypes();
+        final StringJoiner arguments = new StringJoiner(", ");
+        for (int i = 0; i < parameters.size(); i++) {
+            if (i > 0) {
+                out.append(", ");
+            }
+            final TypeMirror parameter = parameters.get(i);
+            if (method.isVarArgs() && i == parameters.size() - 1 && parameter.getKind() == TypeKind.ARRAY) {
+                out.append(((ArrayType) parameter).getComponentType()).append("...");
+            } else {
+                out.append(parameter);
+            }
+            out.append(" arg").append(i);
+            arguments.add("arg" + i);
+        }
+        out.append(')');
+        appendThrows(out, type.getThrownTypes());
+        final String call = (returns ? "return " : "") + "super." + method.getSimpleName() + "(" + arguments + ");";
+        final String body = INDENT + INDENT;
+        out.append(" {\n")
+                .append(body).append("final Thread thread = Thread.currentThread();\n")
+                .append(body).append("final ClassLoader previous = thread.getContextClassLoader();\n")
+                .append(body).append("if (previous == null || previous == CLASS_LOADER) {\n")
+                .append(body).append(INDENT).append(call).append('\n')
+                .append(body);
+        if (returns) {
+            out.append("}\n");
+        } else {
+            out.append(INDENT).append("return;\n").append(body).append("}\n");
+        }
+        out.append(body).append("thread.setContextClassLoader(CLASS_LOADER);\n")
+                .append(body).append("try {\n")
+                .append(body).append(INDENT).append(call).append('\n')
+                .append(body).append("} finally {\n")
+                .append(body).append(INDENT).append("thread.setContextClassLoader(previous);\n")
+                .append(body).append("}\n")
+                .append(INDENT).append("}\n");
+    }
+
+    private static void appendThrows(StringBuilder out, List<? extends TypeMirror> thrownTypes) {
+        if (!thrownTypes.isEmpty()) {
+            final StringJoiner thrown = new StringJoiner(", ", " throws ", "");
+            thrownTypes.forEach(t -> thrown.add(t.toString()));
+            out.append(thrown);
+        }
+    }
+
+    private static void appendTypeVariables(StringBuilder out, List<? extends TypeVariable> variables) {
+        if (variables.isEmpty()) {
+            return;
+        }
+        final StringJoiner joiner = new StringJoiner(", ", "<", "> ");
+        for (TypeVariable variable : variables) {
+            final TypeMirror bound = variable.getUpperBound();
+            final String name = variable.asElement().getSimpleName().toString();
+            if (bound.getKind() == TypeKind.INTERSECTION) {
+                final StringJoiner bounds = new StringJoiner(" & ", name + " extends ", "");
+                ((IntersectionType) bound).getBounds().forEach(b -> bounds.add(b.toString()));
+                joiner.add(bounds.toString());
+            } else if (Object.class.getName().equals(bound.toString())) {
+                joiner.add(name);
+            } else {
+                joiner.add(name + " extends " + bound);
+            }
+        }
+        out.append(joiner);
+    }
+
+    private String signature(ExecutableElement method, ExecutableType member) {
+        final Types types = processingEnv.getTypeUtils();
+        final StringJoiner joiner = new StringJoiner(",", method.getSimpleName() + "(", ")");
+        for (TypeMirror parameter : member.getParameterTypes()) {
+            joiner.add(types.erasure(parameter).toString());
+        }
+        return joiner.toString();
+    }
+
+    private static boolean isIntercepted(ExecutableElement method) {
+        final Set<Modifier> modifiers = method.getModifiers();
+        return modifiers.contains(Modifier.PUBLIC) && !modifiers.contains(Modifier.STATIC)
+                && !method.getSimpleName().toString().startsWith("java");
+    }
+
+    /**
+     * Finds the non-private constructor without parameters the proxy constructor calls, whose exceptions it declares.
+     */
+    @Nullable
+    private static ExecutableElement noArgConstructor(TypeElement type) {
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+                return constructor;
+            }
+        }
+        return null;
+    }
+
+    private String proxySimpleName(TypeElement type) {
+        final String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+        return binaryName.substring(binaryName.lastIndexOf('.') + 1) + PROXY_SUFFIX;
+    }
+
+    private String packageName(TypeElement type) {
+        return processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+    }
+}
@@ -62,4 +62,29 @@ public @interface Sps4jPlugin {
      */
     Attribute[] attributes() default {};
 
+    /**
+     * Packages (or classes) that the plugin loads from the host application instead of its own dependencies,
+     * e.g. {@code com.fasterxml.jackson} to share the host's Jackson.
+     * A package covers its sub packages, unless a more specific entry of {@link #childFirstPackages()} says otherwise.
+     * @return An array of package names.
+     */
+    String[] parentFirstPackages() default {};
+
+    /**
+     * Packages (or classes) that the plugin always loads from its own dependencies first.
+     * Useful to keep a sub package of a {@link #parentFirstPackages() parent-first} package private to the plugin.
+     * @return An array of package names.
+     */
+    String[] childFirstPackages() default {};
+
+    /**
+     * Whether the proxy of the plugin class is generated at build time, as a subclass named after the plugin class
+     * with the {@code $Sps4jProxy} suffix. The plugin loader then instantiates it instead of generating a proxy
+     * when the plugin is loaded. Plugin classes that are final, generic, inner, or without a constructor without
+     * parameters still get their proxy at load time, as well as Spring Boot application plugins and Spring components,
+     * whose beans are created from the plugin class itself.
+     * @return {@code true} to generate the proxy at build time.
+     */
+    boolean generateProxy() default true;
+
 }
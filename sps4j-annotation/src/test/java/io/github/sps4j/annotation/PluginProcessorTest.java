@@ -345,6 +345,17 @@ class PluginProcessorTest {
         assertFalse(PluginProcessor.isValidVersionConstraint(""));
     }
 
+    @Test
+    void testIsValidPackageName() {
+        assertTrue(PluginProcessor.isValidPackageName("com.fasterxml.jackson"));
+        assertTrue(PluginProcessor.isValidPackageName("io.netty"));
+        assertTrue(PluginProcessor.isValidPackageName("com.example.Outer$Inner"));
+        assertFalse(PluginProcessor.isValidPackageName(""));
+        assertFalse(PluginProcessor.isValidPackageName("com..example"));
+        assertFalse(PluginProcessor.isValidPackageName("com.example."));
+        assertFalse(PluginProcessor.isValidPackageName("com.1example"));
+    }
+
     /**
      * Helper to set up the complex chain of mocks for an Sps4jPluginInterface annotation.
      * @param value The value for the annotation's "value" property.
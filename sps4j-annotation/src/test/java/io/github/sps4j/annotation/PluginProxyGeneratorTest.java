@@ -0,0 +1,213 @@
+package io.github.sps4j.annotation;
+
+import io.github.sps4j.common.Const;
+import io.github.sps4j.common.meta.PluginDesc;
+import io.github.sps4j.common.utils.YamlUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.*;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class PluginProxyGeneratorTest {
+    private static final String CORE_STUBS =
+            "package io.github.sps4j.core;\n"
+                    + "public interface Sps4jPlugin {\n"
+                    + "    default void onDestroy() {}\n"
+                    + "}\n";
+    private static final String NO_CONTEXT_SWITCH_STUB =
+            "package io.github.sps4j.core;\n"
+                    + "@java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME)\n"
+                    + "public @interface NoContextSwitch {}\n";
+    private static final String PROXY_STUB =
+            "package io.github.sps4j.core.load;\n"
+                    + "public interface Sps4jProxy {}\n";
+    private static final String PLUGIN_INTERFACE =
+            "package com.example;\n"
+                    + "@io.github.sps4j.annotation.Sps4jPluginInterface(\"probe\")\n"
+                    + "public interface Probe extends io.github.sps4j.core.Sps4jPlugin {\n"
+                    + "    ClassLoader contextLoader();\n"
+                    + "    Object value();\n"
+                    + "    @io.github.sps4j.core.NoContextSwitch ClassLoader directContextLoader();\n"
+                    + "    String join(String... parts) throws java.io.IOException;\n"
+                    + "    <T extends Comparable<T>> T max(java.util.List<T> values);\n"
+                    + "}\n";
+    private static final String BASE_CLASS =
+            "package com.example;\n"
+                    + "public abstract class Base<V> {\n"
+                    + "    public abstract void accept(V value);\n"
+                    + "    public final String name() { return \"base\"; }\n"
+                    + "}\n";
+    private static final String PLUGIN_CLASS =
+            "package com.example;\n"
+                    + "@io.github.sps4j.annotation.Sps4jPlugin(name = \"probe\", version = \"1.0.0\")\n"
+                    + "public class ProbePlugin extends Base<String> implements Probe {\n"
+                    + "    public ClassLoader contextLoader() { return Thread.currentThread().getContextClassLoader(); }\n"
+                    + "    public final ClassLoader directContextLoader() {"
+                    + " return Thread.currentThread().getContextClassLoader(); }\n"
+                    + "    public String value() { return \"value\"; }\n"
+                    + "    public String join(String... parts) { return String.join(\",\", parts); }\n"
+                    + "    public <T extends Comparable<T>> T max(java.util.List<T> values) {"
+                    + " return java.util.Collections.max(values); }\n"
+                    + "    public void accept(String value) { throw new IllegalStateException(value); }\n"
+                    + "    public static String constant() { return \"constant\"; }\n"
+                    + "    protected void hook() {}\n"
+                    + "}\n";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void generate_pluginClass_shouldCompileProxySwitchingContextLoader() throws Exception {
+        // Given
+        compile(Arrays.asList(CORE_STUBS, NO_CONTEXT_SWITCH_STUB, PROXY_STUB, PLUGIN_INTERFACE, BASE_CLASS, PLUGIN_CLASS));
+
+        // When
+        PluginDesc desc = YamlUtils.getYamlMapper().readValue(dir.resolve(Const.DESC_FILE).toFile(), PluginDesc.class);
+
+        // Then
+        assertEquals("com.example.ProbePlugin$Sps4jProxy", desc.getProxyClassName());
+        try (URLClassLoader cl = new URLClassLoader(new URL[]{dir.toUri().toURL()}, getClass().getClassLoader())) {
+            Class<?> proxyClass = cl.loadClass(desc.getProxyClassName());
+            assertEquals("com.example.ProbePlugin", proxyClass.getSuperclass().getName());
+            assertTrue(cl.loadClass("io.github.sps4j.core.load.Sps4jProxy").isAssignableFrom(proxyClass));
+            Object proxy = proxyClass.getDeclaredConstructor().newInstance();
+            ClassLoader before = Thread.currentThread().getContextClassLoader();
+
+            assertSame(cl, proxyClass.getMethod("contextLoader").invoke(proxy));
+            assertSame(before, Thread.currentThread().getContextClassLoader());
+            // a method marked not to switch it is not overridden, even though final
+            assertSame(before, proxyClass.getMethod("directContextLoader").invoke(proxy));
+            assertThrows(NoSuchMethodException.class, () -> proxyClass.getDeclaredMethod("directContextLoader"));
+            assertEquals(String.class, proxyClass.getMethod("value").getReturnType());
+            assertEquals("a,b", proxyClass.getMethod("join", String[].class).invoke(proxy, (Object) new String[]{"a", "b"}));
+            assertTrue(proxyClass.getDeclaredMethod("join", String[].class).isVarArgs());
+            assertEquals(3, proxyClass.getMethod("max", List.class).invoke(proxy, Arrays.asList(1, 3, 2)));
+            // the bridge of the generic superclass method and the inherited default method are overridden as well
+            assertNotNull(proxyClass.getDeclaredMethod("accept", String.class));
+            assertNotNull(proxyClass.getDeclaredMethod("onDestroy"));
+            assertNotNull(proxyClass.getDeclaredMethod("toString"));
+            // final, static and non-public methods are not
+            assertThrows(NoSuchMethodException.class, () -> proxyClass.getDeclaredMethod("name"));
+            assertThrows(NoSuchMethodException.class, () -> proxyClass.getDeclaredMethod("constant"));
+            assertThrows(NoSuchMethodException.class, () -> proxyClass.getDeclaredMethod("hook"));
+            Method accept = proxyClass.getMethod("accept", String.class);
+            Exception e = assertThrows(Exception.class, () -> accept.invoke(proxy, "fail"));
+            assertInstanceOf(IllegalStateException.class, e.getCause());
+            assertSame(before, Thread.currentThread().getContextClassLoader());
+        }
+    }
+
+    @Test
+    void generate_constructorThrowingCheckedException_shouldDeclareItInProxyConstructor() throws Exception {
+        // Given
+        String throwingPlugin = PLUGIN_CLASS.replace("    protected void hook() {}\n",
+                "    protected void hook() {}\n    public ProbePlugin() throws java.io.IOException {}\n");
+
+        // When
+        compile(Arrays.asList(CORE_STUBS, NO_CONTEXT_SWITCH_STUB, PROXY_STUB, PLUGIN_INTERFACE, BASE_CLASS, throwingPlugin));
+
+        // Then
+        PluginDesc desc = YamlUtils.getYamlMapper().readValue(dir.resolve(Const.DESC_FILE).toFile(), PluginDesc.class);
+        assertEquals("com.example.ProbePlugin$Sps4jProxy", desc.getProxyClassName());
+        try (URLClassLoader cl = new URLClassLoader(new URL[]{dir.toUri().toURL()}, getClass().getClassLoader())) {
+            Class<?> proxyClass = cl.loadClass(desc.getProxyClassName());
+            assertArrayEquals(new Class<?>[]{IOException.class}, proxyClass.getDeclaredConstructor().getExceptionTypes());
+            assertNotNull(proxyClass.getDeclaredConstructor().newInstance());
+        }
+    }
+
+    @Test
+    void generate_finalPluginClass_shouldLeaveProxyToRuntime() throws Exception {
+        // Given
+        String finalPlugin = PLUGIN_CLASS.replace("public class ProbePlugin", "public final class ProbePlugin");
+
+        // When
+        List<String> notes = compile(Arrays.asList(CORE_STUBS, NO_CONTEXT_SWITCH_STUB, PROXY_STUB, PLUGIN_INTERFACE, BASE_CLASS,
+                finalPlugin));
+
+        // Then
+        PluginDesc desc = YamlUtils.getYamlMapper().readValue(dir.resolve(Const.DESC_FILE).toFile(), PluginDesc.class);
+        assertNull(desc.getProxyClassName());
+        assertFalse(Files.exists(dir.resolve("com/example/ProbePlugin$Sps4jProxy.class")));
+        assertTrue(notes.stream().anyMatch(n -> n.contains("the class is final")), notes.toString());
+    }
+
+    @Test
+    void generate_springAppPlugin_shouldLeaveProxyToRuntime() throws Exception {
+        // Given: a plugin extending the Spring Boot application plugin base
+        String base = "package io.github.sps4j.springboot2;\n"
+                + "public abstract class SpringBoot2AppPlugin implements io.github.sps4j.core.Sps4jPlugin {}\n";
+        String springPlugin = PLUGIN_CLASS.replace("extends Base<String>", "extends io.github.sps4j.springboot2.SpringBoot2AppPlugin")
+                .replace("    public void accept(String value) { throw new IllegalStateException(value); }\n", "");
+
+        // When
+        List<String> notes = compile(Arrays.asList(CORE_STUBS, NO_CONTEXT_SWITCH_STUB, PROXY_STUB, PLUGIN_INTERFACE, base,
+                springPlugin));
+
+        // Then
+        PluginDesc desc = YamlUtils.getYamlMapper().readValue(dir.resolve(Const.DESC_FILE).toFile(), PluginDesc.class);
+        assertNull(desc.getProxyClassName());
+        assertTrue(notes.stream().anyMatch(n -> n.contains("the class is a Spring application plugin")), notes.toString());
+    }
+
+    @Test
+    void generate_springComponent_shouldLeaveProxyToRuntime() throws Exception {
+        // Given: a plugin annotated with a stereotype meta-annotated with @Component
+        String component = "package org.springframework.stereotype;\n"
+                + "public @interface Component {}\n";
+        String configuration = "package org.springframework.context.annotation;\n"
+                + "@org.springframework.stereotype.Component\n"
+                + "public @interface Configuration {}\n";
+        String configuredPlugin = PLUGIN_CLASS.replace("public class ProbePlugin",
+                "@org.springframework.context.annotation.Configuration\npublic class ProbePlugin");
+
+        // When
+        List<String> notes = compile(Arrays.asList(CORE_STUBS, NO_CONTEXT_SWITCH_STUB, PROXY_STUB, PLUGIN_INTERFACE, BASE_CLASS,
+                component, configuration, configuredPlugin));
+
+        // Then
+        PluginDesc desc = YamlUtils.getYamlMapper().readValue(dir.resolve(Const.DESC_FILE).toFile(), PluginDesc.class);
+        assertNull(desc.getProxyClassName());
+        assertTrue(notes.stream().anyMatch(n -> n.contains("the class is a Spring component")), notes.toString());
+    }
+
+    private List<String> compile(List<String> sources) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assumeTrue(compiler != null, "requires a JDK");
+        List<JavaFileObject> units = new ArrayList<>();
+        for (String source : sources) {
+            String packageName = source.substring("package ".length(), source.indexOf(';'));
+            String typeName = source.replaceAll("(?s).*?public (?:abstract |final )?(?:class|@?interface) (\\w+).*", "$1");
+            units.add(new SimpleJavaFileObject(
+                    java.net.URI.create("string:///" + (packageName + "." + typeName).replace('.', '/') + ".java"),
+                    JavaFileObject.Kind.SOURCE) {
+                @Override
+                public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                    return source;
+                }
+            });
+        }
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        List<String> options = Arrays.asList("-d", dir.toString(), "-classpath", System.getProperty("java.class.path"));
+        JavaCompiler.CompilationTask task = compiler.getTask(null, null, diagnostics, options, null, units);
+        task.setProcessors(Collections.singletonList(new PluginProcessor()));
+        boolean success = task.call();
+        assertTrue(success, diagnostics.getDiagnostics().toString());
+        List<String> notes = new ArrayList<>();
+        diagnostics.getDiagnostics().forEach(d -> notes.add(d.getMessage(null)));
+        return notes;
+    }
+}
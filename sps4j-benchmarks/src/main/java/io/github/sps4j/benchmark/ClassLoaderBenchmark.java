@@ -0,0 +1,97 @@
+package io.github.sps4j.benchmark;
+
+import io.github.sps4j.core.Sps4jPlugin;
+import io.github.sps4j.core.load.Sps4jPluginClassLoader;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.Enumeration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures class and resource lookups of {@link Sps4jPluginClassLoader}:
+ * <ul>
+ *     <li>child-first names found in the plugin jar,</li>
+ *     <li>parent-first framework names,</li>
+ *     <li>child-first names missing from the plugin jar that fall back to the parent, such as JDK classes.</li>
+ * </ul>
+ * Resource lookups run with a number of ignore-parent-resource patterns, like the ones of Spring plugins.
+ *
+ * @author Allan-QLB
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClassLoaderBenchmark {
+    private static final String PACKAGE = "synthetic.child";
+    private static final int ENTRIES = 200;
+    private static final String CHILD_CLASS = PACKAGE + ".C" + (ENTRIES / 2);
+    private static final String CHILD_RESOURCE = PACKAGE.replace('.', '/') + "/r" + (ENTRIES / 2) + ".txt";
+    private static final String PARENT_FIRST_CLASS = Sps4jPlugin.class.getName();
+    private static final String PARENT_FALLBACK_CLASS = "java.util.concurrent.ConcurrentHashMap";
+    private static final String PARENT_RESOURCE = "org/openjdk/jmh/annotations/Benchmark.class";
+    private static final String IGNORED_PARENT_RESOURCE = "application-dev.yml";
+    private static final String IGNORE_PATTERN = "^(application|bootstrap)(-[a-zA-Z0-9_]+)?\\.(properties|ya?ml|xml)$";
+
+    @Param({"0", "8"})
+    private int ignorePatterns;
+
+    private Path repository;
+    private Sps4jPluginClassLoader classLoader;
+
+    @Setup
+    public void setup() throws Exception {
+        repository = SyntheticPlugins.createRepository();
+        final Path jar = SyntheticPlugins.writeJar(repository, "classes", PACKAGE, ENTRIES);
+        classLoader = new Sps4jPluginClassLoader(new URL[]{jar.toUri().toURL()}, getClass().getClassLoader());
+        for (int i = 0; i < ignorePatterns; i++) {
+            classLoader.addIgnoreParentResourceNamePattern(i == 0 ? IGNORE_PATTERN : "^ignored-" + i + "\\.properties$");
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        classLoader.close();
+        SyntheticPlugins.deleteRepository(repository);
+    }
+
+    @Benchmark
+    public Class<?> loadChildFirstClass() throws ClassNotFoundException {
+        return classLoader.loadClass(CHILD_CLASS);
+    }
+
+    @Benchmark
+    public Class<?> loadParentFirstClass() throws ClassNotFoundException {
+        return classLoader.loadClass(PARENT_FIRST_CLASS);
+    }
+
+    @Benchmark
+    public Class<?> loadParentFallbackClass() throws ClassNotFoundException {
+        return classLoader.loadClass(PARENT_FALLBACK_CLASS);
+    }
+
+    @Benchmark
+    public URL getChildResource() {
+        return classLoader.getResource(CHILD_RESOURCE);
+    }
+
+    @Benchmark
+    public URL getParentResource() {
+        return classLoader.getResource(PARENT_RESOURCE);
+    }
+
+    @Benchmark
+    public URL getIgnoredParentResource() {
+        return classLoader.getResource(IGNORED_PARENT_RESOURCE);
+    }
+
+    @Benchmark
+    public Enumeration<URL> getParentResources() throws IOException {
+        return classLoader.getResources(PARENT_RESOURCE);
+    }
+}
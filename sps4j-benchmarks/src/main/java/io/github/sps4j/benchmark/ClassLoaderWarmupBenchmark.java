@@ -0,0 +1,92 @@
+package io.github.sps4j.benchmark;
+
+import io.github.sps4j.core.load.ClassLoaderOptions;
+import io.github.sps4j.core.load.Sps4jPluginClassLoader;
+import org.openjdk.jmh.annotations.*;
+
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the warmup of a large plugin: loading all the classes of a fresh {@link Sps4jPluginClassLoader}
+ * from {@code threads} threads, each loading its own share of the classes.
+ * With a parallel capable class loader the time is expected to drop as threads are added, up to the number of cores.
+ * With {@code mapped}, classes are defined straight from the memory-mapped JAR file.
+ *
+ * @author Allan-QLB
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ClassLoaderWarmupBenchmark {
+    private static final String PACKAGE = "synthetic.warmup";
+
+    @Param({"2000"})
+    private int classes;
+
+    @Param({"1", "4"})
+    private int threads;
+
+    @Param({"false", "true"})
+    private boolean mapped;
+
+    private Path repository;
+    private URL jar;
+    private ExecutorService executor;
+    private Sps4jPluginClassLoader classLoader;
+
+    @Setup
+    public void setup() throws Exception {
+        repository = SyntheticPlugins.createRepository();
+        jar = SyntheticPlugins.writeJar(repository, "warmup", PACKAGE, classes).toUri().toURL();
+        executor = Executors.newFixedThreadPool(threads);
+    }
+
+    @Setup(Level.Invocation)
+    public void newClassLoader() {
+        classLoader = new Sps4jPluginClassLoader(new URL[]{jar}, getClass().getClassLoader(), Collections.emptyList(),
+                ClassLoaderOptions.builder().mappedArchives(mapped).build());
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeClassLoader() throws Exception {
+        classLoader.close();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        SyntheticPlugins.deleteRepository(repository);
+    }
+
+    @Benchmark
+    public int loadAllClasses() throws Exception {
+        final List<Future<Integer>> futures = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) {
+            final int first = t;
+            futures.add(executor.submit(() -> {
+                int loaded = 0;
+                for (int i = first; i < classes; i += threads) {
+                    classLoader.loadClass(PACKAGE + ".C" + i);
+                    loaded++;
+                }
+                return loaded;
+            }));
+        }
+        int loaded = 0;
+        for (Future<Integer> future : futures) {
+            loaded += future.get();
+        }
+        return loaded;
+    }
+}
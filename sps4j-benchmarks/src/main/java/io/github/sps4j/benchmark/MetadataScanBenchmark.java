@@ -0,0 +1,71 @@
+package io.github.sps4j.benchmark;
+
+import io.github.sps4j.common.meta.MetaInfo;
+import io.github.sps4j.common.meta.PluginArtifact;
+import io.github.sps4j.core.DefaultPluginManager;
+import io.github.sps4j.core.load.DefaultPluginLoader;
+import io.github.sps4j.core.load.storage.LocalDirJarPluginPackageRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a full metadata scan of a repository holding a number of synthetic plugin jars,
+ * through {@link DefaultPluginManager#checkForUpdate()}, with and without a repository catalog
+ * and reading the jars serially or on the common fork-join pool, and a check of a single artifact
+ * through {@link DefaultPluginManager#checkForUpdate(PluginArtifact)}.
+ *
+ * @author Allan-QLB
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetadataScanBenchmark {
+
+    private static final PluginArtifact ARTIFACT = new PluginArtifact(SyntheticPlugins.TYPE, "plugin-0");
+
+    @Param({"10", "100", "500"})
+    private int jars;
+
+    @Param({"false", "true"})
+    private boolean catalog;
+
+    @Param({"false", "true"})
+    private boolean parallel;
+
+    private Path repository;
+    private DefaultPluginManager manager;
+
+    @Setup
+    public void setup() throws Exception {
+        repository = SyntheticPlugins.createRepository();
+        for (int i = 0; i < jars; i++) {
+            SyntheticPlugins.writeJar(repository, "plugin-" + i, "synthetic.p" + i, 10);
+        }
+        manager = new DefaultPluginManager(SyntheticPlugins.PRODUCT, false,
+                new LocalDirJarPluginPackageRepository(repository.toString(), catalog), new DefaultPluginLoader(),
+                parallel ? ForkJoinPool.commonPool() : null);
+        manager.checkForUpdate();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        SyntheticPlugins.deleteRepository(repository);
+    }
+
+    @Benchmark
+    public List<MetaInfo> scan() {
+        return manager.checkForUpdate();
+    }
+
+    @Benchmark
+    public MetaInfo checkArtifact() {
+        return manager.checkForUpdate(ARTIFACT);
+    }
+}
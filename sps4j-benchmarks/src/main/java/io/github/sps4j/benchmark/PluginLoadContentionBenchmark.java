@@ -0,0 +1,91 @@
+package io.github.sps4j.benchmark;
+
+import io.github.sps4j.benchmark.plugin.EchoPlugin;
+import io.github.sps4j.common.meta.MetaInfo;
+import io.github.sps4j.common.meta.PluginArtifact;
+import io.github.sps4j.core.DefaultPluginManager;
+import io.github.sps4j.core.Sps4jPlugin;
+import io.github.sps4j.core.load.DefaultPluginLoader;
+import io.github.sps4j.core.load.PluginWrapper;
+import org.openjdk.jmh.annotations.*;
+
+import javax.annotation.Nonnull;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures lookups of a loaded plugin from 8 threads while another plugin is reloaded over and over
+ * by a background thread, each load taking {@code loadMillis} like the start of a heavy plugin would.
+ * Lookups of the loaded plugin are expected not to wait for those loads.
+ *
+ * @author Allan-QLB
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PluginLoadContentionBenchmark {
+    private static final PluginArtifact LOADED = new PluginArtifact(SyntheticPlugins.TYPE, "loaded");
+    private static final PluginArtifact RELOADED = new PluginArtifact(SyntheticPlugins.TYPE, "reloaded");
+
+    @Param({"20"})
+    private long loadMillis;
+
+    private Path repository;
+    private DefaultPluginManager manager;
+    private Thread reloader;
+
+    @Setup
+    public void setup() throws Exception {
+        repository = SyntheticPlugins.createRepository();
+        SyntheticPlugins.writePluginJar(repository, LOADED.getName(), EchoPlugin.class);
+        SyntheticPlugins.writePluginJar(repository, RELOADED.getName(), EchoPlugin.class);
+        manager = SyntheticPlugins.createManager(repository, new SlowPluginLoader(loadMillis));
+        manager.getPlugin(LOADED);
+        reloader = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                manager.reset(RELOADED);
+                manager.getPlugin(RELOADED);
+            }
+        }, "sps4j-bench-reloader");
+        reloader.setDaemon(true);
+        reloader.start();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        reloader.interrupt();
+        reloader.join();
+        manager.unloadAll();
+        SyntheticPlugins.deleteRepository(repository);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public PluginWrapper lookupDuringLoads() {
+        return manager.getPlugin(LOADED);
+    }
+
+    /**
+     * A loader whose loads take a fixed time.
+     */
+    static class SlowPluginLoader extends DefaultPluginLoader {
+        private final long loadMillis;
+
+        SlowPluginLoader(long loadMillis) {
+            this.loadMillis = loadMillis;
+        }
+
+        @Override
+        public Sps4jPlugin pluginCreated(@Nonnull Sps4jPlugin pluginInstance, @Nonnull MetaInfo metadata) {
+            try {
+                Thread.sleep(loadMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return pluginInstance;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package io.github.sps4j.benchmark;
+
+import io.github.sps4j.benchmark.plugin.EchoPlugin;
+import io.github.sps4j.common.meta.PluginArtifact;
+import io.github.sps4j.core.DefaultPluginManager;
+import io.github.sps4j.core.load.DefaultPluginLoader;
+import io.github.sps4j.core.load.PluginWrapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link DefaultPluginManager#getPlugin(PluginArtifact)} for a plugin that is already loaded,
+ * from a single thread and from 64 contending threads.
+ *
+ * @author Allan-QLB
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PluginLookupBenchmark {
+    private static final String NAME = "echo";
+    private static final PluginArtifact ARTIFACT = new PluginArtifact(SyntheticPlugins.TYPE, NAME);
+
+    private Path repository;
+    private DefaultPluginManager manager;
+
+    @Setup
+    public void setup() throws Exception {
+        repository = SyntheticPlugins.createRepository();
+        SyntheticPlugins.writePluginJar(repository, NAME, EchoPlugin.class);
+        manager = SyntheticPlugins.createManager(repository, new DefaultPluginLoader());
+        manager.getPlugin(ARTIFACT);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        manager.unloadAll();
+        SyntheticPlugins.deleteRepository(repository);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public PluginWrapper lookup() {
+        return manager.getPlugin(ARTIFACT);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public PluginWrapper lookupContended() {
+        return manager.getPlugin(ARTIFACT);
+    }
+}
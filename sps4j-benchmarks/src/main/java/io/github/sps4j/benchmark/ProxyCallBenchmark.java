@@ -0,0 +1,68 @@
+package io.github.sps4j.benchmark;
+
+import io.github.sps4j.benchmark.plugin.EchoPlugin;
+import io.github.sps4j.core.DefaultPluginManager;
+import io.github.sps4j.core.load.ClassLoaderOptions;
+import io.github.sps4j.core.load.DefaultPluginLoader;
+import io.github.sps4j.core.load.DispatchMode;
+import io.github.sps4j.core.metrics.InvocationMetrics;
+import io.github.sps4j.core.test.TestPlugin;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a call of a plugin method through the proxy created by {@link DefaultPluginLoader},
+ * for every {@link DispatchMode}, with and without {@link InvocationMetrics}, compared with a direct call of the
+ * same method.
+ *
+ * @author Allan-QLB
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProxyCallBenchmark {
+    private static final String NAME = "echo";
+
+    @Param({"INTERCEPTOR", "INLINE", "DELEGATE"})
+    private DispatchMode dispatchMode;
+
+    @Param({"false", "true"})
+    private boolean metered;
+
+    private Path repository;
+    private DefaultPluginManager manager;
+    private TestPlugin direct;
+    private TestPlugin proxied;
+
+    @Setup
+    public void setup() throws Exception {
+        repository = SyntheticPlugins.createRepository();
+        SyntheticPlugins.writePluginJar(repository, NAME, EchoPlugin.class);
+        manager = SyntheticPlugins.createManager(repository, new DefaultPluginLoader(dispatchMode, null,
+                ClassLoaderOptions.DEFAULT, null, metered ? new InvocationMetrics() : null));
+        direct = new EchoPlugin();
+        proxied = manager.getPluginUnwrapped(TestPlugin.class, NAME, Collections.emptyMap());
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        manager.unloadAll();
+        SyntheticPlugins.deleteRepository(repository);
+    }
+
+    @Benchmark
+    public String directCall() {
+        return direct.test();
+    }
+
+    @Benchmark
+    public String proxiedCall() {
+        return proxied.test();
+    }
+}
@@ -0,0 +1,144 @@
+package io.github.sps4j.benchmark;
+
+import com.github.zafarkhaja.semver.Version;
+import io.github.sps4j.common.Const;
+import io.github.sps4j.common.meta.PluginDesc;
+import io.github.sps4j.common.utils.YamlUtils;
+import io.github.sps4j.core.DefaultPluginManager;
+import io.github.sps4j.core.load.ProductPluginLoadService;
+import io.github.sps4j.core.load.Sps4jPluginLoader;
+import io.github.sps4j.core.load.storage.LocalDirJarPluginPackageRepository;
+import lombok.experimental.UtilityClass;
+import net.bytebuddy.ByteBuddy;
+import net.bytebuddy.dynamic.ClassFileLocator;
+import org.apache.commons.io.FileUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * Generates plugin jars on the fly, so that the benchmarks do not depend on any prebuilt artifact.
+ *
+ * @author Allan-QLB
+ */
+@UtilityClass
+public class SyntheticPlugins {
+    /**
+     * The plugin type of all synthetic plugins, which is the type of {@link io.github.sps4j.core.test.TestPlugin}.
+     */
+    public static final String TYPE = "test";
+    /**
+     * The product version used by the benchmarks.
+     */
+    public static final ProductPluginLoadService PRODUCT = () -> Version.parse("1.0.0");
+
+    /**
+     * Creates an empty temporary repository directory.
+     *
+     * @return The directory.
+     * @throws IOException if the directory cannot be created.
+     */
+    public static Path createRepository() throws IOException {
+        return Files.createTempDirectory("sps4j-bench");
+    }
+
+    /**
+     * Deletes a repository directory created by {@link #createRepository()}.
+     *
+     * @param repository The directory to delete.
+     * @throws IOException if the directory cannot be deleted.
+     */
+    public static void deleteRepository(Path repository) throws IOException {
+        FileUtils.deleteDirectory(repository.toFile());
+    }
+
+    /**
+     * Creates a plugin manager over a repository directory.
+     *
+     * @param repository The repository directory.
+     * @param loader The plugin loader.
+     * @return The initialized manager.
+     */
+    public static DefaultPluginManager createManager(Path repository, Sps4jPluginLoader loader) {
+        return new DefaultPluginManager(PRODUCT, true,
+                new LocalDirJarPluginPackageRepository(repository.toString()), loader);
+    }
+
+    /**
+     * Creates a descriptor of a synthetic plugin.
+     *
+     * @param name The plugin name.
+     * @param version The plugin version.
+     * @param className The plugin class name.
+     * @return The descriptor.
+     */
+    public static PluginDesc descriptor(String name, String version, String className) {
+        return PluginDesc.builder()
+                .type(TYPE)
+                .name(name)
+                .version(Version.parse(version))
+                .className(className)
+                .productVersionConstraint(">=1.0.0")
+                .build();
+    }
+
+    /**
+     * Writes a plugin jar containing the descriptor and the class file of an existing plugin class.
+     *
+     * @param repository The repository directory.
+     * @param name The plugin name.
+     * @param pluginClass The plugin class, whose class file is copied into the jar.
+     * @return The jar file.
+     * @throws IOException if the jar cannot be written.
+     */
+    public static Path writePluginJar(Path repository, String name, Class<?> pluginClass) throws IOException {
+        final Path jar = repository.resolve(name + ".jar");
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+            writeDescriptor(out, descriptor(name, "1.0.0", pluginClass.getName()));
+            writeEntry(out, pluginClass.getName().replace('.', '/') + ".class",
+                    ClassFileLocator.ForClassLoader.read(pluginClass));
+        }
+        return jar;
+    }
+
+    /**
+     * Writes a jar containing a descriptor and a number of generated classes and resources.
+     * The classes are named {@code <packageName>.C<i>} and the resources {@code <packageName as path>/r<i>.txt}.
+     *
+     * @param repository The repository directory.
+     * @param name The plugin name, also used as the jar file name.
+     * @param packageName The package of the generated classes.
+     * @param entries The number of generated classes and resources.
+     * @return The jar file.
+     * @throws IOException if the jar cannot be written.
+     */
+    public static Path writeJar(Path repository, String name, String packageName, int entries) throws IOException {
+        final Path jar = repository.resolve(name + ".jar");
+        final String path = packageName.replace('.', '/');
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+            writeDescriptor(out, descriptor(name, "1.0.0", packageName + ".C0"));
+            for (int i = 0; i < entries; i++) {
+                writeEntry(out, path + "/C" + i + ".class", new ByteBuddy()
+                        .subclass(Object.class)
+                        .name(packageName + ".C" + i)
+                        .make()
+                        .getBytes());
+                writeEntry(out, path + "/r" + i + ".txt", ("resource " + i).getBytes());
+            }
+        }
+        return jar;
+    }
+
+    private static void writeDescriptor(JarOutputStream out, PluginDesc desc) throws IOException {
+        writeEntry(out, Const.DESC_FILE, YamlUtils.getYamlMapper().writeValueAsBytes(desc));
+    }
+
+    private static void writeEntry(JarOutputStream out, String name, byte[] content) throws IOException {
+        out.putNextEntry(new JarEntry(name));
+        out.write(content);
+        out.closeEntry();
+    }
+}
@@ -0,0 +1,20 @@
+package io.github.sps4j.benchmark.plugin;
+
+import io.github.sps4j.core.test.TestPlugin;
+
+/**
+ * A trivial plugin whose method does no work, so that benchmarks calling it measure the dispatch cost only.
+ *
+ * @author Allan-QLB
+ */
+public class EchoPlugin implements TestPlugin {
+    /**
+     * The value returned by {@link #test()}.
+     */
+    public static final String VALUE = "echo";
+
+    @Override
+    public String test() {
+        return VALUE;
+    }
+}
@@ -0,0 +1,4 @@
+package io.github.sps4j.benchmark.jmh_generated;
+public class ClassLoaderBenchmark_jmhType extends ClassLoaderBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package io.github.sps4j.benchmark.jmh_generated;
+public class ClassLoaderWarmupBenchmark_jmhType extends ClassLoaderWarmupBenchmark_jmhType_B3 {
+}
+
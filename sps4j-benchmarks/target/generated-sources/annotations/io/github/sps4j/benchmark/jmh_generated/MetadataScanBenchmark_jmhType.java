@@ -0,0 +1,4 @@
+package io.github.sps4j.benchmark.jmh_generated;
+public class MetadataScanBenchmark_jmhType extends MetadataScanBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package io.github.sps4j.benchmark.jmh_generated;
+public class PluginLoadContentionBenchmark_jmhType extends PluginLoadContentionBenchmark_jmhType_B3 {
+}
+
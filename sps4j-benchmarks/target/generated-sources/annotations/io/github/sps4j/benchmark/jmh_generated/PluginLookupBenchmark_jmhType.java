@@ -0,0 +1,4 @@
+package io.github.sps4j.benchmark.jmh_generated;
+public class PluginLookupBenchmark_jmhType extends PluginLookupBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package io.github.sps4j.benchmark.jmh_generated;
+public class ProxyCallBenchmark_jmhType extends ProxyCallBenchmark_jmhType_B3 {
+}
+
@@ -66,6 +66,19 @@ public class PluginDesc {
      * A map of custom attributes for the plugin.
      */
     private Map<String, String> attributes;
+    /**
+     * Packages that the plugin loads from the host application first.
+     */
+    private List<String> parentFirstPackages;
+    /**
+     * Packages that the plugin loads from its own dependencies first.
+     */
+    private List<String> childFirstPackages;
+    /**
+     * The fully qualified name of the proxy of the plugin class generated at build time,
+     * or {@code null} for the proxy to be generated when the plugin is loaded.
+     */
+    private final String proxyClassName;
 
     /**
      * Constructs a new PluginDesc.
@@ -80,6 +93,65 @@ public class PluginDesc {
      * @param tags A list of tags for the plugin.
      * @param attributes A map of custom attributes for the plugin.
      */
+    public PluginDesc(String type,
+                      String name,
+                      Version version,
+                      String description,
+                      String className,
+                      String displayName,
+                      String productVersionConstraint,
+                      List<String> tags,
+                      Map<String, String> attributes) {
+        this(type, name, version, description, className, displayName, productVersionConstraint, tags, attributes,
+                null, null);
+    }
+
+    /**
+     * Constructs a new PluginDesc with class loading rules, without a proxy class generated at build time.
+     *
+     * @param type The type of the plugin.
+     * @param name The unique name of the plugin.
+     * @param version The version of the plugin.
+     * @param description A brief description of the plugin.
+     * @param className The fully qualified class name of the plugin.
+     * @param displayName A human-readable display name for the plugin.
+     * @param productVersionConstraint The version constraint for product compatibility.
+     * @param tags A list of tags for the plugin.
+     * @param attributes A map of custom attributes for the plugin.
+     * @param parentFirstPackages The packages loaded from the host application first.
+     * @param childFirstPackages The packages loaded from the plugin first.
+     */
+    public PluginDesc(String type,
+                      String name,
+                      Version version,
+                      String description,
+                      String className,
+                      String displayName,
+                      String productVersionConstraint,
+                      List<String> tags,
+                      Map<String, String> attributes,
+                      List<String> parentFirstPackages,
+                      List<String> childFirstPackages) {
+        this(type, name, version, description, className, displayName, productVersionConstraint, tags, attributes,
+                parentFirstPackages, childFirstPackages, null);
+    }
+
+    /**
+     * Constructs a new PluginDesc with class loading rules and the proxy class generated at build time.
+     *
+     * @param type The type of the plugin.
+     * @param name The unique name of the plugin.
+     * @param version The version of the plugin.
+     * @param description A brief description of the plugin.
+     * @param className The fully qualified class name of the plugin.
+     * @param displayName A human-readable display name for the plugin.
+     * @param productVersionConstraint The version constraint for product compatibility.
+     * @param tags A list of tags for the plugin.
+     * @param attributes A map of custom attributes for the plugin.
+     * @param parentFirstPackages The packages loaded from the host application first.
+     * @param childFirstPackages The packages loaded from the plugin first.
+     * @param proxyClassName The proxy class generated at build time, or {@code null}.
+     */
     @JsonCreator
     public PluginDesc(@JsonProperty(Fields.type) String type,
                             @JsonProperty(Fields.name) String name,
@@ -89,7 +161,10 @@ public class PluginDesc {
                             @JsonProperty(Fields.displayName) String displayName,
                             @JsonProperty(Fields.productVersionConstraint) String productVersionConstraint,
                             @JsonProperty(Fields.tags) List<String> tags,
-                            @JsonProperty(Fields.attributes) Map<String, String> attributes
+                            @JsonProperty(Fields.attributes) Map<String, String> attributes,
+                            @JsonProperty(Fields.parentFirstPackages) List<String> parentFirstPackages,
+                            @JsonProperty(Fields.childFirstPackages) List<String> childFirstPackages,
+                            @JsonProperty(Fields.proxyClassName) String proxyClassName
     ) {
         this.type = type;
         this.name = name;
@@ -100,6 +175,9 @@ public class PluginDesc {
         this.productVersionConstraint = productVersionConstraint;
         this.tags = tags;
         this.attributes = attributes;
+        this.parentFirstPackages = parentFirstPackages;
+        this.childFirstPackages = childFirstPackages;
+        this.proxyClassName = proxyClassName;
     }
 
     @Override
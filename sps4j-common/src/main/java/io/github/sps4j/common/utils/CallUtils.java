@@ -15,6 +15,8 @@ public class CallUtils {
     /**
      * Executes a {@link Call} operation with a specified {@link ClassLoader} as the current thread's
      * context class loader. The original context class loader is restored after the operation.
+     * Nothing is switched if the context class loader is {@code null} or already the given one,
+     * e.g. when a plugin calls its own methods.
      *
      * @param classLoader The {@link ClassLoader} to set as the context class loader.
      * @param call The {@link Call} operation to execute.
@@ -25,7 +27,7 @@ public class CallUtils {
     @SneakyThrows
     public static <R> R executeWithContextLoader(ClassLoader classLoader, Call<R> call)  {
         ClassLoader current = Thread.currentThread().getContextClassLoader();
-        if (current == null) {
+        if (current == null || current == classLoader) {
             return call.call();
         }
         Thread.currentThread().setContextClassLoader(classLoader);
@@ -39,6 +41,7 @@ public class CallUtils {
     /**
      * Executes a {@link Runnable} operation with a specified {@link ClassLoader} as the current thread's
      * context class loader. The original context class loader is restored after the operation.
+     * Nothing is switched if the context class loader is {@code null} or already the given one.
      *
      * @param classLoader The {@link ClassLoader} to set as the context class loader.
      * @param runnable The {@link Runnable} operation to execute.
@@ -46,8 +49,9 @@ public class CallUtils {
     @SneakyThrows
     public static void runWithContextLoader(ClassLoader classLoader, Runnable runnable) {
         ClassLoader current = Thread.currentThread().getContextClassLoader();
-        if (current == null) {
+        if (current == null || current == classLoader) {
             runnable.run();
+            return;
         }
         Thread.currentThread().setContextClassLoader(classLoader);
         try {
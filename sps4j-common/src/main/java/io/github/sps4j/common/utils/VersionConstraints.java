@@ -0,0 +1,64 @@
+package io.github.sps4j.common.utils;
+
+import com.github.zafarkhaja.semver.Version;
+import com.github.zafarkhaja.semver.expr.ExpressionParser;
+import lombok.experimental.UtilityClass;
+
+import javax.annotation.Nonnull;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Utility class for version constraints, such as the product version constraint of plugins.
+ * Constraints are parsed once and the compiled expressions are cached per distinct constraint string.
+ *
+ * @author Allan-QLB
+ */
+@UtilityClass
+public class VersionConstraints {
+    /**
+     * The constraint satisfied by any version.
+     */
+    public static final String ANY = "*";
+    private static final int MAX_CACHED_CONSTRAINTS = 1024;
+    private static final Predicate<Version> ANY_VERSION = v -> true;
+    private static final Map<String, Predicate<Version>> COMPILED = new ConcurrentHashMap<>();
+
+    /**
+     * Compiles a version constraint, for instance {@code ">=1.0.0 & <2.0.0"}, or {@link #ANY}.
+     *
+     * @param constraint The constraint.
+     * @return The compiled constraint, testing whether a version satisfies it.
+     * @throws com.github.zafarkhaja.semver.ParseException if the constraint is not a valid expression.
+     */
+    public static Predicate<Version> compile(@Nonnull String constraint) {
+        final Predicate<Version> compiled = COMPILED.get(constraint);
+        if (compiled != null) {
+            return compiled;
+        }
+        if (COMPILED.size() >= MAX_CACHED_CONSTRAINTS) {
+            return parse(constraint);
+        }
+        return COMPILED.computeIfAbsent(constraint, VersionConstraints::parse);
+    }
+
+    /**
+     * Checks whether a version satisfies a constraint, with the same result as {@link Version#satisfies(String)}
+     * but without parsing the constraint again.
+     *
+     * @param version    The version to check.
+     * @param constraint The constraint, or {@link #ANY}.
+     * @return {@code true} if the version satisfies the constraint.
+     */
+    public static boolean satisfies(@Nonnull Version version, @Nonnull String constraint) {
+        return compile(constraint).test(version);
+    }
+
+    private static Predicate<Version> parse(String constraint) {
+        if (ANY.equals(constraint.trim())) {
+            return ANY_VERSION;
+        }
+        return ExpressionParser.newInstance().parse(constraint);
+    }
+}
@@ -48,6 +48,29 @@ public class YamlUtils {
         }
     }
 
+    /**
+     * Checks whether a mapper was created for a class loader and is still cached.
+     *
+     * @param classLoader The class loader.
+     * @return {@code true} if a mapper of the class loader is cached.
+     */
+    public static boolean hasYamlMapper(ClassLoader classLoader) {
+        synchronized (CLASS_LOADER_YAML_MAPPER_MAP) {
+            return CLASS_LOADER_YAML_MAPPER_MAP.containsKey(classLoader);
+        }
+    }
+
+    /**
+     * Removes the mapper cached for a class loader, which may reference its classes.
+     *
+     * @param classLoader The class loader.
+     */
+    public static void removeYamlMapper(ClassLoader classLoader) {
+        synchronized (CLASS_LOADER_YAML_MAPPER_MAP) {
+            CLASS_LOADER_YAML_MAPPER_MAP.remove(classLoader);
+        }
+    }
+
     /**
      * Creates and configures a new {@link YAMLMapper} instance.
      *
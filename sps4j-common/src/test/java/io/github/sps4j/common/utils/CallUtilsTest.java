@@ -0,0 +1,43 @@
+package io.github.sps4j.common.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CallUtilsTest {
+
+    @Test
+    void executeWithContextLoader_shouldSwitchAndRestoreContextLoader() throws Exception {
+        ClassLoader before = Thread.currentThread().getContextClassLoader();
+        try (URLClassLoader cl = new URLClassLoader(new URL[0], before)) {
+            assertSame(cl, CallUtils.executeWithContextLoader(cl, () -> Thread.currentThread().getContextClassLoader()));
+            assertSame(before, Thread.currentThread().getContextClassLoader());
+            // nested calls with the same loader keep it
+            assertSame(cl, CallUtils.executeWithContextLoader(cl, () -> CallUtils.executeWithContextLoader(cl,
+                    () -> Thread.currentThread().getContextClassLoader())));
+            assertThrows(IllegalStateException.class, () -> CallUtils.executeWithContextLoader(cl, () -> {
+                throw new IllegalStateException();
+            }));
+            assertSame(before, Thread.currentThread().getContextClassLoader());
+        }
+    }
+
+    @Test
+    void runWithContextLoader_shouldRunOnce() throws Exception {
+        ClassLoader before = Thread.currentThread().getContextClassLoader();
+        AtomicInteger runs = new AtomicInteger();
+        try (URLClassLoader cl = new URLClassLoader(new URL[0], before)) {
+            CallUtils.runWithContextLoader(cl, runs::incrementAndGet);
+            CallUtils.runWithContextLoader(cl, () -> CallUtils.runWithContextLoader(cl, runs::incrementAndGet));
+            Thread.currentThread().setContextClassLoader(null);
+            CallUtils.runWithContextLoader(cl, runs::incrementAndGet);
+        } finally {
+            Thread.currentThread().setContextClassLoader(before);
+        }
+        assertEquals(3, runs.get());
+    }
+}
@@ -0,0 +1,35 @@
+package io.github.sps4j.common.utils;
+
+import com.github.zafarkhaja.semver.ParseException;
+import com.github.zafarkhaja.semver.Version;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VersionConstraintsTest {
+
+    @Test
+    void testCompileIsCached() {
+        assertSame(VersionConstraints.compile(">=1.0.0 & <2.0.0"), VersionConstraints.compile(">=1.0.0 & <2.0.0"));
+    }
+
+    @Test
+    void testSatisfiesMatchesVersion() {
+        Version version = Version.parse("1.2.3");
+        for (String constraint : new String[]{">=1.0.0", "<1.0.0", ">=1.0.0 & <2.0.0", "1.x", "~1.3", "^1.0.0", "!(1.2.3)"}) {
+            assertEquals(version.satisfies(constraint), VersionConstraints.satisfies(version, constraint), constraint);
+        }
+    }
+
+    @Test
+    void testAnyConstraint() {
+        assertTrue(VersionConstraints.satisfies(Version.parse("0.0.1"), "*"));
+        assertTrue(VersionConstraints.satisfies(Version.parse("0.0.1"), " * "));
+    }
+
+    @Test
+    void testInvalidConstraint() {
+        assertThrows(ParseException.class, () -> VersionConstraints.compile(">=>1"));
+        assertThrows(ParseException.class, () -> VersionConstraints.compile(">=>1"));
+    }
+}
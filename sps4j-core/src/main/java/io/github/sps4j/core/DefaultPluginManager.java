@@ -7,13 +7,21 @@ import io.github.sps4j.common.meta.MetaInfo;
 import io.github.sps4j.common.meta.PluginArtifact;
 import io.github.sps4j.common.meta.PluginDesc;
 import io.github.sps4j.common.meta.VersionedPluginArtifact;
+import io.github.sps4j.common.utils.VersionConstraints;
 import io.github.sps4j.common.utils.YamlUtils;
 import io.github.sps4j.core.exception.PluginException;
 import io.github.sps4j.core.load.*;
 import io.github.sps4j.core.load.storage.LocalDirJarPluginPackageRepository;
+import io.github.sps4j.core.load.storage.PackageStamp;
+import io.github.sps4j.core.load.storage.PluginCatalog;
 import io.github.sps4j.core.load.storage.PluginPackage;
 import io.github.sps4j.core.load.storage.PluginRepository;
+import io.github.sps4j.core.load.storage.RepositoryChangeListener;
+import io.github.sps4j.core.load.storage.WatchablePluginRepository;
+import io.github.sps4j.core.metrics.InvocationMetrics;
+import com.github.zafarkhaja.semver.Version;
 import com.google.common.annotations.VisibleForTesting;
+import lombok.AllArgsConstructor;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections4.CollectionUtils;
@@ -24,14 +32,22 @@ import org.apache.commons.lang3.StringUtils;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * The default implementation of the {@link PluginManager} interface.
@@ -40,6 +56,11 @@ import java.util.stream.Collectors;
  * loading their metadata, handling their lifecycle (loading, unloading),
  * and providing access to plugin instances. It maintains a cache of loaded
  * plugins and their metadata.
+ * <p>
+ * Lookups of already-loaded plugins never take a lock. A plugin that is not loaded yet is loaded
+ * at most once at a time: concurrent requests for the same artifact wait for the same load,
+ * while different artifacts are loaded in parallel. Unloads and updates exclude loads: a load waits for them
+ * to complete, and they wait for the loads in progress, so that no plugin is published while it is unloaded.
  *
  * @author Allan-QLB
  */
@@ -53,10 +74,28 @@ public class DefaultPluginManager implements PluginManager {
     private final ProductPluginLoadService productPluginLoadService;
     private final Map<String, Map<String, MetaInfo>> pluginMetaMap = new ConcurrentHashMap<>();
     private final Map<PluginArtifact, PluginWrapper> loaded = new ConcurrentHashMap<>();
+    private final Map<PluginArtifact, PendingLoad> loading = new ConcurrentHashMap<>();
+    /**
+     * Held shared by the loads of plugins and exclusively by unloads and updates. Lookups of loaded plugins do not take it.
+     */
+    private final ReentrantReadWriteLock lifecycleLock = new ReentrantReadWriteLock();
     @Nonnull
     private final PluginRepository repository;
     @Nonnull
     private final Sps4jPluginLoader pluginLoader;
+    @Nullable
+    private final Executor scanExecutor;
+    @Nullable
+    private final ClassPreloader classPreloader;
+    private final Object packageIndexLock = new Object();
+    private final ClassLoaderLeakTracker leakTracker = new ClassLoaderLeakTracker();
+    /**
+     * The packages of the repository found by the last scan, or {@code null} before the first scan.
+     */
+    private volatile PackageIndex packageIndex;
+    private final Set<String> pendingPackageChanges = ConcurrentHashMap.newKeySet();
+    private volatile boolean pendingPackageOverflow = false;
+    private Closeable repositoryWatch;
 
     static {
         discoverInterfaces();
@@ -96,15 +135,69 @@ public class DefaultPluginManager implements PluginManager {
                                 boolean init,
                                 @Nonnull PluginRepository repository,
                                 @Nonnull Sps4jPluginLoader pluginLoader
+    ) {
+        this(productPluginLoadService, init, repository, pluginLoader, null);
+    }
+
+    /**
+     * Constructs a new DefaultPluginManager scanning the repository packages in parallel.
+     * <p>
+     * The descriptors of the packages are read concurrently on the given executor, for instance a
+     * {@link java.util.concurrent.ForkJoinPool} or a virtual thread per task executor, and merged afterwards
+     * in the order of the packages, so the resulting metadata is the same as with a serial scan.
+     *
+     * @param productPluginLoadService The service providing product-specific information.
+     * @param init                     Whether to automatically initialize the manager upon construction.
+     * @param repository               The plugin storage implementation.
+     * @param pluginLoader             The plugin loader implementation.
+     * @param scanExecutor             The executor reading the packages, or {@code null} to read them serially.
+     */
+    public DefaultPluginManager(@Nonnull ProductPluginLoadService productPluginLoadService,
+                                boolean init,
+                                @Nonnull PluginRepository repository,
+                                @Nonnull Sps4jPluginLoader pluginLoader,
+                                @Nullable Executor scanExecutor
+    ) {
+        this(productPluginLoadService, init, repository, pluginLoader, scanExecutor, null);
+    }
+
+    /**
+     * Constructs a new DefaultPluginManager preloading the classes plugins loaded during previous runs.
+     * <p>
+     * When a plugin is loaded with a new class loader, the classes it loaded during its previous run are preloaded
+     * by the {@link ClassPreloader} once the plugin is created, and the plugin is returned once they are.
+     * The classes it loads are recorded, and stored when it is unloaded or by {@link #saveClassLists()}.
+     *
+     * @param productPluginLoadService The service providing product-specific information.
+     * @param init                     Whether to automatically initialize the manager upon construction.
+     * @param repository               The plugin storage implementation.
+     * @param pluginLoader             The plugin loader implementation.
+     * @param scanExecutor             The executor reading the packages, or {@code null} to read them serially.
+     * @param classPreloader           The preloader of plugin classes, or {@code null} not to preload them.
+     */
+    public DefaultPluginManager(@Nonnull ProductPluginLoadService productPluginLoadService,
+                                boolean init,
+                                @Nonnull PluginRepository repository,
+                                @Nonnull Sps4jPluginLoader pluginLoader,
+                                @Nullable Executor scanExecutor,
+                                @Nullable ClassPreloader classPreloader
     ) {
         this.productPluginLoadService = productPluginLoadService;
         this.repository = repository;
         this.pluginLoader = pluginLoader;
+        this.scanExecutor = scanExecutor;
+        this.classPreloader = classPreloader;
         if (init) {
             init();
         }
     }
 
+    @Override
+    @Nullable
+    public InvocationMetrics getInvocationMetrics() {
+        return pluginLoader.getInvocationMetrics();
+    }
+
     public static boolean isSupportedType(String type) {
         return SUPPORTED_TYPES.containsValue(type);
     }
@@ -149,45 +242,203 @@ public class DefaultPluginManager implements PluginManager {
     }
 
     Map<String, Map<String, MetaInfo>> loadMetadata(@Nullable PluginArtifact artifact) {
-        final List<PluginPackage> packages = repository.listPackages();
+        final PackageIndex index = packageIndex;
+        if (artifact != null && index != null) {
+            return loadArtifactMetadata(artifact, index);
+        }
+        final PluginCatalog catalog = repository.getCatalog();
+        final List<ScannedPackage> scannedPackages;
+        try (Stream<PluginPackage> packages = repository.streamPackages()) {
+            scannedPackages = scanExecutor == null
+                    ? scanSerially(packages.iterator(), catalog) : scanInParallel(packages.iterator(), catalog);
+        }
         Map<String, Map<String, MetaInfo>> result = new HashMap<>();
-        for (PluginPackage p : packages) {
-            try (final PluginPackage pack = p) {
-                if (!p.contains(Const.DESC_FILE)) {
+        final Version productVersion = productPluginLoadService.productVersion();
+        for (ScannedPackage scanned : scannedPackages) {
+            mergeDescriptors(result, productVersion, scanned.baseUrl, scanned.descriptors, artifact == null ? null : artifact::equals);
+        }
+        synchronized (packageIndexLock) {
+            packageIndex = new PackageIndex(scannedPackages);
+        }
+        if (catalog != null) {
+            final List<String> seenPaths = new ArrayList<>();
+            for (ScannedPackage scanned : scannedPackages) {
+                if (scanned.stamp != null) {
+                    seenPaths.add(scanned.stamp.getPath());
+                }
+            }
+            catalog.retainAll(seenPaths);
+            catalog.save();
+        }
+        removeTypeWithEmptyPluginFromMetaMap(result);
+        return result;
+    }
+
+    /**
+     * Loads the metadata of a single artifact without reading the whole repository. The repository is listed,
+     * which does not open its packages, and only the new packages, the packages whose stamp changed and the
+     * packages without a stamp are read. The other packages contribute the descriptors found by the previous scan,
+     * so the result is the same as a full scan filtered on the artifact.
+     * <p>
+     * The packages read are merged into the current index, which keeps the packages another thread added, refreshed
+     * or removed meanwhile.
+     */
+    private Map<String, Map<String, MetaInfo>> loadArtifactMetadata(@Nonnull PluginArtifact artifact, @Nonnull PackageIndex index) {
+        final PluginCatalog catalog = repository.getCatalog();
+        final Map<String, ScannedPackage> listed = new LinkedHashMap<>();
+        boolean read = false;
+        try (Stream<PluginPackage> stream = repository.streamPackages()) {
+            for (Iterator<PluginPackage> it = stream.iterator(); it.hasNext(); ) {
+                final PluginPackage pack = it.next();
+                final ScannedPackage known = index.get(pack.getBaseUrl());
+                if (known == null || known.isOutdated(pack)) {
+                    listed.put(pack.getBaseUrl(), scan(pack, catalog));
+                    read = true;
+                } else {
+                    closeQuietly(pack);
+                    listed.put(known.baseUrl, known);
+                }
+            }
+        }
+        if (catalog != null && read) {
+            catalog.save();
+        }
+        final Collection<ScannedPackage> packages;
+        synchronized (packageIndexLock) {
+            final PackageIndex current = packageIndex;
+            final Map<String, ScannedPackage> merged = new LinkedHashMap<>();
+            listed.forEach((baseUrl, scanned) -> {
+                final ScannedPackage latest = current.get(baseUrl);
+                if (latest == index.get(baseUrl)) {
+                    merged.put(baseUrl, scanned);
+                } else if (latest != null) {
+                    merged.put(baseUrl, latest);
+                }
+            });
+            // packages added since the listing
+            current.copyPackages().forEach((baseUrl, latest) -> {
+                if (index.get(baseUrl) != latest) {
+                    merged.putIfAbsent(baseUrl, latest);
+                }
+            });
+            packageIndex = new PackageIndex(merged.values());
+            packages = merged.values();
+        }
+        final Map<String, Map<String, MetaInfo>> result = new HashMap<>();
+        final Version productVersion = productPluginLoadService.productVersion();
+        for (ScannedPackage scanned : packages) {
+            mergeDescriptors(result, productVersion, scanned.baseUrl, scanned.descriptors, artifact::equals);
+        }
+        removeTypeWithEmptyPluginFromMetaMap(result);
+        return result;
+    }
+
+    private static void closeQuietly(PluginPackage pack) {
+        try {
+            pack.close();
+        } catch (Exception e) {
+            log.debug("Error close plugin package {}", pack.getBaseUrl(), e);
+        }
+    }
+
+    /**
+     * Merges the descriptors of a package into a metadata map, keeping the highest version of each plugin
+     * that can be loaded by the product.
+     */
+    private void mergeDescriptors(Map<String, Map<String, MetaInfo>> result, Version productVersion, String baseUrl,
+                                  List<PluginDesc> descriptors, @Nullable Predicate<PluginArtifact> filter) {
+        try {
+            for (PluginDesc descriptor : descriptors) {
+                if (filter != null && !filter.test(descriptor.toArtifact())) {
                     continue;
                 }
-                List<PluginDesc> descriptors = loadDescriptors(pack.getResource(Const.DESC_FILE));
-                for (PluginDesc descriptor : descriptors) {
-                    if (artifact != null && (!Objects.equals(artifact.getType(), descriptor.getType()) || !Objects.equals(artifact.getName(), descriptor.getName()))) {
-                        continue;
-                    }
-                    final Map<String, MetaInfo> typeMetaMap =
-                            result.computeIfAbsent(descriptor.getType(), t -> new HashMap<>());
-                    final MetaInfo existMeta = typeMetaMap.get(descriptor.getName());
-                    if (canLoad(productPluginLoadService, descriptor)) {
-                        MetaInfo newMetaInfo = new MetaInfo(descriptor, URI.create(pack.getBaseUrl()).toURL());
-                        if (existMeta == null || existMeta.getDescriptor().getVersion().compareTo(newMetaInfo.getDescriptor().getVersion()) < 0) {
-                            typeMetaMap.put(descriptor.getName(), newMetaInfo);
-                            if (existMeta != null) {
-                                log.info("replace plugin metaInfo {} with {}", existMeta, newMetaInfo);
-                            } else {
-                                log.info("add plugin metaInfo {}", newMetaInfo);
-                            }
+                final Map<String, MetaInfo> typeMetaMap =
+                        result.computeIfAbsent(descriptor.getType(), t -> new ConcurrentHashMap<>());
+                final MetaInfo existMeta = typeMetaMap.get(descriptor.getName());
+                if (canLoad(productVersion, descriptor)) {
+                    MetaInfo newMetaInfo = new MetaInfo(descriptor, URI.create(baseUrl).toURL());
+                    if (existMeta == null || existMeta.getDescriptor().getVersion().compareTo(newMetaInfo.getDescriptor().getVersion()) < 0) {
+                        typeMetaMap.put(descriptor.getName(), newMetaInfo);
+                        if (existMeta != null) {
+                            log.info("replace plugin metaInfo {} with {}", existMeta, newMetaInfo);
+                        } else {
+                            log.info("add plugin metaInfo {}", newMetaInfo);
                         }
-
-                    } else {
-                        log.info("Plugin {}:{}:{} is not supported by current product",
-                                descriptor.getType(), descriptor.getName(), descriptor.getVersion());
                     }
+
+                } else {
+                    log.info("Plugin {}:{}:{} is not supported by current product",
+                            descriptor.getType(), descriptor.getName(), descriptor.getVersion());
                 }
-            } catch (Exception e) {
-                throw new PluginException(e.getMessage(), e);
             }
+        } catch (Exception e) {
+            throw new PluginException(e.getMessage(), e);
+        }
+    }
+
+    private List<ScannedPackage> scanSerially(Iterator<PluginPackage> packages, @Nullable PluginCatalog catalog) {
+        final List<ScannedPackage> result = new ArrayList<>();
+        while (packages.hasNext()) {
+            result.add(scan(packages.next(), catalog));
         }
-        removeTypeWithEmptyPluginFromMetaMap(result);
         return result;
     }
 
+    /**
+     * Reads the packages concurrently on the scan executor. The results are returned in the order of the packages,
+     * so that merging them gives the same metadata as a serial scan. All the reads are completed before a failure,
+     * if any, is reported for the first failed package in that order.
+     */
+    private List<ScannedPackage> scanInParallel(Iterator<PluginPackage> packages, @Nullable PluginCatalog catalog) {
+        final List<CompletableFuture<ScannedPackage>> futures = new ArrayList<>();
+        while (packages.hasNext()) {
+            final PluginPackage pack = packages.next();
+            futures.add(CompletableFuture.supplyAsync(() -> scan(pack, catalog), scanExecutor));
+        }
+        final List<ScannedPackage> result = new ArrayList<>(futures.size());
+        RuntimeException failure = null;
+        for (CompletableFuture<ScannedPackage> future : futures) {
+            try {
+                result.add(future.join());
+            } catch (CompletionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof RuntimeException
+                            ? (RuntimeException) e.getCause() : new PluginException(e.getMessage(), e.getCause());
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return result;
+    }
+
+    private ScannedPackage scan(PluginPackage p, @Nullable PluginCatalog catalog) {
+        try (final PluginPackage pack = p) {
+            final PackageStamp stamp = pack.getStamp();
+            final List<PluginDesc> descriptors = readDescriptors(pack, catalog, stamp);
+            return new ScannedPackage(stamp, pack.getBaseUrl(), descriptors);
+        } catch (Exception e) {
+            throw new PluginException(e.getMessage(), e);
+        }
+    }
+
+    private List<PluginDesc> readDescriptors(@Nonnull PluginPackage pack, @Nullable PluginCatalog catalog,
+                                             @Nullable PackageStamp stamp) throws IOException {
+        if (catalog != null && stamp != null) {
+            final List<PluginDesc> cached = catalog.lookup(stamp);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        final List<PluginDesc> descriptors = pack.contains(Const.DESC_FILE)
+                ? loadDescriptors(pack.getResource(Const.DESC_FILE)) : Collections.emptyList();
+        if (catalog != null && stamp != null) {
+            catalog.record(stamp, descriptors);
+        }
+        return descriptors;
+    }
+
     private static void removeTypeWithEmptyPluginFromMetaMap(Map<String, Map<String, MetaInfo>> pluginMetaMap) {
         Set<String> toRemove = new HashSet<>();
         pluginMetaMap.forEach((key, value) -> {
@@ -210,12 +461,19 @@ public class DefaultPluginManager implements PluginManager {
     }
 
     boolean canLoad(ProductPluginLoadService pluginService, PluginDesc pd) {
-        String productVersionConstraint = pd.getProductVersionConstraint();
-        return ("*".equals(productVersionConstraint.trim())
-                || pluginService.productVersion().satisfies(productVersionConstraint))
+        return VersionConstraints.satisfies(pluginService.productVersion(), pd.getProductVersionConstraint())
                 && pluginService.canLoad(pd);
     }
 
+    /**
+     * Checks whether a plugin can be loaded by the product, the product version being resolved once per scan
+     * and the product version constraint being compiled once per distinct constraint.
+     */
+    private boolean canLoad(Version productVersion, PluginDesc pd) {
+        return VersionConstraints.satisfies(productVersion, pd.getProductVersionConstraint())
+                && productPluginLoadService.canLoad(pd);
+    }
+
     @Override
     public synchronized void init() {
         discoverInterfacesIfNecessary();
@@ -269,66 +527,266 @@ public class DefaultPluginManager implements PluginManager {
 
     @Override
     public synchronized PluginWrapper update(@Nonnull PluginArtifact artifact) {
-        MetaInfo metaInfo = checkForUpdate(artifact);
-        if (metaInfo == null) {
-            return null;
+        final Lock lock = lockExclusively();
+        try {
+            MetaInfo metaInfo = checkForUpdate(artifact);
+            if (metaInfo == null) {
+                return null;
+            }
+            unload(artifact);
+            pluginMetaMap.putAll(loadMetadata(artifact));
+            return getPlugin(artifact);
+        } finally {
+            lock.unlock();
         }
-        unload(artifact);
-        pluginMetaMap.putAll(loadMetadata(artifact));
-        return getPlugin(artifact);
     }
 
     @Override
     public synchronized List<PluginWrapper> update() {
-        List<PluginWrapper> updated = new ArrayList<>();
-        List<MetaInfo> metaInfos = checkForUpdate();
-        for (MetaInfo metaInfo : metaInfos) {
-            unload(metaInfo.getDescriptor().toArtifact());
+        final Lock lock = lockExclusively();
+        try {
+            List<PluginWrapper> updated = new ArrayList<>();
+            List<MetaInfo> metaInfos = checkForUpdate();
+            for (MetaInfo metaInfo : metaInfos) {
+                unload(metaInfo.getDescriptor().toArtifact());
+            }
+            for (MetaInfo metaInfo : metaInfos) {
+                updated.add(getPlugin(metaInfo.getDescriptor().toArtifact()));
+            }
+            return updated;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /**
+     * Reads again the given packages of the repository and applies their changes to the plugin metadata.
+     * <p>
+     * Only the plugins provided by these packages, before or after the change, are affected: their metadata is
+     * recomputed from all the known packages. A changed plugin that was loaded is unloaded and loaded again with its
+     * new metadata, a plugin whose packages were all removed is unloaded.
+     *
+     * @param baseUrls The base URLs of the added, modified or removed packages.
+     * @return The artifacts whose metadata changed.
+     */
+    public synchronized List<PluginArtifact> refreshPackages(@Nonnull Collection<String> baseUrls) {
+        final Lock lock = lockExclusively();
+        try {
+            final PluginCatalog catalog = repository.getCatalog();
+            final Map<String, ScannedPackage> scannedPackages = new LinkedHashMap<>();
+            for (String baseUrl : baseUrls) {
+                final PluginPackage pack = repository.getPackage(baseUrl);
+                scannedPackages.put(baseUrl, pack == null ? null : scan(pack, catalog));
+            }
+            if (catalog != null) {
+                catalog.save();
+            }
+            final Set<PluginArtifact> affected = new LinkedHashSet<>();
+            final Map<String, ScannedPackage> packages;
+            synchronized (packageIndexLock) {
+                packages = packageIndex == null ? new LinkedHashMap<>() : packageIndex.copyPackages();
+                scannedPackages.forEach((baseUrl, scanned) -> {
+                    final ScannedPackage previous = scanned == null ? packages.remove(baseUrl) : packages.put(baseUrl, scanned);
+                    if (previous != null) {
+                        previous.descriptors.forEach(descriptor -> affected.add(descriptor.toArtifact()));
+                    }
+                    if (scanned != null) {
+                        scanned.descriptors.forEach(descriptor -> affected.add(descriptor.toArtifact()));
+                    }
+                });
+                packageIndex = new PackageIndex(packages.values());
+            }
+            final Map<String, Map<String, MetaInfo>> metaMap = new HashMap<>();
+            final Version productVersion = productPluginLoadService.productVersion();
+            packages.values().forEach(scanned -> mergeDescriptors(metaMap, productVersion, scanned.baseUrl, scanned.descriptors, affected::contains));
+            final List<PluginArtifact> changed = new ArrayList<>();
+            for (PluginArtifact artifact : affected) {
+                final MetaInfo newMeta = metaMap.getOrDefault(artifact.getType(), Collections.emptyMap()).get(artifact.getName());
+                if (applyMetaInfo(artifact, newMeta)) {
+                    changed.add(artifact);
+                }
+            }
+            return changed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean applyMetaInfo(PluginArtifact artifact, @Nullable MetaInfo newMeta) {
+        final MetaInfo currentMeta = pluginMetaMap.getOrDefault(artifact.getType(), Collections.emptyMap()).get(artifact.getName());
+        if (currentMeta == null ? newMeta == null : newMeta != null
+                && Objects.equals(currentMeta.getDescriptor().getVersion(), newMeta.getDescriptor().getVersion())
+                && Objects.equals(currentMeta.getUrl().toString(), newMeta.getUrl().toString())) {
+            return false;
+        }
+        final boolean wasLoaded = loaded.containsKey(artifact);
+        unload(artifact);
+        if (newMeta == null) {
+            log.info("remove plugin metaInfo {}", currentMeta);
+            return true;
+        }
+        pluginMetaMap.computeIfAbsent(artifact.getType(), t -> new ConcurrentHashMap<>()).put(artifact.getName(), newMeta);
+        log.info("update plugin metaInfo {} to {}", currentMeta, newMeta);
+        if (wasLoaded) {
+            try {
+                getPlugin(artifact);
+            } catch (RuntimeException e) {
+                log.error("Error reload plugin {}", artifact, e);
+            }
+        }
+        return true;
+    }
+
+    private List<PluginArtifact> refreshAllPackages() {
+        final PackageIndex index = packageIndex;
+        final Set<String> baseUrls = new LinkedHashSet<>(index == null ? Collections.emptySet() : index.copyPackages().keySet());
+        try (Stream<PluginPackage> packages = repository.streamPackages()) {
+            packages.forEach(pack -> {
+                baseUrls.add(pack.getBaseUrl());
+                closeQuietly(pack);
+            });
+        }
+        return refreshPackages(baseUrls);
+    }
+
+    /**
+     * Starts watching the repository for added, modified and removed packages. Only the changed packages are read
+     * again, after no change happened during the debounce delay.
+     * <p>
+     * With {@code autoUpdate}, the changes are applied as soon as they are detected, as by {@link #refreshPackages}.
+     * Otherwise they are queued until {@link #applyPendingPackageChanges()} is called.
+     *
+     * @param debounceMillis The delay without changes after which the changes collected so far are handled.
+     * @param autoUpdate     Whether to apply the changes immediately rather than queuing them.
+     * @throws PluginException if the repository cannot be watched.
+     */
+    public synchronized void watchRepository(long debounceMillis, boolean autoUpdate) {
+        if (!(repository instanceof WatchablePluginRepository)) {
+            throw new PluginException("Plugin repository " + repository + " cannot be watched");
         }
-        for (MetaInfo metaInfo : metaInfos) {
-            updated.add(getPlugin(metaInfo.getDescriptor().toArtifact()));
+        if (repositoryWatch != null) {
+            throw new IllegalStateException("Plugin repository is already watched");
+        }
+        try {
+            repositoryWatch = ((WatchablePluginRepository) repository).watch(debounceMillis, new RepositoryChangeListener<String>() {
+                @Override
+                public void onChanged(@Nonnull Set<String> changed) {
+                    if (autoUpdate) {
+                        refreshPackages(changed);
+                    } else {
+                        pendingPackageChanges.addAll(changed);
+                    }
+                }
+
+                @Override
+                public void onOverflow() {
+                    if (autoUpdate) {
+                        refreshAllPackages();
+                    } else {
+                        pendingPackageOverflow = true;
+                    }
+                }
+            });
+        } catch (IOException e) {
+            throw new PluginException("Error watch plugin repository " + repository, e);
         }
-        return updated;
     }
 
+    /**
+     * Stops watching the repository. Changes queued so far are kept.
+     */
+    public synchronized void stopWatchingRepository() {
+        if (repositoryWatch == null) {
+            return;
+        }
+        try {
+            repositoryWatch.close();
+        } catch (IOException e) {
+            log.warn("Error stop watching plugin repository {}", repository, e);
+        } finally {
+            repositoryWatch = null;
+        }
+    }
+
+    /**
+     * Checks whether changes of the watched repository are queued.
+     *
+     * @return {@code true} if {@link #applyPendingPackageChanges()} has changes to apply.
+     */
+    public boolean hasPendingPackageChanges() {
+        return pendingPackageOverflow || !pendingPackageChanges.isEmpty();
+    }
+
+    /**
+     * Applies the changes of the watched repository queued so far.
+     *
+     * @return The artifacts whose metadata changed.
+     */
+    public synchronized List<PluginArtifact> applyPendingPackageChanges() {
+        if (pendingPackageOverflow) {
+            pendingPackageOverflow = false;
+            pendingPackageChanges.clear();
+            return refreshAllPackages();
+        }
+        final List<String> changes = new ArrayList<>(pendingPackageChanges);
+        pendingPackageChanges.removeAll(changes);
+        return changes.isEmpty() ? Collections.emptyList() : refreshPackages(changes);
+    }
 
     @Override
     public synchronized void resetAll() {
-        unloadAll();
-        pluginMetaMap.putAll(loadMetadata(null));
+        final Lock lock = lockExclusively();
+        try {
+            unloadAll();
+            pluginMetaMap.putAll(loadMetadata(null));
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
     public synchronized void reset(@Nonnull PluginArtifact artifact) {
-        unload(artifact);
-        pluginMetaMap.putAll(loadMetadata(artifact));
+        final Lock lock = lockExclusively();
+        try {
+            unload(artifact);
+            pluginMetaMap.putAll(loadMetadata(artifact));
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
     public void unloadAll() {
-        for (Map.Entry<PluginArtifact, PluginWrapper> entry : loaded.entrySet()) {
-            final Sps4jPlugin plugin = entry.getValue().getPlugin();
-            final PluginDesc descriptor = entry.getValue().getMetaInfo().getDescriptor();
-            Sps4jPluginClassLoader cl = (Sps4jPluginClassLoader) plugin.getClass().getClassLoader();
-            try {
-                plugin.onDestroy();
-                cl.close();
-            } catch (Exception e) {
-                throw new PluginException("Error remove plugin " +
-                        VersionedPluginArtifact.builder().artifact(
-                                        PluginArtifact.builder()
-                                                .type(descriptor.getType())
-                                                .name(descriptor.getName())
-                                                .build())
-                                .version(descriptor.getVersion())
-                                .build(), e);
+        final Lock lock = lockExclusively();
+        try {
+            for (Map.Entry<PluginArtifact, PluginWrapper> entry : loaded.entrySet()) {
+                final Sps4jPlugin plugin = entry.getValue().getPlugin();
+                final PluginDesc descriptor = entry.getValue().getMetaInfo().getDescriptor();
+                Sps4jPluginClassLoader cl = (Sps4jPluginClassLoader) plugin.getClass().getClassLoader();
+                final VersionedPluginArtifact artifact = VersionedPluginArtifact.builder().artifact(
+                                PluginArtifact.builder()
+                                        .type(descriptor.getType())
+                                        .name(descriptor.getName())
+                                        .build())
+                        .version(descriptor.getVersion())
+                        .build();
+                try {
+                    plugin.onDestroy();
+                    closeClassLoader(cl, artifact);
+                } catch (Exception e) {
+                    throw new PluginException("Error remove plugin " + artifact, e);
+                }
             }
-        }
-        if (!loaded.isEmpty()) {
-            loaded.clear();
-        }
-        if (!pluginMetaMap.isEmpty()) {
-            pluginMetaMap.clear();
+            leakTracker.check();
+            if (!loaded.isEmpty()) {
+                loaded.clear();
+            }
+            if (!pluginMetaMap.isEmpty()) {
+                pluginMetaMap.clear();
+            }
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -337,29 +795,39 @@ public class DefaultPluginManager implements PluginManager {
         if (StringUtils.isEmpty(type)) {
             throw new IllegalArgumentException("plugin type cannot be empty");
         }
-        if (!loaded.isEmpty()) {
-            List<PluginArtifact> toRemove = new ArrayList<>();
-            loaded.forEach((art, pw) -> {
-                if (Objects.equals(art.getType(), type)) {
-                    toRemove.add(art);
-                    try {
-                        Sps4jPlugin plugin = pw.getPlugin();
-                        plugin.onDestroy();
-                        ((Sps4jPluginClassLoader) plugin.getClass().getClassLoader()).close();
-                    } catch (Exception e) {
-                        throw new PluginException("Error remove plugin " + VersionedPluginArtifact.builder()
-                                .artifact(art)
-                                .version(pw.getMetaInfo().getDescriptor().getVersion())
-                                .build(), e);
+        final Lock lock = lockExclusively();
+        try {
+            if (!loaded.isEmpty()) {
+                List<PluginArtifact> toRemove = new ArrayList<>();
+                loaded.forEach((art, pw) -> {
+                    if (Objects.equals(art.getType(), type)) {
+                        toRemove.add(art);
+                        try {
+                            Sps4jPlugin plugin = pw.getPlugin();
+                            plugin.onDestroy();
+                            closeClassLoader((Sps4jPluginClassLoader) plugin.getClass().getClassLoader(),
+                                    VersionedPluginArtifact.builder()
+                                            .artifact(art)
+                                            .version(pw.getMetaInfo().getDescriptor().getVersion())
+                                            .build());
+                        } catch (Exception e) {
+                            throw new PluginException("Error remove plugin " + VersionedPluginArtifact.builder()
+                                    .artifact(art)
+                                    .version(pw.getMetaInfo().getDescriptor().getVersion())
+                                    .build(), e);
+                        }
                     }
+                });
+                for (PluginArtifact pluginArtifact : toRemove) {
+                    loaded.remove(pluginArtifact);
                 }
-            });
-            for (PluginArtifact pluginArtifact : toRemove) {
-                loaded.remove(pluginArtifact);
+                leakTracker.check();
             }
-        }
-        if (!pluginMetaMap.isEmpty()) {
-            pluginMetaMap.remove(type);
+            if (!pluginMetaMap.isEmpty()) {
+                pluginMetaMap.remove(type);
+            }
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -370,28 +838,75 @@ public class DefaultPluginManager implements PluginManager {
 
     @Override
     public void unload(@Nonnull PluginArtifact artifact) {
-        if (!loaded.isEmpty()) {
-            final PluginWrapper pluginWithMetadata = loaded.remove(artifact);
-            if (pluginWithMetadata != null) {
-                try {
-                    pluginWithMetadata.getPlugin().onDestroy();
-                    ((Sps4jPluginClassLoader) pluginWithMetadata.getPlugin().getClass().getClassLoader()).close();
-                } catch (Exception e) {
-                    throw new PluginException("Error remove plugin " + VersionedPluginArtifact.builder()
-                            .artifact(artifact)
-                            .version(pluginWithMetadata.getMetaInfo().getDescriptor().getVersion())
-                            .build(), e);
+        final Lock lock = lockExclusively();
+        try {
+            if (!loaded.isEmpty()) {
+                final PluginWrapper pluginWithMetadata = loaded.remove(artifact);
+                if (pluginWithMetadata != null) {
+                    try {
+                        pluginWithMetadata.getPlugin().onDestroy();
+                        closeClassLoader((Sps4jPluginClassLoader) pluginWithMetadata.getPlugin().getClass().getClassLoader(),
+                                VersionedPluginArtifact.builder()
+                                        .artifact(artifact)
+                                        .version(pluginWithMetadata.getMetaInfo().getDescriptor().getVersion())
+                                        .build());
+                    } catch (Exception e) {
+                        throw new PluginException("Error remove plugin " + VersionedPluginArtifact.builder()
+                                .artifact(artifact)
+                                .version(pluginWithMetadata.getMetaInfo().getDescriptor().getVersion())
+                                .build(), e);
+                    }
+                    leakTracker.check();
                 }
             }
-        }
-        if (!pluginMetaMap.isEmpty()) {
-            final Map<String, MetaInfo> nameMeta = pluginMetaMap.get(artifact.getType());
-            if (MapUtils.isNotEmpty(nameMeta)) {
-                nameMeta.remove(artifact.getName());
+            if (!pluginMetaMap.isEmpty()) {
+                final Map<String, MetaInfo> nameMeta = pluginMetaMap.get(artifact.getType());
+                if (MapUtils.isNotEmpty(nameMeta)) {
+                    nameMeta.remove(artifact.getName());
+                }
             }
+        } finally {
+            lock.unlock();
         }
     }
 
+    private PluginWrapper wrap(MetaInfo metaInfo, Sps4jPlugin plugin) {
+        final InvocationMetrics invocationMetrics = pluginLoader.getInvocationMetrics();
+        return PluginWrapper.builder()
+                .plugin(plugin)
+                .metaInfo(metaInfo)
+                .invocationMetrics(invocationMetrics == null ? null
+                        : invocationMetrics.forPlugin(metaInfo.getDescriptor().toArtifact()))
+                .build();
+    }
+
+    private void closeClassLoader(Sps4jPluginClassLoader classLoader, VersionedPluginArtifact artifact) throws IOException {
+        final InvocationMetrics invocationMetrics = pluginLoader.getInvocationMetrics();
+        if (invocationMetrics != null) {
+            invocationMetrics.remove(artifact.getArtifact());
+        }
+        if (classPreloader != null) {
+            classPreloader.save(artifact, classLoader);
+        }
+        classLoader.close();
+        leakTracker.track(classLoader, artifact.toString());
+    }
+
+    /**
+     * Stores the classes loaded so far by the loaded plugins, for them to be preloaded on their next load.
+     * Does nothing without {@link ClassPreloader}.
+     */
+    public void saveClassLists() {
+        if (classPreloader == null) {
+            return;
+        }
+        loaded.forEach((artifact, pw) -> classPreloader.save(VersionedPluginArtifact.builder()
+                        .artifact(artifact)
+                        .version(pw.getMetaInfo().getDescriptor().getVersion())
+                        .build(),
+                (Sps4jPluginClassLoader) pw.getPlugin().getClass().getClassLoader()));
+    }
+
     private String checkInterfaceSupported(@Nonnull Class<?> pluginInterface) {
         String type = SUPPORTED_TYPES.get(pluginInterface.getName());
         if (type == null) {
@@ -401,6 +916,17 @@ public class DefaultPluginManager implements PluginManager {
     }
 
 
+    /**
+     * Gets the tracker of the class loaders of unloaded plugins, which reports the ones still reachable.
+     * Leaks are checked and logged after each unload, and can be checked at any time with
+     * {@link ClassLoaderLeakTracker#check()}.
+     *
+     * @return The class loader leak tracker.
+     */
+    public ClassLoaderLeakTracker getLeakTracker() {
+        return leakTracker;
+    }
+
     PluginWrapper getLoadedPlugin(PluginArtifact pluginArtifact) {
         return loaded.get(pluginArtifact);
     }
@@ -417,24 +943,98 @@ public class DefaultPluginManager implements PluginManager {
         return nameMeta.get(artifact.getName());
     }
 
-    public synchronized PluginWrapper getPlugin(String type, String name, Sps4jPluginClassLoader classLoader, Map<String, Object> config) {
+    /**
+     * Gets a loaded plugin, loading it if necessary.
+     * <p>
+     * A plugin that is already loaded is returned without locking. Otherwise the first caller loads it,
+     * and concurrent callers for the same artifact wait for that load and share its outcome.
+     * A load waits for the unloads and updates in progress.
+     *
+     * @param type        The type of the plugin.
+     * @param name        The name of the plugin.
+     * @param classLoader The class loader to load the plugin with, or {@code null} to create a new one.
+     * @param config      The configuration for the plugin.
+     * @return A {@link PluginWrapper} containing the plugin instance and its metadata.
+     */
+    public PluginWrapper getPlugin(String type, String name, Sps4jPluginClassLoader classLoader, Map<String, Object> config) {
         final PluginArtifact artifact = new PluginArtifact(type, name);
         PluginWrapper loadedPlugin = getLoadedPlugin(artifact);
         if (loadedPlugin != null) {
             return loadedPlugin;
         }
+        // held until the plugin is published, so that an unload or update cannot run in between
+        lifecycleLock.readLock().lock();
+        try {
+            final PendingLoad pendingLoad = new PendingLoad();
+            final PendingLoad existing = loading.putIfAbsent(artifact, pendingLoad);
+            if (existing != null) {
+                return existing.await(artifact);
+            }
+            try {
+                // the plugin may have been published by a load that finished after the first check
+                loadedPlugin = getLoadedPlugin(artifact);
+                if (loadedPlugin == null) {
+                    loadedPlugin = loadPlugin(artifact, classLoader, config);
+                    loaded.put(artifact, loadedPlugin);
+                }
+                pendingLoad.complete(loadedPlugin);
+                return loadedPlugin;
+            } catch (RuntimeException | Error e) {
+                pendingLoad.completeExceptionally(e);
+                throw e;
+            } finally {
+                loading.remove(artifact, pendingLoad);
+            }
+        } finally {
+            lifecycleLock.readLock().unlock();
+        }
+    }
+
+    private PluginWrapper loadPlugin(PluginArtifact artifact, Sps4jPluginClassLoader classLoader, Map<String, Object> config) {
         MetaInfo metaInfo = Optional.ofNullable(getPluginMetaInfo(artifact)).orElseThrow(() -> new PluginException(PLUGIN_DESC_FOUND_MSG_PREF + artifact));
-        final PluginWrapper pluginWrapper = PluginWrapper.builder()
-                .plugin(pluginLoader.load(metaInfo, classLoader, config)).metaInfo(metaInfo).build();
-        loaded.put(artifact, pluginWrapper);
-        log.info("load sps4j plugin {}", VersionedPluginArtifact.builder()
-                .artifact(PluginArtifact.builder().type(type).name(name).build())
+        final VersionedPluginArtifact versionedArtifact = VersionedPluginArtifact.builder()
+                .artifact(artifact)
                 .version(metaInfo.getDescriptor().getVersion())
-                .build()
-        );
+                .build();
+        if (classPreloader == null || classLoader != null) {
+            final PluginWrapper pluginWrapper = wrap(metaInfo, pluginLoader.load(metaInfo, classLoader, config));
+            log.info("load sps4j plugin {}", versionedArtifact);
+            return pluginWrapper;
+        }
+        // the classes of the previous run are preloaded once the plugin is created: a class referencing the plugin
+        // class would define it from the jar, and the plugin class could no longer be rebased
+        final Sps4jPluginClassLoader newClassLoader = pluginLoader.createClassLoader(Collections.singletonList(metaInfo));
+        newClassLoader.recordDefinedClasses();
+        final PluginWrapper pluginWrapper;
+        try {
+            pluginWrapper = wrap(metaInfo, pluginLoader.load(metaInfo, newClassLoader, config));
+        } catch (RuntimeException | Error e) {
+            try {
+                newClassLoader.close();
+            } catch (IOException ex) {
+                e.addSuppressed(ex);
+            }
+            throw e;
+        }
+        final int preloaded = classPreloader.preload(versionedArtifact, newClassLoader).join();
+        log.info("load sps4j plugin {}, {} classes preloaded", versionedArtifact, preloaded);
         return pluginWrapper;
     }
 
+    /**
+     * Takes the lifecycle lock exclusively, once the loads in progress are published.
+     * A plugin cannot be unloaded or updated by the thread loading another one, the shared lock of a load
+     * not being upgradable.
+     */
+    private Lock lockExclusively() {
+        if (lifecycleLock.getReadHoldCount() > 0 && !lifecycleLock.isWriteLockedByCurrentThread()) {
+            throw new PluginException("Plugins cannot be unloaded or updated while a plugin is being loaded by the same thread");
+        }
+        final Lock lock = lifecycleLock.writeLock();
+        lock.lock();
+        return lock;
+    }
+
     @Override
     public PluginWrapper getPlugin(@Nonnull String type, @Nonnull String name) {
         return getPlugin(type, name, null, Collections.emptyMap());
@@ -474,7 +1074,7 @@ public class DefaultPluginManager implements PluginManager {
     }
 
     @Override
-    public synchronized List<PluginWrapper> getPlugins(@Nonnull String type) {
+    public List<PluginWrapper> getPlugins(@Nonnull String type) {
         return getPlugins(type, Collections.emptyMap());
     }
 
@@ -491,8 +1091,17 @@ public class DefaultPluginManager implements PluginManager {
     }
 
     @Override
-    public synchronized List<PluginWrapper> getPlugins(@Nonnull String type, Map<String, Object> conf) {
-        final Map<String, MetaInfo> nameMeta = pluginMetaMap.get(type);
+    public List<PluginWrapper> getPlugins(@Nonnull String type, Map<String, Object> conf) {
+        Map<String, MetaInfo> nameMeta = pluginMetaMap.get(type);
+        if (MapUtils.isEmpty(nameMeta)) {
+            // the metadata may be missing only while the plugins are updated
+            lifecycleLock.readLock().lock();
+            try {
+                nameMeta = pluginMetaMap.get(type);
+            } finally {
+                lifecycleLock.readLock().unlock();
+            }
+        }
         if (MapUtils.isEmpty(nameMeta)) {
             throw new PluginException(PLUGIN_DESC_FOUND_MSG_PREF + type);
         }
@@ -520,12 +1129,85 @@ public class DefaultPluginManager implements PluginManager {
         if (CollectionUtils.isEmpty(metas)) {
             throw new PluginException(PLUGIN_DESC_FOUND_MSG_PREF + " nothing to load");
         }
-        final URL[] urls = metas.stream().map(MetaInfo::getUrl).toArray(URL[]::new);
-        final Sps4jPluginClassLoader classLoader = new Sps4jPluginClassLoader(urls, Sps4jPlugin.class.getClassLoader());
+        // the rules of every plugin apply before the first one starts loading classes
+        final Sps4jPluginClassLoader classLoader = pluginLoader.createClassLoader(metas);
         return metas.stream()
                 .map(MetaInfo::getDescriptor)
                 .map(d -> getPlugin(d.getType(), d.getName(), classLoader, Collections.emptyMap())).collect(Collectors.toList());
     }
 
 
+    /**
+     * The descriptors read from a package during a metadata scan.
+     */
+    @AllArgsConstructor
+    private static final class ScannedPackage {
+        @Nullable
+        private final PackageStamp stamp;
+        private final String baseUrl;
+        @Nonnull
+        private final List<PluginDesc> descriptors;
+
+        /**
+         * Checks whether the package has to be read again: it changed, or a stamp is missing and it may have.
+         */
+        boolean isOutdated(PluginPackage current) {
+            final PackageStamp currentStamp = current.getStamp();
+            return stamp == null || currentStamp == null || !stamp.equals(currentStamp);
+        }
+    }
+
+    /**
+     * The packages found by a scan, by base URL in scan order.
+     */
+    private static final class PackageIndex {
+        private final Map<String, ScannedPackage> packages = new LinkedHashMap<>();
+
+        PackageIndex(Collection<ScannedPackage> scannedPackages) {
+            for (ScannedPackage scanned : scannedPackages) {
+                if (scanned.baseUrl == null) {
+                    continue;
+                }
+                packages.put(scanned.baseUrl, scanned);
+            }
+        }
+
+        @Nullable
+        ScannedPackage get(String baseUrl) {
+            return baseUrl == null ? null : packages.get(baseUrl);
+        }
+
+        Map<String, ScannedPackage> copyPackages() {
+            return new LinkedHashMap<>(packages);
+        }
+    }
+
+    /**
+     * The load of a plugin in progress, shared by all the callers requesting the plugin meanwhile.
+     */
+    private static final class PendingLoad extends CompletableFuture<PluginWrapper> {
+        private final Thread owner = Thread.currentThread();
+
+        boolean isOwnedByCurrentThread() {
+            return owner == Thread.currentThread();
+        }
+
+        PluginWrapper await(PluginArtifact artifact) {
+            if (isOwnedByCurrentThread()) {
+                throw new PluginException("Plugin " + artifact + " is requested while it is being loaded by the same thread");
+            }
+            try {
+                return join();
+            } catch (CompletionException e) {
+                final Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new PluginException("Error load plugin " + artifact, cause);
+            }
+        }
+    }
 }
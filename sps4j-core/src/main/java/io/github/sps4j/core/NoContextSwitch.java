@@ -0,0 +1,22 @@
+package io.github.sps4j.core;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks plugin methods that do not need the plugin class loader as the thread context class loader,
+ * e.g. trivial getters, so that plugin proxies call them directly, without switching it.
+ * <p>
+ * It is usually put on the methods of a plugin interface, and applies to the methods implementing them.
+ * On a type, it applies to all the methods the type declares, but not to the ones it inherits.
+ *
+ * @author Allan-QLB
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.TYPE})
+public @interface NoContextSwitch {
+}
@@ -3,8 +3,10 @@ package io.github.sps4j.core;
 import io.github.sps4j.common.meta.MetaInfo;
 import io.github.sps4j.common.meta.PluginArtifact;
 import io.github.sps4j.core.load.PluginWrapper;
+import io.github.sps4j.core.metrics.InvocationMetrics;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.util.List;
 import java.util.Map;
 
@@ -21,6 +23,17 @@ public interface PluginManager {
     default void init() {
     }
 
+    /**
+     * Gets the registry the calls of the methods of the loaded plugins are recorded in.
+     * The metrics of a plugin are also available from its {@link PluginWrapper}.
+     *
+     * @return The invocation metrics, or {@code null} if calls are not recorded.
+     */
+    @Nullable
+    default InvocationMetrics getInvocationMetrics() {
+        return null;
+    }
+
     /**
      * Check plugin artifact for update.
      * @param artifact The artifact to check.
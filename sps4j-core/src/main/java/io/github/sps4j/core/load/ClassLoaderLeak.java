@@ -0,0 +1,35 @@
+package io.github.sps4j.core.load;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * A plugin class loader still reachable after it was closed, as reported by {@link ClassLoaderLeakTracker}.
+ *
+ * @author Allan-QLB
+ */
+@Getter
+@Builder
+@ToString
+public class ClassLoaderLeak {
+    /**
+     * The description of the class loader given when it was closed, usually the plugins it loaded.
+     */
+    private final String description;
+    /**
+     * The time the class loader was closed, in milliseconds since the epoch.
+     */
+    private final long closedAt;
+    /**
+     * The number of garbage collections since the class loader was closed.
+     */
+    private final long gcCycles;
+    /**
+     * The likely GC roots keeping the class loader reachable, found when it was reported. They are only the ones
+     * that can be found cheaply: a heap dump is needed when none is found.
+     */
+    private final List<String> likelyRoots;
+}
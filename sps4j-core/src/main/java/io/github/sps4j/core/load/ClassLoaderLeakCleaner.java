@@ -0,0 +1,23 @@
+package io.github.sps4j.core.load;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A cleaner of the references from the JVM or the host to a plugin class loader being closed, which would keep it
+ * reachable. Cleaners are configured by {@link ClassLoaderOptions#leakCleaners} and run by
+ * {@link Sps4jPluginClassLoader#close()}, after the close actions, in the order they are configured.
+ *
+ * @author Allan-QLB
+ * @see StandardLeakCleaner
+ */
+@FunctionalInterface
+public interface ClassLoaderLeakCleaner {
+
+    /**
+     * Cleans the references to a class loader being closed.
+     *
+     * @param classLoader The class loader being closed.
+     * @throws Exception if the cleanup fails; the error is logged and the other cleaners still run.
+     */
+    void clean(@Nonnull Sps4jPluginClassLoader classLoader) throws Exception;
+}
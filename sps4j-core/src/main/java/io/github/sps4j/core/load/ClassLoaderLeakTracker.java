@@ -0,0 +1,226 @@
+package io.github.sps4j.core.load;
+
+import io.github.sps4j.common.utils.YamlUtils;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Tracks closed plugin class loaders and reports the ones still reachable after some garbage collections.
+ * <p>
+ * Each tracked class loader is registered with a {@link PhantomReference}, so tracking does not keep it reachable.
+ * When {@link #check()} finds a class loader that survived the configured number of garbage collections since it
+ * was closed, it looks for the likely GC roots that can be found cheaply and logs a warning once:
+ * <ul>
+ *     <li>threads whose context class loader is the class loader, or whose class it loaded;</li>
+ *     <li>thread local values of any thread whose class it loaded, when the JDK allows reading them;</li>
+ *     <li>JDBC drivers it loaded that are still registered and visible to the framework;</li>
+ *     <li>the YAML mapper of the class loader cached by {@link YamlUtils}.</li>
+ * </ul>
+ * Only the garbage collections that can unload classes are counted, such as old generation and full collections.
+ *
+ * @author Allan-QLB
+ */
+@Slf4j
+public class ClassLoaderLeakTracker {
+    /**
+     * The default number of garbage collections after which a closed class loader still reachable is reported.
+     */
+    public static final int DEFAULT_GC_CYCLES = 3;
+    /**
+     * The garbage collectors that can unload classes: the old generation and full collectors, and the cycles of
+     * the concurrent collectors. Young collections never reclaim a class loader, so only these are counted.
+     * When none of them is found, as on other JVMs, the collections of every collector are counted.
+     */
+    private static final Set<String> CLASS_UNLOADING_COLLECTORS = new HashSet<>(Arrays.asList(
+            "MarkSweepCompact", "PS MarkSweep", "ConcurrentMarkSweep", "G1 Old Generation", "G1 Concurrent GC",
+            "ZGC Cycles", "ZGC Major Cycles", "Shenandoah Cycles", "global"));
+    private final int gcCycles;
+    private final Supplier<? extends Collection<GarbageCollectorMXBean>> collectors;
+    private final ReferenceQueue<ClassLoader> queue = new ReferenceQueue<>();
+    private final Map<Reference<?>, Tracked> tracked = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a tracker reporting class loaders still reachable after {@link #DEFAULT_GC_CYCLES} garbage collections.
+     */
+    public ClassLoaderLeakTracker() {
+        this(DEFAULT_GC_CYCLES);
+    }
+
+    /**
+     * Constructs a tracker reporting class loaders still reachable after the given number of garbage collections.
+     *
+     * @param gcCycles The number of garbage collections, at least 1.
+     */
+    public ClassLoaderLeakTracker(int gcCycles) {
+        this(gcCycles, ManagementFactory::getGarbageCollectorMXBeans);
+    }
+
+    ClassLoaderLeakTracker(int gcCycles, Supplier<? extends Collection<GarbageCollectorMXBean>> collectors) {
+        if (gcCycles < 1) {
+            throw new IllegalArgumentException("gcCycles must be positive: " + gcCycles);
+        }
+        this.gcCycles = gcCycles;
+        this.collectors = collectors;
+    }
+
+    /**
+     * Tracks a closed class loader. A class loader already tracked is not tracked again.
+     *
+     * @param classLoader The closed class loader.
+     * @param description The description of the class loader used in reports, usually the plugins it loaded.
+     */
+    public synchronized void track(ClassLoader classLoader, String description) {
+        expunge();
+        for (Tracked t : tracked.values()) {
+            if (t.classLoader.get() == classLoader) {
+                return;
+            }
+        }
+        final Tracked t = new Tracked(classLoader, description, queue, collectionCount());
+        tracked.put(t.phantom, t);
+    }
+
+    /**
+     * Gets the number of closed class loaders not reclaimed yet.
+     *
+     * @return The number of class loaders.
+     */
+    public int getTrackedCount() {
+        expunge();
+        return tracked.size();
+    }
+
+    /**
+     * Checks the closed class loaders not reclaimed yet, and reports the ones that survived the configured
+     * number of garbage collections. Each leaked class loader is logged once, and reported by every check
+     * until it is reclaimed.
+     *
+     * @return The leaked class loaders.
+     */
+    public List<ClassLoaderLeak> check() {
+        expunge();
+        final long collections = collectionCount();
+        final List<ClassLoaderLeak> leaks = new ArrayList<>();
+        for (Tracked t : tracked.values()) {
+            final long cycles = collections - t.collectionsAtClose;
+            final ClassLoader classLoader = t.classLoader.get();
+            if (cycles < gcCycles || classLoader == null) {
+                continue;
+            }
+            final ClassLoaderLeak leak = ClassLoaderLeak.builder()
+                    .description(t.description)
+                    .closedAt(t.closedAt)
+                    .gcCycles(cycles)
+                    .likelyRoots(findLikelyRoots(classLoader))
+                    .build();
+            if (!t.reported) {
+                t.reported = true;
+                log.warn("Class loader of {} still reachable {} GC cycles after it was closed, likely roots: {}",
+                        t.description, cycles, leak.getLikelyRoots().isEmpty() ? "unknown" : leak.getLikelyRoots());
+            }
+            leaks.add(leak);
+        }
+        return leaks;
+    }
+
+    private void expunge() {
+        Reference<?> reference;
+        while ((reference = queue.poll()) != null) {
+            final Tracked t = tracked.remove(reference);
+            if (t == null) {
+                continue;
+            }
+            if (t.reported) {
+                log.info("Class loader of {} reported as leaked was eventually reclaimed", t.description);
+            } else {
+                log.debug("Class loader of {} reclaimed", t.description);
+            }
+        }
+    }
+
+    /**
+     * Counts the garbage collections that can have unloaded classes so far.
+     */
+    private long collectionCount() {
+        long all = 0;
+        long unloading = 0;
+        boolean found = false;
+        for (GarbageCollectorMXBean gc : collectors.get()) {
+            final long count = Math.max(0, gc.getCollectionCount());
+            all += count;
+            if (CLASS_UNLOADING_COLLECTORS.contains(gc.getName())) {
+                unloading += count;
+                found = true;
+            }
+        }
+        return found ? unloading : all;
+    }
+
+    /**
+     * Finds the likely GC roots keeping a class loader reachable, among the ones that can be found cheaply.
+     *
+     * @param classLoader The class loader.
+     * @return The descriptions of the roots.
+     */
+    static List<String> findLikelyRoots(ClassLoader classLoader) {
+        final List<String> roots = new ArrayList<>();
+        for (Thread thread : LeakRoots.allThreads()) {
+            if (thread.getContextClassLoader() == classLoader) {
+                roots.add("context class loader of thread " + thread.getName());
+            }
+            if (LeakRoots.isLoadedBy(thread.getClass(), classLoader)) {
+                roots.add("thread " + thread.getName() + " of class " + thread.getClass().getName());
+            }
+            LeakRoots.visitThreadLocals(thread, classLoader, (threadLocal, value) -> {
+                roots.add("thread local " + (threadLocal == null ? "(stale)" : threadLocal.getClass().getName())
+                        + " of thread " + thread.getName() + " with value of class "
+                        + (value == null ? null : value.getClass().getName()));
+                return false;
+            });
+        }
+        final Enumeration<Driver> drivers = DriverManager.getDrivers();
+        while (drivers.hasMoreElements()) {
+            final Driver driver = drivers.nextElement();
+            if (LeakRoots.isLoadedBy(driver.getClass(), classLoader)) {
+                roots.add("JDBC driver " + driver.getClass().getName() + " registered with DriverManager");
+            }
+        }
+        for (Thread hook : LeakRoots.shutdownHooks()) {
+            if (LeakRoots.isThreadOf(hook, classLoader)) {
+                roots.add("shutdown hook " + hook.getName());
+            }
+        }
+        if (YamlUtils.hasYamlMapper(classLoader)) {
+            roots.add("YAML mapper cached by YamlUtils");
+        }
+        return roots;
+    }
+
+    private static final class Tracked {
+        private final PhantomReference<ClassLoader> phantom;
+        private final WeakReference<ClassLoader> classLoader;
+        private final String description;
+        private final long collectionsAtClose;
+        private final long closedAt = System.currentTimeMillis();
+        private volatile boolean reported;
+
+        private Tracked(ClassLoader classLoader, String description, ReferenceQueue<ClassLoader> queue,
+                        long collectionsAtClose) {
+            this.phantom = new PhantomReference<>(classLoader, queue);
+            this.classLoader = new WeakReference<>(classLoader);
+            this.description = description;
+            this.collectionsAtClose = collectionsAtClose;
+        }
+    }
+}
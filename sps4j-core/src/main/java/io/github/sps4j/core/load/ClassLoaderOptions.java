@@ -0,0 +1,46 @@
+package io.github.sps4j.core.load;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Options of the plugin class loaders created by {@link DefaultPluginLoader} and {@link SharedLibraryLayer}.
+ *
+ * @author Allan-QLB
+ */
+@Getter
+@Builder
+@ToString
+public class ClassLoaderOptions {
+    /**
+     * The default options.
+     */
+    public static final ClassLoaderOptions DEFAULT = ClassLoaderOptions.builder().build();
+
+    /**
+     * Whether classes and resources are also loaded from the archives nested in plugin JAR files:
+     * the JAR files under {@code BOOT-INF/lib/} and {@code lib/}, and the classes under {@code BOOT-INF/classes/}.
+     * They are read in place, without extracting them to disk.
+     */
+    private final boolean nestedArchives;
+
+    /**
+     * Whether plugin JAR files are memory-mapped and their classes defined straight from the mapping,
+     * instead of being read through {@link java.util.jar.JarFile} streams.
+     * Signed JAR files, and the ones that cannot be mapped, are still read by {@link java.net.URLClassLoader}.
+     * As the mapping reads the file as it is on disk, a mapped JAR file must be replaced atomically, by writing
+     * a new file and renaming it over the old one, and never overwritten in place while a class loader uses it.
+     */
+    private final boolean mappedArchives;
+
+    /**
+     * The cleaners run when a class loader is closed, in order. Defaults to none: each cleaner is opt-in,
+     * e.g. {@link StandardLeakCleaner#safe()} or some of the {@link StandardLeakCleaner} constants.
+     */
+    @Builder.Default
+    private final List<ClassLoaderLeakCleaner> leakCleaners = Collections.emptyList();
+}
@@ -0,0 +1,158 @@
+package io.github.sps4j.core.load;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.*;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+
+/**
+ * An index of the entries of the JAR files of a class loader, telling in constant time per JAR file
+ * whether a class or resource can be found in them.
+ * <p>
+ * Only local JAR files are indexed, along with the JAR files of their {@code Class-Path} manifest attribute,
+ * which {@link java.net.URLClassLoader} searches as well. As soon as a URL of another kind, such as a directory,
+ * is added, the index is incomplete and cannot tell that an entry is absent anymore.
+ *
+ * @author Allan-QLB
+ */
+@Slf4j
+final class ClassPathIndex {
+    private static final String FILE_PROTOCOL = "file";
+    private static final String VERSIONS_DIR = "META-INF/versions/";
+    private final Set<String> indexedUrls = new HashSet<>();
+    private volatile List<Set<String>> jars = Collections.emptyList();
+    private volatile boolean complete = true;
+
+    /**
+     * Creates an index.
+     *
+     * @param excluded JAR files that are not searched, even if they are referenced by a {@code Class-Path}
+     *                 manifest attribute.
+     */
+    ClassPathIndex(Collection<URL> excluded) {
+        excluded.forEach(url -> indexedUrls.add(url.toString()));
+    }
+
+    /**
+     * Indexes the entries of a URL of the class loader.
+     *
+     * @param url The URL.
+     */
+    synchronized void add(URL url) {
+        final List<Set<String>> newJars = new ArrayList<>(jars);
+        if (complete && addJar(url, newJars)) {
+            jars = newJars;
+        } else {
+            complete = false;
+            jars = Collections.emptyList();
+        }
+    }
+
+    private boolean addJar(URL url, List<Set<String>> newJars) {
+        if (!indexedUrls.add(url.toString())) {
+            return true;
+        }
+        final File file = toFile(url);
+        if (file == null || file.isDirectory()) {
+            return false;
+        }
+        if (!file.exists()) {
+            // like the class loader, ignore missing class path entries
+            return true;
+        }
+        try (JarFile jar = new JarFile(file)) {
+            final Set<String> entries = new HashSet<>(jar.size() * 2);
+            final Enumeration<JarEntry> enumeration = jar.entries();
+            while (enumeration.hasMoreElements()) {
+                addEntry(entries, enumeration.nextElement().getName());
+            }
+            newJars.add(entries);
+            for (URL classPathUrl : classPath(url, jar)) {
+                if (!addJar(classPathUrl, newJars)) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            log.debug("Unable to index {}", url, e);
+            return false;
+        }
+    }
+
+    /**
+     * Checks whether an entry may be found in the URLs of the class loader.
+     *
+     * @param name The entry name, such as {@code a/b/C.class}.
+     * @return {@code false} only if the entry is known to be absent.
+     */
+    boolean mayContain(String name) {
+        if (!complete) {
+            return true;
+        }
+        for (Set<String> entries : jars) {
+            if (entries.contains(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static File toFile(URL url) {
+        if (!FILE_PROTOCOL.equals(url.getProtocol())) {
+            return null;
+        }
+        try {
+            return new File(url.toURI());
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads the {@code Class-Path} manifest attribute of a JAR file.
+     *
+     * @param url The URL of the JAR file, against which the entries are resolved.
+     * @param jar The JAR file.
+     * @return The URLs of the class path entries.
+     * @throws IOException if the manifest cannot be read.
+     */
+    static List<URL> classPath(URL url, JarFile jar) throws IOException {
+        final Manifest manifest = jar.getManifest();
+        final String classPath = manifest == null ? null : manifest.getMainAttributes().getValue(Attributes.Name.CLASS_PATH);
+        if (classPath == null || classPath.trim().isEmpty()) {
+            return Collections.emptyList();
+        }
+        final List<URL> urls = new ArrayList<>();
+        for (String entry : classPath.trim().split("\\s+")) {
+            try {
+                urls.add(new URL(url, entry));
+            } catch (MalformedURLException e) {
+                log.debug("Ignore class path entry {} of {}", entry, url, e);
+            }
+        }
+        return urls;
+    }
+
+    private static void addEntry(Set<String> entries, String name) {
+        entries.add(name);
+        if (name.endsWith("/")) {
+            // directories are found with or without the trailing slash
+            entries.add(name.substring(0, name.length() - 1));
+        }
+        if (name.startsWith(VERSIONS_DIR)) {
+            // entries of multi-release jars may be found under their unversioned name
+            final int versionEnd = name.indexOf('/', VERSIONS_DIR.length());
+            if (versionEnd > 0 && versionEnd < name.length() - 1) {
+                addEntry(entries, name.substring(versionEnd + 1));
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package io.github.sps4j.core.load;
+
+import io.github.sps4j.common.meta.VersionedPluginArtifact;
+import io.github.sps4j.core.load.storage.ClassListStore;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Preloads the classes a plugin loaded during previous runs, so that the first calls to the plugin do not pay
+ * for loading, linking and verifying them.
+ * <p>
+ * {@link #preload(VersionedPluginArtifact, Sps4jPluginClassLoader)} loads and links the classes recorded in a
+ * {@link ClassListStore} in parallel on an executor, without initializing them, and starts recording the classes
+ * the class loader defines. {@link #save(VersionedPluginArtifact, Sps4jPluginClassLoader)} stores the recorded
+ * classes for the next run.
+ *
+ * @author Allan-QLB
+ */
+@Slf4j
+public class ClassPreloader {
+    private static final int MIN_CLASSES_PER_TASK = 64;
+    @Getter
+    private final ClassListStore store;
+    private final Executor executor;
+    private final int parallelism;
+
+    /**
+     * Constructs a preloader running as many tasks per plugin as there are processors.
+     *
+     * @param store    The store of the class lists.
+     * @param executor The executor of the preloading tasks.
+     */
+    public ClassPreloader(@Nonnull ClassListStore store, @Nonnull Executor executor) {
+        this(store, executor, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs a preloader.
+     *
+     * @param store       The store of the class lists.
+     * @param executor    The executor of the preloading tasks.
+     * @param parallelism The maximum number of tasks preloading the classes of a plugin.
+     */
+    public ClassPreloader(@Nonnull ClassListStore store, @Nonnull Executor executor, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+        this.store = Objects.requireNonNull(store);
+        this.executor = Objects.requireNonNull(executor);
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Starts preloading the classes recorded for a plugin version, and recording the classes of the class loader.
+     * <p>
+     * The plugin must be created first: preloading a class that refers to the plugin class defines the plugin class
+     * as found in the jar, which could then no longer be rebased or defined with its proxy.
+     *
+     * @param artifact    The plugin version.
+     * @param classLoader The new class loader of the plugin.
+     * @return The number of classes preloaded, once done. It never completes exceptionally.
+     */
+    public CompletableFuture<Integer> preload(@Nonnull VersionedPluginArtifact artifact,
+                                              @Nonnull Sps4jPluginClassLoader classLoader) {
+        classLoader.recordDefinedClasses();
+        final List<String> classes = store.read(artifact);
+        if (classes.isEmpty()) {
+            return CompletableFuture.completedFuture(0);
+        }
+        final int tasks = Math.max(1, Math.min(parallelism, classes.size() / MIN_CLASSES_PER_TASK));
+        final List<CompletableFuture<Integer>> futures = new ArrayList<>(tasks);
+        try {
+            for (int t = 0; t < tasks; t++) {
+                final int first = t;
+                futures.add(CompletableFuture.supplyAsync(() -> preload(classLoader, classes, first, tasks), executor));
+            }
+        } catch (RejectedExecutionException e) {
+            log.warn("Unable to preload classes of {}", artifact, e);
+        }
+        final long start = System.nanoTime();
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).handle((ignored, e) -> {
+            int preloaded = 0;
+            for (CompletableFuture<Integer> future : futures) {
+                preloaded += future.getNow(0);
+            }
+            if (e != null) {
+                log.warn("Error preload classes of {}", artifact, e);
+            }
+            log.debug("Preloaded {} of {} classes of {} in {} ms", preloaded, classes.size(), artifact,
+                    (System.nanoTime() - start) / 1_000_000);
+            return preloaded;
+        });
+    }
+
+    /**
+     * Stores the classes defined by the class loader of a plugin version since it was preloaded.
+     *
+     * @param artifact    The plugin version.
+     * @param classLoader The class loader of the plugin.
+     */
+    public void save(@Nonnull VersionedPluginArtifact artifact, @Nonnull Sps4jPluginClassLoader classLoader) {
+        final List<String> classes = classLoader.getDefinedClasses();
+        if (!classes.isEmpty()) {
+            store.write(artifact, classes);
+        }
+    }
+
+    private static int preload(ClassLoader classLoader, List<String> classes, int first, int step) {
+        int preloaded = 0;
+        for (int i = first; i < classes.size(); i += step) {
+            try {
+                // reflecting the constructors links the class, without initializing it
+                Class.forName(classes.get(i), false, classLoader).getDeclaredConstructors();
+                preloaded++;
+            } catch (ClassNotFoundException | LinkageError | SecurityException e) {
+                log.debug("Skip preloading class {}", classes.get(i), e);
+            }
+        }
+        return preloaded;
+    }
+}
@@ -1,20 +1,45 @@
 package io.github.sps4j.core.load;
 
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import io.github.sps4j.common.Const;
 import io.github.sps4j.common.meta.MetaInfo;
+import io.github.sps4j.common.meta.PluginDesc;
 import io.github.sps4j.common.utils.CallUtils;
+import io.github.sps4j.common.utils.YamlUtils;
+import io.github.sps4j.core.NoContextSwitch;
 import io.github.sps4j.core.Sps4jPlugin;
 import io.github.sps4j.core.exception.PluginException;
+import io.github.sps4j.core.load.storage.CodeVersions;
+import io.github.sps4j.core.load.storage.ProxyClassCache;
+import io.github.sps4j.core.metrics.InvocationMetrics;
+import io.github.sps4j.core.metrics.InvocationRecorder;
 
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import net.bytebuddy.ByteBuddy;
+import net.bytebuddy.asm.Advice;
+import net.bytebuddy.description.method.MethodDescription;
+import net.bytebuddy.description.modifier.FieldManifestation;
+import net.bytebuddy.description.modifier.Visibility;
+import net.bytebuddy.description.type.TypeDefinition;
+import net.bytebuddy.description.type.TypeDescription;
 import net.bytebuddy.dynamic.ClassFileLocator;
 import net.bytebuddy.dynamic.DynamicType;
 import net.bytebuddy.dynamic.loading.ClassLoadingStrategy;
+import net.bytebuddy.dynamic.scaffold.subclass.ConstructorStrategy;
+import net.bytebuddy.implementation.FieldAccessor;
+import net.bytebuddy.implementation.Implementation;
+import net.bytebuddy.implementation.LoadedTypeInitializer;
+import net.bytebuddy.implementation.MethodCall;
 import net.bytebuddy.implementation.MethodDelegation;
+import net.bytebuddy.implementation.SuperMethodCall;
+import net.bytebuddy.matcher.ElementMatcher;
 import net.bytebuddy.pool.TypePool;
 
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
 import java.net.URL;
 import java.util.*;
 
@@ -27,12 +52,104 @@ import static net.bytebuddy.matcher.ElementMatchers.*;
  * This loader creates a plugin instance and wraps it in a ByteBuddy proxy.
  * The proxy intercepts method calls to set the correct class loader context,
  * ensuring that the plugin operates within its own isolated environment.
+ * How the proxy performs that switch is controlled by its {@link DispatchMode}.
+ * Plugins whose proxy was generated at build time, see {@link PluginDesc#getProxyClassName()}, are instantiated
+ * from it instead.
+ * With a {@link SharedLibraryLayer}, the libraries that plugins have in common are loaded once for all of them,
+ * and with a {@link ProxyClassCache}, proxies generated at runtime are kept for the next loads of the same plugin.
+ * With {@link InvocationMetrics}, proxies also record the calls of plugin methods, and proxies generated at build
+ * time are not used as they cannot.
  *
  * @author Allan-QLB
  */
 @Getter
 @Slf4j
 public class DefaultPluginLoader implements Sps4jPluginLoader {
+    private static final String PROXY_GENERATOR_VERSION = proxyGeneratorVersion();
+    private static final String DELEGATE_TARGET_FIELD = "target";
+    private final DispatchMode dispatchMode;
+    @Nullable
+    private final SharedLibraryLayer sharedLibraryLayer;
+    private final ClassLoaderOptions classLoaderOptions;
+    @Nullable
+    private final ProxyClassCache proxyClassCache;
+    @Nullable
+    private final InvocationMetrics invocationMetrics;
+
+    /**
+     * Constructs a loader using the {@link DispatchMode#INTERCEPTOR} dispatch mode.
+     */
+    public DefaultPluginLoader() {
+        this(DispatchMode.INTERCEPTOR);
+    }
+
+    /**
+     * Constructs a loader using the given dispatch mode for the created plugin proxies.
+     *
+     * @param dispatchMode The way proxies switch the context class loader around plugin method calls.
+     */
+    public DefaultPluginLoader(DispatchMode dispatchMode) {
+        this(dispatchMode, null);
+    }
+
+    /**
+     * Constructs a loader using the given dispatch mode, sharing the libraries of plugins through a layer.
+     *
+     * @param dispatchMode       The way proxies switch the context class loader around plugin method calls.
+     * @param sharedLibraryLayer The layer of shared libraries, or {@code null} for plugins to load all their libraries.
+     */
+    public DefaultPluginLoader(DispatchMode dispatchMode, @Nullable SharedLibraryLayer sharedLibraryLayer) {
+        this(dispatchMode, sharedLibraryLayer, ClassLoaderOptions.DEFAULT);
+    }
+
+    /**
+     * Constructs a loader using the given dispatch mode, shared library layer and options of the plugin class loaders.
+     *
+     * @param dispatchMode       The way proxies switch the context class loader around plugin method calls.
+     * @param sharedLibraryLayer The layer of shared libraries, or {@code null} for plugins to load all their libraries.
+     * @param classLoaderOptions The options of the created plugin class loaders.
+     */
+    public DefaultPluginLoader(DispatchMode dispatchMode, @Nullable SharedLibraryLayer sharedLibraryLayer,
+                               ClassLoaderOptions classLoaderOptions) {
+        this(dispatchMode, sharedLibraryLayer, classLoaderOptions, null);
+    }
+
+    /**
+     * Constructs a loader using the given dispatch mode, shared library layer, options of the plugin class loaders
+     * and cache of generated proxies.
+     *
+     * @param dispatchMode       The way proxies switch the context class loader around plugin method calls.
+     * @param sharedLibraryLayer The layer of shared libraries, or {@code null} for plugins to load all their libraries.
+     * @param classLoaderOptions The options of the created plugin class loaders.
+     * @param proxyClassCache    The cache of the proxies generated at runtime, or {@code null} to generate them
+     *                           on every load.
+     */
+    public DefaultPluginLoader(DispatchMode dispatchMode, @Nullable SharedLibraryLayer sharedLibraryLayer,
+                               ClassLoaderOptions classLoaderOptions, @Nullable ProxyClassCache proxyClassCache) {
+        this(dispatchMode, sharedLibraryLayer, classLoaderOptions, proxyClassCache, null);
+    }
+
+    /**
+     * Constructs a loader using the given dispatch mode, shared library layer, options of the plugin class loaders,
+     * cache of generated proxies and registry of invocation metrics.
+     *
+     * @param dispatchMode       The way proxies switch the context class loader around plugin method calls.
+     * @param sharedLibraryLayer The layer of shared libraries, or {@code null} for plugins to load all their libraries.
+     * @param classLoaderOptions The options of the created plugin class loaders.
+     * @param proxyClassCache    The cache of the proxies generated at runtime, or {@code null} to generate them
+     *                           on every load.
+     * @param invocationMetrics  The registry the calls of plugin methods are recorded in, or {@code null} for proxies
+     *                           not to record them.
+     */
+    public DefaultPluginLoader(DispatchMode dispatchMode, @Nullable SharedLibraryLayer sharedLibraryLayer,
+                               ClassLoaderOptions classLoaderOptions, @Nullable ProxyClassCache proxyClassCache,
+                               @Nullable InvocationMetrics invocationMetrics) {
+        this.dispatchMode = Objects.requireNonNull(dispatchMode);
+        this.sharedLibraryLayer = sharedLibraryLayer;
+        this.classLoaderOptions = Objects.requireNonNull(classLoaderOptions);
+        this.proxyClassCache = proxyClassCache;
+        this.invocationMetrics = invocationMetrics;
+    }
 
     /**
      * Loads a plugin based on its metadata. It creates a plugin instance,
@@ -52,10 +169,19 @@ public class DefaultPluginLoader implements Sps4jPluginLoader {
             final Sps4jPluginClassLoader classLoader;
             if (cl != null) {
                 classLoader = cl;
+                classLoader.addPackageRules(pluginMetadata.getDescriptor());
             } else {
-                classLoader = new Sps4jPluginClassLoader(new URL[]{pluginMetadata.getUrl()}, Sps4jPlugin.class.getClassLoader());
+                classLoader = createClassLoader(Collections.singletonList(pluginMetadata));
+            }
+            Sps4jPlugin pluginInstance = dispatchMode == DispatchMode.DELEGATE || invocationMetrics != null
+                    ? null : createPrecompiledInstance(pluginMetadata.getDescriptor(), classLoader);
+            if (pluginInstance == null) {
+                pluginInstance = createPluginInstance(pluginMetadata.getDescriptor().getClassName(), classLoader);
+            }
+            if (invocationMetrics != null) {
+                InvocationRecorder.bind(pluginInstance.getClass(),
+                        invocationMetrics.forPlugin(pluginMetadata.getDescriptor().toArtifact()));
             }
-            Sps4jPlugin pluginInstance = createPluginInstance(pluginMetadata.getDescriptor().getClassName(), classLoader);
             pluginInstance = pluginCreated(pluginInstance, pluginMetadata);
             pluginInstance.onLoad(conf, pluginMetadata);
             return postLoadPlugin(pluginInstance, pluginMetadata);
@@ -66,10 +192,56 @@ public class DefaultPluginLoader implements Sps4jPluginLoader {
     }
 
 
+    @Override
+    public Sps4jPluginClassLoader createClassLoader(@Nonnull List<MetaInfo> plugins) {
+        if (sharedLibraryLayer != null) {
+            return sharedLibraryLayer.createClassLoader(plugins, classLoaderOptions);
+        }
+        return Sps4jPluginLoader.super.createClassLoader(plugins);
+    }
+
+    /**
+     * Creates an instance of the proxy generated at build time by the annotation processor, if the plugin has one.
+     * Such a proxy switches the context class loader inline, whatever the {@link DispatchMode} of this loader.
+     *
+     * @param descriptor The descriptor of the plugin.
+     * @param cl The class loader of the plugin.
+     * @return The plugin instance, or {@code null} if the plugin has no proxy class and one has to be generated.
+     * @throws Exception if an error occurs during instantiation.
+     */
+    @Nullable
+    @SuppressWarnings("java:S112")
+    Sps4jPlugin createPrecompiledInstance(PluginDesc descriptor, Sps4jPluginClassLoader cl) throws Exception {
+        final String proxyClassName = descriptor.getProxyClassName();
+        if (proxyClassName == null) {
+            return null;
+        }
+        final Class<?> proxyClass;
+        try {
+            proxyClass = Class.forName(proxyClassName, false, cl);
+        } catch (ClassNotFoundException e) {
+            log.warn("Proxy class {} of plugin {} not found, generating it", proxyClassName, descriptor.getClassName());
+            return null;
+        }
+        if (!Sps4jProxy.class.isAssignableFrom(proxyClass) || proxyClass.getSuperclass() == null
+                || !proxyClass.getSuperclass().getName().equals(descriptor.getClassName())) {
+            throw new PluginException("Class " + proxyClassName + " is not a proxy of " + descriptor.getClassName());
+        }
+        return (Sps4jPlugin) CallUtils.executeWithContextLoader(cl, () -> proxyClass
+                .getDeclaredConstructor()
+                .newInstance());
+    }
+
     /**
      * Creates a proxied instance of the plugin class.
      * It uses ByteBuddy to rebase the plugin class, implement the {@link Sps4jProxy} marker interface,
-     * and intercept all public, non-static methods with a {@link PluginMethodInvocationInterceptor}.
+     * and intercept all public, non-static methods according to the {@link DispatchMode} of this loader,
+     * but the ones marked with {@link NoContextSwitch}.
+     * With a {@link ProxyClassCache}, the proxy is defined from the cached class files when the plugin JAR files
+     * did not change since it was generated, nor the {@link NoContextSwitch} marks of its super types loaded from
+     * elsewhere, which are checked on the loaded types without reading class files.
+     * In {@link DispatchMode#DELEGATE} mode, the plugin class is instantiated as it is and wrapped in a delegate,
+     * which is small enough not to be cached.
      *
      * @param clazz The fully qualified name of the plugin class.
      * @param cl The class loader to use for loading the plugin and its proxy.
@@ -79,24 +251,257 @@ public class DefaultPluginLoader implements Sps4jPluginLoader {
     @Override
     @SuppressWarnings("java:S112")
     public Sps4jPlugin createPluginInstance(String clazz, Sps4jPluginClassLoader cl) throws Exception {
-        try (ClassFileLocator classFileLocator = new ClassFileLocator.ForUrl(cl.getURLs())) {
+        if (dispatchMode == DispatchMode.DELEGATE) {
+            return createDelegate(clazz, cl);
+        }
+        final String cacheKey = proxyCacheKey(clazz, cl);
+        if (cacheKey != null) {
+            final ProxyClassCache.Entry cached = proxyClassCache.read(cacheKey);
+            if (cached != null && cached.getTypes().containsKey(clazz)
+                    && cached.getDependencies().equals(loadedDependencies(cached.getDependencies().keySet(), cl))) {
+                cached.getTypes().forEach(cl::defineGeneratedClass);
+                final Class<?> proxyClass = Class.forName(clazz, false, cl);
+                return (Sps4jPlugin) CallUtils.executeWithContextLoader(cl, () -> proxyClass
+                        .getDeclaredConstructor()
+                        .newInstance());
+            }
+        }
+        // the class loader finds plugin classes that are not directly in its URLs, e.g. in nested archives
+        try (ClassFileLocator classFileLocator = new ClassFileLocator.Compound(
+                new ClassFileLocator.ForUrl(cl.getURLs()), ClassFileLocator.ForClassLoader.of(cl))) {
             final TypePool typePool = TypePool.Default.of(new ClassFileLocator.Compound(classFileLocator,
                     ClassFileLocator.ForClassLoader.of(Thread.currentThread().getContextClassLoader())));
-            final TypePool.Resolution describe = typePool.describe(clazz);
+            final TypeDescription pluginType = typePool.describe(clazz).resolve();
+            final Set<String> superTypes = new LinkedHashSet<>();
+            final Set<String> directMethods = directMethods(pluginType, superTypes);
             DynamicType.Unloaded<Object> unloaded = new ByteBuddy()
-                    .rebase(describe.resolve(), classFileLocator)
+                    .rebase(pluginType, classFileLocator)
                     .implement(Sps4jProxy.class)
-                    .method(isPublic()
-                            .and(not(isStatic()))
-                            .and(not(nameStartsWith("java")))
-                    )
-                    .intercept(MethodDelegation.to(new PluginMethodInvocationInterceptor()))
+                    .method(interceptedMethods().and(m -> !directMethods.contains(signature(m))))
+                    .intercept(dispatchImplementation())
                     .make();
-            return (Sps4jPlugin) CallUtils.executeWithContextLoader(cl, () -> unloaded
+            final Class<?> proxyClass = CallUtils.executeWithContextLoader(cl, () -> unloaded
                     .load(cl, ClassLoadingStrategy.Default.INJECTION)
-                    .getLoaded()
+                    .getLoaded());
+            if (cacheKey != null) {
+                cacheProxy(cacheKey, unloaded, superTypes, cl);
+            }
+            return (Sps4jPlugin) CallUtils.executeWithContextLoader(cl, () -> proxyClass
                     .getDeclaredConstructor()
                     .newInstance());
         }
     }
+
+    /**
+     * Creates an instance of the plugin class, unchanged, wrapped in a delegate implementing its plugin interfaces.
+     *
+     * @param clazz The fully qualified name of the plugin class.
+     * @param cl The class loader of the plugin, which also defines the delegate.
+     * @return The delegate of the plugin instance.
+     * @throws Exception if an error occurs during delegate creation or instantiation.
+     * @see DispatchMode#DELEGATE
+     */
+    @SuppressWarnings("java:S112")
+    private Sps4jPlugin createDelegate(String clazz, Sps4jPluginClassLoader cl) throws Exception {
+        final Class<?> pluginClass = Class.forName(clazz, false, cl);
+        final List<Class<?>> interfaces = pluginInterfaces(pluginClass, cl);
+        final Set<String> directMethods = directMethods(TypeDescription.ForLoadedType.of(pluginClass), new HashSet<>());
+        final ElementMatcher.Junction<MethodDescription> delegated = isDeclaredBy(isInterface()).and(not(isStatic()));
+        final Implementation call = MethodCall.invokeSelf().onField(DELEGATE_TARGET_FIELD).withAllArguments();
+        final Class<?> delegateClass = new ByteBuddy()
+                .subclass(Object.class, ConstructorStrategy.Default.NO_CONSTRUCTORS)
+                .name(clazz + "$Sps4jDelegate")
+                .implement(interfaces)
+                .implement(Sps4jProxy.class)
+                .defineField(DELEGATE_TARGET_FIELD, pluginClass, Visibility.PRIVATE, FieldManifestation.FINAL)
+                .defineConstructor(Visibility.PUBLIC)
+                .withParameters(pluginClass)
+                .intercept(MethodCall.invoke(Object.class.getConstructor())
+                        .andThen(FieldAccessor.ofField(DELEGATE_TARGET_FIELD).setsArgumentAt(0)))
+                .method(delegated)
+                .intercept(metered(Advice.to(PluginContextLoaderAdvice.class).wrap(call)))
+                .method(delegated.and(m -> directMethods.contains(signature(m))))
+                .intercept(call)
+                .make()
+                .load(cl, ClassLoadingStrategy.Default.INJECTION)
+                .getLoaded();
+        return (Sps4jPlugin) CallUtils.executeWithContextLoader(cl, () -> delegateClass
+                .getDeclaredConstructor(pluginClass)
+                .newInstance(pluginClass.getDeclaredConstructor().newInstance()));
+    }
+
+    /**
+     * Finds the plugin interfaces a plugin class implements, or the interfaces extending {@link Sps4jPlugin}
+     * if none of them is listed as a plugin interface.
+     */
+    private static List<Class<?>> pluginInterfaces(Class<?> pluginClass, ClassLoader cl) throws IOException {
+        final Set<String> listed = new HashSet<>();
+        final Enumeration<URL> resources = cl.getResources(Const.INTERFACE_FILE);
+        while (resources.hasMoreElements()) {
+            final Map<String, String> content = YamlUtils.getYamlMapper()
+                    .readerFor(new TypeReference<Map<String, String>>() {
+                    }).readValue(resources.nextElement());
+            listed.addAll(content.values());
+        }
+        final Set<Class<?>> all = new LinkedHashSet<>();
+        for (Class<?> c = pluginClass; c != null; c = c.getSuperclass()) {
+            addInterfaces(c, all);
+        }
+        final List<Class<?>> pluginInterfaces = new ArrayList<>();
+        final List<Class<?>> subInterfaces = new ArrayList<>();
+        for (Class<?> i : all) {
+            if (listed.contains(i.getName())) {
+                pluginInterfaces.add(i);
+            } else if (i != Sps4jPlugin.class && Sps4jPlugin.class.isAssignableFrom(i)) {
+                subInterfaces.add(i);
+            }
+        }
+        if (!pluginInterfaces.isEmpty()) {
+            return pluginInterfaces;
+        }
+        return subInterfaces.isEmpty() ? Collections.singletonList(Sps4jPlugin.class) : subInterfaces;
+    }
+
+    private static void addInterfaces(Class<?> type, Set<Class<?>> all) {
+        for (Class<?> i : type.getInterfaces()) {
+            if (all.add(i)) {
+                addInterfaces(i, all);
+            }
+        }
+    }
+
+    /**
+     * Finds the methods of a plugin class marked with {@link NoContextSwitch}, directly or through the types
+     * declaring them. The super types are seen from the plugin class, for the implementations of generic interface
+     * methods to be found as well.
+     *
+     * @param type       The plugin class.
+     * @param superTypes   The names of the plugin class and its super types, collected on the way.
+     * @return The {@link #signature(MethodDescription) signatures} of the methods.
+     */
+    private static Set<String> directMethods(TypeDescription type, Set<String> superTypes) {
+        final Set<String> directMethods = new TreeSet<>();
+        addDirectMethods(type, directMethods, new HashSet<>(), superTypes);
+        return directMethods;
+    }
+
+    private static void addDirectMethods(TypeDefinition type, Set<String> directMethods, Set<String> visited,
+                                         Set<String> superTypes) {
+        if (!visited.add(type.getTypeName())) {
+            return;
+        }
+        superTypes.add(type.asErasure().getName());
+        final boolean all = type.asErasure().getDeclaredAnnotations().isAnnotationPresent(NoContextSwitch.class);
+        for (MethodDescription method : type.getDeclaredMethods()) {
+            if (all || method.getDeclaredAnnotations().isAnnotationPresent(NoContextSwitch.class)) {
+                directMethods.add(signature(method));
+            }
+        }
+        if (type.getSuperClass() != null) {
+            addDirectMethods(type.getSuperClass(), directMethods, visited, superTypes);
+        }
+        for (TypeDefinition i : type.getInterfaces()) {
+            addDirectMethods(i, directMethods, visited, superTypes);
+        }
+    }
+
+    private static String signature(MethodDescription method) {
+        final StringBuilder signature = new StringBuilder(method.getInternalName()).append('(');
+        for (TypeDescription parameter : method.getParameters().asTypeList().asErasures()) {
+            signature.append(parameter.getDescriptor());
+        }
+        return signature.append(')').toString();
+    }
+
+    @Nullable
+    private String proxyCacheKey(String clazz, Sps4jPluginClassLoader cl) {
+        if (proxyClassCache == null) {
+            return null;
+        }
+        final List<URL> classPath = new ArrayList<>(Arrays.asList(cl.getURLs()));
+        classPath.addAll(cl.getSharedLibraries());
+        return proxyClassCache.key(clazz, classPath, dispatchMode + (invocationMetrics != null ? "|metered|" : "|")
+                + PROXY_GENERATOR_VERSION);
+    }
+
+    private void cacheProxy(String cacheKey, DynamicType.Unloaded<?> unloaded, Set<String> superTypes,
+                            Sps4jPluginClassLoader cl) {
+        // proxies needing initialization once loaded, e.g. to set an interceptor instance, cannot be cached
+        for (LoadedTypeInitializer initializer : unloaded.getLoadedTypeInitializers().values()) {
+            if (initializer.isAlive()) {
+                return;
+            }
+        }
+        final Map<String, byte[]> types = new LinkedHashMap<>();
+        types.put(unloaded.getTypeDescription().getName(), unloaded.getBytes());
+        unloaded.getAuxiliaryTypes().forEach((type, bytes) -> types.put(type.getName(), bytes));
+        final Map<String, String> dependencies = new LinkedHashMap<>();
+        for (String name : superTypes) {
+            final Class<?> type;
+            try {
+                type = Class.forName(name, false, cl);
+            } catch (ClassNotFoundException | LinkageError e) {
+                log.debug("Not caching proxy of {}, super type {} not loaded", unloaded.getTypeDescription(), name, e);
+                return;
+            }
+            if (type.getClassLoader() != cl && type.getClassLoader() != null) {
+                dependencies.put(name, directMethods(TypeDescription.ForLoadedType.of(type), new HashSet<>()).toString());
+            }
+        }
+        proxyClassCache.write(cacheKey, new ProxyClassCache.Entry(types, dependencies));
+    }
+
+    /**
+     * Describes the given super types of a plugin class as they are loaded now, for a cached proxy to be used only
+     * if they did not change: they are not in the plugin JAR files, e.g. plugin interfaces of the host application,
+     * and their {@link NoContextSwitch} marks decide the methods the proxy intercepts. Loaded types are described
+     * by reflection, without reading class files.
+     *
+     * @return The description of the types by name, empty if one of them cannot be loaded.
+     */
+    private static Map<String, String> loadedDependencies(Collection<String> names, Sps4jPluginClassLoader cl) {
+        final Map<String, String> dependencies = new LinkedHashMap<>();
+        for (String name : names) {
+            try {
+                final Class<?> type = Class.forName(name, false, cl);
+                dependencies.put(name, directMethods(TypeDescription.ForLoadedType.of(type), new HashSet<>()).toString());
+            } catch (ClassNotFoundException | LinkageError e) {
+                log.debug("Super type {} of a cached proxy not loaded", name, e);
+                return Collections.emptyMap();
+            }
+        }
+        return dependencies;
+    }
+
+    /**
+     * Identifies the code generating proxies, for cached proxies of other versions not to be used.
+     */
+    private static String proxyGeneratorVersion() {
+        return CodeVersions.of(DefaultPluginLoader.class) + "/" + ByteBuddy.class.getPackage().getImplementationVersion();
+    }
+
+    /**
+     * The methods of the plugin class that are intercepted by the proxy, unless marked with {@link NoContextSwitch}.
+     *
+     * @return The matcher of intercepted methods.
+     */
+    private static ElementMatcher.Junction<MethodDescription> interceptedMethods() {
+        return isPublic()
+                .and(not(isStatic()))
+                .and(not(nameStartsWith("java")));
+    }
+
+    private Implementation dispatchImplementation() {
+        if (dispatchMode == DispatchMode.INLINE) {
+            return metered(Advice.to(PluginContextLoaderAdvice.class).wrap(SuperMethodCall.INSTANCE));
+        }
+        return metered(MethodDelegation.to(PluginMethodInvocationInterceptor.class));
+    }
+
+    /**
+     * Wraps the implementation of an intercepted method to record its calls, if this loader has metrics.
+     */
+    private Implementation metered(Implementation implementation) {
+        return invocationMetrics == null ? implementation : Advice.to(PluginMetricsAdvice.class).wrap(implementation);
+    }
 }
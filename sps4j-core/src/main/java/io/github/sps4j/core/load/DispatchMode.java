@@ -0,0 +1,30 @@
+package io.github.sps4j.core.load;
+
+/**
+ * Strategies used by {@link DefaultPluginLoader} to switch the thread context class loader
+ * around calls of plugin methods.
+ *
+ * @author Allan-QLB
+ */
+public enum DispatchMode {
+    /**
+     * Delegates every call to {@link PluginMethodInvocationInterceptor}, which invokes the original
+     * method reflectively. This is the default mode.
+     */
+    INTERCEPTOR,
+    /**
+     * Generates the context class loader switch directly into the proxy (see {@link PluginContextLoaderAdvice})
+     * and calls the original method without reflection. Calls do not allocate and exceptions thrown by the
+     * plugin are propagated as they are.
+     */
+    INLINE,
+    /**
+     * Instantiates the plugin class unchanged and returns a generated delegate implementing its plugin interfaces,
+     * i.e. the ones listed in {@link io.github.sps4j.common.Const#INTERFACE_FILE} files. Only calls of the methods
+     * of these interfaces go through the delegate, which switches the context class loader as in {@link #INLINE}
+     * mode and calls the plugin directly; calls the plugin makes to its own methods are not intercepted.
+     * Hooks such as {@link Sps4jPluginLoader#pluginCreated} get the delegate, and proxies generated at build time
+     * are not used.
+     */
+    DELEGATE
+}
@@ -0,0 +1,41 @@
+package io.github.sps4j.core.load;
+
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+
+/**
+ * Deregisters the JDBC drivers of a plugin class loader. {@link DriverManager} only lists the drivers visible to
+ * the class loader of its caller, so this class is defined again in the plugin class loader and run from there.
+ * It must only depend on JDK classes.
+ *
+ * @author Allan-QLB
+ */
+final class JdbcDriverDeregistration {
+
+    private JdbcDriverDeregistration() {
+    }
+
+    /**
+     * Deregisters the drivers loaded by the class loader of this class.
+     *
+     * @return The class names of the deregistered drivers.
+     * @throws SQLException if a driver cannot be deregistered.
+     */
+    static List<String> deregister() throws SQLException {
+        final ClassLoader classLoader = JdbcDriverDeregistration.class.getClassLoader();
+        final List<String> drivers = new ArrayList<>();
+        final Enumeration<Driver> registered = DriverManager.getDrivers();
+        while (registered.hasMoreElements()) {
+            final Driver driver = registered.nextElement();
+            if (driver.getClass().getClassLoader() == classLoader) {
+                DriverManager.deregisterDriver(driver);
+                drivers.add(driver.getClass().getName());
+            }
+        }
+        return drivers;
+    }
+}
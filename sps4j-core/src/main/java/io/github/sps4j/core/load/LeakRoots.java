@@ -0,0 +1,175 @@
+package io.github.sps4j.core.load;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.ref.Reference;
+import java.lang.reflect.Field;
+import java.util.*;
+import java.util.function.BiPredicate;
+
+/**
+ * Finds the references from the JVM to classes of a class loader, which keep it reachable once closed.
+ * Some of them are JDK internals read by reflection, which the JDK may deny: they are then ignored.
+ *
+ * @author Allan-QLB
+ */
+@Slf4j
+final class LeakRoots {
+    private static final Field THREAD_LOCALS = field(Thread.class, "threadLocals");
+    private static final Field INHERITABLE_THREAD_LOCALS = field(Thread.class, "inheritableThreadLocals");
+    private static final Field TABLE = field("java.lang.ThreadLocal$ThreadLocalMap", "table");
+    private static final Field VALUE = field("java.lang.ThreadLocal$ThreadLocalMap$Entry", "value");
+    private static final Class<?> SHUTDOWN_HOOKS_CLASS = type("java.lang.ApplicationShutdownHooks");
+    private static final Field SHUTDOWN_HOOKS = SHUTDOWN_HOOKS_CLASS == null ? null : field(SHUTDOWN_HOOKS_CLASS, "hooks");
+
+    private LeakRoots() {
+    }
+
+    /**
+     * Gets the live platform threads.
+     *
+     * @return A snapshot of the threads.
+     */
+    static List<Thread> allThreads() {
+        ThreadGroup root = Thread.currentThread().getThreadGroup();
+        while (root.getParent() != null) {
+            root = root.getParent();
+        }
+        Thread[] threads = new Thread[root.activeCount() + 16];
+        int count;
+        while ((count = root.enumerate(threads, true)) == threads.length) {
+            threads = new Thread[threads.length * 2];
+        }
+        return Arrays.asList(threads).subList(0, count);
+    }
+
+    /**
+     * Checks whether a class was defined by a class loader or one of its descendants, which keep it reachable.
+     *
+     * @param type        The class.
+     * @param classLoader The class loader.
+     * @return {@code true} if the class keeps the class loader reachable.
+     */
+    static boolean isLoadedBy(Class<?> type, ClassLoader classLoader) {
+        for (ClassLoader cl = type.getClassLoader(); cl != null; cl = cl.getParent()) {
+            if (cl == classLoader) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether a thread was likely started by code of a class loader: its class was loaded by the class loader,
+     * or it inherited the class loader as context class loader.
+     *
+     * @param thread      The thread.
+     * @param classLoader The class loader.
+     * @return {@code true} if the thread likely belongs to the class loader.
+     */
+    static boolean isThreadOf(Thread thread, ClassLoader classLoader) {
+        return isLoadedBy(thread.getClass(), classLoader) || thread.getContextClassLoader() == classLoader;
+    }
+
+    /**
+     * Checks whether the JDK allows reading thread locals.
+     *
+     * @return {@code true} if thread locals can be visited.
+     */
+    static boolean canReadThreadLocals() {
+        return THREAD_LOCALS != null && INHERITABLE_THREAD_LOCALS != null && TABLE != null && VALUE != null;
+    }
+
+    /**
+     * Visits the thread local entries of a thread whose key or value was loaded by a class loader,
+     * and clears the ones the visitor asks for. Nothing is visited if the JDK denies reading thread locals.
+     *
+     * @param thread      The thread.
+     * @param classLoader The class loader.
+     * @param visitor     The visitor of the thread local and the value, the thread local being {@code null} if it
+     *                    was already garbage collected; it returns {@code true} to clear the entry.
+     * @return The number of cleared entries.
+     */
+    static int visitThreadLocals(Thread thread, ClassLoader classLoader, BiPredicate<ThreadLocal<?>, Object> visitor) {
+        if (!canReadThreadLocals()) {
+            return 0;
+        }
+        int cleared = 0;
+        try {
+            for (Field map : new Field[]{THREAD_LOCALS, INHERITABLE_THREAD_LOCALS}) {
+                final Object threadLocalMap = map.get(thread);
+                if (threadLocalMap == null) {
+                    continue;
+                }
+                for (Object entry : (Object[]) TABLE.get(threadLocalMap)) {
+                    if (entry == null) {
+                        continue;
+                    }
+                    final ThreadLocal<?> key = (ThreadLocal<?>) ((Reference<?>) entry).get();
+                    final Object value = VALUE.get(entry);
+                    if (((key != null && isLoadedBy(key.getClass(), classLoader))
+                            || (value != null && isLoadedBy(value.getClass(), classLoader)))
+                            && visitor.test(key, value)) {
+                        // a stale entry is expunged by the thread itself on its next thread local access
+                        VALUE.set(entry, null);
+                        ((Reference<?>) entry).clear();
+                        cleared++;
+                    }
+                }
+            }
+        } catch (IllegalAccessException | RuntimeException e) {
+            log.debug("Unable to read thread locals of thread {}", thread.getName(), e);
+        }
+        return cleared;
+    }
+
+    /**
+     * Gets the registered shutdown hooks.
+     *
+     * @return A snapshot of the hooks, empty if the JDK denies reading them.
+     */
+    static List<Thread> shutdownHooks() {
+        if (SHUTDOWN_HOOKS == null) {
+            return Collections.emptyList();
+        }
+        try {
+            synchronized (SHUTDOWN_HOOKS_CLASS) {
+                final Map<?, ?> hooks = (Map<?, ?>) SHUTDOWN_HOOKS.get(null);
+                final List<Thread> threads = new ArrayList<>();
+                if (hooks != null) {
+                    for (Object hook : hooks.keySet()) {
+                        threads.add((Thread) hook);
+                    }
+                }
+                return threads;
+            }
+        } catch (IllegalAccessException | RuntimeException e) {
+            log.debug("Unable to read shutdown hooks", e);
+            return Collections.emptyList();
+        }
+    }
+
+    private static Class<?> type(String className) {
+        try {
+            return Class.forName(className);
+        } catch (ClassNotFoundException | LinkageError e) {
+            return null;
+        }
+    }
+
+    private static Field field(String className, String name) {
+        final Class<?> type = type(className);
+        return type == null ? null : field(type, name);
+    }
+
+    private static Field field(Class<?> type, String name) {
+        try {
+            final Field field = type.getDeclaredField(name);
+            field.setAccessible(true);
+            return field;
+        } catch (NoSuchFieldException | RuntimeException e) {
+            log.debug("{}.{} is not accessible, the references it holds are ignored", type.getName(), name);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package io.github.sps4j.core.load;
+
+import io.github.sps4j.core.load.storage.ZipDirectory;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.security.CodeSource;
+import java.security.cert.Certificate;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+
+/**
+ * A memory-mapped plugin JAR file, from which {@link Sps4jPluginClassLoader} defines classes
+ * straight from the mapping.
+ *
+ * @author Allan-QLB
+ */
+@Slf4j
+final class MappedArchive {
+    private static final String SIGNATURE_PREFIX = "META-INF/";
+    private static final String SIGNATURE_SUFFIX = ".SF";
+    private final URL url;
+    private final ZipDirectory directory;
+    private final CodeSource codeSource;
+    @Nullable
+    private final Manifest manifest;
+
+    private MappedArchive(URL url, ZipDirectory directory, @Nullable Manifest manifest) {
+        this.url = url;
+        this.directory = directory;
+        this.codeSource = new CodeSource(url, (Certificate[]) null);
+        this.manifest = manifest;
+    }
+
+    /**
+     * Maps a plugin JAR file.
+     *
+     * @param url The URL of the JAR file.
+     * @return The mapped archive, or {@code null} if the URL is not a local unsigned JAR file that can be mapped.
+     */
+    @Nullable
+    static MappedArchive open(URL url) {
+        if (!"file".equals(url.getProtocol())) {
+            return null;
+        }
+        try {
+            final File file = new File(url.toURI());
+            if (!file.isFile()) {
+                return null;
+            }
+            final ZipDirectory directory = ZipDirectory.map(file);
+            for (String name : directory.entries().keySet()) {
+                // signers are only verified by the JAR file of URLClassLoader
+                if (name.startsWith(SIGNATURE_PREFIX) && name.endsWith(SIGNATURE_SUFFIX)) {
+                    return null;
+                }
+            }
+            return new MappedArchive(url, directory, readManifest(directory));
+        } catch (Exception e) {
+            log.debug("Unable to map {}", url, e);
+            return null;
+        }
+    }
+
+    @Nullable
+    private static Manifest readManifest(ZipDirectory directory) throws IOException {
+        final ZipDirectory.Entry entry = directory.entries().get(JarFile.MANIFEST_NAME);
+        if (entry == null) {
+            return null;
+        }
+        try (InputStream in = directory.open(entry)) {
+            return new Manifest(in);
+        }
+    }
+
+    /**
+     * Gets the content of an entry, without copying it if it is stored without compression.
+     *
+     * @param name The entry name.
+     * @return The content, or {@code null} if the archive has no such entry.
+     * @throws IOException if the entry cannot be read.
+     */
+    @Nullable
+    ByteBuffer content(String name) throws IOException {
+        final ZipDirectory.Entry entry = directory.entries().get(name);
+        return entry == null ? null : directory.content(entry);
+    }
+
+    URL getUrl() {
+        return url;
+    }
+
+    CodeSource getCodeSource() {
+        return codeSource;
+    }
+
+    @Nullable
+    Manifest getManifest() {
+        return manifest;
+    }
+}
@@ -0,0 +1,68 @@
+package io.github.sps4j.core.load;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers the class and resource names that a class loader could find neither in its own URLs
+ * nor in its parent, so that repeated probes for optional classes are answered without a lookup.
+ * <p>
+ * The cache holds at most {@value #MAX_ENTRIES} names of each kind; later misses are not remembered.
+ *
+ * @author Allan-QLB
+ */
+final class NegativeLookupCache {
+    static final int MAX_ENTRIES = 8192;
+    private final Set<String> classes = ConcurrentHashMap.newKeySet();
+    private final Set<String> resources = ConcurrentHashMap.newKeySet();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    boolean isMissingClass(String name) {
+        return check(classes, name);
+    }
+
+    boolean isMissingResource(String name) {
+        return check(resources, name);
+    }
+
+    void addMissingClass(String name) {
+        add(classes, name);
+    }
+
+    void addMissingResource(String name) {
+        add(resources, name);
+    }
+
+    /**
+     * Forgets all the names, e.g. when the class loader gets new URLs.
+     */
+    void clear() {
+        classes.clear();
+        resources.clear();
+    }
+
+    long getHits() {
+        return hits.sum();
+    }
+
+    long getMisses() {
+        return misses.sum();
+    }
+
+    private boolean check(Set<String> names, String name) {
+        if (names.contains(name)) {
+            hits.increment();
+            return true;
+        }
+        misses.increment();
+        return false;
+    }
+
+    private static void add(Set<String> names, String name) {
+        if (names.size() < MAX_ENTRIES) {
+            names.add(name);
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package io.github.sps4j.core.load;
+
+import io.github.sps4j.core.load.storage.ZipDirectory;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.nio.ByteBuffer;
+import java.security.CodeSource;
+import java.security.cert.Certificate;
+import java.util.*;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+
+/**
+ * The archives nested in a plugin JAR file: the JAR files under {@code BOOT-INF/lib/} and {@code lib/},
+ * and the classes under {@code BOOT-INF/classes/}.
+ * <p>
+ * The plugin JAR file is memory-mapped and nothing is extracted to disk: nested JAR files stored without
+ * compression, as build tools usually do, are read in place, and compressed ones are inflated in memory once.
+ * Their resources have URLs of the {@value #PROTOCOL} protocol, which can only be opened through these URLs.
+ *
+ * @author Allan-QLB
+ */
+@Slf4j
+final class NestedArchives {
+    static final String PROTOCOL = "sps4j-nested";
+    static final String CLASSES_DIR = "BOOT-INF/classes/";
+    private static final String[] LIB_DIRS = {"BOOT-INF/lib/", "lib/"};
+    private static final String JAR_SUFFIX = ".jar";
+    private static final String SEPARATOR = "!/";
+    private final List<Archive> archives;
+
+    private NestedArchives(List<Archive> archives) {
+        this.archives = archives;
+    }
+
+    /**
+     * Opens the nested archives of a plugin JAR file.
+     *
+     * @param url The URL of the plugin JAR file.
+     * @return The nested archives, empty if the URL is not a local JAR file or has none.
+     */
+    static NestedArchives open(URL url) {
+        final File file = toFile(url);
+        if (file == null || !file.isFile()) {
+            return new NestedArchives(Collections.emptyList());
+        }
+        try {
+            final ZipDirectory outer = ZipDirectory.map(file);
+            final List<Archive> archives = new ArrayList<>();
+            final Map<String, ZipDirectory.Entry> classes = new HashMap<>();
+            final List<String> jars = new ArrayList<>();
+            for (Map.Entry<String, ZipDirectory.Entry> entry : outer.entries().entrySet()) {
+                final String name = entry.getKey();
+                if (name.startsWith(CLASSES_DIR) && name.length() > CLASSES_DIR.length()) {
+                    classes.put(name.substring(CLASSES_DIR.length()), entry.getValue());
+                } else if (isNestedJar(name)) {
+                    jars.add(name);
+                }
+            }
+            if (!classes.isEmpty()) {
+                archives.add(new Archive(file, CLASSES_DIR, outer, classes, readManifest(outer)));
+            }
+            // a stable order, as the class path order decides which duplicate class wins
+            Collections.sort(jars);
+            for (String jar : jars) {
+                final ZipDirectory.Entry entry = outer.entries().get(jar);
+                final ZipDirectory inner = ZipDirectory.read(outer.content(entry));
+                archives.add(new Archive(file, jar, inner, inner.entries(), readManifest(inner)));
+            }
+            return new NestedArchives(archives);
+        } catch (IOException e) {
+            log.warn("Unable to read nested archives of {}", url, e);
+            return new NestedArchives(Collections.emptyList());
+        }
+    }
+
+    /**
+     * Checks whether there are nested archives.
+     *
+     * @return {@code true} if there are none.
+     */
+    boolean isEmpty() {
+        return archives.isEmpty();
+    }
+
+    /**
+     * Checks whether an entry is in a nested archive.
+     *
+     * @param name The entry name.
+     * @return {@code true} if a nested archive has the entry.
+     */
+    boolean contains(String name) {
+        for (Archive archive : archives) {
+            if (archive.entries.containsKey(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds an entry in the nested archives, in class path order.
+     *
+     * @param name The entry name.
+     * @return The entry, or {@code null} if absent.
+     */
+    @Nullable
+    Resource find(String name) {
+        for (Archive archive : archives) {
+            if (archive.entries.containsKey(name)) {
+                return new Resource(archive, name);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds the URLs of an entry in all the nested archives.
+     *
+     * @param name The entry name.
+     * @return The URLs, in class path order.
+     */
+    List<URL> findAll(String name) {
+        final List<URL> urls = new ArrayList<>();
+        for (Archive archive : archives) {
+            if (archive.entries.containsKey(name)) {
+                urls.add(archive.url(name));
+            }
+        }
+        return urls;
+    }
+
+    @Nullable
+    private static Manifest readManifest(ZipDirectory directory) throws IOException {
+        final ZipDirectory.Entry entry = directory.entries().get(JarFile.MANIFEST_NAME);
+        if (entry == null) {
+            return null;
+        }
+        try (InputStream in = directory.open(entry)) {
+            return new Manifest(in);
+        }
+    }
+
+    private static boolean isNestedJar(String name) {
+        if (!name.endsWith(JAR_SUFFIX)) {
+            return false;
+        }
+        for (String dir : LIB_DIRS) {
+            if (name.startsWith(dir) && name.indexOf('/', dir.length()) < 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Nullable
+    private static File toFile(URL url) {
+        if (!"file".equals(url.getProtocol())) {
+            return null;
+        }
+        try {
+            return new File(url.toURI());
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * An entry found in a nested archive.
+     */
+    static final class Resource {
+        private final Archive archive;
+        private final String name;
+
+        private Resource(Archive archive, String name) {
+            this.archive = archive;
+            this.name = name;
+        }
+
+        /**
+         * Gets the content of the entry, without copying it if it is stored without compression.
+         */
+        ByteBuffer getContent() throws IOException {
+            return archive.content(name);
+        }
+
+        URL getUrl() {
+            return archive.url(name);
+        }
+
+        CodeSource getCodeSource() {
+            return archive.codeSource;
+        }
+
+        /**
+         * Gets the manifest of the nested JAR file, or of the plugin JAR file for its classes directory.
+         */
+        @Nullable
+        Manifest getManifest() {
+            return archive.manifest;
+        }
+    }
+
+    /**
+     * A nested JAR file, or the classes directory, of a plugin JAR file.
+     */
+    private static final class Archive extends URLStreamHandler {
+        private final String base;
+        private final ZipDirectory directory;
+        private final Map<String, ZipDirectory.Entry> entries;
+        private final CodeSource codeSource;
+        @Nullable
+        private final Manifest manifest;
+
+        private Archive(File outer, String path, ZipDirectory directory, Map<String, ZipDirectory.Entry> entries,
+                        @Nullable Manifest manifest) throws MalformedURLException {
+            this.base = outer.getAbsoluteFile().toURI().getPath() + SEPARATOR + path
+                    + (path.endsWith("/") ? "" : SEPARATOR);
+            this.directory = directory;
+            this.entries = entries;
+            this.codeSource = new CodeSource(new URL(PROTOCOL, null, -1, base, this), (Certificate[]) null);
+            this.manifest = manifest;
+        }
+
+        private URL url(String name) {
+            try {
+                return new URL(PROTOCOL, null, -1, base + name, this);
+            } catch (MalformedURLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private byte[] read(String name) throws IOException {
+            return directory.read(entry(name));
+        }
+
+        private ByteBuffer content(String name) throws IOException {
+            return directory.content(entry(name));
+        }
+
+        private ZipDirectory.Entry entry(String name) throws FileNotFoundException {
+            final ZipDirectory.Entry entry = entries.get(name);
+            if (entry == null) {
+                throw new FileNotFoundException(base + name);
+            }
+            return entry;
+        }
+
+        @Override
+        protected URLConnection openConnection(URL u) {
+            final String name = u.getFile().substring(base.length());
+            return new URLConnection(u) {
+                @Override
+                public void connect() {
+                    connected = true;
+                }
+
+                @Override
+                public InputStream getInputStream() throws IOException {
+                    return new ByteArrayInputStream(read(name));
+                }
+
+                @Override
+                public long getContentLengthLong() {
+                    final ZipDirectory.Entry entry = entries.get(name);
+                    return entry == null ? -1 : entry.getSize();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package io.github.sps4j.core.load;
+
+import java.util.*;
+
+/**
+ * The parent-first and child-first rules of a class loader, stored in a trie of package name segments.
+ * <p>
+ * A rule for a package applies to its classes and all its sub packages. When several rules apply to a
+ * class, the most specific one wins, so the decision for a class takes a single walk over its name.
+ * Rules can be added at any time; lookups never block.
+ *
+ * @author Allan-QLB
+ */
+final class PackageRules {
+    private final Map<String, Boolean> rules = new LinkedHashMap<>();
+    private volatile Node root = new Node();
+
+    /**
+     * Adds a rule, replacing the previous rule of the same package.
+     *
+     * @param packageName The package (or class) name. A trailing {@code .} or {@code .*} is ignored.
+     * @param parentFirst {@code true} for a parent-first rule, {@code false} for a child-first rule.
+     * @return The previous rule of the package, or {@code null} if it had none.
+     */
+    synchronized Boolean add(String packageName, boolean parentFirst) {
+        final String normalized = normalize(packageName);
+        if (normalized.isEmpty()) {
+            throw new IllegalArgumentException("Blank package name " + packageName);
+        }
+        final Boolean previous = rules.put(normalized, parentFirst);
+        if (!Boolean.valueOf(parentFirst).equals(previous)) {
+            rebuild();
+        }
+        return previous;
+    }
+
+    /**
+     * Removes the rule of a package, if it is of the given kind.
+     *
+     * @param packageName The package (or class) name. A trailing {@code .} or {@code .*} is ignored.
+     * @param parentFirst {@code true} to remove a parent-first rule, {@code false} to remove a child-first rule.
+     * @return {@code true} if the rule was removed.
+     */
+    synchronized boolean remove(String packageName, boolean parentFirst) {
+        if (!rules.remove(normalize(packageName), parentFirst)) {
+            return false;
+        }
+        rebuild();
+        return true;
+    }
+
+    /**
+     * Gets the rule of a package, ignoring the rules of its parent packages.
+     *
+     * @param packageName The package (or class) name. A trailing {@code .} or {@code .*} is ignored.
+     * @return {@code TRUE} for parent-first, {@code FALSE} for child-first, {@code null} if the package has no rule.
+     */
+    synchronized Boolean get(String packageName) {
+        return rules.get(normalize(packageName));
+    }
+
+    /**
+     * Finds the most specific rule of a class.
+     *
+     * @param className The fully qualified class name.
+     * @return {@code TRUE} for parent-first, {@code FALSE} for child-first, {@code null} if no rule applies.
+     */
+    Boolean match(String className) {
+        Node node = root;
+        Boolean result = null;
+        int start = 0;
+        while (true) {
+            final int dot = className.indexOf('.', start);
+            node = node.children.get(dot < 0 ? className.substring(start) : className.substring(start, dot));
+            if (node == null) {
+                return result;
+            }
+            if (node.parentFirst != null) {
+                result = node.parentFirst;
+            }
+            if (dot < 0) {
+                return result;
+            }
+            start = dot + 1;
+        }
+    }
+
+    /**
+     * Gets the packages of the rules of one kind.
+     *
+     * @param parentFirst {@code true} for the parent-first packages, {@code false} for the child-first ones.
+     * @return The package names, in the order they were added.
+     */
+    synchronized Set<String> packages(boolean parentFirst) {
+        final Set<String> result = new LinkedHashSet<>();
+        rules.forEach((pkg, value) -> {
+            if (value == parentFirst) {
+                result.add(pkg);
+            }
+        });
+        return result;
+    }
+
+    private void rebuild() {
+        final Node newRoot = new Node();
+        rules.forEach((pkg, value) -> newRoot.insert(pkg, value));
+        root = newRoot;
+    }
+
+    static String normalize(String packageName) {
+        String normalized = packageName.trim();
+        if (normalized.endsWith(".*")) {
+            normalized = normalized.substring(0, normalized.length() - 2);
+        }
+        while (normalized.endsWith(".")) {
+            normalized = normalized.substring(0, normalized.length() - 1);
+        }
+        return normalized;
+    }
+
+    private static final class Node {
+        private final Map<String, Node> children = new HashMap<>();
+        private Boolean parentFirst;
+
+        private void insert(String packageName, boolean value) {
+            Node node = this;
+            for (String segment : packageName.split("\\.")) {
+                node = node.children.computeIfAbsent(segment, s -> new Node());
+            }
+            node.parentFirst = value;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package io.github.sps4j.core.load;
+
+import org.apache.commons.io.FilenameUtils;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Decides which resources are not looked up in the parent class loader, from the file name patterns
+ * of {@link Sps4jPluginClassLoader#addIgnoreParentResourceNamePattern(String, String...)}.
+ * <p>
+ * The patterns are combined into a single regular expression, and the decisions are cached per
+ * resource name. Each instance is immutable regarding its patterns; changing them means creating
+ * a new filter, which also drops the cached decisions.
+ *
+ * @author Allan-QLB
+ */
+final class ParentResourceFilter {
+    private static final int MAX_CACHED_DECISIONS = 4096;
+    static final ParentResourceFilter NONE = new ParentResourceFilter(null);
+    private final Pattern pattern;
+    private final Map<String, Boolean> decisions = new ConcurrentHashMap<>();
+
+    private ParentResourceFilter(Pattern pattern) {
+        this.pattern = pattern;
+    }
+
+    /**
+     * Creates a filter ignoring the parent resources whose file name matches any of the patterns.
+     *
+     * @param patterns The patterns, matched with {@link java.util.regex.Matcher#find()}.
+     * @return The filter.
+     */
+    static ParentResourceFilter of(Collection<Pattern> patterns) {
+        if (patterns.isEmpty()) {
+            return NONE;
+        }
+        return new ParentResourceFilter(Pattern.compile(patterns.stream()
+                .map(p -> "(?:" + p.pattern() + ")")
+                .collect(Collectors.joining("|"))));
+    }
+
+    /**
+     * Checks whether a resource must not be looked up in the parent class loader.
+     *
+     * @param name The resource name.
+     * @return {@code true} if the parent resource is ignored.
+     */
+    boolean isIgnored(String name) {
+        if (pattern == null) {
+            return false;
+        }
+        final Boolean decision = decisions.get(name);
+        if (decision != null) {
+            return decision;
+        }
+        final boolean ignored = pattern.matcher(FilenameUtils.getName(name)).find();
+        if (decisions.size() < MAX_CACHED_DECISIONS) {
+            decisions.put(name, ignored);
+        }
+        return ignored;
+    }
+}
@@ -0,0 +1,48 @@
+package io.github.sps4j.core.load;
+
+import net.bytebuddy.asm.Advice;
+
+/**
+ * A ByteBuddy advice that is inlined into plugin proxies created in {@link DispatchMode#INLINE} mode.
+ * It sets the plugin's class loader as the thread context class loader before the original method runs
+ * and restores the previous one afterwards, with the same semantics as
+ * {@link io.github.sps4j.common.utils.CallUtils#executeWithContextLoader}.
+ *
+ * @author Allan-QLB
+ */
+final class PluginContextLoaderAdvice {
+
+    private PluginContextLoaderAdvice() {
+    }
+
+    /**
+     * Switches the thread context class loader to the class loader of the proxy class.
+     *
+     * @param proxyClass The proxy class declaring the intercepted method.
+     * @return The previous context class loader, restored on exit, or {@code null} if it was not switched
+     * because it is {@code null} or already the class loader of the proxy class.
+     */
+    @Advice.OnMethodEnter
+    static ClassLoader enter(@Advice.Origin Class<?> proxyClass) {
+        final Thread thread = Thread.currentThread();
+        final ClassLoader previous = thread.getContextClassLoader();
+        final ClassLoader classLoader = proxyClass.getClassLoader();
+        if (previous == null || previous == classLoader) {
+            return null;
+        }
+        thread.setContextClassLoader(classLoader);
+        return previous;
+    }
+
+    /**
+     * Restores the thread context class loader, whether the method returned normally or not.
+     *
+     * @param previous The context class loader returned by {@link #enter(Class)}.
+     */
+    @Advice.OnMethodExit(onThrowable = Throwable.class)
+    static void exit(@Advice.Enter ClassLoader previous) {
+        if (previous != null) {
+            Thread.currentThread().setContextClassLoader(previous);
+        }
+    }
+}
@@ -16,6 +16,23 @@ import java.lang.reflect.Method;
  * @author Allan-QLB
  */
 public class PluginMethodInvocationInterceptor {
+    private static final PluginMethodInvocationInterceptor INSTANCE = new PluginMethodInvocationInterceptor();
+
+    /**
+     * Intercepts a method call on a plugin instance, the same way as {@link #intercept(Object, Method, Object[])}.
+     * Proxies delegating to this static method hold no reference to an interceptor instance, so their class files
+     * are self-contained and can be cached.
+     *
+     * @param proxy The proxied plugin instance.
+     * @param superMethod The original method that was invoked.
+     * @param args The arguments passed to the method.
+     * @return The result of the original method invocation.
+     * @throws Throwable The exception thrown by the original method.
+     */
+    @RuntimeType
+    public static Object dispatch(@This Object proxy, @SuperMethod Method superMethod, @AllArguments Object[] args) throws Throwable {
+        return INSTANCE.intercept(proxy, superMethod, args);
+    }
 
     /**
      * Intercepts a method call on a plugin instance.
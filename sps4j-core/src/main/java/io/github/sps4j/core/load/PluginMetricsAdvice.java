@@ -0,0 +1,41 @@
+package io.github.sps4j.core.load;
+
+import io.github.sps4j.core.metrics.InvocationRecorder;
+import net.bytebuddy.asm.Advice;
+
+/**
+ * A ByteBuddy advice that is inlined into plugin proxies when {@link DefaultPluginLoader} has
+ * {@link io.github.sps4j.core.metrics.InvocationMetrics}. It measures each call of an intercepted method,
+ * the context class loader switch included, and records it through {@link InvocationRecorder}.
+ *
+ * @author Allan-QLB
+ */
+final class PluginMetricsAdvice {
+
+    private PluginMetricsAdvice() {
+    }
+
+    /**
+     * Starts measuring a call.
+     *
+     * @return The start time, in nanoseconds.
+     */
+    @Advice.OnMethodEnter
+    static long enter() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Records a call, whether the method returned normally or not.
+     *
+     * @param proxyClass The proxy class declaring the method.
+     * @param method     The method, as its name and parameter types.
+     * @param start      The start time returned by {@link #enter()}.
+     * @param thrown     The exception thrown by the method, if any.
+     */
+    @Advice.OnMethodExit(onThrowable = Throwable.class)
+    static void exit(@Advice.Origin Class<?> proxyClass, @Advice.Origin("#m#s") String method,
+                     @Advice.Enter long start, @Advice.Thrown Throwable thrown) {
+        InvocationRecorder.record(proxyClass, method, start, thrown);
+    }
+}
@@ -2,10 +2,13 @@ package io.github.sps4j.core.load;
 
 import io.github.sps4j.common.meta.MetaInfo;
 import io.github.sps4j.core.Sps4jPlugin;
+import io.github.sps4j.core.metrics.PluginInvocationMetrics;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
 
+import javax.annotation.Nullable;
+
 /**
  * A wrapper class that holds a loaded plugin instance along with its metadata.
  *
@@ -23,6 +26,21 @@ public class PluginWrapper {
      * The loaded plugin instance.
      */
     private final Sps4jPlugin plugin;
+    /**
+     * The metrics of the calls of the plugin methods, or {@code null} if calls are not recorded.
+     */
+    @Nullable
+    private final PluginInvocationMetrics invocationMetrics;
+
+    /**
+     * Constructs a wrapper of a plugin whose calls are not recorded.
+     *
+     * @param metaInfo The metadata of the plugin.
+     * @param plugin   The loaded plugin instance.
+     */
+    public PluginWrapper(MetaInfo metaInfo, Sps4jPlugin plugin) {
+        this(metaInfo, plugin, null);
+    }
 
     /**
      * Casts the wrapped plugin to a specific plugin interface type.
@@ -0,0 +1,118 @@
+package io.github.sps4j.core.load;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * The class loader of a set of libraries shared by plugins, created by {@link SharedLibraryLayer}.
+ * <p>
+ * It sits between the host class loader and the plugin class loaders, with the same delegation rules as
+ * the plugins, so that the classes of identical libraries are defined once instead of once per plugin.
+ * It keeps track of the classes it defines to estimate the metaspace saved by sharing them.
+ *
+ * @author Allan-QLB
+ */
+@Slf4j
+public class SharedLibraryClassLoader extends Sps4jPluginClassLoader {
+    private static final String CLASS_SUFFIX = ".class";
+
+    static {
+        registerAsParallelCapable();
+    }
+
+    /**
+     * The content hashes of the libraries, in class path order.
+     */
+    @Getter
+    private final List<String> contentHashes;
+    private final Map<String, Long> classFileSizes = new HashMap<>();
+    private final LongAdder loadedClasses = new LongAdder();
+    private final LongAdder loadedClassBytes = new LongAdder();
+    private int pluginCount;
+
+    SharedLibraryClassLoader(List<URL> libraries, List<String> contentHashes, ClassLoader parent) {
+        super(libraries.toArray(new URL[0]), parent);
+        this.contentHashes = Collections.unmodifiableList(contentHashes);
+        for (URL library : libraries) {
+            readClassFileSizes(library);
+        }
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        final Class<?> c = super.findClass(name);
+        loadedClasses.increment();
+        loadedClassBytes.add(classFileSizes.getOrDefault(name.replace('.', '/').concat(CLASS_SUFFIX), 0L));
+        return c;
+    }
+
+    /**
+     * Gets the number of plugin class loaders currently using these libraries.
+     *
+     * @return The number of plugin class loaders.
+     */
+    public synchronized int getPluginCount() {
+        return pluginCount;
+    }
+
+    /**
+     * Gets the number of classes defined from these libraries.
+     *
+     * @return The number of classes.
+     */
+    public long getLoadedClassCount() {
+        return loadedClasses.sum();
+    }
+
+    /**
+     * Gets the size of the class files of the classes defined from these libraries, used as an estimate
+     * of the metaspace they take.
+     *
+     * @return The size in bytes.
+     */
+    public long getLoadedClassBytes() {
+        return loadedClassBytes.sum();
+    }
+
+    /**
+     * Estimates the metaspace saved for each plugin using these libraries: without sharing, every plugin
+     * would define its own copy of the classes, instead of a part of a single copy.
+     *
+     * @return The estimated size in bytes.
+     */
+    public long getEstimatedSavedBytesPerPlugin() {
+        final int plugins = getPluginCount();
+        return plugins == 0 ? 0 : getLoadedClassBytes() * (plugins - 1) / plugins;
+    }
+
+    synchronized void acquire() {
+        pluginCount++;
+    }
+
+    synchronized boolean release() {
+        return --pluginCount == 0;
+    }
+
+    private void readClassFileSizes(URL library) {
+        try (JarFile jar = new JarFile(new File(library.toURI()))) {
+            final Enumeration<JarEntry> entries = jar.entries();
+            while (entries.hasMoreElements()) {
+                final JarEntry entry = entries.nextElement();
+                if (entry.getName().endsWith(CLASS_SUFFIX) && entry.getSize() > 0) {
+                    classFileSizes.putIfAbsent(entry.getName(), entry.getSize());
+                }
+            }
+        } catch (IOException | URISyntaxException | IllegalArgumentException e) {
+            log.debug("Unable to read the class file sizes of {}", library, e);
+        }
+    }
+}
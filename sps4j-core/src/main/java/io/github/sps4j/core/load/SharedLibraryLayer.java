@@ -0,0 +1,259 @@
+package io.github.sps4j.core.load;
+
+import io.github.sps4j.common.meta.MetaInfo;
+import io.github.sps4j.common.meta.PluginDesc;
+import io.github.sps4j.core.Sps4jPlugin;
+import io.github.sps4j.core.load.storage.ContentHashCache;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.*;
+import java.util.jar.JarFile;
+
+/**
+ * An optional class loader layer between the host and the plugins, loading the libraries that plugins
+ * have in common once instead of once per plugin.
+ * <p>
+ * The libraries of a plugin are the JAR files referenced by the {@code Class-Path} manifest attribute of its JAR file,
+ * such as {@code lib/guava-32.1.3-jre.jar}. They are identified by content hash, not by path: plugins whose libraries
+ * have the same content, in the same order, and that declare the same parent-first and child-first packages share
+ * a {@link SharedLibraryClassLoader}. Plugins with any different library get their own one, so conflicting versions
+ * stay isolated. Libraries are shared as a whole: plugins with some libraries in common but another one different
+ * share none of them. A shared class loader is closed when the last plugin class loader using it is closed.
+ * <p>
+ * The content hashes of the libraries are cached until no shared class loader uses them.
+ * <p>
+ * Plugins without libraries, or whose libraries are not all local JAR files, get a class loader of their own as usual.
+ *
+ * @author Allan-QLB
+ */
+@Slf4j
+public class SharedLibraryLayer {
+    private final ClassLoader parent;
+    private final Map<String, SharedLibraryClassLoader> classLoaders = new HashMap<>();
+    private final ContentHashCache contentHashes = new ContentHashCache();
+
+    /**
+     * Constructs a layer on top of the class loader of the framework.
+     */
+    public SharedLibraryLayer() {
+        this(Sps4jPlugin.class.getClassLoader());
+    }
+
+    /**
+     * Constructs a layer on top of the given class loader.
+     *
+     * @param parent The parent class loader of the shared class loaders, usually the host class loader.
+     */
+    public SharedLibraryLayer(@Nonnull ClassLoader parent) {
+        this.parent = Objects.requireNonNull(parent);
+    }
+
+    /**
+     * Creates the class loader of plugins, whose parent is the shared class loader of their libraries.
+     *
+     * @param plugins The plugins to load with the class loader.
+     * @return The plugin class loader.
+     */
+    public Sps4jPluginClassLoader createClassLoader(@Nonnull List<MetaInfo> plugins) {
+        return createClassLoader(plugins, ClassLoaderOptions.DEFAULT);
+    }
+
+    /**
+     * Creates the class loader of plugins with options, whose parent is the shared class loader of their libraries.
+     * The shared class loader is reused only if another plugin has exactly the same libraries.
+     *
+     * @param plugins The plugins to load with the class loader.
+     * @param options The options of the plugin class loader.
+     * @return The plugin class loader.
+     */
+    public Sps4jPluginClassLoader createClassLoader(@Nonnull List<MetaInfo> plugins, @Nonnull ClassLoaderOptions options) {
+        final URL[] urls = plugins.stream().map(MetaInfo::getUrl).toArray(URL[]::new);
+        final List<URL> libraries = findLibraries(urls);
+        final List<String> hashes = libraries == null ? null : contentHashes(libraries);
+        if (hashes == null || hashes.isEmpty()) {
+            return newClassLoader(urls, parent, Collections.emptyList(), plugins, options);
+        }
+        final SharedLibraryClassLoader shared = acquire(libraries, hashes, plugins);
+        final Sps4jPluginClassLoader classLoader = newClassLoader(urls, shared, libraries, plugins, options);
+        classLoader.addOnCloseAction(() -> release(shared));
+        return classLoader;
+    }
+
+    /**
+     * Gets the shared class loaders currently in use.
+     *
+     * @return A snapshot of the shared class loaders.
+     */
+    public synchronized List<SharedLibraryClassLoader> getSharedClassLoaders() {
+        return new ArrayList<>(classLoaders.values());
+    }
+
+    /**
+     * Estimates the metaspace saved by sharing libraries, over all the plugins currently loaded.
+     *
+     * @return The estimated size in bytes.
+     * @see SharedLibraryClassLoader#getEstimatedSavedBytesPerPlugin()
+     */
+    public synchronized long getEstimatedSavedBytes() {
+        long saved = 0;
+        for (SharedLibraryClassLoader classLoader : classLoaders.values()) {
+            saved += classLoader.getLoadedClassBytes() * Math.max(0, classLoader.getPluginCount() - 1);
+        }
+        return saved;
+    }
+
+    private synchronized SharedLibraryClassLoader acquire(List<URL> libraries, List<String> hashes, List<MetaInfo> plugins) {
+        final String key = String.join(",", hashes) + "|" + packageRulesKey(plugins);
+        final SharedLibraryClassLoader shared = classLoaders.computeIfAbsent(key, k -> {
+            final SharedLibraryClassLoader classLoader = new SharedLibraryClassLoader(libraries, hashes, parent);
+            plugins.forEach(p -> classLoader.addPackageRules(p.getDescriptor()));
+            log.debug("Created shared library class loader for {}", libraries);
+            return classLoader;
+        });
+        shared.acquire();
+        return shared;
+    }
+
+    private void release(SharedLibraryClassLoader shared) {
+        final boolean unused;
+        synchronized (this) {
+            unused = shared.release();
+            if (unused) {
+                classLoaders.values().remove(shared);
+                contentHashes.retainAll(libraryPaths());
+            }
+        }
+        if (unused) {
+            try {
+                shared.close();
+            } catch (IOException e) {
+                log.warn("Error close shared library class loader {}", shared, e);
+            }
+        }
+    }
+
+    private Set<String> libraryPaths() {
+        final Set<String> paths = new HashSet<>();
+        for (SharedLibraryClassLoader classLoader : classLoaders.values()) {
+            for (URL library : classLoader.getURLs()) {
+                final File file = toFile(library);
+                if (file != null) {
+                    paths.add(file.getAbsolutePath());
+                }
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * Gets the cache of the content hashes of the libraries.
+     *
+     * @return The cache.
+     */
+    ContentHashCache getContentHashes() {
+        return contentHashes;
+    }
+
+    private static Sps4jPluginClassLoader newClassLoader(URL[] urls, ClassLoader parent, List<URL> sharedLibraries,
+                                                         List<MetaInfo> plugins, ClassLoaderOptions options) {
+        final Sps4jPluginClassLoader classLoader = new Sps4jPluginClassLoader(urls, parent, sharedLibraries, options);
+        plugins.forEach(p -> classLoader.addPackageRules(p.getDescriptor()));
+        return classLoader;
+    }
+
+    /**
+     * Finds the libraries referenced by the plugin JAR files, in class path order.
+     *
+     * @param urls The URLs of the plugins.
+     * @return The libraries, or {@code null} if they cannot be shared.
+     */
+    @Nullable
+    private static List<URL> findLibraries(URL[] urls) {
+        final Set<String> visited = new HashSet<>();
+        for (URL url : urls) {
+            visited.add(url.toString());
+        }
+        final List<URL> libraries = new ArrayList<>();
+        for (URL url : urls) {
+            if (!addLibraries(url, visited, libraries)) {
+                return null;
+            }
+        }
+        return libraries;
+    }
+
+    private static boolean addLibraries(URL url, Set<String> visited, List<URL> libraries) {
+        final File file = toFile(url);
+        if (file == null || !file.isFile()) {
+            return false;
+        }
+        try (JarFile jar = new JarFile(file)) {
+            for (URL library : ClassPathIndex.classPath(url, jar)) {
+                final File libraryFile = toFile(library);
+                if (libraryFile != null && !libraryFile.exists()) {
+                    continue;
+                }
+                if (visited.add(library.toString())) {
+                    libraries.add(library);
+                    if (!addLibraries(library, visited, libraries)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            log.debug("Unable to read libraries of {}", url, e);
+            return false;
+        }
+    }
+
+    @Nullable
+    private List<String> contentHashes(List<URL> libraries) {
+        final List<String> hashes = new ArrayList<>(libraries.size());
+        for (URL library : libraries) {
+            final File file = toFile(library);
+            if (file == null) {
+                return null;
+            }
+            final String hash = contentHashes.hash(file);
+            if (hash == null) {
+                return null;
+            }
+            hashes.add(hash);
+        }
+        return hashes;
+    }
+
+    private static String packageRulesKey(List<MetaInfo> plugins) {
+        final Set<String> parentFirst = new TreeSet<>();
+        final Set<String> childFirst = new TreeSet<>();
+        for (MetaInfo plugin : plugins) {
+            final PluginDesc descriptor = plugin.getDescriptor();
+            if (descriptor.getParentFirstPackages() != null) {
+                parentFirst.addAll(descriptor.getParentFirstPackages());
+            }
+            if (descriptor.getChildFirstPackages() != null) {
+                childFirst.addAll(descriptor.getChildFirstPackages());
+            }
+        }
+        return parentFirst + "|" + childFirst;
+    }
+
+    @Nullable
+    private static File toFile(URL url) {
+        if (!"file".equals(url.getProtocol())) {
+            return null;
+        }
+        try {
+            return new File(url.toURI());
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
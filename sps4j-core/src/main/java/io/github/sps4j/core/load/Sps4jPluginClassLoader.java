@@ -1,15 +1,20 @@
 package io.github.sps4j.core.load;
 
 
+import io.github.sps4j.common.meta.PluginDesc;
 import io.github.sps4j.common.utils.CallUtils;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.io.FilenameUtils;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.jar.Manifest;
 import java.util.regex.Pattern;
 
 /**
@@ -20,6 +25,21 @@ import java.util.regex.Pattern;
  * explicitly configured packages. For all other classes, it attempts to load from the plugin's URLs first
  * (child-first), falling back to the parent loader if the class is not found.
  * This allows plugins to bundle their own dependencies while sharing the core framework.
+ * Configured packages cover their sub packages, and the most specific parent-first or child-first
+ * package of a class decides how it is loaded.
+ * <p>
+ * The entries of the JAR files are indexed when the class loader is created, so that classes and resources
+ * that are not in the plugin are delegated to the parent directly, without searching the JAR files.
+ * Names that are found neither in the plugin nor in the parent are remembered for the lifetime of the
+ * class loader, so that repeated probes for optional classes and resources fail fast.
+ * <p>
+ * With {@link ClassLoaderOptions#mappedArchives}, classes are defined straight from the memory-mapped plugin
+ * JAR files, before the other URLs of the class loader are searched.
+ * With {@link ClassLoaderOptions#nestedArchives}, classes and resources are also loaded from the JAR files
+ * nested in the plugin JAR files, after the ones of the plugin JAR files themselves.
+ * <p>
+ * The class loader is parallel capable: classes of different names are loaded concurrently, and its
+ * configuration may be changed while classes are being loaded.
  *
  * @author Allan-QLB
  */
@@ -27,9 +47,32 @@ import java.util.regex.Pattern;
 @Slf4j
 public class Sps4jPluginClassLoader extends URLClassLoader {
     private static final String FRAMEWORK_PACKAGE = "io.github.sps4j";
-    private final Set<String> parentFirstPackages =  new HashSet<>();
+    private static final String CLASS_SUFFIX = ".class";
+    @Getter(AccessLevel.NONE)
+    private final PackageRules packageRules = new PackageRules();
+    @Getter(AccessLevel.NONE)
+    private final Set<String> parentFirstPackages = new ParentFirstPackages();
     private final List<Runnable> onCloseActions = new ArrayList<>();
-    private final Map<String,Pattern> ignoreParentResourceNamePatterns = new HashMap<>();
+    @Getter(AccessLevel.NONE)
+    private final Map<String,Pattern> ignoreParentResourceNamePatterns = new LinkedHashMap<>();
+    @Getter(AccessLevel.NONE)
+    private volatile ParentResourceFilter parentResourceFilter = ParentResourceFilter.NONE;
+    @Getter(AccessLevel.NONE)
+    private final NegativeLookupCache negativeLookupCache = new NegativeLookupCache();
+    @Getter(AccessLevel.NONE)
+    private final ClassPathIndex index;
+    private final ClassLoaderOptions options;
+    private final List<URL> sharedLibraries;
+    @Getter(AccessLevel.NONE)
+    private volatile Queue<String> definedClasses;
+    @Getter(AccessLevel.NONE)
+    private volatile List<MappedArchive> mappedArchives = Collections.emptyList();
+    @Getter(AccessLevel.NONE)
+    private volatile List<NestedArchives> nestedArchives = Collections.emptyList();
+
+    static {
+        registerAsParallelCapable();
+    }
 
     /**
      * Constructs a new plugin class loader.
@@ -38,20 +81,209 @@ public class Sps4jPluginClassLoader extends URLClassLoader {
      * @param parent The parent class loader.
      */
     public Sps4jPluginClassLoader(URL[] urls, ClassLoader parent) {
+        this(urls, parent, Collections.emptyList());
+    }
+
+    /**
+     * Constructs a new plugin class loader whose parent provides some of the libraries of the plugin.
+     * These libraries are JAR files referenced by the {@code Class-Path} manifest attribute of the plugin JAR
+     * files, and their classes are always loaded by the parent rather than by this class loader.
+     *
+     * @param urls             The URLs from which to load classes and resources.
+     * @param parent           The parent class loader.
+     * @param sharedLibraries  The URLs of the libraries provided by the parent.
+     */
+    public Sps4jPluginClassLoader(URL[] urls, ClassLoader parent, Collection<URL> sharedLibraries) {
+        this(urls, parent, sharedLibraries, ClassLoaderOptions.DEFAULT);
+    }
+
+    /**
+     * Constructs a new plugin class loader with options.
+     *
+     * @param urls             The URLs from which to load classes and resources.
+     * @param parent           The parent class loader.
+     * @param sharedLibraries  The URLs of the libraries provided by the parent.
+     * @param options          The options of the class loader.
+     */
+    public Sps4jPluginClassLoader(URL[] urls, ClassLoader parent, Collection<URL> sharedLibraries,
+                                  ClassLoaderOptions options) {
         super(urls, parent);
+        this.options = Objects.requireNonNull(options);
+        this.sharedLibraries = Collections.unmodifiableList(new ArrayList<>(sharedLibraries));
+        index = new ClassPathIndex(sharedLibraries);
+        packageRules.add(FRAMEWORK_PACKAGE, true);
+        for (URL url : urls) {
+            index.add(url);
+            addMappedArchive(url);
+            addNestedArchives(url);
+        }
+    }
+
+    @Override
+    protected void addURL(URL url) {
+        super.addURL(url);
+        index.add(url);
+        addMappedArchive(url);
+        addNestedArchives(url);
+        negativeLookupCache.clear();
+    }
+
+    private synchronized void addMappedArchive(URL url) {
+        if (!options.isMappedArchives()) {
+            return;
+        }
+        final MappedArchive archive = MappedArchive.open(url);
+        if (archive != null) {
+            final List<MappedArchive> newArchives = new ArrayList<>(mappedArchives);
+            newArchives.add(archive);
+            mappedArchives = newArchives;
+        }
+    }
+
+    private synchronized void addNestedArchives(URL url) {
+        if (!options.isNestedArchives()) {
+            return;
+        }
+        final NestedArchives archives = NestedArchives.open(url);
+        if (!archives.isEmpty()) {
+            final List<NestedArchives> newArchives = new ArrayList<>(nestedArchives);
+            newArchives.add(archives);
+            nestedArchives = newArchives;
+        }
     }
 
     /**
      * Adds resource name patterns to be ignored by the parent class loader.
      * When a resource matching one of these patterns is requested, the parent class loader will not be queried.
+     * The patterns are matched against the file name of the resource, and the decision for each resource name
+     * is remembered until patterns are added again.
      *
      * @param first The first pattern to add.
      * @param rest  Additional patterns to add.
      */
     public void addIgnoreParentResourceNamePattern(String first, String ... rest) {
-        ignoreParentResourceNamePatterns.put(first, Pattern.compile(first));
-        for (String pattern : rest) {
-            ignoreParentResourceNamePatterns.put(pattern, Pattern.compile(pattern));
+        synchronized (ignoreParentResourceNamePatterns) {
+            ignoreParentResourceNamePatterns.put(first, Pattern.compile(first));
+            for (String pattern : rest) {
+                ignoreParentResourceNamePatterns.put(pattern, Pattern.compile(pattern));
+            }
+            parentResourceFilter = ParentResourceFilter.of(ignoreParentResourceNamePatterns.values());
+        }
+    }
+
+    /**
+     * Gets the resource name patterns ignored by the parent class loader.
+     *
+     * @return An unmodifiable copy of the patterns, by their source.
+     */
+    public Map<String, Pattern> getIgnoreParentResourceNamePatterns() {
+        synchronized (ignoreParentResourceNamePatterns) {
+            return Collections.unmodifiableMap(new LinkedHashMap<>(ignoreParentResourceNamePatterns));
+        }
+    }
+
+    /**
+     * Adds packages whose classes are loaded by the parent class loader first.
+     *
+     * @param first The first package to add.
+     * @param rest  Additional packages to add.
+     */
+    public void addParentFirstPackages(String first, String ... rest) {
+        packageRules.add(first, true);
+        for (String pkg : rest) {
+            packageRules.add(pkg, true);
+        }
+    }
+
+    /**
+     * Adds packages whose classes are loaded from the plugin first, even if they are
+     * in a parent-first package.
+     *
+     * @param first The first package to add.
+     * @param rest  Additional packages to add.
+     */
+    public void addChildFirstPackages(String first, String ... rest) {
+        packageRules.add(first, false);
+        for (String pkg : rest) {
+            packageRules.add(pkg, false);
+        }
+    }
+
+    /**
+     * Adds the parent-first and child-first packages declared by a plugin descriptor.
+     *
+     * @param descriptor The plugin descriptor.
+     */
+    public void addPackageRules(PluginDesc descriptor) {
+        if (descriptor.getParentFirstPackages() != null) {
+            descriptor.getParentFirstPackages().forEach(pkg -> packageRules.add(pkg, true));
+        }
+        if (descriptor.getChildFirstPackages() != null) {
+            descriptor.getChildFirstPackages().forEach(pkg -> packageRules.add(pkg, false));
+        }
+    }
+
+    /**
+     * Gets the packages loaded by the parent class loader first, besides the framework package.
+     * The set is backed by the rules of this class loader: packages added to or removed from it take effect
+     * on the next class load, as with {@link #addParentFirstPackages(String, String...)}.
+     *
+     * @return A modifiable view of the parent-first package names.
+     */
+    public Set<String> getParentFirstPackages() {
+        return parentFirstPackages;
+    }
+
+    /**
+     * Gets the packages loaded from the plugin first.
+     *
+     * @return An unmodifiable set of package names.
+     */
+    public Set<String> getChildFirstPackages() {
+        return Collections.unmodifiableSet(packageRules.packages(false));
+    }
+
+    /**
+     * Gets the number of class and resource lookups answered by the cache of missing names.
+     *
+     * @return The number of cache hits.
+     */
+    public long getNegativeLookupHits() {
+        return negativeLookupCache.getHits();
+    }
+
+    /**
+     * Gets the number of class and resource lookups that were not in the cache of missing names.
+     *
+     * @return The number of cache misses.
+     */
+    public long getNegativeLookupMisses() {
+        return negativeLookupCache.getMisses();
+    }
+
+    /**
+     * Starts recording the names of the classes defined by this class loader, in the order they are defined.
+     */
+    public synchronized void recordDefinedClasses() {
+        if (definedClasses == null) {
+            definedClasses = new ConcurrentLinkedQueue<>();
+        }
+    }
+
+    /**
+     * Gets the names of the classes defined by this class loader since {@link #recordDefinedClasses()}.
+     *
+     * @return The class names in definition order, empty if they are not recorded.
+     */
+    public List<String> getDefinedClasses() {
+        final Queue<String> classes = definedClasses;
+        return classes == null ? Collections.emptyList() : new ArrayList<>(classes);
+    }
+
+    private void recordDefinedClass(String name) {
+        final Queue<String> classes = definedClasses;
+        if (classes != null) {
+            classes.add(name);
         }
     }
 
@@ -68,20 +300,32 @@ public class Sps4jPluginClassLoader extends URLClassLoader {
 
     @Override
     public Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+        // Classes defined after a miss, e.g. generated proxies, are still found.
+        if (negativeLookupCache.isMissingClass(name) && findLoadedClass(name) == null) {
+            throw new ClassNotFoundException(name);
+        }
+        try {
+            return loadClassUncached(name, resolve);
+        } catch (ClassNotFoundException e) {
+            negativeLookupCache.addMissingClass(name);
+            throw e;
+        }
+    }
+
+    private Class<?> loadClassUncached(String name, boolean resolve) throws ClassNotFoundException {
         // Parent-first for framework classes and configured packages.
-        if (name.startsWith(FRAMEWORK_PACKAGE)) {
+        if (Boolean.TRUE.equals(packageRules.match(name))) {
             return super.loadClass(name, resolve);
         }
-        for (String pkg : parentFirstPackages) {
-            if (name.startsWith(pkg)) {
-                return super.loadClass(name, resolve);
-            }
-        }
 
         // Child-first for all other classes.
         synchronized (getClassLoadingLock(name)) {
             Class<?> c = findLoadedClass(name);
             if (c == null) {
+                if (!mayContain(name.replace('.', '/').concat(CLASS_SUFFIX))) {
+                    // Not in the plugin, the parent is the only place to look.
+                    return loadClassFromParent(name, resolve);
+                }
                 try {
                     // 1. Try to find in this classloader's URLs.
                     c = findClass(name);
@@ -97,8 +341,140 @@ public class Sps4jPluginClassLoader extends URLClassLoader {
         }
     }
 
+    private Class<?> loadClassFromParent(String name, boolean resolve) throws ClassNotFoundException {
+        final ClassLoader parent = getParent();
+        if (parent == null) {
+            return super.loadClass(name, resolve);
+        }
+        final Class<?> c = parent.loadClass(name);
+        if (resolve) {
+            resolveClass(c);
+        }
+        return c;
+    }
+
+    private boolean mayContain(String name) {
+        if (index.mayContain(name)) {
+            return true;
+        }
+        for (NestedArchives archives : nestedArchives) {
+            if (archives.contains(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        // also reached from the parent-first path when the parent does not have the class
+        final Class<?> c = findClassInArchives(name);
+        recordDefinedClass(name);
+        return c;
+    }
+
+    private Class<?> findClassInArchives(String name) throws ClassNotFoundException {
+        final List<MappedArchive> mapped = mappedArchives;
+        final List<NestedArchives> nested = nestedArchives;
+        if (mapped.isEmpty() && nested.isEmpty()) {
+            return super.findClass(name);
+        }
+        final String path = name.replace('.', '/').concat(CLASS_SUFFIX);
+        for (MappedArchive archive : mapped) {
+            final ByteBuffer bytes;
+            try {
+                bytes = archive.content(path);
+            } catch (IOException e) {
+                throw new ClassNotFoundException(name, e);
+            }
+            if (bytes != null) {
+                definePackageIfAbsent(name, archive.getManifest(), archive.getUrl());
+                return defineClass(name, bytes, archive.getCodeSource());
+            }
+        }
+        if (index.mayContain(path)) {
+            try {
+                return super.findClass(name);
+            } catch (ClassNotFoundException e) {
+                if (nested.isEmpty()) {
+                    throw e;
+                }
+                // not in the plugin JAR files, look in the nested ones
+            }
+        }
+        for (NestedArchives archives : nested) {
+            final NestedArchives.Resource resource = archives.find(path);
+            if (resource != null) {
+                return defineNestedClass(name, resource);
+            }
+        }
+        throw new ClassNotFoundException(name);
+    }
+
+    private Class<?> defineNestedClass(String name, NestedArchives.Resource resource) throws ClassNotFoundException {
+        final ByteBuffer bytes;
+        try {
+            bytes = resource.getContent();
+        } catch (IOException e) {
+            throw new ClassNotFoundException(name, e);
+        }
+        definePackageIfAbsent(name, resource.getManifest(), resource.getCodeSource().getLocation());
+        return defineClass(name, bytes, resource.getCodeSource());
+    }
+
+    private void definePackageIfAbsent(String className, @Nullable Manifest manifest, @Nullable URL url) {
+        final int dot = className.lastIndexOf('.');
+        if (dot <= 0) {
+            return;
+        }
+        final String packageName = className.substring(0, dot);
+        if (getPackage(packageName) == null) {
+            try {
+                if (manifest != null) {
+                    definePackage(packageName, manifest, url);
+                } else {
+                    definePackage(packageName, null, null, null, null, null, null, null);
+                }
+            } catch (IllegalArgumentException e) {
+                // defined concurrently
+            }
+        }
+    }
+
+    @Override
+    public URL findResource(String name) {
+        final URL url = index.mayContain(name) ? super.findResource(name) : null;
+        if (url != null) {
+            return url;
+        }
+        for (NestedArchives archives : nestedArchives) {
+            final NestedArchives.Resource resource = archives.find(name);
+            if (resource != null) {
+                return resource.getUrl();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Enumeration<URL> findResources(String name) throws IOException {
+        final Enumeration<URL> urls = index.mayContain(name) ? super.findResources(name) : Collections.emptyEnumeration();
+        final List<NestedArchives> nested = nestedArchives;
+        if (nested.isEmpty()) {
+            return urls;
+        }
+        final List<URL> result = Collections.list(urls);
+        for (NestedArchives archives : nested) {
+            result.addAll(archives.findAll(name));
+        }
+        return Collections.enumeration(result);
+    }
+
     @Override
     public URL getResource(String name) {
+        if (negativeLookupCache.isMissingResource(name)) {
+            return null;
+        }
         // 1. Try to find it in this classloader's URLs (child-first).
         URL url = findResource(name);
 
@@ -107,19 +483,23 @@ public class Sps4jPluginClassLoader extends URLClassLoader {
         }
 
         // 2. Check ignore patterns before delegating to parent.
-        String fname = FilenameUtils.getName(name);
-        for (Pattern pattern : ignoreParentResourceNamePatterns.values()) {
-            if (pattern.matcher(fname).find()) {
-                return null; // Ignore parent resource
-            }
+        if (parentResourceFilter.isIgnored(name)) {
+            return null; // Ignore parent resource
         }
 
         // 3. Delegate to parent.
-        return super.getResource(name);
+        url = super.getResource(name);
+        if (url == null) {
+            negativeLookupCache.addMissingResource(name);
+        }
+        return url;
     }
 
     @Override
     public Enumeration<URL> getResources(String name) throws IOException {
+        if (negativeLookupCache.isMissingResource(name)) {
+            return Collections.emptyEnumeration();
+        }
         final List<URL> result = new ArrayList<>();
 
         // 1. Get resources from this classloader's URLs (child-first).
@@ -128,29 +508,23 @@ public class Sps4jPluginClassLoader extends URLClassLoader {
             result.add(childResources.nextElement());
         }
 
-        // 2. Check if parent should be queried.
-        boolean addParent = true;
-        String fname = FilenameUtils.getName(name);
-        for (Pattern pattern : ignoreParentResourceNamePatterns.values()) {
-            if (pattern.matcher(fname).find()) {
-                addParent = false;
-                break;
-            }
-        }
-
-        // 3. Add resources from parent if not ignored.
-        if (addParent) {
+        // 2. Add resources from parent if not ignored.
+        if (!parentResourceFilter.isIgnored(name)) {
             Enumeration<URL> parentResources = getParent().getResources(name);
             while (parentResources.hasMoreElements()) {
                 result.add(parentResources.nextElement());
             }
         }
 
+        if (result.isEmpty()) {
+            negativeLookupCache.addMissingResource(name);
+        }
         return Collections.enumeration(result);
     }
 
     /**
-     * Closes this class loader and runs all registered close actions.
+     * Closes this class loader, after running all registered close actions and then the leak cleaners of its options.
+     * The mapped and nested archives are dropped, and no class is loaded from the plugin any more.
      *
      * @throws IOException if an I/O error occurs.
      */
@@ -166,7 +540,115 @@ public class Sps4jPluginClassLoader extends URLClassLoader {
             });
             onCloseActions.clear();
         }
+        for (ClassLoaderLeakCleaner cleaner : options.getLeakCleaners()) {
+            try {
+                cleaner.clean(this);
+            } catch (Exception e) {
+                log.error("Error run leak cleaner {}", cleaner, e);
+            }
+        }
+        negativeLookupCache.clear();
+        synchronized (this) {
+            // drop the mappings, so that no class is defined from them any more
+            mappedArchives = Collections.emptyList();
+            nestedArchives = Collections.emptyList();
+        }
         super.close();
     }
+
+    /**
+     * Defines a class of the framework again in this class loader, to run code that needs a caller in it.
+     * The class must only depend on JDK classes. It is defined once.
+     *
+     * @param name  The class name.
+     * @param bytes The class file.
+     * @return The class defined by this class loader.
+     */
+    Class<?> defineHelperClass(String name, byte[] bytes) {
+        synchronized (getClassLoadingLock(name)) {
+            final Class<?> loaded = findLoadedClass(name);
+            return loaded != null ? loaded : defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+    /**
+     * Defines a class generated for a plugin, such as a cached plugin proxy, which replaces the class of the same
+     * name in the plugin JAR files. It is not recorded in {@link #getDefinedClasses()}, so it is never preloaded.
+     *
+     * @param name  The class name.
+     * @param bytes The class file.
+     * @return The class defined by this class loader.
+     * @throws LinkageError if a class of that name is already loaded.
+     */
+    Class<?> defineGeneratedClass(String name, byte[] bytes) {
+        synchronized (getClassLoadingLock(name)) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+    /**
+     * The parent-first packages besides the framework package, as a set backed by the package rules.
+     */
+    private final class ParentFirstPackages extends AbstractSet<String> {
+
+        @Override
+        public boolean add(String pkg) {
+            return !isFramework(pkg) && !Boolean.TRUE.equals(packageRules.add(pkg, true));
+        }
+
+        @Override
+        public boolean remove(Object pkg) {
+            return pkg instanceof String && !isFramework((String) pkg) && packageRules.remove((String) pkg, true);
+        }
+
+        @Override
+        public boolean contains(Object pkg) {
+            return pkg instanceof String && !isFramework((String) pkg)
+                    && Boolean.TRUE.equals(packageRules.get((String) pkg));
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            final Iterator<String> snapshot = snapshot().iterator();
+            return new Iterator<String>() {
+                private String last;
+
+                @Override
+                public boolean hasNext() {
+                    return snapshot.hasNext();
+                }
+
+                @Override
+                public String next() {
+                    last = snapshot.next();
+                    return last;
+                }
+
+                @Override
+                public void remove() {
+                    if (last == null) {
+                        throw new IllegalStateException();
+                    }
+                    packageRules.remove(last, true);
+                    last = null;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return snapshot().size();
+        }
+
+        private Set<String> snapshot() {
+            final Set<String> packages = packageRules.packages(true);
+            packages.remove(FRAMEWORK_PACKAGE);
+            return packages;
+        }
+
+        private boolean isFramework(String pkg) {
+            return FRAMEWORK_PACKAGE.equals(PackageRules.normalize(pkg));
+        }
+    }
 }
 
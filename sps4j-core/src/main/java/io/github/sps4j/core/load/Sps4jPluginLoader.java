@@ -4,8 +4,13 @@ package io.github.sps4j.core.load;
 
 import io.github.sps4j.common.meta.MetaInfo;
 import io.github.sps4j.core.Sps4jPlugin;
+import io.github.sps4j.core.metrics.InvocationMetrics;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -25,6 +30,39 @@ public interface Sps4jPluginLoader {
      */
     Sps4jPlugin load(MetaInfo pluginMetadata, Sps4jPluginClassLoader cl, Map<String, Object> conf);
 
+    /**
+     * Gets the options of the class loaders created by {@link #createClassLoader(List)}.
+     *
+     * @return The class loader options.
+     */
+    default ClassLoaderOptions getClassLoaderOptions() {
+        return ClassLoaderOptions.DEFAULT;
+    }
+
+    /**
+     * Gets the registry the calls of the methods of the loaded plugins are recorded in.
+     *
+     * @return The invocation metrics, or {@code null} if calls are not recorded.
+     */
+    @Nullable
+    default InvocationMetrics getInvocationMetrics() {
+        return null;
+    }
+
+    /**
+     * Creates the class loader of plugins, with the parent-first and child-first packages of their descriptors.
+     *
+     * @param plugins The plugins to load with the class loader.
+     * @return The new class loader.
+     */
+    default Sps4jPluginClassLoader createClassLoader(@Nonnull List<MetaInfo> plugins) {
+        final Sps4jPluginClassLoader classLoader = new Sps4jPluginClassLoader(
+                plugins.stream().map(MetaInfo::getUrl).toArray(URL[]::new), Sps4jPlugin.class.getClassLoader(),
+                Collections.emptyList(), getClassLoaderOptions());
+        plugins.forEach(p -> classLoader.addPackageRules(p.getDescriptor()));
+        return classLoader;
+    }
+
     /**
      * Creates an instance of the plugin.
      *
@@ -1,7 +1,7 @@
 package io.github.sps4j.core.load;
 
 /**
- * A marker interface for plugin proxies created by ByteBuddy.
+ * A marker interface for plugin proxies, created by ByteBuddy or generated at build time by the annotation processor.
  * This helps in identifying proxied plugin instances.
  *
  * @author Allan-QLB
@@ -0,0 +1,148 @@
+package io.github.sps4j.core.load;
+
+import io.github.sps4j.common.utils.YamlUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.IOUtils;
+
+import javax.annotation.Nonnull;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The standard leak cleaners, similar to the {@code clearReferences*} steps of Tomcat web application class loaders.
+ * <p>
+ * No cleaner runs unless configured: each one is enabled by adding it to the cleaners of the class loader options,
+ * and {@link #safe()} are the ones that only drop references nobody should use after the plugin is unloaded.
+ * <pre>{@code
+ * ClassLoaderOptions options = ClassLoaderOptions.builder()
+ *         .leakCleaners(Arrays.asList(StandardLeakCleaner.JDBC_DRIVERS, StandardLeakCleaner.YAML_MAPPERS))
+ *         .build();
+ * }</pre>
+ * {@link #THREADS} and {@link #THREAD_LOCALS} act on threads that may still be running, so they should only be
+ * enabled when plugins do not share threads with the host.
+ * Cleaners reading JDK internals do nothing when the JDK denies it, e.g. without
+ * {@code --add-opens java.base/java.lang=ALL-UNNAMED}.
+ *
+ * @author Allan-QLB
+ */
+@Slf4j
+public enum StandardLeakCleaner implements ClassLoaderLeakCleaner {
+    /**
+     * Interrupts the threads likely started by the plugin: threads whose class it loaded, or whose context class
+     * loader is the plugin class loader.
+     */
+    THREADS {
+        @Override
+        public void clean(@Nonnull Sps4jPluginClassLoader classLoader) {
+            for (Thread thread : LeakRoots.allThreads()) {
+                if (thread != Thread.currentThread() && thread.isAlive() && LeakRoots.isThreadOf(thread, classLoader)) {
+                    log.warn("Interrupting thread {} started by plugin class loader {}", thread.getName(), classLoader);
+                    thread.interrupt();
+                }
+            }
+        }
+    },
+    /**
+     * Resets to the parent class loader the context class loader of the threads that still use the plugin class
+     * loader, such as pooled host threads.
+     */
+    CONTEXT_CLASS_LOADERS {
+        @Override
+        public void clean(@Nonnull Sps4jPluginClassLoader classLoader) {
+            for (Thread thread : LeakRoots.allThreads()) {
+                if (thread != Thread.currentThread() && thread.getContextClassLoader() == classLoader) {
+                    log.debug("Resetting context class loader of thread {}", thread.getName());
+                    thread.setContextClassLoader(classLoader.getParent());
+                }
+            }
+        }
+    },
+    /**
+     * Clears the thread local entries whose thread local or value was loaded by the plugin, in all threads.
+     */
+    THREAD_LOCALS {
+        @Override
+        public void clean(@Nonnull Sps4jPluginClassLoader classLoader) {
+            for (Thread thread : LeakRoots.allThreads()) {
+                final int cleared = LeakRoots.visitThreadLocals(thread, classLoader, (threadLocal, value) -> true);
+                if (cleared > 0) {
+                    log.warn("Cleared {} thread locals of thread {} left by plugin class loader {}",
+                            cleared, thread.getName(), classLoader);
+                }
+            }
+        }
+    },
+    /**
+     * Deregisters the JDBC drivers the plugin registered with {@link java.sql.DriverManager}.
+     */
+    JDBC_DRIVERS {
+        @Override
+        public void clean(@Nonnull Sps4jPluginClassLoader classLoader) throws Exception {
+            final String resource = JdbcDriverDeregistration.class.getName().replace('.', '/') + ".class";
+            final byte[] bytes;
+            try (InputStream in = JdbcDriverDeregistration.class.getClassLoader().getResourceAsStream(resource)) {
+                if (in == null) {
+                    throw new IllegalStateException("Missing class file " + resource);
+                }
+                bytes = IOUtils.toByteArray(in);
+            }
+            final Class<?> deregistration = classLoader.defineHelperClass(JdbcDriverDeregistration.class.getName(), bytes);
+            final Method deregister = deregistration.getDeclaredMethod("deregister");
+            deregister.setAccessible(true);
+            @SuppressWarnings("unchecked")
+            final List<String> drivers = (List<String>) deregister.invoke(null);
+            if (!drivers.isEmpty()) {
+                log.warn("Deregistered JDBC drivers {} left by plugin class loader {}", drivers, classLoader);
+            }
+        }
+    },
+    /**
+     * Removes the shutdown hooks likely registered by the plugin: hooks whose class it loaded, or whose context
+     * class loader is the plugin class loader.
+     */
+    SHUTDOWN_HOOKS {
+        @Override
+        public void clean(@Nonnull Sps4jPluginClassLoader classLoader) {
+            for (Thread hook : LeakRoots.shutdownHooks()) {
+                if (LeakRoots.isThreadOf(hook, classLoader)) {
+                    log.warn("Removing shutdown hook {} left by plugin class loader {}", hook.getName(), classLoader);
+                    Runtime.getRuntime().removeShutdownHook(hook);
+                }
+            }
+        }
+    },
+    /**
+     * Removes the YAML mapper cached for the plugin by {@link YamlUtils}.
+     */
+    YAML_MAPPERS {
+        @Override
+        public void clean(@Nonnull Sps4jPluginClassLoader classLoader) {
+            YamlUtils.removeYamlMapper(classLoader);
+        }
+    };
+
+    private static final List<ClassLoaderLeakCleaner> SAFE = Collections.unmodifiableList(
+            Arrays.asList(CONTEXT_CLASS_LOADERS, JDBC_DRIVERS, SHUTDOWN_HOOKS, YAML_MAPPERS));
+
+    /**
+     * Gets the cleaners that leave running threads alone: {@link #CONTEXT_CLASS_LOADERS}, {@link #JDBC_DRIVERS},
+     * {@link #SHUTDOWN_HOOKS} and {@link #YAML_MAPPERS}.
+     *
+     * @return The cleaners, in order.
+     */
+    public static List<ClassLoaderLeakCleaner> safe() {
+        return SAFE;
+    }
+
+    /**
+     * Gets all the standard cleaners, in an order where threads are stopped before their references are cleared.
+     *
+     * @return All the cleaners.
+     */
+    public static List<ClassLoaderLeakCleaner> all() {
+        return Collections.unmodifiableList(Arrays.asList(values()));
+    }
+}
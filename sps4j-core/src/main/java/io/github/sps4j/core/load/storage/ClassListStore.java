@@ -0,0 +1,116 @@
+package io.github.sps4j.core.load.storage;
+
+import io.github.sps4j.common.meta.VersionedPluginArtifact;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * A store of the classes loaded by plugins during previous runs, used to preload them on the next load.
+ * <p>
+ * Each version of a plugin has its own text file, listing one class name per line in the order the classes were
+ * defined. Files are rewritten atomically. The lists are hints only: failures are logged and classes that do not
+ * exist anymore are ignored by the preloading.
+ *
+ * @author Allan-QLB
+ */
+@Slf4j
+public class ClassListStore {
+    /**
+     * The name of the directory of the class lists stored in a repository directory by {@link #inDirectory(Path)}.
+     */
+    public static final String DEFAULT_DIR_NAME = ".sps4j-classes";
+    private static final String FILE_SUFFIX = ".classes";
+
+    @Getter
+    private final Path directory;
+
+    /**
+     * Constructs a store of class lists in the given directory.
+     *
+     * @param directory The directory of the class list files, created when a list is first written.
+     */
+    public ClassListStore(@Nonnull Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Creates a store in the {@link #DEFAULT_DIR_NAME} directory of a repository directory.
+     *
+     * @param directory The repository directory.
+     * @return The store.
+     */
+    public static ClassListStore inDirectory(@Nonnull Path directory) {
+        return new ClassListStore(directory.resolve(DEFAULT_DIR_NAME));
+    }
+
+    /**
+     * Reads the class list of a plugin version.
+     *
+     * @param artifact The plugin version.
+     * @return The class names in definition order, empty if none was recorded or the list is unreadable.
+     */
+    public List<String> read(@Nonnull VersionedPluginArtifact artifact) {
+        final Path file = file(artifact);
+        if (!Files.isRegularFile(file)) {
+            return Collections.emptyList();
+        }
+        try {
+            final List<String> classes = new ArrayList<>();
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                final String name = line.trim();
+                if (!name.isEmpty()) {
+                    classes.add(name);
+                }
+            }
+            return classes;
+        } catch (IOException e) {
+            log.warn("Ignore unreadable class list {}", file, e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Writes the class list of a plugin version, replacing the previous one.
+     *
+     * @param artifact The plugin version.
+     * @param classes  The class names in definition order.
+     */
+    public void write(@Nonnull VersionedPluginArtifact artifact, @Nonnull Collection<String> classes) {
+        final Path file = file(artifact);
+        Path tmp = null;
+        try {
+            Files.createDirectories(file.getParent());
+            tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            Files.write(tmp, new LinkedHashSet<>(classes), StandardCharsets.UTF_8);
+            try {
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            log.warn("Error write class list {}", file, e);
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException ex) {
+                    log.debug("Error delete {}", tmp, ex);
+                }
+            }
+        }
+    }
+
+    private Path file(VersionedPluginArtifact artifact) {
+        return directory.resolve(sanitize(artifact.getArtifact().getType()))
+                .resolve(sanitize(artifact.getArtifact().getName() + "-" + artifact.getVersion()) + FILE_SUFFIX);
+    }
+
+    private static String sanitize(String name) {
+        return name.replaceAll("[^A-Za-z0-9._+-]", "_");
+    }
+}
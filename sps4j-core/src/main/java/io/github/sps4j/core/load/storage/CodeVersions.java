@@ -0,0 +1,38 @@
+package io.github.sps4j.core.load.storage;
+
+import lombok.experimental.UtilityClass;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.net.URL;
+
+/**
+ * Utility class identifying the version of the code of a class, for persistent caches written by other
+ * versions not to be used.
+ *
+ * @author Allan-QLB
+ */
+@UtilityClass
+public class CodeVersions {
+
+    /**
+     * Gets the version of the code of a class: the implementation version of its package, or, when it is not
+     * packaged, e.g. in development, the modification time of its class path entry.
+     *
+     * @param type The class.
+     * @return The version.
+     */
+    public static String of(@Nonnull Class<?> type) {
+        final Package pkg = type.getPackage();
+        final String version = pkg == null ? null : pkg.getImplementationVersion();
+        if (version != null) {
+            return version;
+        }
+        try {
+            final URL location = type.getProtectionDomain().getCodeSource().getLocation();
+            return "dev-" + new File(location.toURI()).lastModified();
+        } catch (Exception e) {
+            return "dev";
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package io.github.sps4j.core.load.storage;
+
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache of the content hashes of local files, so that a file is hashed again only when its stamp changes.
+ * <p>
+ * Only the hash of the current stamp of each file is kept, and the least recently used files are evicted once
+ * the cache holds its maximum number of files.
+ *
+ * @author Allan-QLB
+ */
+@Slf4j
+public class ContentHashCache {
+    /**
+     * The maximum number of files of a cache created without a maximum.
+     */
+    public static final int DEFAULT_MAX_SIZE = 1024;
+
+    private final Map<String, StampedHash> hashes;
+
+    /**
+     * Constructs a cache of at most {@link #DEFAULT_MAX_SIZE} files.
+     */
+    public ContentHashCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Constructs a cache of at most the given number of files.
+     *
+     * @param maxSize The maximum number of files.
+     */
+    public ContentHashCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Illegal maximum size " + maxSize);
+        }
+        this.hashes = new LinkedHashMap<String, StampedHash>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, StampedHash> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Gets the SHA-256 hash of the content of a file, computing it if the file is not cached or changed.
+     *
+     * @param file The file.
+     * @return The hash, as lower case hexadecimal digits, or {@code null} if the file cannot be read.
+     */
+    @Nullable
+    public String hash(@Nonnull File file) {
+        final PackageStamp stamp = new PackageStamp(file.getAbsolutePath(), file.length(), file.lastModified());
+        synchronized (hashes) {
+            final StampedHash cached = hashes.get(stamp.getPath());
+            if (cached != null && cached.stamp.equals(stamp)) {
+                return cached.hash;
+            }
+        }
+        final String hash;
+        try {
+            hash = ContentHashes.sha256(file.toPath());
+        } catch (IOException e) {
+            log.warn("Error compute content hash of {}", file, e);
+            return null;
+        }
+        synchronized (hashes) {
+            hashes.put(stamp.getPath(), new StampedHash(stamp, hash));
+        }
+        return hash;
+    }
+
+    /**
+     * Evicts the files that are not in the given ones.
+     *
+     * @param paths The absolute paths of the files to keep.
+     */
+    public void retainAll(@Nonnull Collection<String> paths) {
+        synchronized (hashes) {
+            hashes.keySet().retainAll(paths);
+        }
+    }
+
+    /**
+     * Gets the number of files cached.
+     *
+     * @return The number of files.
+     */
+    public int size() {
+        synchronized (hashes) {
+            return hashes.size();
+        }
+    }
+
+    @AllArgsConstructor
+    private static final class StampedHash {
+        private final PackageStamp stamp;
+        private final String hash;
+    }
+}
@@ -0,0 +1,69 @@
+package io.github.sps4j.core.load.storage;
+
+import lombok.experimental.UtilityClass;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Utility class computing content hashes of package and library files.
+ *
+ * @author Allan-QLB
+ */
+@UtilityClass
+public class ContentHashes {
+    private static final String HASH_ALGORITHM = "SHA-256";
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * Computes the SHA-256 hash of the content of a file.
+     *
+     * @param file The file.
+     * @return The hash, as lower case hexadecimal digits.
+     * @throws IOException if the file cannot be read.
+     */
+    public static String sha256(@Nonnull Path file) throws IOException {
+        final MessageDigest digest = newSha256();
+        try (InputStream in = Files.newInputStream(file)) {
+            final byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Creates a SHA-256 digest, to hash content other than a single file the same way.
+     *
+     * @return The digest.
+     */
+    public static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Formats a hash as lower case hexadecimal digits.
+     *
+     * @param hash The hash.
+     * @return The hexadecimal digits.
+     */
+    public static String toHex(@Nonnull byte[] hash) {
+        final char[] hex = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            hex[2 * i] = HEX_DIGITS[(hash[i] >> 4) & 0xf];
+            hex[2 * i + 1] = HEX_DIGITS[hash[i] & 0xf];
+        }
+        return new String(hex);
+    }
+}
@@ -0,0 +1,153 @@
+package io.github.sps4j.core.load.storage;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Watches a directory tree with a {@link WatchService} and reports the files that were created, modified
+ * or deleted in it.
+ * <p>
+ * Events are coalesced: the changed files are collected until no event was received during the debounce delay,
+ * then reported at once, each file only once. Sub directories created later are watched too.
+ *
+ * @author Allan-QLB
+ */
+@Slf4j
+public class DirectoryWatcher implements Closeable {
+    private final Path directory;
+    private final long debounceMillis;
+    private final Predicate<Path> filter;
+    private final RepositoryChangeListener<Path> listener;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> watchedDirectories = new ConcurrentHashMap<>();
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    /**
+     * Starts watching a directory tree.
+     *
+     * @param directory      The root directory to watch.
+     * @param debounceMillis The delay without events after which the changes are reported.
+     * @param filter         The filter of the files to report.
+     * @param listener       The listener notified of the changes, from the watcher thread.
+     * @throws IOException if the directory cannot be watched.
+     */
+    public DirectoryWatcher(@Nonnull Path directory, long debounceMillis, @Nonnull Predicate<Path> filter,
+                            @Nonnull RepositoryChangeListener<Path> listener) throws IOException {
+        if (debounceMillis <= 0) {
+            throw new IllegalArgumentException("debounceMillis must be positive: " + debounceMillis);
+        }
+        this.directory = directory;
+        this.debounceMillis = debounceMillis;
+        this.filter = filter;
+        this.listener = listener;
+        this.watchService = directory.getFileSystem().newWatchService();
+        try {
+            registerTree(directory, null);
+        } catch (IOException e) {
+            watchService.close();
+            throw e;
+        }
+        this.thread = new Thread(this::run, "sps4j-repository-watcher");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        watchService.close();
+        if (thread != Thread.currentThread()) {
+            thread.interrupt();
+        }
+    }
+
+    private void run() {
+        Set<Path> changed = new LinkedHashSet<>();
+        boolean overflow = false;
+        while (running) {
+            final WatchKey key;
+            try {
+                key = changed.isEmpty() && !overflow
+                        ? watchService.take() : watchService.poll(debounceMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ClosedWatchServiceException e) {
+                break;
+            }
+            if (key == null) {
+                notifyListener(changed, overflow);
+                changed = new LinkedHashSet<>();
+                overflow = false;
+                continue;
+            }
+            final Path dir = watchedDirectories.get(key);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == OVERFLOW || dir == null) {
+                    overflow = true;
+                    continue;
+                }
+                final Path child = dir.resolve((Path) event.context());
+                if (event.kind() == ENTRY_CREATE && Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                    try {
+                        registerTree(child, changed);
+                    } catch (IOException e) {
+                        log.warn("Error watch directory {}", child, e);
+                        overflow = true;
+                    }
+                } else if (filter.test(child)) {
+                    changed.add(child);
+                }
+            }
+            if (!key.reset()) {
+                watchedDirectories.remove(key);
+            }
+        }
+    }
+
+    private void notifyListener(Set<Path> changed, boolean overflow) {
+        try {
+            if (overflow) {
+                listener.onOverflow();
+            } else {
+                listener.onChanged(changed);
+            }
+        } catch (Exception e) {
+            log.error("Error handle changes of directory {}", directory, e);
+        }
+    }
+
+    /**
+     * Registers a directory and its sub directories, collecting the matching files already in them,
+     * which may have been created before the directory was watched.
+     */
+    private void registerTree(Path root, Set<Path> existingFiles) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                watchedDirectories.put(dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (existingFiles != null && filter.test(file)) {
+                    existingFiles.add(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -2,57 +2,131 @@ package io.github.sps4j.core.load.storage;
 
 import lombok.SneakyThrows;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.URL;
+import java.util.concurrent.Semaphore;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
 /**
  * An implementation of {@link PluginPackage} that wraps a JAR file.
+ * The JAR file is opened on the first access to its content. Packages sharing a {@link Semaphore}
+ * take a permit while their JAR file is open, which bounds the number of JAR files open at the same time.
  *
  * @author Allan-QLB
  */
 public class JarPackage implements PluginPackage {
+    static final String BASE_URL_PREFIX = "file:///";
     private final File file;
-    private final JarFile jarFile;
+    @Nullable
+    private final Semaphore openPermits;
+    private JarFile jarFile;
 
     /**
      * Constructs a new JarPackage from a {@link File}.
      *
      * @param file The JAR file.
      */
-    @SneakyThrows
     public JarPackage(File file) {
+        this(file, null);
+    }
+
+    /**
+     * Constructs a new JarPackage from a {@link File}, limiting the number of open JAR files.
+     *
+     * @param file        The JAR file.
+     * @param openPermits The permits shared by the packages of a repository, or {@code null} for no limit.
+     */
+    public JarPackage(File file, @Nullable Semaphore openPermits) {
         this.file = file;
-        this.jarFile = new JarFile(file);
+        this.openPermits = openPermits;
     }
 
 
     @Override
     public InputStream getResource(String resource) throws IOException {
-        final JarEntry ent = jarFile.getJarEntry(resource);
+        final JarFile jar = open();
+        final JarEntry ent = jar.getJarEntry(resource);
         if (ent == null) {
             throw new IOException("jar file " + file + " missing item " + resource);
         }
-        return jarFile.getInputStream(ent);
+        return jar.getInputStream(ent);
     }
 
     @Override
+    @SneakyThrows
     public boolean contains(String resource) {
-        return jarFile.getJarEntry(resource) != null;
+        return open().getJarEntry(resource) != null;
+    }
+
+    @Override
+    public PackageStamp getStamp() {
+        return new PackageStamp(file.getAbsolutePath(), file.length(), file.lastModified());
     }
 
 
     @Override
-    @SneakyThrows
     public String getBaseUrl() {
-        return new URL("file:///"+ file.getAbsolutePath()).toString();
+        return toBaseUrl(file);
+    }
+
+    /**
+     * Gets the JAR file of the package.
+     *
+     * @return The JAR file.
+     */
+    protected File getFile() {
+        return file;
+    }
+
+    /**
+     * Gets the base URL of the package of a JAR file.
+     *
+     * @param file The JAR file.
+     * @return The base URL, as returned by {@link #getBaseUrl()}.
+     */
+    @SneakyThrows
+    public static String toBaseUrl(File file) {
+        return new URL(BASE_URL_PREFIX + file.getAbsolutePath()).toString();
     }
 
     @Override
-    public void close() throws Exception {
-        jarFile.close();
+    public synchronized void close() throws Exception {
+        if (jarFile != null) {
+            try {
+                jarFile.close();
+            } finally {
+                jarFile = null;
+                if (openPermits != null) {
+                    openPermits.release();
+                }
+            }
+        }
+    }
+
+    private synchronized JarFile open() throws IOException {
+        if (jarFile == null) {
+            if (openPermits != null) {
+                try {
+                    openPermits.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("interrupted while waiting to open " + file);
+                }
+            }
+            try {
+                jarFile = new JarFile(file);
+            } catch (IOException | RuntimeException e) {
+                if (openPermits != null) {
+                    openPermits.release();
+                }
+                throw e;
+            }
+        }
+        return jarFile;
     }
 }
@@ -1,33 +1,184 @@
 package io.github.sps4j.core.load.storage;
 
-import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.SneakyThrows;
 import org.apache.commons.io.FileUtils;
 
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.Closeable;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * An implementation of {@link PluginRepository} that scans a local directory for JAR files.
- * Each found JAR file is treated as a {@link PluginPackage}.
+ * Each found JAR file is treated as a {@link PluginPackage}, which opens the file only when it is read.
+ * The number of JAR files open at the same time can be bounded, and the directory can be watched
+ * for added, modified and removed JAR files.
  *
  * @author Allan-QLB
  */
-@AllArgsConstructor
-public class LocalDirJarPluginPackageRepository implements PluginRepository {
+public class LocalDirJarPluginPackageRepository implements WatchablePluginRepository {
     private static final String FILE_PROTOCOL = "file://";
     private static final String FILE_PROTOCOL_ALT = "file:";
     private static final String JAR = "jar";
+    private static final String JAR_SUFFIX = "." + JAR;
     private final String baseUrl;
+    @Getter
+    private final PluginCatalog catalog;
+    @Nullable
+    private final Semaphore openPermits;
+    private final boolean mappedPackages;
 
     /**
-     * Lists all JAR files in the directory path of the {@code baseUrl} and wraps them as {@link JarPackage} objects.
+     * Constructs a repository without catalog, every JAR file is read on each scan.
+     *
+     * @param baseUrl The directory path or "file:" URL of the repository.
+     */
+    public LocalDirJarPluginPackageRepository(String baseUrl) {
+        this(baseUrl, (PluginCatalog) null);
+    }
+
+    /**
+     * Constructs a repository, optionally keeping a {@link PluginCatalog} in the
+     * {@link PluginCatalog#DEFAULT_FILE_NAME} file of the directory.
+     *
+     * @param baseUrl    The directory path or "file:" URL of the repository.
+     * @param useCatalog Whether to keep a catalog of the plugin descriptors found in the JAR files.
+     */
+    public LocalDirJarPluginPackageRepository(String baseUrl, boolean useCatalog) {
+        this.baseUrl = baseUrl;
+        this.catalog = useCatalog ? PluginCatalog.inDirectory(getDirectory().toPath(), false) : null;
+        this.openPermits = null;
+        this.mappedPackages = false;
+    }
+
+    /**
+     * Constructs a repository using the given catalog.
+     *
+     * @param baseUrl The directory path or "file:" URL of the repository.
+     * @param catalog The catalog of the plugin descriptors, or {@code null} for none.
+     */
+    public LocalDirJarPluginPackageRepository(String baseUrl, @Nullable PluginCatalog catalog) {
+        this(baseUrl, catalog, 0);
+    }
+
+    /**
+     * Constructs a repository using the given catalog and bounding the number of open JAR files.
+     *
+     * @param baseUrl         The directory path or "file:" URL of the repository.
+     * @param catalog         The catalog of the plugin descriptors, or {@code null} for none.
+     * @param maxOpenPackages The maximum number of JAR files of the repository open at the same time,
+     *                        or {@code 0} for no limit.
+     */
+    public LocalDirJarPluginPackageRepository(String baseUrl, @Nullable PluginCatalog catalog, int maxOpenPackages) {
+        this(baseUrl, catalog, maxOpenPackages, false);
+    }
+
+    /**
+     * Constructs a repository using the given catalog, bounding the number of open JAR files,
+     * and optionally memory-mapping the JAR files.
+     *
+     * @param baseUrl         The directory path or "file:" URL of the repository.
+     * @param catalog         The catalog of the plugin descriptors, or {@code null} for none.
+     * @param maxOpenPackages The maximum number of JAR files of the repository open at the same time,
+     *                        or {@code 0} for no limit.
+     * @param mappedPackages  Whether to read the JAR files as {@link MappedJarPackage}s.
+     */
+    public LocalDirJarPluginPackageRepository(String baseUrl, @Nullable PluginCatalog catalog, int maxOpenPackages,
+                                              boolean mappedPackages) {
+        if (maxOpenPackages < 0) {
+            throw new IllegalArgumentException("maxOpenPackages must not be negative: " + maxOpenPackages);
+        }
+        this.baseUrl = baseUrl;
+        this.catalog = catalog;
+        this.openPermits = maxOpenPackages == 0 ? null : new Semaphore(maxOpenPackages, true);
+        this.mappedPackages = mappedPackages;
+    }
+
+    /**
+     * Lists all JAR files in the directory path of the {@code baseUrl} and wraps them as {@link JarPackage} objects,
+     * or {@link MappedJarPackage} objects if the repository maps them.
      * The path can be a standard file path or a URL with a "file://" or "file:" scheme.
      *
      * @return A list of {@link PluginPackage} objects representing the found JAR files.
      */
     @Override
     public List<PluginPackage> listPackages() {
+        try (Stream<PluginPackage> packages = streamPackages()) {
+            return packages.collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Streams the JAR files in the directory path of the {@code baseUrl} as they are found while walking
+     * the directory, in the same order as {@link #listPackages()}.
+     *
+     * @return A stream of {@link PluginPackage} objects representing the found JAR files.
+     */
+    @Override
+    @SneakyThrows
+    public Stream<PluginPackage> streamPackages() {
+        return FileUtils.streamFiles(getDirectory(), true, JAR)
+                .map(this::newPackage);
+    }
+
+    @Override
+    public PluginPackage getPackage(@Nonnull String baseUrl) {
+        if (!baseUrl.startsWith(JarPackage.BASE_URL_PREFIX)) {
+            return null;
+        }
+        final File file = new File(baseUrl.substring(JarPackage.BASE_URL_PREFIX.length()));
+        if (!isJar(file.toPath()) || !file.isFile() || !JarPackage.toBaseUrl(file).equals(baseUrl)) {
+            return null;
+        }
+        return newPackage(file);
+    }
+
+    private PluginPackage newPackage(File file) {
+        return mappedPackages ? new MappedJarPackage(file, openPermits) : new JarPackage(file, openPermits);
+    }
+
+    /**
+     * Watches the directory of the repository for added, modified and removed JAR files.
+     *
+     * @param debounceMillis The delay without changes after which the changes collected so far are notified.
+     * @param listener       The listener notified with the base URLs of the changed JAR files.
+     * @return The watcher, stopping the watch when closed.
+     * @throws IOException if the directory cannot be watched.
+     */
+    @Override
+    public Closeable watch(long debounceMillis, @Nonnull RepositoryChangeListener<String> listener) throws IOException {
+        return new DirectoryWatcher(getDirectory().toPath(), debounceMillis, LocalDirJarPluginPackageRepository::isJar,
+                new RepositoryChangeListener<Path>() {
+                    @Override
+                    public void onChanged(@Nonnull Set<Path> changed) {
+                        final Set<String> baseUrls = new LinkedHashSet<>();
+                        for (Path path : changed) {
+                            baseUrls.add(JarPackage.toBaseUrl(path.toFile()));
+                        }
+                        listener.onChanged(baseUrls);
+                    }
+
+                    @Override
+                    public void onOverflow() {
+                        listener.onOverflow();
+                    }
+                });
+    }
+
+    private static boolean isJar(Path path) {
+        return path.getFileName() != null && path.getFileName().toString().endsWith(JAR_SUFFIX);
+    }
+
+    private File getDirectory() {
         String url = baseUrl;
         if (baseUrl.startsWith(FILE_PROTOCOL)) {
             url = url.substring(FILE_PROTOCOL.length());
@@ -35,8 +186,6 @@ public class LocalDirJarPluginPackageRepository implements PluginRepository {
         if (baseUrl.startsWith(FILE_PROTOCOL_ALT)) {
             url = url.substring(FILE_PROTOCOL_ALT.length());
         }
-        return FileUtils.listFiles(new File(url), new String[]{JAR}, true)
-                .stream().map(JarPackage::new).collect(Collectors.toList());
-
+        return new File(url);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,83 @@
+package io.github.sps4j.core.load.storage;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Semaphore;
+
+/**
+ * An implementation of {@link PluginPackage} that memory-maps a JAR file.
+ * The JAR file is mapped and its central directory parsed on the first access to its content. Resources stored
+ * without compression are read straight from the mapping, and compressed ones are inflated without intermediate
+ * streams. The mapping does not keep the file open, so it does not take an open permit.
+ * <p>
+ * JAR files that cannot be mapped, such as ZIP64 archives, are read as a {@link JarPackage}.
+ *
+ * @author Allan-QLB
+ */
+@Slf4j
+public class MappedJarPackage extends JarPackage {
+    private ZipDirectory directory;
+    private boolean unmappable;
+
+    /**
+     * Constructs a new MappedJarPackage from a {@link File}.
+     *
+     * @param file The JAR file.
+     */
+    public MappedJarPackage(File file) {
+        super(file);
+    }
+
+    /**
+     * Constructs a new MappedJarPackage from a {@link File}, limiting the number of open JAR files
+     * when it cannot be mapped.
+     *
+     * @param file        The JAR file.
+     * @param openPermits The permits shared by the packages of a repository, or {@code null} for no limit.
+     */
+    public MappedJarPackage(File file, @Nullable Semaphore openPermits) {
+        super(file, openPermits);
+    }
+
+    @Override
+    public InputStream getResource(String resource) throws IOException {
+        final ZipDirectory zip = map();
+        if (zip == null) {
+            return super.getResource(resource);
+        }
+        final ZipDirectory.Entry entry = zip.entries().get(resource);
+        if (entry == null) {
+            throw new IOException("jar file " + getFile() + " missing item " + resource);
+        }
+        return zip.open(entry);
+    }
+
+    @Override
+    public boolean contains(String resource) {
+        final ZipDirectory zip = map();
+        return zip == null ? super.contains(resource) : zip.entries().containsKey(resource);
+    }
+
+    @Override
+    public synchronized void close() throws Exception {
+        directory = null;
+        super.close();
+    }
+
+    @Nullable
+    private synchronized ZipDirectory map() {
+        if (directory == null && !unmappable) {
+            try {
+                directory = ZipDirectory.map(getFile());
+            } catch (IOException e) {
+                log.debug("Unable to map {}, reading it as a JAR file", getFile(), e);
+                unmappable = true;
+            }
+        }
+        return directory;
+    }
+}
@@ -0,0 +1,34 @@
+package io.github.sps4j.core.load.storage;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Identifies the content of a plugin package by its file path, size and modification time,
+ * which can be read without opening the package.
+ *
+ * @author Allan-QLB
+ */
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+@ToString
+public class PackageStamp {
+    /**
+     * The absolute path of the package file.
+     */
+    @Nonnull
+    private final String path;
+    /**
+     * The size of the package file in bytes.
+     */
+    private final long size;
+    /**
+     * The last modification time of the package file, in milliseconds since the epoch.
+     */
+    private final long lastModified;
+}
@@ -0,0 +1,227 @@
+package io.github.sps4j.core.load.storage;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import io.github.sps4j.common.meta.PluginDesc;
+import io.github.sps4j.common.utils.YamlUtils;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A persistent cache of the plugin descriptors found in the packages of a repository.
+ * <p>
+ * Entries are keyed by the {@link PackageStamp} of a package, that is its path, size and modification time,
+ * and optionally by the SHA-256 hash of its content. A package whose entry is still valid does not have to be
+ * opened nor its descriptor parsed again. The catalog is stored as a YAML file, which is rewritten atomically
+ * by {@link #save()} when entries changed. A catalog written by another version of SPS4J is ignored, as the
+ * descriptors it recorded may have been read differently.
+ *
+ * @author Allan-QLB
+ */
+@Slf4j
+public class PluginCatalog {
+    /**
+     * The name of the catalog file stored in a repository directory by {@link #inDirectory(Path, boolean)}.
+     */
+    public static final String DEFAULT_FILE_NAME = ".sps4j-catalog.yaml";
+    private static final int FORMAT_VERSION = 1;
+    private static final String FRAMEWORK_VERSION = CodeVersions.of(PluginCatalog.class) + "/"
+            + CodeVersions.of(PluginDesc.class);
+
+    @Getter
+    private final Path file;
+    @Getter
+    private final boolean verifyContentHash;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<PackageStamp, String> computedHashes = new ConcurrentHashMap<>();
+    private final AtomicBoolean dirty = new AtomicBoolean(false);
+
+    /**
+     * Constructs a catalog stored in the given file, reading its entries if the file exists.
+     * An unreadable catalog file is ignored, every package is then read again.
+     *
+     * @param file              The catalog file.
+     * @param verifyContentHash Whether to also compare the content hash of the packages, which requires reading them fully.
+     */
+    public PluginCatalog(@Nonnull Path file, boolean verifyContentHash) {
+        this.file = file;
+        this.verifyContentHash = verifyContentHash;
+        read();
+    }
+
+    /**
+     * Creates a catalog stored in the {@link #DEFAULT_FILE_NAME} file of a repository directory.
+     *
+     * @param directory         The repository directory.
+     * @param verifyContentHash Whether to also compare the content hash of the packages.
+     * @return The catalog.
+     */
+    public static PluginCatalog inDirectory(@Nonnull Path directory, boolean verifyContentHash) {
+        return new PluginCatalog(directory.resolve(DEFAULT_FILE_NAME), verifyContentHash);
+    }
+
+    /**
+     * Gets the descriptors recorded for a package, if its entry is still valid.
+     *
+     * @param stamp The stamp of the package.
+     * @return The recorded descriptors, possibly empty if the package has no descriptor,
+     * or {@code null} if the package has to be read.
+     */
+    @Nullable
+    public List<PluginDesc> lookup(@Nonnull PackageStamp stamp) {
+        final Entry entry = entries.get(stamp.getPath());
+        if (entry == null || entry.getSize() != stamp.getSize() || entry.getLastModified() != stamp.getLastModified()) {
+            return null;
+        }
+        if (verifyContentHash) {
+            final String hash = contentHash(stamp);
+            if (hash == null || !hash.equals(entry.getContentHash())) {
+                return null;
+            }
+            computedHashes.remove(stamp);
+        }
+        return entry.getDescriptors();
+    }
+
+    /**
+     * Records the descriptors read from a package.
+     *
+     * @param stamp       The stamp of the package.
+     * @param descriptors The descriptors of the package, empty if it has none.
+     */
+    public void record(@Nonnull PackageStamp stamp, @Nonnull List<PluginDesc> descriptors) {
+        final String hash = verifyContentHash ? contentHash(stamp) : null;
+        computedHashes.remove(stamp);
+        entries.put(stamp.getPath(), new Entry(stamp.getPath(), stamp.getSize(), stamp.getLastModified(), hash,
+                new ArrayList<>(descriptors)));
+        dirty.set(true);
+    }
+
+    /**
+     * Removes the entries of the packages that are not in the given paths anymore.
+     *
+     * @param paths The paths of the packages currently in the repository.
+     */
+    public void retainAll(@Nonnull Collection<String> paths) {
+        if (entries.keySet().retainAll(new HashSet<>(paths))) {
+            dirty.set(true);
+        }
+    }
+
+    /**
+     * Writes the catalog file if entries changed since it was read or last saved.
+     * The file is written to a temporary file first and then moved over the previous one.
+     * Failures are logged, the catalog being a cache only.
+     */
+    public synchronized void save() {
+        if (!dirty.getAndSet(false)) {
+            return;
+        }
+        Path tmp = null;
+        try {
+            final Path dir = file.toAbsolutePath().getParent();
+            Files.createDirectories(dir);
+            tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+            final List<Entry> sorted = new ArrayList<>(entries.values());
+            sorted.sort(Comparator.comparing(Entry::getPath));
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                YamlUtils.getYamlMapper().writeValue(out, new Content(FORMAT_VERSION, FRAMEWORK_VERSION, sorted));
+            }
+            try {
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            dirty.set(true);
+            log.warn("Error write plugin catalog {}", file, e);
+            deleteQuietly(tmp);
+        }
+    }
+
+    private void read() {
+        if (!Files.isRegularFile(file)) {
+            return;
+        }
+        try (InputStream in = Files.newInputStream(file)) {
+            final Content content = YamlUtils.getYamlMapper().readerFor(new TypeReference<Content>() {
+            }).readValue(in);
+            if (content == null || content.getVersion() != FORMAT_VERSION || content.getEntries() == null) {
+                log.info("Ignore plugin catalog {} of another format", file);
+                return;
+            }
+            if (!FRAMEWORK_VERSION.equals(content.getFrameworkVersion())) {
+                log.info("Ignore plugin catalog {} of SPS4J {}", file, content.getFrameworkVersion());
+                return;
+            }
+            for (Entry entry : content.getEntries()) {
+                entries.put(entry.getPath(), entry);
+            }
+        } catch (Exception e) {
+            log.warn("Ignore unreadable plugin catalog {}", file, e);
+        }
+    }
+
+    @Nullable
+    private String contentHash(PackageStamp stamp) {
+        return computedHashes.computeIfAbsent(stamp, s -> {
+            try {
+                return ContentHashes.sha256(Paths.get(s.getPath()));
+            } catch (IOException e) {
+                log.warn("Error compute content hash of {}", s.getPath(), e);
+                return null;
+            }
+        });
+    }
+
+    private static void deleteQuietly(@Nullable Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.debug("Error delete {}", path, e);
+        }
+    }
+
+    /**
+     * The content of the catalog file.
+     */
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    static class Content {
+        private int version;
+        private String frameworkVersion;
+        private List<Entry> entries;
+    }
+
+    /**
+     * The catalog entry of a package.
+     */
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    static class Entry {
+        private String path;
+        private long size;
+        private long lastModified;
+        private String contentHash;
+        private List<PluginDesc> descriptors;
+    }
+}
@@ -1,5 +1,6 @@
 package io.github.sps4j.core.load.storage;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -35,4 +36,15 @@ public interface PluginPackage extends AutoCloseable {
      */
     boolean contains(String resource);
 
+    /**
+     * Gets the stamp identifying the current content of the package, without opening it.
+     * Packages with a stamp can be skipped by a {@link PluginCatalog} when they did not change.
+     *
+     * @return The stamp of the package, or {@code null} if it cannot be determined.
+     */
+    @Nullable
+    default PackageStamp getStamp() {
+        return null;
+    }
+
 }
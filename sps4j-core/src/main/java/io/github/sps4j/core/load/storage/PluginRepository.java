@@ -1,6 +1,10 @@
 package io.github.sps4j.core.load.storage;
 
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * An interface for storages that can hold plugin packages.
@@ -16,4 +20,51 @@ public interface PluginRepository {
      */
     List<PluginPackage> listPackages();
 
+    /**
+     * Streams all available plugin packages. The packages are read and closed as the stream is consumed,
+     * so implementations should create them lazily rather than listing them upfront.
+     * The stream must be closed after use.
+     *
+     * @return A stream of the {@link PluginPackage} objects found at the repository.
+     */
+    default Stream<PluginPackage> streamPackages() {
+        return listPackages().stream();
+    }
+
+    /**
+     * Gets the package with the given base URL.
+     * <p>
+     * The default implementation looks for the package among all the packages of the repository.
+     *
+     * @param baseUrl The base URL of the package, as returned by {@link PluginPackage#getBaseUrl()}.
+     * @return The package, or {@code null} if the repository does not contain it anymore.
+     */
+    @Nullable
+    default PluginPackage getPackage(@Nonnull String baseUrl) {
+        try (Stream<PluginPackage> packages = streamPackages()) {
+            for (Iterator<PluginPackage> it = packages.iterator(); it.hasNext(); ) {
+                final PluginPackage pack = it.next();
+                if (baseUrl.equals(pack.getBaseUrl())) {
+                    return pack;
+                }
+                try {
+                    pack.close();
+                } catch (Exception e) {
+                    // the package was not read
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the catalog caching the plugin descriptors of the packages of this repository.
+     *
+     * @return The catalog, or {@code null} if the packages have to be read on every scan.
+     */
+    @Nullable
+    default PluginCatalog getCatalog() {
+        return null;
+    }
+
 }
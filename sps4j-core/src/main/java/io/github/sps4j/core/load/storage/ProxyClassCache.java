@@ -0,0 +1,226 @@
+package io.github.sps4j.core.load.storage;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.*;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache of the proxy classes generated for plugins, kept on disk across loads and restarts.
+ * <p>
+ * Entries are keyed by the content hashes of the JAR files of the class loader of a plugin, the plugin class name
+ * and a variant naming how the proxy was generated, e.g. the framework version. A changed plugin JAR file thus gets
+ * a new entry instead of a stale proxy. Plugins loaded from other than local JAR files are not cached.
+ * Each entry is a file holding the class files of the proxy and its auxiliary classes, written atomically, with
+ * a description of the types outside these JAR files the proxy depends on, for the caller to check them.
+ * The content hashes of the JAR files are kept in memory in a bounded {@link ContentHashCache}.
+ * The cache is a hint only: failures are logged and unreadable entries are treated as missing.
+ *
+ * @author Allan-QLB
+ */
+@Slf4j
+public class ProxyClassCache {
+    /**
+     * The name of the directory of the cache created in a repository directory by {@link #inDirectory(Path)}.
+     */
+    public static final String DEFAULT_DIR_NAME = ".sps4j-proxies";
+    private static final String FILE_SUFFIX = ".proxy";
+    private static final int FORMAT_VERSION = 2;
+
+    @Getter
+    private final Path directory;
+    private final ContentHashCache contentHashes = new ContentHashCache();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Constructs a cache in the given directory.
+     *
+     * @param directory The directory of the cache files, created when an entry is first written.
+     */
+    public ProxyClassCache(@Nonnull Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Creates a cache in the {@link #DEFAULT_DIR_NAME} directory of a repository directory.
+     *
+     * @param directory The repository directory.
+     * @return The cache.
+     */
+    public static ProxyClassCache inDirectory(@Nonnull Path directory) {
+        return new ProxyClassCache(directory.resolve(DEFAULT_DIR_NAME));
+    }
+
+    /**
+     * Computes the key of the proxy of a plugin class.
+     *
+     * @param className The plugin class name.
+     * @param classPath The URLs the plugin class and its super types are loaded from.
+     * @param variant   How the proxy is generated, entries of different variants are distinct.
+     * @return The key, or {@code null} if the class path is not only made of local JAR files.
+     */
+    @Nullable
+    public String key(@Nonnull String className, @Nonnull List<URL> classPath, @Nonnull String variant) {
+        final MessageDigest digest = ContentHashes.newSha256();
+        digest.update((className + '\n' + variant + '\n').getBytes(StandardCharsets.UTF_8));
+        for (URL url : classPath) {
+            final File file = toFile(url);
+            if (file == null || !file.isFile()) {
+                return null;
+            }
+            final String hash = contentHashes.hash(file);
+            if (hash == null) {
+                return null;
+            }
+            digest.update((hash + '\n').getBytes(StandardCharsets.UTF_8));
+        }
+        return ContentHashes.toHex(digest.digest());
+    }
+
+    /**
+     * Reads a cached proxy.
+     *
+     * @param key The key of the proxy.
+     * @return The entry, or {@code null} if not cached.
+     */
+    @Nullable
+    public Entry read(@Nonnull String key) {
+        final Path file = file(key);
+        if (!Files.isRegularFile(file)) {
+            misses.incrementAndGet();
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                misses.incrementAndGet();
+                return null;
+            }
+            final int count = in.readInt();
+            final Map<String, byte[]> types = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                final String name = in.readUTF();
+                final byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                types.put(name, bytes);
+            }
+            final int dependencyCount = in.readInt();
+            final Map<String, String> dependencies = new LinkedHashMap<>();
+            for (int i = 0; i < dependencyCount; i++) {
+                dependencies.put(in.readUTF(), in.readUTF());
+            }
+            hits.incrementAndGet();
+            return new Entry(types, dependencies);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Ignore unreadable proxy cache entry {}", file, e);
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * Writes a proxy, replacing the cached one.
+     *
+     * @param key   The key of the proxy.
+     * @param entry The proxy.
+     */
+    public void write(@Nonnull String key, @Nonnull Entry entry) {
+        final Path file = file(key);
+        Path tmp = null;
+        try {
+            Files.createDirectories(directory);
+            tmp = Files.createTempFile(directory, key, ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(entry.types.size());
+                for (Map.Entry<String, byte[]> type : entry.types.entrySet()) {
+                    out.writeUTF(type.getKey());
+                    out.writeInt(type.getValue().length);
+                    out.write(type.getValue());
+                }
+                out.writeInt(entry.dependencies.size());
+                for (Map.Entry<String, String> dependency : entry.dependencies.entrySet()) {
+                    out.writeUTF(dependency.getKey());
+                    out.writeUTF(dependency.getValue());
+                }
+            }
+            try {
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            log.warn("Error write proxy cache entry {}", file, e);
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException ex) {
+                    log.debug("Error delete {}", tmp, ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the number of reads that found a cached proxy.
+     *
+     * @return The number of cache hits.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Gets the number of reads that found no usable cached proxy.
+     *
+     * @return The number of cache misses.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private Path file(String key) {
+        return directory.resolve(key + FILE_SUFFIX);
+    }
+
+    /**
+     * A cached proxy.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static final class Entry {
+        /**
+         * The class files by class name, the proxy class first.
+         */
+        @Nonnull
+        private final Map<String, byte[]> types;
+        /**
+         * The types outside the JAR files of the key the proxy depends on, by name, with a description of each
+         * whose change invalidates the proxy.
+         */
+        @Nonnull
+        private final Map<String, String> dependencies;
+    }
+
+    @Nullable
+    private static File toFile(URL url) {
+        if (!"file".equals(url.getProtocol())) {
+            return null;
+        }
+        try {
+            return new File(url.toURI());
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package io.github.sps4j.core.load.storage;
+
+import javax.annotation.Nonnull;
+import java.util.Set;
+
+/**
+ * A listener notified of the changes of the packages of a watched repository.
+ *
+ * @param <T> The type identifying the changed packages.
+ * @author Allan-QLB
+ */
+public interface RepositoryChangeListener<T> {
+
+    /**
+     * Called when packages were added, modified or removed.
+     *
+     * @param changed The changed packages.
+     */
+    void onChanged(@Nonnull Set<T> changed);
+
+    /**
+     * Called when changes were lost, for instance because too many events happened at once.
+     * Every package of the repository should then be considered as changed.
+     */
+    void onOverflow();
+}
@@ -0,0 +1,25 @@
+package io.github.sps4j.core.load.storage;
+
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A {@link PluginRepository} able to notify the changes of its packages, so that only the changed packages
+ * have to be read again.
+ *
+ * @author Allan-QLB
+ */
+public interface WatchablePluginRepository extends PluginRepository {
+
+    /**
+     * Starts watching the packages of the repository.
+     *
+     * @param debounceMillis The delay without changes after which the changes collected so far are notified.
+     * @param listener       The listener notified with the base URLs of the changed packages,
+     *                       as returned by {@link PluginPackage#getBaseUrl()}.
+     * @return A handle stopping the watch when closed.
+     * @throws IOException if the repository cannot be watched.
+     */
+    Closeable watch(long debounceMillis, @Nonnull RepositoryChangeListener<String> listener) throws IOException;
+}
@@ -0,0 +1,295 @@
+package io.github.sps4j.core.load.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+
+/**
+ * The central directory of a ZIP archive held in a {@link ByteBuffer}, such as a memory-mapped JAR file
+ * or a JAR file stored in another one, giving access to the entries without copying the archive.
+ * <p>
+ * Only {@link ZipEntry#STORED} and {@link ZipEntry#DEFLATED} entries are supported, and ZIP64 archives are not.
+ * <p>
+ * A memory-mapped archive does not keep its file open, and is unmapped when the directory is garbage collected.
+ *
+ * @author Allan-QLB
+ */
+public final class ZipDirectory {
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int CENTRAL_SIGNATURE = 0x02014b50;
+    private static final int LOCAL_SIGNATURE = 0x04034b50;
+    private static final int END_SIZE = 22;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+
+    private final ByteBuffer data;
+    private final Map<String, Entry> entries;
+
+    private ZipDirectory(ByteBuffer data, Map<String, Entry> entries) {
+        this.data = data;
+        this.entries = entries;
+    }
+
+    /**
+     * Reads the central directory of an archive.
+     *
+     * @param data The archive content; it is not copied.
+     * @return The directory.
+     * @throws IOException if the archive is not a supported ZIP archive.
+     */
+    public static ZipDirectory read(ByteBuffer data) throws IOException {
+        final ByteBuffer zip = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        final int end = findEnd(zip);
+        final int count = zip.getShort(end + 10) & 0xFFFF;
+        final long size = zip.getInt(end + 12) & 0xFFFFFFFFL;
+        final long offset = zip.getInt(end + 16) & 0xFFFFFFFFL;
+        if (offset == ZIP64_MAGIC || size == ZIP64_MAGIC) {
+            throw new IOException("ZIP64 archives are not supported");
+        }
+        // data prepended to the archive, e.g. a launch script, shifts all offsets
+        final long shift = end - size - offset;
+        final Map<String, Entry> entries = new HashMap<>(count * 2);
+        int pos = (int) (end - size);
+        for (int i = 0; i < count; i++) {
+            if (zip.getInt(pos) != CENTRAL_SIGNATURE) {
+                throw new IOException("Invalid central directory");
+            }
+            final int method = zip.getShort(pos + 10) & 0xFFFF;
+            final long compressedSize = zip.getInt(pos + 20) & 0xFFFFFFFFL;
+            final long uncompressedSize = zip.getInt(pos + 24) & 0xFFFFFFFFL;
+            final int nameLength = zip.getShort(pos + 28) & 0xFFFF;
+            final int extraLength = zip.getShort(pos + 30) & 0xFFFF;
+            final int commentLength = zip.getShort(pos + 32) & 0xFFFF;
+            final long localHeader = (zip.getInt(pos + 42) & 0xFFFFFFFFL) + shift;
+            final String name = readName(zip, pos + CENTRAL_HEADER_SIZE, nameLength);
+            entries.put(name, new Entry(method, compressedSize, uncompressedSize, localHeader));
+            pos += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+        }
+        return new ZipDirectory(zip, entries);
+    }
+
+    /**
+     * Memory-maps an archive file and reads its central directory.
+     *
+     * @param file The archive file.
+     * @return The directory.
+     * @throws IOException if the file cannot be mapped or is not a supported ZIP archive.
+     */
+    public static ZipDirectory map(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Gets the entries of the archive.
+     *
+     * @return The entries by name.
+     */
+    public Map<String, Entry> entries() {
+        return entries;
+    }
+
+    /**
+     * Gets the content of an entry, without copying it if it is {@link ZipEntry#STORED}.
+     *
+     * @param entry The entry.
+     * @return The uncompressed content.
+     * @throws IOException if the entry cannot be read.
+     */
+    public ByteBuffer content(Entry entry) throws IOException {
+        return entry.method == ZipEntry.STORED ? slice(entry) : ByteBuffer.wrap(read(entry));
+    }
+
+    /**
+     * Opens the content of an entry, without copying it if it is {@link ZipEntry#STORED}.
+     *
+     * @param entry The entry.
+     * @return The stream of the uncompressed content.
+     * @throws IOException if the entry cannot be read.
+     */
+    public InputStream open(Entry entry) throws IOException {
+        return new BufferInputStream(content(entry));
+    }
+
+    /**
+     * Gets the raw content of a {@link ZipEntry#STORED} entry, without copying it.
+     *
+     * @param entry The entry.
+     * @return The content.
+     * @throws IOException if the entry is compressed or its header is invalid.
+     */
+    public ByteBuffer slice(Entry entry) throws IOException {
+        if (entry.method != ZipEntry.STORED) {
+            throw new IOException("Entry is compressed");
+        }
+        final ByteBuffer content = data.duplicate();
+        final int start = dataOffset(entry);
+        // Buffer methods are called on Buffer, as ByteBuffer overrides them only since Java 9
+        ((Buffer) content).limit((int) (start + entry.compressedSize));
+        ((Buffer) content).position(start);
+        return content.slice();
+    }
+
+    /**
+     * Reads the content of an entry.
+     *
+     * @param entry The entry.
+     * @return The uncompressed content.
+     * @throws IOException if the entry cannot be read.
+     */
+    public byte[] read(Entry entry) throws IOException {
+        final ByteBuffer content = data.duplicate();
+        ((Buffer) content).position(dataOffset(entry));
+        if (entry.method == ZipEntry.STORED) {
+            final byte[] bytes = new byte[(int) entry.size];
+            content.get(bytes);
+            return bytes;
+        }
+        if (entry.method != ZipEntry.DEFLATED) {
+            throw new IOException("Unsupported compression method " + entry.method);
+        }
+        // an inflater without header expects an extra dummy byte
+        final byte[] compressed = new byte[(int) entry.compressedSize + 1];
+        content.get(compressed, 0, (int) entry.compressedSize);
+        final Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(compressed);
+            final byte[] bytes = new byte[(int) entry.size];
+            int read = 0;
+            while (read < bytes.length) {
+                final int n = inflater.inflate(bytes, read, bytes.length - read);
+                if (n == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                read += n;
+            }
+            if (read != bytes.length) {
+                throw new IOException("Truncated entry");
+            }
+            return bytes;
+        } catch (DataFormatException e) {
+            throw new IOException(e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private int dataOffset(Entry entry) throws IOException {
+        final int header = (int) entry.localHeader;
+        if (data.getInt(header) != LOCAL_SIGNATURE) {
+            throw new IOException("Invalid local header");
+        }
+        final int nameLength = data.getShort(header + 26) & 0xFFFF;
+        final int extraLength = data.getShort(header + 28) & 0xFFFF;
+        return header + LOCAL_HEADER_SIZE + nameLength + extraLength;
+    }
+
+    private static int findEnd(ByteBuffer zip) throws IOException {
+        final int last = zip.limit() - END_SIZE;
+        final int first = Math.max(0, last - MAX_COMMENT_SIZE);
+        for (int pos = last; pos >= first; pos--) {
+            if (zip.getInt(pos) == END_SIGNATURE) {
+                return pos;
+            }
+        }
+        throw new IOException("Not a ZIP archive");
+    }
+
+    private static String readName(ByteBuffer zip, int pos, int length) {
+        final byte[] bytes = new byte[length];
+        final ByteBuffer name = zip.duplicate();
+        ((Buffer) name).position(pos);
+        name.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * An entry of the central directory.
+     */
+    public static final class Entry {
+        private final int method;
+        private final long compressedSize;
+        private final long size;
+        private final long localHeader;
+
+        private Entry(int method, long compressedSize, long size, long localHeader) {
+            this.method = method;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeader = localHeader;
+        }
+
+        /**
+         * Gets the compression method.
+         *
+         * @return {@link ZipEntry#STORED} or {@link ZipEntry#DEFLATED}, or another unsupported method.
+         */
+        public int getMethod() {
+            return method;
+        }
+
+        /**
+         * Gets the uncompressed size.
+         *
+         * @return The size in bytes.
+         */
+        public long getSize() {
+            return size;
+        }
+    }
+
+    /**
+     * A stream reading a buffer.
+     */
+    private static final class BufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        private BufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            final int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) {
+            final int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            ((Buffer) buffer).position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package io.github.sps4j.core.metrics;
+
+import io.github.sps4j.common.meta.PluginArtifact;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The registry of the metrics of the calls of plugin methods, per plugin and per method.
+ * <p>
+ * Plugin proxies record their calls in it when it is given to {@link io.github.sps4j.core.load.DefaultPluginLoader}.
+ * Without it, proxies are generated without any recording code, so that metrics cost nothing when they are off.
+ * The metrics of a plugin are removed when it is unloaded, and calls made afterwards through references
+ * to its proxies that are still held are no longer recorded. Other metrics systems can follow them through
+ * a {@link Listener}.
+ *
+ * @author Allan-QLB
+ */
+public class InvocationMetrics {
+    private final Map<PluginArtifact, PluginInvocationMetrics> plugins = new ConcurrentHashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Gets the metrics of a plugin, creating them if absent.
+     *
+     * @param artifact The plugin.
+     * @return The metrics of the plugin.
+     */
+    public PluginInvocationMetrics forPlugin(@Nonnull PluginArtifact artifact) {
+        return plugins.computeIfAbsent(artifact, a -> new PluginInvocationMetrics(a, this));
+    }
+
+    /**
+     * Gets the metrics of a plugin.
+     *
+     * @param artifact The plugin.
+     * @return The metrics of the plugin, or {@code null} if it is not loaded.
+     */
+    @Nullable
+    public PluginInvocationMetrics get(@Nonnull PluginArtifact artifact) {
+        return plugins.get(artifact);
+    }
+
+    /**
+     * Gets the metrics of all the plugins.
+     *
+     * @return The metrics of the plugins.
+     */
+    public Collection<PluginInvocationMetrics> getPlugins() {
+        return Collections.unmodifiableCollection(plugins.values());
+    }
+
+    /**
+     * Removes the metrics of a plugin, e.g. when it is unloaded.
+     *
+     * @param artifact The plugin.
+     */
+    public void remove(@Nonnull PluginArtifact artifact) {
+        final PluginInvocationMetrics removed = plugins.remove(artifact);
+        if (removed != null) {
+            removed.markRemoved();
+            listeners.forEach(l -> l.pluginRemoved(removed));
+        }
+    }
+
+    /**
+     * Adds a listener, notified at once of the methods called so far.
+     *
+     * @param listener The listener.
+     */
+    public void addListener(@Nonnull Listener listener) {
+        listeners.add(listener);
+        for (PluginInvocationMetrics plugin : plugins.values()) {
+            plugin.getMethods().forEach(m -> listener.methodAdded(plugin, m));
+        }
+    }
+
+    /**
+     * Removes a listener.
+     *
+     * @param listener The listener.
+     */
+    public void removeListener(@Nonnull Listener listener) {
+        listeners.remove(listener);
+    }
+
+    void methodAdded(PluginInvocationMetrics plugin, MethodInvocationMetrics method) {
+        listeners.forEach(l -> l.methodAdded(plugin, method));
+    }
+
+    /**
+     * A listener of the metrics added to and removed from the registry, e.g. to publish them elsewhere.
+     * Notifications happen on the first call of a method and on unload, not on every call.
+     * A method added while the listener is being added may be notified twice.
+     */
+    public interface Listener {
+        /**
+         * Called when a method of a plugin is called for the first time.
+         *
+         * @param plugin The metrics of the plugin.
+         * @param method The metrics of the method.
+         */
+        default void methodAdded(@Nonnull PluginInvocationMetrics plugin, @Nonnull MethodInvocationMetrics method) {
+        }
+
+        /**
+         * Called when the metrics of a plugin are removed.
+         *
+         * @param plugin The removed metrics.
+         */
+        default void pluginRemoved(@Nonnull PluginInvocationMetrics plugin) {
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package io.github.sps4j.core.metrics;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Records the calls of plugin methods in the metrics of the plugins, on behalf of plugin proxies.
+ * <p>
+ * The code recording calls is generated into plugin proxies, which only know their own class.
+ * Each proxy class is bound to the metrics of its plugin once loaded; calls of proxies of unbound classes,
+ * or whose metrics were removed from the registry, are not recorded. This class is public for generated code
+ * to call it, it is not meant to be called otherwise.
+ *
+ * @author Allan-QLB
+ */
+public final class InvocationRecorder {
+    private static final ClassValue<Binding> BINDINGS = new ClassValue<Binding>() {
+        @Override
+        protected Binding computeValue(Class<?> type) {
+            return new Binding();
+        }
+    };
+
+    private InvocationRecorder() {
+    }
+
+    /**
+     * Binds a proxy class to the metrics its calls are recorded in.
+     *
+     * @param proxyClass The proxy class.
+     * @param metrics    The metrics of the plugin, or {@code null} to stop recording.
+     */
+    public static void bind(@Nonnull Class<?> proxyClass, @Nullable PluginInvocationMetrics metrics) {
+        BINDINGS.get(proxyClass).metrics = metrics;
+    }
+
+    /**
+     * Records a call of a plugin method.
+     *
+     * @param proxyClass The proxy class declaring the method.
+     * @param method     The method, as its name and parameter types.
+     * @param startNanos The {@link System#nanoTime()} at the start of the call.
+     * @param thrown     The exception thrown by the call, or {@code null} if it returned normally.
+     */
+    public static void record(Class<?> proxyClass, String method, long startNanos, @Nullable Throwable thrown) {
+        final long nanos = System.nanoTime() - startNanos;
+        final PluginInvocationMetrics metrics = BINDINGS.get(proxyClass).metrics;
+        if (metrics != null && !metrics.isRemoved()) {
+            metrics.method(method).record(nanos, thrown != null);
+        }
+    }
+
+    private static final class Binding {
+        private volatile PluginInvocationMetrics metrics;
+    }
+}
@@ -0,0 +1,111 @@
+package io.github.sps4j.core.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of latencies in nanoseconds, with buckets of bounded relative width, as HDR histograms.
+ * <p>
+ * Values below {@value #LINEAR_BUCKETS} are counted exactly. Above, each power of two is divided in
+ * {@value #SUB_BUCKETS} buckets, so that a value is reported within 12.5% of the recorded one.
+ * Values above about 36 minutes are counted in the last bucket, the maximum being still tracked exactly.
+ *
+ * @author Allan-QLB
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_BUCKETS = SUB_BUCKETS * 2;
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKETS = index((1L << (MAX_EXPONENT + 1)) - 1) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records a latency.
+     *
+     * @param nanos The latency in nanoseconds, negative values being counted as 0.
+     */
+    public void record(long nanos) {
+        final long value = Math.max(nanos, 0);
+        counts.incrementAndGet(Math.min(index(value), BUCKETS - 1));
+        count.increment();
+        max.accumulate(value);
+    }
+
+    /**
+     * Gets the number of recorded latencies.
+     *
+     * @return The count.
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Gets the highest recorded latency.
+     *
+     * @param unit The unit of the result.
+     * @return The maximum, 0 if nothing was recorded.
+     */
+    public double getMax(TimeUnit unit) {
+        return (double) max.get() / unit.toNanos(1);
+    }
+
+    /**
+     * Gets the latency below which a given fraction of the recorded latencies are.
+     * Recordings concurrent with the call may or may not be accounted for.
+     *
+     * @param percentile The fraction, between 0 and 1.
+     * @param unit       The unit of the result.
+     * @return The highest latency counted in the same bucket as the percentile, 0 if nothing was recorded.
+     */
+    public double getValueAtPercentile(double percentile, TimeUnit unit) {
+        if (percentile < 0 || percentile > 1) {
+            throw new IllegalArgumentException("percentile must be between 0 and 1: " + percentile);
+        }
+        final long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(percentile * total));
+        final long highest = max.get();
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                // the last bucket also counts the values above its range
+                final long value = i == BUCKETS - 1 ? highest : Math.min(highestValue(i), highest);
+                return (double) value / unit.toNanos(1);
+            }
+        }
+        return (double) highest / unit.toNanos(1);
+    }
+
+    private static int index(long value) {
+        if (value < LINEAR_BUCKETS) {
+            return (int) value;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        final int shift = exponent - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    private static long highestValue(int index) {
+        if (index < LINEAR_BUCKETS) {
+            return index;
+        }
+        final int shift = index / SUB_BUCKETS - 1;
+        final long subBucket = index % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
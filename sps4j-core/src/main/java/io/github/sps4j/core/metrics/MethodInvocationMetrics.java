@@ -0,0 +1,78 @@
+package io.github.sps4j.core.metrics;
+
+import lombok.Getter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The metrics of the calls of a plugin method: counts of calls and errors, and latencies.
+ * Recording takes no lock, contended counters being striped.
+ *
+ * @author Allan-QLB
+ */
+public final class MethodInvocationMetrics {
+    /**
+     * The method, as its name and parameter types, e.g. {@code greet(java.lang.String)}.
+     */
+    @Getter
+    private final String method;
+    /**
+     * The latencies of the calls, whether they failed or not.
+     */
+    @Getter
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+
+    MethodInvocationMetrics(String method) {
+        this.method = method;
+    }
+
+    /**
+     * Records a call.
+     *
+     * @param nanos  How long the call took, in nanoseconds.
+     * @param failed Whether the call threw an exception.
+     */
+    public void record(long nanos, boolean failed) {
+        latency.record(nanos);
+        totalNanos.add(nanos);
+        if (failed) {
+            errors.increment();
+        }
+    }
+
+    /**
+     * Gets the number of calls.
+     *
+     * @return The count of calls.
+     */
+    public long getCalls() {
+        return latency.getCount();
+    }
+
+    /**
+     * Gets the number of calls that threw an exception.
+     *
+     * @return The count of failed calls.
+     */
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    /**
+     * Gets the time spent in the calls.
+     *
+     * @param unit The unit of the result.
+     * @return The total time.
+     */
+    public double getTotalTime(TimeUnit unit) {
+        return (double) totalNanos.sum() / unit.toNanos(1);
+    }
+
+    @Override
+    public String toString() {
+        return method + "{calls=" + getCalls() + ", errors=" + getErrors() + "}";
+    }
+}
@@ -0,0 +1,92 @@
+package io.github.sps4j.core.metrics;
+
+import io.github.sps4j.common.meta.PluginArtifact;
+import lombok.Getter;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The metrics of the calls of the methods of a plugin, made through its proxy.
+ *
+ * @author Allan-QLB
+ */
+public final class PluginInvocationMetrics {
+    /**
+     * The plugin.
+     */
+    @Getter
+    private final PluginArtifact artifact;
+    private final InvocationMetrics registry;
+    private final Map<String, MethodInvocationMetrics> methods = new ConcurrentHashMap<>();
+    private volatile boolean removed;
+
+    PluginInvocationMetrics(PluginArtifact artifact, InvocationMetrics registry) {
+        this.artifact = artifact;
+        this.registry = registry;
+    }
+
+    /**
+     * Gets the metrics of a method, created on its first call.
+     *
+     * @param method The method, as its name and parameter types.
+     * @return The metrics of the method.
+     */
+    public MethodInvocationMetrics method(@Nonnull String method) {
+        final MethodInvocationMetrics existing = methods.get(method);
+        if (existing != null) {
+            return existing;
+        }
+        final MethodInvocationMetrics created = new MethodInvocationMetrics(method);
+        final MethodInvocationMetrics previous = methods.putIfAbsent(method, created);
+        if (previous != null) {
+            return previous;
+        }
+        if (!removed) {
+            registry.methodAdded(this, created);
+        }
+        return created;
+    }
+
+    /**
+     * Gets the metrics of a method if it was called.
+     *
+     * @param method The method, as its name and parameter types, e.g. {@code greet(java.lang.String)}.
+     * @return The metrics of the method, or {@code null} if it was not called.
+     */
+    @Nullable
+    public MethodInvocationMetrics getMethod(@Nonnull String method) {
+        return methods.get(method);
+    }
+
+    /**
+     * Gets the metrics of the methods called so far.
+     *
+     * @return The metrics of the methods.
+     */
+    public Collection<MethodInvocationMetrics> getMethods() {
+        return Collections.unmodifiableCollection(methods.values());
+    }
+
+    /**
+     * Checks whether the metrics were removed from the registry, after which calls are no longer recorded.
+     *
+     * @return {@code true} if the metrics were removed.
+     */
+    public boolean isRemoved() {
+        return removed;
+    }
+
+    void markRemoved() {
+        removed = true;
+    }
+
+    @Override
+    public String toString() {
+        return artifact + methods.values().toString();
+    }
+}
@@ -4,16 +4,31 @@ import io.github.sps4j.common.Const;
 import io.github.sps4j.common.meta.MetaInfo;
 import io.github.sps4j.common.meta.PluginArtifact;
 import io.github.sps4j.common.meta.PluginDesc;
+import io.github.sps4j.common.meta.VersionedPluginArtifact;
 import io.github.sps4j.core.exception.PluginException;
+import io.github.sps4j.core.load.ClassLoaderOptions;
+import io.github.sps4j.core.load.ClassPreloader;
+import io.github.sps4j.core.load.DefaultPluginLoader;
+import io.github.sps4j.core.load.DispatchMode;
 import io.github.sps4j.core.load.ProductPluginLoadService;
 import io.github.sps4j.core.load.Sps4jPluginLoader;
 import io.github.sps4j.core.load.PluginWrapper;
+import io.github.sps4j.core.load.Sps4jPluginClassLoader;
+import io.github.sps4j.core.load.storage.ClassListStore;
+import io.github.sps4j.core.load.storage.LocalDirJarPluginPackageRepository;
+import io.github.sps4j.core.load.storage.PackageStamp;
+import io.github.sps4j.core.load.storage.PluginCatalog;
 import io.github.sps4j.core.load.storage.PluginPackage;
 import io.github.sps4j.core.load.storage.PluginRepository;
+import io.github.sps4j.core.metrics.InvocationMetrics;
+import io.github.sps4j.core.metrics.MethodInvocationMetrics;
+import io.github.sps4j.core.metrics.PluginInvocationMetrics;
 import io.github.sps4j.core.test.TestPlugin;
 import com.github.zafarkhaja.semver.Version;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Answers;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
@@ -21,17 +36,25 @@ import javax.annotation.Nonnull;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -42,7 +65,7 @@ class DefaultPluginManagerTest {
 
     @Mock
     private ProductPluginLoadService productPluginLoadService;
-    @Mock
+    @Mock(answer = Answers.CALLS_REAL_METHODS)
     private PluginRepository pluginStorage;
     @Mock
     private Sps4jPluginLoader sps4jPluginLoader;
@@ -137,6 +160,125 @@ class DefaultPluginManagerTest {
                 "Attempting to get an unloaded plugin should throw PluginException.");
     }
 
+    @Test
+    void getPlugin_withClassPreloader_shouldRecordClassesAndPreloadThemOnNextLoad(@TempDir Path dir) {
+        // Given
+        URL url = ClassLoader.getSystemClassLoader().getResource("plugins");
+        assertNotNull(url);
+        ClassListStore store = new ClassListStore(dir);
+        DefaultPluginManager pluginManager = new DefaultPluginManager(() -> Version.parse("0.0.1"), true,
+                new LocalDirJarPluginPackageRepository(url.toString()), new DefaultPluginLoader(), null,
+                new ClassPreloader(store, Runnable::run));
+        PluginArtifact artifact = PluginArtifact.builder().type("test").name("MyTest").build();
+
+        // When: the plugin is used and unloaded
+        PluginWrapper wrapper = pluginManager.getPlugin(artifact);
+        assertNotNull(wrapper.getPluginAs(TestPlugin.class).test());
+        VersionedPluginArtifact versioned = VersionedPluginArtifact.builder()
+                .artifact(artifact).version(wrapper.getMetaInfo().getDescriptor().getVersion()).build();
+        pluginManager.unload(artifact);
+
+        // Then: the classes it loaded are recorded, but not the plugin class, which is injected with its proxy
+        List<String> classes = store.read(versioned);
+        assertFalse(classes.isEmpty());
+        assertFalse(classes.contains(wrapper.getMetaInfo().getDescriptor().getClassName()));
+
+        // When: it is loaded again
+        pluginManager.resetAll();
+        PluginWrapper reloaded = pluginManager.getPlugin(artifact);
+
+        // Then: its class loader defined the recorded classes before it was returned
+        Sps4jPluginClassLoader cl = (Sps4jPluginClassLoader) reloaded.getPlugin().getClass().getClassLoader();
+        assertTrue(cl.getDefinedClasses().containsAll(classes));
+        assertNotNull(reloaded.getPluginAs(TestPlugin.class).test());
+        pluginManager.unloadAll();
+    }
+
+    @Test
+    void getPlugin_withPluginClassRecorded_shouldPreloadAfterCreatingPlugin(@TempDir Path dir) {
+        // Given: the plugin class recorded by a previous run, as in delegate mode where it is defined from the jar
+        URL url = ClassLoader.getSystemClassLoader().getResource("plugins");
+        assertNotNull(url);
+        ClassListStore store = new ClassListStore(dir);
+        DefaultPluginManager pluginManager = new DefaultPluginManager(() -> Version.parse("0.0.1"), true,
+                new LocalDirJarPluginPackageRepository(url.toString()), new DefaultPluginLoader(), null,
+                new ClassPreloader(store, Runnable::run));
+        PluginArtifact artifact = PluginArtifact.builder().type("test").name("MyTest").build();
+        PluginDesc descriptor = pluginManager.getPluginMetaInfo(artifact).getDescriptor();
+        store.write(VersionedPluginArtifact.builder().artifact(artifact).version(descriptor.getVersion()).build(),
+                Collections.singletonList(descriptor.getClassName()));
+
+        // When
+        PluginWrapper wrapper = pluginManager.getPlugin(artifact);
+
+        // Then: the plugin class is rebased rather than defined from the jar by the preloading
+        assertNotNull(wrapper.getPluginAs(TestPlugin.class).test());
+        pluginManager.unloadAll();
+    }
+
+    @Test
+    void getPlugin_withInvocationMetrics_shouldRecordCallsUntilUnload() {
+        // Given
+        URL url = ClassLoader.getSystemClassLoader().getResource("plugins");
+        assertNotNull(url);
+        InvocationMetrics invocationMetrics = new InvocationMetrics();
+        DefaultPluginManager pluginManager = new DefaultPluginManager(() -> Version.parse("0.0.1"), true,
+                new LocalDirJarPluginPackageRepository(url.toString()), new DefaultPluginLoader(DispatchMode.INTERCEPTOR,
+                null, ClassLoaderOptions.DEFAULT, null, invocationMetrics));
+        PluginArtifact artifact = PluginArtifact.builder().type("test").name("MyTest").build();
+
+        // When
+        PluginWrapper wrapper = pluginManager.getPlugin(artifact);
+        wrapper.getPluginAs(TestPlugin.class).test();
+        wrapper.getPluginAs(TestPlugin.class).test();
+
+        // Then
+        assertSame(invocationMetrics, pluginManager.getInvocationMetrics());
+        assertSame(invocationMetrics.get(artifact), wrapper.getInvocationMetrics());
+        MethodInvocationMetrics test = wrapper.getInvocationMetrics().getMethod("test()");
+        assertNotNull(test);
+        assertEquals(2, test.getCalls());
+        assertEquals(0, test.getErrors());
+
+        // When
+        pluginManager.unload(artifact);
+
+        // Then
+        assertNull(invocationMetrics.get(artifact));
+    }
+
+    @Test
+    void getPlugin_withInvocationMetrics_shouldNotRecordCallsAfterUnload() {
+        // Given
+        URL url = ClassLoader.getSystemClassLoader().getResource("plugins");
+        assertNotNull(url);
+        InvocationMetrics invocationMetrics = new InvocationMetrics();
+        List<String> added = new CopyOnWriteArrayList<>();
+        invocationMetrics.addListener(new InvocationMetrics.Listener() {
+            @Override
+            public void methodAdded(PluginInvocationMetrics plugin, MethodInvocationMetrics method) {
+                added.add(method.getMethod());
+            }
+        });
+        DefaultPluginManager pluginManager = new DefaultPluginManager(() -> Version.parse("0.0.1"), true,
+                new LocalDirJarPluginPackageRepository(url.toString()), new DefaultPluginLoader(DispatchMode.INTERCEPTOR,
+                null, ClassLoaderOptions.DEFAULT, null, invocationMetrics));
+        PluginArtifact artifact = PluginArtifact.builder().type("test").name("MyTest").build();
+        PluginWrapper wrapper = pluginManager.getPlugin(artifact);
+        TestPlugin stale = wrapper.getPluginAs(TestPlugin.class);
+        pluginManager.unload(artifact);
+        List<String> addedBeforeCall = new ArrayList<>(added);
+
+        // When: the plugin is called through a reference held after unload
+        stale.test();
+
+        // Then
+        assertEquals(addedBeforeCall, added);
+        assertTrue(wrapper.getInvocationMetrics().isRemoved());
+        assertNull(wrapper.getInvocationMetrics().getMethod("test()"));
+        assertNull(invocationMetrics.get(artifact));
+    }
+
     @Test
     void unload_byInterface_shouldRemovePluginsAndMetadata() {
         // Given: a plugin manager with a loaded plugin
@@ -413,6 +555,400 @@ class DefaultPluginManagerTest {
 
 
 
+    @Test
+    void update_concurrentGetPlugin_shouldWaitForNewVersion() throws Exception {
+        // Given: a loaded plugin, and an update reading the new metadata slowly
+        URL url = ClassLoader.getSystemClassLoader().getResource("plugins");
+        assertNotNull(url);
+        DefaultPluginManager pluginManager = spy(new DefaultPluginManager(url.toString(), () -> Version.parse("0.0.1")));
+        PluginArtifact artifact = PluginArtifact.builder().type("test").name("MyTest").build();
+        pluginManager.getPlugin(artifact);
+        PluginDesc current = pluginManager.getPluginMetaInfo(artifact).getDescriptor();
+        MetaInfo newMeta = new MetaInfo(PluginDesc.builder()
+                .type(current.getType())
+                .name(current.getName())
+                .version(Version.parse("99.0.0"))
+                .className(current.getClassName())
+                .productVersionConstraint(current.getProductVersionConstraint())
+                .build(), pluginManager.getPluginMetaInfo(artifact).getUrl());
+        CountDownLatch updating = new CountDownLatch(1);
+        doReturn(newMeta).when(pluginManager).checkForUpdate(artifact);
+        doAnswer(inv -> {
+            updating.countDown();
+            Thread.sleep(300);
+            Map<String, Map<String, MetaInfo>> metaMap = new HashMap<>();
+            metaMap.computeIfAbsent(artifact.getType(), t -> new ConcurrentHashMap<>()).put(artifact.getName(), newMeta);
+            return metaMap;
+        }).when(pluginManager).loadMetadata(artifact);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<PluginWrapper> updated = executor.submit(() -> pluginManager.update(artifact));
+            assertTrue(updating.await(10, TimeUnit.SECONDS));
+
+            // When: the plugin is requested while the old version is unloaded and the new one not loaded yet
+            PluginWrapper requested = pluginManager.getPlugin(artifact);
+
+            // Then: the request waits for the update and gets the new version
+            assertSame(updated.get(10, TimeUnit.SECONDS), requested);
+            assertSame(newMeta, requested.getMetaInfo());
+        } finally {
+            executor.shutdownNow();
+            pluginManager.unload(TestPlugin.class);
+        }
+    }
+
+    @Test
+    void getPlugin_concurrentRequests_shouldLoadArtifactOnce() throws Exception {
+        // Given: a plugin whose load takes a while
+        DefaultPluginManager pluginManager = createManagerWithMultiPlugins();
+        AtomicInteger loads = new AtomicInteger();
+        when(sps4jPluginLoader.load(any(), any(), any())).thenAnswer(inv -> {
+            loads.incrementAndGet();
+            Thread.sleep(200);
+            return mock(Sps4jPlugin.class);
+        });
+
+        // When: many threads request it at the same time
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<PluginWrapper>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return pluginManager.getPlugin("test", "multi-plugin-1");
+                }));
+            }
+            start.countDown();
+
+            // Then: it is loaded once and every caller gets the same instance
+            PluginWrapper first = results.get(0).get(10, TimeUnit.SECONDS);
+            for (Future<PluginWrapper> result : results) {
+                assertSame(first, result.get(10, TimeUnit.SECONDS));
+            }
+            assertEquals(1, loads.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void getPlugin_differentArtifacts_shouldLoadInParallel() throws Exception {
+        // Given: loads that can only complete when both run at the same time
+        DefaultPluginManager pluginManager = createManagerWithMultiPlugins();
+        CyclicBarrier bothLoading = new CyclicBarrier(2);
+        when(sps4jPluginLoader.load(any(), any(), any())).thenAnswer(inv -> {
+            bothLoading.await(10, TimeUnit.SECONDS);
+            return mock(Sps4jPlugin.class);
+        });
+
+        // When
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<PluginWrapper> plugin1 = executor.submit(() -> pluginManager.getPlugin("test", "multi-plugin-1"));
+            Future<PluginWrapper> plugin2 = executor.submit(() -> pluginManager.getPlugin("test", "multi-plugin-2"));
+
+            // Then
+            assertNotNull(plugin1.get(20, TimeUnit.SECONDS));
+            assertNotNull(plugin2.get(20, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void getPlugin_failedLoad_shouldBeRetriedByNextRequest() throws Exception {
+        // Given: a load failing once
+        DefaultPluginManager pluginManager = createManagerWithMultiPlugins();
+        Sps4jPlugin plugin = mock(Sps4jPlugin.class);
+        when(sps4jPluginLoader.load(any(), any(), any()))
+                .thenThrow(new PluginException("boom"))
+                .thenReturn(plugin);
+
+        // When / Then
+        assertThrows(PluginException.class, () -> pluginManager.getPlugin("test", "multi-plugin-1"));
+        assertSame(plugin, pluginManager.getPlugin("test", "multi-plugin-1").getPlugin());
+        assertSame(plugin, pluginManager.getLoadedPlugin(new PluginArtifact("test", "multi-plugin-1")).getPlugin());
+    }
+
+    @Test
+    void loadMetadata_withCatalog_shouldNotReadUnchangedPackages(@TempDir Path dir) throws Exception {
+        // Given: a repository with a catalog and a package that does not change
+        when(productPluginLoadService.productVersion()).thenReturn(Version.parse("0.0.1"));
+        when(productPluginLoadService.canLoad(any(PluginDesc.class))).thenReturn(true);
+        setupMockPackage(pkgWithMultipleDescriptors, "file:/repo/multi.jar", readYaml("yaml/multi-plugin.yaml"));
+        when(pkgWithMultipleDescriptors.getStamp()).thenReturn(new PackageStamp("/repo/multi.jar", 100L, 1L));
+        when(pluginStorage.listPackages()).thenReturn(Collections.singletonList(pkgWithMultipleDescriptors));
+        when(pluginStorage.getCatalog()).thenReturn(PluginCatalog.inDirectory(dir, false));
+        DefaultPluginManager.SUPPORTED_TYPES.put(TestPlugin.class.getName(), "test");
+
+        // When: metadata is loaded twice
+        DefaultPluginManager pluginManager = new DefaultPluginManager(productPluginLoadService, true, pluginStorage, sps4jPluginLoader);
+        pluginManager.resetAll();
+
+        // Then: the package is read once and the second scan is served by the catalog
+        verify(pkgWithMultipleDescriptors, times(1)).getResource(Const.DESC_FILE);
+        assertNotNull(pluginManager.getPluginMetaInfo(new PluginArtifact("test", "multi-plugin-1")));
+        assertNotNull(pluginManager.getPluginMetaInfo(new PluginArtifact("test", "multi-plugin-2")));
+        assertTrue(Files.isRegularFile(dir.resolve(PluginCatalog.DEFAULT_FILE_NAME)));
+    }
+
+    @Test
+    void loadMetadata_shouldResolveProductVersionOncePerScan() throws Exception {
+        // Given: several packages with product version constraints
+        when(productPluginLoadService.productVersion()).thenReturn(Version.parse("0.0.1"));
+        when(productPluginLoadService.canLoad(any(PluginDesc.class))).thenReturn(true);
+        List<PluginPackage> packages = Arrays.asList(
+                slowPackage("file:/repo/valid.jar", "yaml/valid-plugin.yaml", 0),
+                slowPackage("file:/repo/incompatible.jar", "yaml/incompatible-plugin.yaml", 0),
+                slowPackage("file:/repo/multi.jar", "yaml/multi-plugin.yaml", 0));
+        when(pluginStorage.listPackages()).thenReturn(packages);
+        DefaultPluginManager pluginManager = new DefaultPluginManager(productPluginLoadService, false, pluginStorage, sps4jPluginLoader);
+
+        // When
+        Map<String, Map<String, MetaInfo>> metaMap = pluginManager.loadMetadata(null);
+
+        // Then
+        assertEquals(3, metaMap.get("test").size());
+        verify(productPluginLoadService, times(1)).productVersion();
+    }
+
+    @Test
+    void loadMetadata_withScanExecutor_shouldMatchSerialScan() throws Exception {
+        // Given: packages read slowly in reverse order, including two with the same plugin version
+        when(productPluginLoadService.productVersion()).thenReturn(Version.parse("0.0.1"));
+        when(productPluginLoadService.canLoad(any(PluginDesc.class))).thenReturn(true);
+        List<PluginPackage> packages = Arrays.asList(
+                slowPackage("file:/repo/versioned-1.1.0.jar", "yaml/new-version.yaml", 40),
+                slowPackage("file:/repo/versioned-1.0.0.jar", "yaml/old-version.yaml", 30),
+                slowPackage("file:/repo/versioned-1.1.0-copy.jar", "yaml/new-version.yaml", 20),
+                slowPackage("file:/repo/multi.jar", "yaml/multi-plugin.yaml", 10),
+                slowPackage("file:/repo/incompatible.jar", "yaml/incompatible-plugin.yaml", 0));
+        when(pluginStorage.listPackages()).thenReturn(packages);
+        ExecutorService executor = Executors.newFixedThreadPool(packages.size());
+        try {
+            DefaultPluginManager serialManager = new DefaultPluginManager(productPluginLoadService, false, pluginStorage, sps4jPluginLoader);
+            DefaultPluginManager parallelManager = new DefaultPluginManager(productPluginLoadService, false, pluginStorage, sps4jPluginLoader, executor);
+
+            // When
+            Map<String, Map<String, MetaInfo>> serial = serialManager.loadMetadata(null);
+            Map<String, Map<String, MetaInfo>> parallel = parallelManager.loadMetadata(null);
+
+            // Then: same plugins, versions and locations, the first package winning among equal versions
+            assertEquals(describe(serial), describe(parallel));
+            assertEquals(new URL("file:/repo/versioned-1.1.0.jar"),
+                    parallel.get("test").get("my-plugin-versioned").getUrl());
+            assertNull(parallel.get("test").get("my-plugin-incompatible"));
+            assertEquals(3, parallel.get("test").size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void loadMetadata_withScanExecutor_shouldReportFirstFailedPackage() throws Exception {
+        // Given
+        when(pkgWithValidPlugin.contains(Const.DESC_FILE)).thenReturn(true);
+        when(pkgWithValidPlugin.getResource(Const.DESC_FILE)).thenThrow(new IOException("first"));
+        when(pkgWithOldVersion.contains(Const.DESC_FILE)).thenReturn(true);
+        when(pkgWithOldVersion.getResource(Const.DESC_FILE)).thenThrow(new IOException("second"));
+        when(pluginStorage.listPackages()).thenReturn(Arrays.asList(pkgWithValidPlugin, pkgWithOldVersion));
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            DefaultPluginManager pluginManager = new DefaultPluginManager(productPluginLoadService, false, pluginStorage, sps4jPluginLoader, executor);
+
+            // When / Then
+            PluginException e = assertThrows(PluginException.class, () -> pluginManager.loadMetadata(null));
+            assertEquals("first", e.getMessage());
+            verify(pkgWithValidPlugin).close();
+            verify(pkgWithOldVersion).close();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private PluginPackage slowPackage(String baseUrl, String yaml, long delayMillis) throws Exception {
+        PluginPackage pack = mock(PluginPackage.class);
+        byte[] content = readYaml(yaml).getBytes(StandardCharsets.UTF_8);
+        when(pack.contains(Const.DESC_FILE)).thenReturn(true);
+        when(pack.getResource(Const.DESC_FILE)).thenAnswer(invocation -> {
+            Thread.sleep(delayMillis);
+            return new ByteArrayInputStream(content);
+        });
+        when(pack.getBaseUrl()).thenReturn(baseUrl);
+        return pack;
+    }
+
+    private static Map<String, String> describe(Map<String, Map<String, MetaInfo>> metaMap) {
+        Map<String, String> result = new TreeMap<>();
+        metaMap.forEach((type, metas) -> metas.forEach((name, meta) ->
+                result.put(type + ":" + name, meta.getDescriptor().getVersion() + "@" + meta.getUrl())));
+        return result;
+    }
+
+    @Test
+    void refreshPackages_shouldOnlyReadChangedPackages() throws Exception {
+        // Given
+        when(productPluginLoadService.productVersion()).thenReturn(Version.parse("0.0.1"));
+        when(productPluginLoadService.canLoad(any(PluginDesc.class))).thenReturn(true);
+        setupMockPackage(pkgWithOldVersion, "file:/repo/versioned-1.0.0.jar", readYaml("yaml/old-version.yaml"));
+        setupMockPackage(pkgWithMultipleDescriptors, "file:/repo/multi.jar", readYaml("yaml/multi-plugin.yaml"));
+        setupMockPackage(pkgWithNewVersion, "file:/repo/versioned-1.1.0.jar", readYaml("yaml/new-version.yaml"));
+        when(pluginStorage.listPackages()).thenReturn(Arrays.asList(pkgWithOldVersion, pkgWithMultipleDescriptors));
+        doReturn(pkgWithNewVersion).doReturn(null).when(pluginStorage).getPackage("file:/repo/versioned-1.1.0.jar");
+        DefaultPluginManager.SUPPORTED_TYPES.put(TestPlugin.class.getName(), "test");
+        DefaultPluginManager pluginManager = new DefaultPluginManager(productPluginLoadService, true, pluginStorage, sps4jPluginLoader);
+        PluginArtifact versioned = new PluginArtifact("test", "my-plugin-versioned");
+        MetaInfo multiMeta = pluginManager.getPluginMetaInfo(new PluginArtifact("test", "multi-plugin-1"));
+
+        // When: a newer package is added
+        List<PluginArtifact> added = pluginManager.refreshPackages(Collections.singletonList("file:/repo/versioned-1.1.0.jar"));
+
+        // Then: only its plugin is updated
+        assertEquals(Collections.singletonList(versioned), added);
+        assertEquals("1.1.0", pluginManager.getPluginMetaInfo(versioned).getDescriptor().getVersion().toString());
+        assertSame(multiMeta, pluginManager.getPluginMetaInfo(new PluginArtifact("test", "multi-plugin-1")));
+
+        // When: the newer package is removed
+        List<PluginArtifact> removed = pluginManager.refreshPackages(Collections.singletonList("file:/repo/versioned-1.1.0.jar"));
+
+        // Then: the plugin falls back to the remaining package, without rescanning the repository
+        assertEquals(Collections.singletonList(versioned), removed);
+        assertEquals(new URL("file:/repo/versioned-1.0.0.jar"), pluginManager.getPluginMetaInfo(versioned).getUrl());
+        assertTrue(pluginManager.refreshPackages(Collections.singletonList("file:/repo/versioned-1.1.0.jar")).isEmpty());
+        verify(pluginStorage, times(1)).listPackages();
+    }
+
+    @Test
+    void checkForUpdate_artifact_shouldOnlyReadChangedNewAndStamplessPackages() throws Exception {
+        // Given: a scanned repository
+        when(productPluginLoadService.productVersion()).thenReturn(Version.parse("0.0.1"));
+        when(productPluginLoadService.canLoad(any(PluginDesc.class))).thenReturn(true);
+        PluginPackage oldVersion = slowPackage("file:/repo/versioned-1.0.0.jar", "yaml/old-version.yaml", 0);
+        PluginPackage multi = slowPackage("file:/repo/multi.jar", "yaml/multi-plugin.yaml", 0);
+        when(multi.getStamp()).thenReturn(new PackageStamp("/repo/multi.jar", 10L, 1L));
+        PluginPackage valid = slowPackage("file:/repo/valid.jar", "yaml/valid-plugin.yaml", 0);
+        when(valid.getStamp()).thenReturn(new PackageStamp("/repo/valid.jar", 10L, 1L), new PackageStamp("/repo/valid.jar", 10L, 2L));
+        PluginPackage newVersion = slowPackage("file:/repo/versioned-1.1.0.jar", "yaml/new-version.yaml", 0);
+        when(pluginStorage.listPackages()).thenReturn(Arrays.asList(oldVersion, multi, valid),
+                Arrays.asList(oldVersion, multi, valid, newVersion));
+        DefaultPluginManager.SUPPORTED_TYPES.put(TestPlugin.class.getName(), "test");
+        DefaultPluginManager pluginManager = new DefaultPluginManager(productPluginLoadService, true, pluginStorage, sps4jPluginLoader);
+
+        // When: a new version of an artifact appears
+        MetaInfo newMeta = pluginManager.checkForUpdate(new PluginArtifact("test", "my-plugin-versioned"));
+
+        // Then: it is found by reading only the package without a stamp, the new package and the changed package
+        assertNotNull(newMeta);
+        assertEquals("1.1.0", newMeta.getDescriptor().getVersion().toString());
+        assertEquals(new URL("file:/repo/versioned-1.1.0.jar"), newMeta.getUrl());
+        verify(oldVersion, times(2)).getResource(Const.DESC_FILE);
+        verify(newVersion, times(1)).getResource(Const.DESC_FILE);
+        verify(valid, times(2)).getResource(Const.DESC_FILE);
+        verify(multi, times(1)).getResource(Const.DESC_FILE);
+    }
+
+    @Test
+    void checkForUpdate_artifact_concurrentRefresh_shouldKeepRefreshedPackages() throws Exception {
+        // Given: a package without a stamp, whose second read waits
+        when(productPluginLoadService.productVersion()).thenReturn(Version.parse("0.0.1"));
+        when(productPluginLoadService.canLoad(any(PluginDesc.class))).thenReturn(true);
+        PluginPackage oldVersion = slowPackage("file:/repo/versioned-1.0.0.jar", "yaml/old-version.yaml", 0);
+        when(oldVersion.getStamp()).thenReturn(new PackageStamp("/repo/versioned-1.0.0.jar", 10L, 1L));
+        PluginPackage multi = mock(PluginPackage.class);
+        byte[] content = readYaml("yaml/multi-plugin.yaml").getBytes(StandardCharsets.UTF_8);
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(multi.contains(Const.DESC_FILE)).thenReturn(true);
+        when(multi.getResource(Const.DESC_FILE)).thenReturn(new ByteArrayInputStream(content)).thenAnswer(invocation -> {
+            reading.countDown();
+            release.await();
+            return new ByteArrayInputStream(content);
+        });
+        when(multi.getBaseUrl()).thenReturn("file:/repo/multi.jar");
+        PluginPackage newVersion = slowPackage("file:/repo/versioned-1.1.0.jar", "yaml/new-version.yaml", 0);
+        when(pluginStorage.listPackages()).thenReturn(Arrays.asList(oldVersion, multi));
+        doReturn(newVersion).doReturn(null).when(pluginStorage).getPackage("file:/repo/versioned-1.1.0.jar");
+        DefaultPluginManager.SUPPORTED_TYPES.put(TestPlugin.class.getName(), "test");
+        DefaultPluginManager pluginManager = new DefaultPluginManager(productPluginLoadService, true, pluginStorage, sps4jPluginLoader);
+        PluginArtifact versioned = new PluginArtifact("test", "my-plugin-versioned");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            // When: a package is added while an artifact is checked
+            Future<MetaInfo> check = executor.submit(() -> pluginManager.checkForUpdate(new PluginArtifact("test", "multi-plugin-1")));
+            assertTrue(reading.await(5, TimeUnit.SECONDS));
+            assertEquals(Collections.singletonList(versioned),
+                    pluginManager.refreshPackages(Collections.singletonList("file:/repo/versioned-1.1.0.jar")));
+            release.countDown();
+            check.get(5, TimeUnit.SECONDS);
+
+            // Then: the added package is still known once the check completes
+            assertEquals(Collections.singletonList(versioned),
+                    pluginManager.refreshPackages(Collections.singletonList("file:/repo/versioned-1.1.0.jar")));
+            assertEquals(new URL("file:/repo/versioned-1.0.0.jar"), pluginManager.getPluginMetaInfo(versioned).getUrl());
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void watchRepository_queued_shouldApplyChangesOnDemand(@TempDir Path dir) throws Exception {
+        // Given: a watched repository directory
+        when(productPluginLoadService.productVersion()).thenReturn(Version.parse("0.0.1"));
+        when(productPluginLoadService.canLoad(any(PluginDesc.class))).thenReturn(true);
+        DefaultPluginManager.SUPPORTED_TYPES.put(TestPlugin.class.getName(), "test");
+        DefaultPluginManager pluginManager = new DefaultPluginManager(productPluginLoadService, true,
+                new LocalDirJarPluginPackageRepository(dir.toString()), sps4jPluginLoader);
+        PluginArtifact artifact = new PluginArtifact("test", "my-plugin-ok");
+        pluginManager.watchRepository(50, false);
+        try {
+            // When: a plugin jar is added
+            writeJar(dir.resolve("valid.jar"), readYaml("yaml/valid-plugin.yaml"));
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (!pluginManager.hasPendingPackageChanges() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+
+            // Then: the change is queued until applied
+            assertTrue(pluginManager.hasPendingPackageChanges());
+            assertNull(pluginManager.getPluginMetaInfo(artifact));
+            assertEquals(Collections.singletonList(artifact), pluginManager.applyPendingPackageChanges());
+            assertEquals("1.0.0", pluginManager.getPluginMetaInfo(artifact).getDescriptor().getVersion().toString());
+            assertFalse(pluginManager.hasPendingPackageChanges());
+        } finally {
+            pluginManager.stopWatchingRepository();
+        }
+    }
+
+    @Test
+    void watchRepository_notWatchableRepository_shouldThrow() {
+        DefaultPluginManager pluginManager = new DefaultPluginManager(productPluginLoadService, false, pluginStorage, sps4jPluginLoader);
+        assertThrows(PluginException.class, () -> pluginManager.watchRepository(50, true));
+    }
+
+    private static void writeJar(Path path, String descriptor) throws IOException {
+        Path tmp = Files.createTempFile(path.getParent().getParent(), "plugin", ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp); JarOutputStream jar = new JarOutputStream(out)) {
+            jar.putNextEntry(new JarEntry(Const.DESC_FILE));
+            jar.write(descriptor.getBytes(StandardCharsets.UTF_8));
+            jar.closeEntry();
+        }
+        Files.move(tmp, path);
+    }
+
+    private DefaultPluginManager createManagerWithMultiPlugins() throws Exception {
+        when(productPluginLoadService.productVersion()).thenReturn(Version.parse("0.0.1"));
+        when(productPluginLoadService.canLoad(any(PluginDesc.class))).thenReturn(true);
+        setupMockPackage(pkgWithMultipleDescriptors, "file:/repo/multi.jar", readYaml("yaml/multi-plugin.yaml"));
+        when(pluginStorage.listPackages()).thenReturn(Collections.singletonList(pkgWithMultipleDescriptors));
+        DefaultPluginManager.SUPPORTED_TYPES.put(TestPlugin.class.getName(), "test");
+        return new DefaultPluginManager(productPluginLoadService, true, pluginStorage, sps4jPluginLoader);
+    }
+
     private MetaInfo createMetaInfo(String type, String name, String version, String url) throws MalformedURLException {
         return new MetaInfo(
                 PluginDesc.builder()
@@ -0,0 +1,119 @@
+package io.github.sps4j.core.load;
+
+import io.github.sps4j.common.utils.YamlUtils;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ClassLoaderLeakTrackerTest {
+
+    @Test
+    void check_reclaimedClassLoader_shouldNotReport() throws Exception {
+        // Given
+        ClassLoaderLeakTracker tracker = new ClassLoaderLeakTracker(1);
+        Sps4jPluginClassLoader cl = new Sps4jPluginClassLoader(new URL[0], getClass().getClassLoader());
+        cl.close();
+        tracker.track(cl, "test:reclaimed:1.0.0");
+        tracker.track(cl, "test:reclaimed:1.0.0");
+        assertEquals(1, tracker.getTrackedCount());
+
+        // When
+        cl = null;
+        for (int i = 0; i < 20 && tracker.getTrackedCount() > 0; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+
+        // Then
+        assertEquals(0, tracker.getTrackedCount());
+        assertTrue(tracker.check().isEmpty());
+    }
+
+    @Test
+    void check_afterYoungCollectionsOnly_shouldNotReport() throws Exception {
+        // Given: a closed class loader still reachable, and collectors of a G1 heap
+        GarbageCollectorMXBean young = mock(GarbageCollectorMXBean.class);
+        when(young.getName()).thenReturn("G1 Young Generation");
+        when(young.getCollectionCount()).thenReturn(0L);
+        GarbageCollectorMXBean old = mock(GarbageCollectorMXBean.class);
+        when(old.getName()).thenReturn("G1 Old Generation");
+        when(old.getCollectionCount()).thenReturn(0L);
+        ClassLoaderLeakTracker tracker = new ClassLoaderLeakTracker(1, () -> Arrays.asList(young, old));
+        try (Sps4jPluginClassLoader cl = new Sps4jPluginClassLoader(new URL[0], getClass().getClassLoader())) {
+            tracker.track(cl, "test:young:1.0.0");
+
+            // When: only young collections ran
+            when(young.getCollectionCount()).thenReturn(10L);
+
+            // Then
+            assertTrue(tracker.check().isEmpty());
+
+            // When: a full collection ran
+            when(old.getCollectionCount()).thenReturn(1L);
+
+            // Then
+            List<ClassLoaderLeak> leaks = tracker.check();
+            assertEquals(1, leaks.size());
+            assertEquals(1, leaks.get(0).getGcCycles());
+        }
+    }
+
+    @Test
+    void check_leakedClassLoader_shouldReportLikelyRoots() throws Exception {
+        // Given: a closed class loader without leak cleaners, kept by the context class loader of a thread
+        // and by a cached YAML mapper
+        ClassLoaderLeakTracker tracker = new ClassLoaderLeakTracker(1);
+        Sps4jPluginClassLoader cl = new Sps4jPluginClassLoader(new URL[0], getClass().getClassLoader(),
+                Collections.emptyList(), ClassLoaderOptions.builder().leakCleaners(Collections.emptyList()).build());
+        CountDownLatch stop = new CountDownLatch(1);
+        Thread thread = new Thread(() -> {
+            try {
+                stop.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "leaking-thread");
+        thread.setContextClassLoader(cl);
+        thread.start();
+        ClassLoader previous = Thread.currentThread().getContextClassLoader();
+        Thread.currentThread().setContextClassLoader(cl);
+        try {
+            YamlUtils.getYamlMapper();
+        } finally {
+            Thread.currentThread().setContextClassLoader(previous);
+        }
+        cl.close();
+        tracker.track(cl, "test:leaked:1.0.0");
+        cl = null;
+
+        try {
+            // When
+            List<ClassLoaderLeak> leaks = tracker.check();
+            for (int i = 0; i < 5 && leaks.isEmpty(); i++) {
+                System.gc();
+                leaks = tracker.check();
+            }
+
+            // Then
+            assertEquals(1, leaks.size());
+            ClassLoaderLeak leak = leaks.get(0);
+            assertEquals("test:leaked:1.0.0", leak.getDescription());
+            assertTrue(leak.getGcCycles() >= 1);
+            assertTrue(leak.getLikelyRoots().contains("context class loader of thread leaking-thread"),
+                    leak.getLikelyRoots().toString());
+            assertTrue(leak.getLikelyRoots().contains("YAML mapper cached by YamlUtils"), leak.getLikelyRoots().toString());
+        } finally {
+            stop.countDown();
+            thread.join();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package io.github.sps4j.core.load;
+
+import com.github.zafarkhaja.semver.Version;
+import io.github.sps4j.common.meta.PluginArtifact;
+import io.github.sps4j.common.meta.VersionedPluginArtifact;
+import io.github.sps4j.core.load.storage.ClassListStore;
+import net.bytebuddy.ByteBuddy;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClassPreloaderTest {
+    private static final VersionedPluginArtifact ARTIFACT = VersionedPluginArtifact.builder()
+            .artifact(PluginArtifact.builder().type("test").name("preload").build())
+            .version(Version.parse("1.0.0"))
+            .build();
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void preload_recordedClasses_shouldBeDefinedInParallel() throws Exception {
+        // Given: a first run using some classes of the plugin
+        URL jar = writeJar(300).toUri().toURL();
+        ClassListStore store = new ClassListStore(dir.resolve("classes"));
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            ClassPreloader preloader = new ClassPreloader(store, executor, 4);
+            List<String> used = new ArrayList<>();
+            try (Sps4jPluginClassLoader cl = new Sps4jPluginClassLoader(new URL[]{jar}, getClass().getClassLoader())) {
+                assertEquals(0, preloader.preload(ARTIFACT, cl).join());
+                for (int i = 0; i < 300; i += 2) {
+                    used.add(cl.loadClass("synthetic.preload.C" + i).getName());
+                }
+                preloader.save(ARTIFACT, cl);
+            }
+            assertEquals(used, store.read(ARTIFACT));
+            List<String> stale = new ArrayList<>(used);
+            stale.add("synthetic.preload.Removed");
+            store.write(ARTIFACT, stale);
+
+            // When: the plugin is loaded again
+            try (Sps4jPluginClassLoader cl = new Sps4jPluginClassLoader(new URL[]{jar}, getClass().getClassLoader())) {
+                int preloaded = preloader.preload(ARTIFACT, cl).join();
+
+                // Then: the recorded classes are defined, the stale one is skipped
+                assertEquals(used.size(), preloaded);
+                assertEquals(new HashSet<>(used), new HashSet<>(cl.getDefinedClasses()));
+                assertSame(cl, cl.loadClass("synthetic.preload.C0").getClassLoader());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void read_missingOrWrittenList_shouldRoundTrip() {
+        // Given
+        ClassListStore store = ClassListStore.inDirectory(dir);
+
+        // When / Then
+        assertTrue(store.read(ARTIFACT).isEmpty());
+        store.write(ARTIFACT, Arrays.asList("a.B", "a.C", "a.B"));
+        assertEquals(Arrays.asList("a.B", "a.C"), store.read(ARTIFACT));
+        assertTrue(Files.isDirectory(dir.resolve(ClassListStore.DEFAULT_DIR_NAME)));
+    }
+
+    private Path writeJar(int classes) throws IOException {
+        Path jar = dir.resolve("preload.jar");
+        try (OutputStream out = Files.newOutputStream(jar); JarOutputStream jarOut = new JarOutputStream(out)) {
+            for (int i = 0; i < classes; i++) {
+                String name = "synthetic.preload.C" + i;
+                jarOut.putNextEntry(new JarEntry(name.replace('.', '/') + ".class"));
+                jarOut.write(new ByteBuddy().subclass(Object.class).name(name).make().getBytes());
+                jarOut.closeEntry();
+            }
+        }
+        return jar;
+    }
+}
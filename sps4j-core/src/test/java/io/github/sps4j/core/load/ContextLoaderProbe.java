@@ -0,0 +1,14 @@
+package io.github.sps4j.core.load;
+
+import io.github.sps4j.core.NoContextSwitch;
+import io.github.sps4j.core.Sps4jPlugin;
+
+public interface ContextLoaderProbe extends Sps4jPlugin {
+
+    ClassLoader contextLoader();
+
+    @NoContextSwitch
+    ClassLoader directContextLoader();
+
+    void fail();
+}
@@ -0,0 +1,19 @@
+package io.github.sps4j.core.load;
+
+public class ContextLoaderProbePlugin implements ContextLoaderProbe {
+
+    @Override
+    public ClassLoader contextLoader() {
+        return Thread.currentThread().getContextClassLoader();
+    }
+
+    @Override
+    public ClassLoader directContextLoader() {
+        return Thread.currentThread().getContextClassLoader();
+    }
+
+    @Override
+    public void fail() {
+        throw new IllegalStateException("probe failure");
+    }
+}
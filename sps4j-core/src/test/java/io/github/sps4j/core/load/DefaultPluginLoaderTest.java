@@ -1,18 +1,55 @@
 package io.github.sps4j.core.load;
 
+import com.github.zafarkhaja.semver.Version;
+import io.github.sps4j.annotation.PluginProcessor;
+import io.github.sps4j.common.Const;
 import io.github.sps4j.common.meta.MetaInfo;
 import io.github.sps4j.common.meta.PluginDesc;
+import io.github.sps4j.common.utils.YamlUtils;
 import io.github.sps4j.core.Sps4jPlugin;
+import io.github.sps4j.core.load.storage.ProxyClassCache;
+import io.github.sps4j.core.metrics.InvocationMetrics;
+import io.github.sps4j.core.metrics.PluginInvocationMetrics;
+import org.apache.commons.io.IOUtils;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
 import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
@@ -55,4 +92,264 @@ class DefaultPluginLoaderTest {
         // The final returned plugin should be the one from postLoadPlugin, which is the mockPlugin in the spy's default implementation.
         assertSame(mockPlugin, loadedPlugin);
     }
-}
\ No newline at end of file
+
+    @ParameterizedTest
+    @EnumSource(DispatchMode.class)
+    void createPluginInstance_shouldSwitchContextLoader(DispatchMode dispatchMode) throws Exception {
+        URL classes = ContextLoaderProbePlugin.class.getProtectionDomain().getCodeSource().getLocation();
+        try (Sps4jPluginClassLoader cl = new Sps4jPluginClassLoader(new URL[]{classes}, getClass().getClassLoader())) {
+            Sps4jPlugin plugin = new DefaultPluginLoader(dispatchMode)
+                    .createPluginInstance(ContextLoaderProbePlugin.class.getName(), cl);
+            assertInstanceOf(Sps4jProxy.class, plugin);
+            ContextLoaderProbe probe = (ContextLoaderProbe) plugin;
+            ClassLoader before = Thread.currentThread().getContextClassLoader();
+
+            assertSame(cl, probe.contextLoader());
+            assertSame(before, Thread.currentThread().getContextClassLoader());
+            // methods marked not to switch it are called directly
+            assertSame(before, probe.directContextLoader());
+
+            // exceptions of the plugin are neither wrapped nor leave the context loader switched
+            assertThrows(IllegalStateException.class, probe::fail);
+            assertSame(before, Thread.currentThread().getContextClassLoader());
+            // inherited default methods are dispatched as well
+            plugin.onDestroy();
+        }
+    }
+
+    @Test
+    void createPluginInstance_delegateMode_shouldLeavePluginClassUnchanged(@TempDir Path dir) throws Exception {
+        // Given: a plugin JAR file listing the plugin interface
+        Path jar = dir.resolve("probe.jar");
+        writeProbeJar(jar, false);
+        try (Sps4jPluginClassLoader cl = new Sps4jPluginClassLoader(new URL[]{jar.toUri().toURL()},
+                getClass().getClassLoader())) {
+            // When
+            Sps4jPlugin plugin = new DefaultPluginLoader(DispatchMode.DELEGATE)
+                    .createPluginInstance(ContextLoaderProbePlugin.class.getName(), cl);
+
+            // Then: the delegate implements the plugin interface only and the plugin class is not a proxy
+            assertEquals(ContextLoaderProbePlugin.class.getName() + "$Sps4jDelegate", plugin.getClass().getName());
+            assertSame(cl, plugin.getClass().getClassLoader());
+            assertEquals(Arrays.asList(ContextLoaderProbe.class, Sps4jProxy.class),
+                    Arrays.asList(plugin.getClass().getInterfaces()));
+            assertFalse(Sps4jProxy.class.isAssignableFrom(Class.forName(ContextLoaderProbePlugin.class.getName(), false, cl)));
+            ClassLoader before = Thread.currentThread().getContextClassLoader();
+            assertSame(cl, ((ContextLoaderProbe) plugin).contextLoader());
+            assertSame(before, ((ContextLoaderProbe) plugin).directContextLoader());
+            assertThrows(IllegalStateException.class, ((ContextLoaderProbe) plugin)::fail);
+            assertSame(before, Thread.currentThread().getContextClassLoader());
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = DispatchMode.class, names = {"INTERCEPTOR", "INLINE"})
+    void createPluginInstance_withProxyClassCache_shouldDefineCachedProxy(DispatchMode dispatchMode, @TempDir Path dir)
+            throws Exception {
+        // Given: a plugin JAR file and a loader caching proxies
+        Path jar = dir.resolve("probe.jar");
+        writeProbeJar(jar, false);
+        ProxyClassCache cache = new ProxyClassCache(dir.resolve("cache"));
+        DefaultPluginLoader loader = new DefaultPluginLoader(dispatchMode, null, ClassLoaderOptions.DEFAULT, cache);
+
+        // When: the plugin is loaded twice
+        createProbe(loader, jar);
+        createProbe(loader, jar);
+
+        // Then: the proxy generated by the first load is defined from the cache by the second one
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+
+        // When: the plugin JAR file changes
+        writeProbeJar(jar, true);
+        createProbe(loader, jar);
+
+        // Then: the proxy is generated again
+        assertEquals(2, cache.getMisses());
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    void createPluginInstance_proxyClassCacheHit_shouldNotReadPluginClassFiles(@TempDir Path dir) throws Exception {
+        // Given: a proxy cached by a first load
+        Path jar = dir.resolve("probe.jar");
+        byte[] classFile;
+        try (InputStream in = ContextLoaderProbePlugin.class.getResourceAsStream("ContextLoaderProbePlugin.class")) {
+            classFile = IOUtils.toByteArray(in);
+        }
+        writeStoredProbeJar(jar, classFile);
+        ProxyClassCache cache = new ProxyClassCache(dir.resolve("cache"));
+        DefaultPluginLoader loader = new DefaultPluginLoader(DispatchMode.INLINE, null, ClassLoaderOptions.DEFAULT, cache);
+        createProbe(loader, jar);
+
+        // When: the plugin class file is made unreadable, the JAR file keeping the size and modification time
+        // its content hash is cached for
+        FileTime modified = Files.getLastModifiedTime(jar);
+        writeStoredProbeJar(jar, new byte[classFile.length]);
+        Files.setLastModifiedTime(jar, modified);
+        createProbe(loader, jar);
+
+        // Then: the proxy is defined from the cache without reading the plugin class
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+    }
+
+    private static void writeStoredProbeJar(Path jar, byte[] classFile) throws IOException {
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+            putStored(out, ContextLoaderProbePlugin.class.getName().replace('.', '/') + ".class", classFile);
+            putStored(out, Const.INTERFACE_FILE,
+                    ("probe: " + ContextLoaderProbe.class.getName() + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void putStored(JarOutputStream out, String name, byte[] content) throws IOException {
+        JarEntry entry = new JarEntry(name);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(content.length);
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        entry.setCrc(crc.getValue());
+        entry.setTime(0);
+        out.putNextEntry(entry);
+        out.write(content);
+        out.closeEntry();
+    }
+
+    private static void createProbe(DefaultPluginLoader loader, Path jar) throws Exception {
+        try (Sps4jPluginClassLoader cl = new Sps4jPluginClassLoader(new URL[]{jar.toUri().toURL()},
+                DefaultPluginLoaderTest.class.getClassLoader())) {
+            Sps4jPlugin plugin = loader.createPluginInstance(ContextLoaderProbePlugin.class.getName(), cl);
+            assertInstanceOf(Sps4jProxy.class, plugin);
+            assertSame(cl, plugin.getClass().getClassLoader());
+            ContextLoaderProbe probe = (ContextLoaderProbe) plugin;
+            ClassLoader before = Thread.currentThread().getContextClassLoader();
+            assertSame(cl, probe.contextLoader());
+            assertThrows(IllegalStateException.class, probe::fail);
+            assertSame(before, Thread.currentThread().getContextClassLoader());
+        }
+    }
+
+    private static void writeProbeJar(Path jar, boolean withExtraEntry) throws IOException {
+        String path = ContextLoaderProbePlugin.class.getName().replace('.', '/') + ".class";
+        try (InputStream in = ContextLoaderProbePlugin.class.getClassLoader().getResourceAsStream(path);
+             JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+            out.putNextEntry(new JarEntry(path));
+            IOUtils.copy(in, out);
+            out.closeEntry();
+            out.putNextEntry(new JarEntry(Const.INTERFACE_FILE));
+            out.write(("probe: " + ContextLoaderProbe.class.getName() + "\n").getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+            if (withExtraEntry) {
+                out.putNextEntry(new JarEntry("extra.txt"));
+                out.closeEntry();
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(DispatchMode.class)
+    void load_withInvocationMetrics_shouldRecordCalls(DispatchMode dispatchMode, @TempDir Path dir) throws Exception {
+        // Given
+        Path jar = dir.resolve("probe.jar");
+        writeProbeJar(jar, false);
+        URL url = jar.toUri().toURL();
+        PluginDesc desc = PluginDesc.builder()
+                .type("probe")
+                .name("probe")
+                .version(Version.parse("1.0.0"))
+                .className(ContextLoaderProbePlugin.class.getName())
+                .build();
+        InvocationMetrics invocationMetrics = new InvocationMetrics();
+        DefaultPluginLoader loader = new DefaultPluginLoader(dispatchMode, null, ClassLoaderOptions.DEFAULT, null,
+                invocationMetrics);
+        try (Sps4jPluginClassLoader cl = new Sps4jPluginClassLoader(new URL[]{url}, getClass().getClassLoader())) {
+            ContextLoaderProbe probe = (ContextLoaderProbe) loader.load(new MetaInfo(desc, url), cl, Collections.emptyMap());
+
+            // When
+            probe.contextLoader();
+            probe.contextLoader();
+            probe.directContextLoader();
+            assertThrows(IllegalStateException.class, probe::fail);
+
+            // Then: calls are recorded, but not the ones of methods that are not intercepted
+            PluginInvocationMetrics metrics = invocationMetrics.get(desc.toArtifact());
+            assertNotNull(metrics);
+            assertEquals(2, metrics.getMethod("contextLoader()").getCalls());
+            assertEquals(0, metrics.getMethod("contextLoader()").getErrors());
+            assertEquals(1, metrics.getMethod("fail()").getCalls());
+            assertEquals(1, metrics.getMethod("fail()").getErrors());
+            assertNull(metrics.getMethod("directContextLoader()"));
+            assertTrue(metrics.getMethod("contextLoader()").getTotalTime(TimeUnit.NANOSECONDS) > 0);
+        }
+    }
+
+    @Test
+    void load_withBuildTimeProxy_shouldInstantiateGeneratedProxy(@TempDir Path dir) throws Exception {
+        // Given: a plugin compiled with the annotation processor
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assumeTrue(compiler != null, "requires a JDK");
+        List<JavaFileObject> sources = Arrays.asList(
+                source("synthetic.precompiled.Probe", "package synthetic.precompiled;\n"
+                        + "@io.github.sps4j.annotation.Sps4jPluginInterface(\"probe\")\n"
+                        + "public interface Probe extends io.github.sps4j.core.load.ContextLoaderProbe {}\n"),
+                source("synthetic.precompiled.ProbePlugin", "package synthetic.precompiled;\n"
+                        + "@io.github.sps4j.annotation.Sps4jPlugin(name = \"probe\", version = \"1.0.0\")\n"
+                        + "public class ProbePlugin implements Probe {\n"
+                        + "    public ClassLoader contextLoader() { return Thread.currentThread().getContextClassLoader(); }\n"
+                        + "    public ClassLoader directContextLoader() {"
+                        + " return Thread.currentThread().getContextClassLoader(); }\n"
+                        + "    public void fail() { throw new IllegalStateException(); }\n"
+                        + "}\n"));
+        JavaCompiler.CompilationTask task = compiler.getTask(null, null, null,
+                Arrays.asList("-d", dir.toString(), "-classpath", System.getProperty("java.class.path")), null, sources);
+        task.setProcessors(Collections.singletonList(new PluginProcessor()));
+        assertTrue(task.call());
+        PluginDesc desc = YamlUtils.getYamlMapper().readValue(dir.resolve(Const.DESC_FILE).toFile(), PluginDesc.class);
+        URL url = dir.toUri().toURL();
+
+        // When
+        try (Sps4jPluginClassLoader cl = new Sps4jPluginClassLoader(new URL[]{url}, getClass().getClassLoader())) {
+            Sps4jPlugin plugin = new DefaultPluginLoader().load(new MetaInfo(desc, url), cl, Collections.emptyMap());
+
+            // Then: the generated proxy is used, no class is injected
+            assertEquals("synthetic.precompiled.ProbePlugin$Sps4jProxy", plugin.getClass().getName());
+            assertEquals(desc.getProxyClassName(), plugin.getClass().getName());
+            assertInstanceOf(Sps4jProxy.class, plugin);
+            ClassLoader before = Thread.currentThread().getContextClassLoader();
+            assertSame(cl, ((ContextLoaderProbe) plugin).contextLoader());
+            assertSame(before, ((ContextLoaderProbe) plugin).directContextLoader());
+            assertThrows(IllegalStateException.class, ((ContextLoaderProbe) plugin)::fail);
+            assertSame(before, Thread.currentThread().getContextClassLoader());
+        }
+    }
+
+    @Test
+    void load_withMissingBuildTimeProxy_shouldGenerateProxy() throws Exception {
+        // Given: a descriptor naming a proxy class that is not packaged
+        URL classes = ContextLoaderProbePlugin.class.getProtectionDomain().getCodeSource().getLocation();
+        PluginDesc desc = PluginDesc.builder().type("probe").name("probe").version(Version.parse("1.0.0"))
+                .className(ContextLoaderProbePlugin.class.getName())
+                .proxyClassName(ContextLoaderProbePlugin.class.getName() + "$Sps4jProxy")
+                .build();
+
+        // When
+        try (Sps4jPluginClassLoader cl = new Sps4jPluginClassLoader(new URL[]{classes}, getClass().getClassLoader())) {
+            Sps4jPlugin plugin = new DefaultPluginLoader().load(new MetaInfo(desc, classes), cl, Collections.emptyMap());
+
+            // Then: the plugin class is rebased at runtime
+            assertEquals(ContextLoaderProbePlugin.class.getName(), plugin.getClass().getName());
+            assertInstanceOf(Sps4jProxy.class, plugin);
+            assertSame(cl, ((ContextLoaderProbe) plugin).contextLoader());
+        }
+    }
+
+    private static JavaFileObject source(String className, String code) {
+        return new SimpleJavaFileObject(URI.create("string:///" + className.replace('.', '/') + ".java"),
+                JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return code;
+            }
+        };
+    }
+}
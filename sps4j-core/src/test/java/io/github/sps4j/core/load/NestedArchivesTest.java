@@ -0,0 +1,130 @@
+package io.github.sps4j.core.load;
+
+import net.bytebuddy.ByteBuddy;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NestedArchivesTest {
+
+    private static final ClassLoaderOptions NESTED = ClassLoaderOptions.builder().nestedArchives(true).build();
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void loadClass_nestedArchivesEnabled_shouldLoadFromNestedJarsInPlace() throws Exception {
+        // Given: a fat plugin JAR with a stored and a compressed nested JAR, and a classes directory,
+        // the class of the stored nested JAR being stored too
+        URL fatJar = writeFatJar();
+
+        // When
+        try (Sps4jPluginClassLoader cl = new Sps4jPluginClassLoader(new URL[]{fatJar}, getClass().getClassLoader(),
+                Collections.emptyList(), NESTED)) {
+            // Then
+            Class<?> stored = cl.loadClass("synthetic.stored.Dep");
+            Class<?> deflated = cl.loadClass("synthetic.deflated.Dep");
+            Class<?> boot = cl.loadClass("synthetic.boot.Main");
+            assertSame(cl, stored.getClassLoader());
+            assertSame(cl, deflated.getClassLoader());
+            assertSame(cl, boot.getClassLoader());
+            assertEquals("stored", stored.getPackage().getImplementationVersion());
+            assertEquals("deflated", deflated.getPackage().getImplementationVersion());
+            assertEquals(NestedArchives.PROTOCOL,
+                    boot.getProtectionDomain().getCodeSource().getLocation().getProtocol());
+            assertThrows(ClassNotFoundException.class, () -> cl.loadClass("synthetic.Missing"));
+
+            List<URL> resources = Collections.list(cl.getResources("data.txt"));
+            assertEquals(3, resources.size());
+            assertEquals("root", read(cl.getResource("data.txt")));
+            assertEquals(NestedArchives.PROTOCOL, resources.get(2).getProtocol());
+            assertEquals("stored", read(resources.get(2)));
+            assertEquals("deflated", read(resources.get(1)));
+            assertNotNull(cl.getResourceAsStream("synthetic/deflated/Dep.class"));
+        }
+    }
+
+    @Test
+    void loadClass_nestedArchivesDisabled_shouldIgnoreNestedJars() throws Exception {
+        // Given
+        URL fatJar = writeFatJar();
+
+        // When
+        try (Sps4jPluginClassLoader cl = new Sps4jPluginClassLoader(new URL[]{fatJar}, getClass().getClassLoader())) {
+            // Then
+            assertThrows(ClassNotFoundException.class, () -> cl.loadClass("synthetic.stored.Dep"));
+            assertThrows(ClassNotFoundException.class, () -> cl.loadClass("synthetic.boot.Main"));
+            assertEquals(1, Collections.list(cl.getResources("data.txt")).size());
+        }
+    }
+
+    private URL writeFatJar() throws IOException {
+        Path jar = dir.resolve("fat.jar");
+        try (OutputStream out = Files.newOutputStream(jar); JarOutputStream jarOut = new JarOutputStream(out)) {
+            putEntry(jarOut, "data.txt", "root".getBytes(StandardCharsets.UTF_8), ZipEntry.DEFLATED);
+            putEntry(jarOut, "BOOT-INF/classes/synthetic/boot/Main.class", classBytes("synthetic.boot.Main"),
+                    ZipEntry.DEFLATED);
+            putEntry(jarOut, "lib/dep.jar", nestedJar("synthetic.stored.Dep", "stored", ZipEntry.STORED),
+                    ZipEntry.STORED);
+            putEntry(jarOut, "BOOT-INF/lib/other.jar",
+                    nestedJar("synthetic.deflated.Dep", "deflated", ZipEntry.DEFLATED), ZipEntry.DEFLATED);
+        }
+        return jar.toUri().toURL();
+    }
+
+    private static byte[] nestedJar(String className, String data, int classMethod) throws IOException {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(Attributes.Name.IMPLEMENTATION_VERSION, data);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JarOutputStream jarOut = new JarOutputStream(out, manifest)) {
+            putEntry(jarOut, className.replace('.', '/') + ".class", classBytes(className), classMethod);
+            putEntry(jarOut, "data.txt", data.getBytes(StandardCharsets.UTF_8), ZipEntry.STORED);
+        }
+        return out.toByteArray();
+    }
+
+    private static void putEntry(JarOutputStream jarOut, String name, byte[] bytes, int method) throws IOException {
+        JarEntry entry = new JarEntry(name);
+        entry.setMethod(method);
+        if (method == ZipEntry.STORED) {
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            entry.setCrc(crc.getValue());
+            entry.setSize(bytes.length);
+            entry.setCompressedSize(bytes.length);
+        }
+        jarOut.putNextEntry(entry);
+        jarOut.write(bytes);
+        jarOut.closeEntry();
+    }
+
+    private static byte[] classBytes(String className) {
+        return new ByteBuddy().subclass(Object.class).name(className).make().getBytes();
+    }
+
+    private static String read(URL url) throws IOException {
+        try (InputStream in = url.openStream()) {
+            return IOUtils.toString(in, StandardCharsets.UTF_8);
+        }
+    }
+}
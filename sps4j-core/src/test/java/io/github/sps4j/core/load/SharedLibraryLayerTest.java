@@ -0,0 +1,162 @@
+package io.github.sps4j.core.load;
+
+import io.github.sps4j.common.meta.MetaInfo;
+import io.github.sps4j.common.meta.PluginDesc;
+import net.bytebuddy.ByteBuddy;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SharedLibraryLayerTest {
+    private static final long ENTRY_TIME = 1_700_000_000_000L;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void createClassLoader_identicalLibraries_shouldShareOneClassLoader() throws Exception {
+        // Given: two plugins with their own copy of the same library
+        SharedLibraryLayer layer = new SharedLibraryLayer(getClass().getClassLoader());
+        MetaInfo a = plugin("a", "synthetic.lib.Dep");
+        MetaInfo b = plugin("b", "synthetic.lib.Dep");
+
+        // When
+        Sps4jPluginClassLoader clA = layer.createClassLoader(Collections.singletonList(a));
+        Sps4jPluginClassLoader clB = layer.createClassLoader(Collections.singletonList(b));
+
+        // Then
+        assertInstanceOf(SharedLibraryClassLoader.class, clA.getParent());
+        assertSame(clA.getParent(), clB.getParent());
+        Class<?> dep = clA.loadClass("synthetic.lib.Dep");
+        assertSame(clA.getParent(), dep.getClassLoader());
+        assertSame(dep, clB.loadClass("synthetic.lib.Dep"));
+        assertSame(clA, clA.loadClass("synthetic.a.Plugin").getClassLoader());
+        assertNotNull(clB.getResource("synthetic/lib/Dep.class"));
+
+        SharedLibraryClassLoader shared = (SharedLibraryClassLoader) clA.getParent();
+        assertEquals(2, shared.getPluginCount());
+        assertEquals(1, shared.getLoadedClassCount());
+        assertTrue(shared.getLoadedClassBytes() > 0);
+        assertEquals(shared.getLoadedClassBytes() / 2, shared.getEstimatedSavedBytesPerPlugin());
+        assertEquals(shared.getLoadedClassBytes(), layer.getEstimatedSavedBytes());
+
+        // When: the plugins are unloaded
+        clA.close();
+        assertEquals(1, layer.getSharedClassLoaders().size());
+        clB.close();
+
+        // Then: the class loader and the hashes of its libraries are dropped
+        assertTrue(layer.getSharedClassLoaders().isEmpty());
+        assertEquals(0, shared.getPluginCount());
+        assertEquals(0, layer.getContentHashes().size());
+    }
+
+    @Test
+    void createClassLoader_conflictingLibraries_shouldStayIsolated() throws Exception {
+        // Given: two plugins with different versions of the same library
+        SharedLibraryLayer layer = new SharedLibraryLayer(getClass().getClassLoader());
+        MetaInfo a = plugin("a", "synthetic.lib.Dep");
+        MetaInfo b = plugin("b", "synthetic.lib.Dep", "synthetic.lib.NewInV2");
+
+        // When
+        try (Sps4jPluginClassLoader clA = layer.createClassLoader(Collections.singletonList(a));
+             Sps4jPluginClassLoader clB = layer.createClassLoader(Collections.singletonList(b))) {
+            // Then
+            assertNotSame(clA.getParent(), clB.getParent());
+            assertNotSame(clA.loadClass("synthetic.lib.Dep"), clB.loadClass("synthetic.lib.Dep"));
+            assertThrows(ClassNotFoundException.class, () -> clA.loadClass("synthetic.lib.NewInV2"));
+            assertEquals(0, layer.getEstimatedSavedBytes());
+        }
+    }
+
+    @Test
+    void createClassLoader_partiallyIdenticalLibraries_shouldShareNone() throws Exception {
+        // Given: two plugins with the same first library and different second libraries
+        SharedLibraryLayer layer = new SharedLibraryLayer(getClass().getClassLoader());
+        MetaInfo a = pluginWithLibraries("a", new String[]{"synthetic.lib.Dep"}, new String[]{"synthetic.lib.Other"});
+        MetaInfo b = pluginWithLibraries("b", new String[]{"synthetic.lib.Dep"},
+                new String[]{"synthetic.lib.Other", "synthetic.lib.NewInV2"});
+
+        // When
+        try (Sps4jPluginClassLoader clA = layer.createClassLoader(Collections.singletonList(a));
+             Sps4jPluginClassLoader clB = layer.createClassLoader(Collections.singletonList(b))) {
+            // Then: libraries are shared as a whole, so the common one is loaded twice
+            assertNotSame(clA.getParent(), clB.getParent());
+            assertEquals(2, layer.getSharedClassLoaders().size());
+            assertNotSame(clA.loadClass("synthetic.lib.Dep"), clB.loadClass("synthetic.lib.Dep"));
+            assertEquals(0, layer.getEstimatedSavedBytes());
+        }
+    }
+
+    @Test
+    void createClassLoader_noLibraries_shouldUseParentDirectly() throws Exception {
+        // Given
+        SharedLibraryLayer layer = new SharedLibraryLayer(getClass().getClassLoader());
+        MetaInfo a = plugin("a");
+
+        // When
+        try (Sps4jPluginClassLoader cl = layer.createClassLoader(Collections.singletonList(a))) {
+            // Then
+            assertSame(getClass().getClassLoader(), cl.getParent());
+            assertTrue(layer.getSharedClassLoaders().isEmpty());
+        }
+    }
+
+    private MetaInfo plugin(String name, String... libraryClasses) throws IOException {
+        return libraryClasses.length == 0 ? pluginWithLibraries(name) : pluginWithLibraries(name, libraryClasses);
+    }
+
+    private MetaInfo pluginWithLibraries(String name, String[]... libraries) throws IOException {
+        Path pluginDir = Files.createDirectories(dir.resolve(name));
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        if (libraries.length > 0) {
+            Files.createDirectories(pluginDir.resolve("lib"));
+            List<String> classPath = new ArrayList<>();
+            for (int i = 0; i < libraries.length; i++) {
+                String library = i == 0 ? "lib/dep.jar" : "lib/dep" + i + ".jar";
+                writeJar(pluginDir.resolve(library), new Manifest(), libraries[i]);
+                classPath.add(library);
+            }
+            manifest.getMainAttributes().put(Attributes.Name.CLASS_PATH, String.join(" ", classPath));
+        }
+        Path jar = writeJar(pluginDir.resolve(name + ".jar"), manifest, "synthetic." + name + ".Plugin");
+        PluginDesc descriptor = PluginDesc.builder().type("test").name(name).className("synthetic." + name + ".Plugin").build();
+        return new MetaInfo(descriptor, jar.toUri().toURL());
+    }
+
+    private static Path writeJar(Path jar, Manifest manifest, String... classes) throws IOException {
+        // fixed entry times, so that jars with the same entries have the same content hash
+        try (OutputStream out = Files.newOutputStream(jar); JarOutputStream jarOut = new JarOutputStream(out)) {
+            jarOut.putNextEntry(entry(JarFile.MANIFEST_NAME));
+            manifest.write(jarOut);
+            jarOut.closeEntry();
+            for (String className : classes) {
+                jarOut.putNextEntry(entry(className.replace('.', '/') + ".class"));
+                jarOut.write(new ByteBuddy().subclass(Object.class).name(className).make().getBytes());
+                jarOut.closeEntry();
+            }
+        }
+        return jar;
+    }
+
+    private static JarEntry entry(String name) {
+        JarEntry entry = new JarEntry(name);
+        entry.setTime(ENTRY_TIME);
+        return entry;
+    }
+}
@@ -0,0 +1,371 @@
+package io.github.sps4j.core.load;
+
+import io.github.sps4j.common.meta.PluginDesc;
+import net.bytebuddy.ByteBuddy;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Sps4jPluginClassLoaderTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void loadClass_indexedJar_shouldOnlySearchJarForItsOwnClasses() throws Exception {
+        // Given
+        Path jar = writeJar("plugin.jar");
+        try (CountingClassLoader cl = new CountingClassLoader(new URL[]{jar.toUri().toURL()}, getClass().getClassLoader())) {
+            // When / Then: plugin classes are loaded child-first
+            Class<?> pluginClass = cl.loadClass("synthetic.Child");
+            assertSame(cl, pluginClass.getClassLoader());
+            assertEquals(1, cl.findClassCalls.get());
+
+            // classes that are not in the jar go to the parent without searching the jar
+            assertSame(ConcurrentHashMapHolder.TYPE, cl.loadClass(ConcurrentHashMapHolder.TYPE.getName()));
+            assertSame(getClass(), cl.loadClass(getClass().getName()));
+            assertEquals(1, cl.findClassCalls.get());
+            assertThrows(ClassNotFoundException.class, () -> cl.loadClass("synthetic.Missing"));
+            assertEquals(1, cl.findClassCalls.get());
+        }
+    }
+
+    @Test
+    void findResource_indexedJar_shouldAnswerFromIndex() throws Exception {
+        // Given
+        Path jar = writeJar("plugin.jar");
+        try (Sps4jPluginClassLoader cl = new Sps4jPluginClassLoader(new URL[]{jar.toUri().toURL()}, getClass().getClassLoader())) {
+            // When / Then
+            assertNotNull(cl.findResource("synthetic/data.txt"));
+            assertNotNull(cl.findResource("synthetic/"));
+            assertNotNull(cl.findResource("synthetic"));
+            assertNull(cl.findResource("synthetic/missing.txt"));
+            assertFalse(cl.findResources("synthetic/missing.txt").hasMoreElements());
+            List<URL> urls = Collections.list(cl.getResources("synthetic/data.txt"));
+            assertEquals(1, urls.size());
+            assertNotNull(cl.getResource("org/junit/jupiter/api/Test.class"));
+        }
+    }
+
+    @Test
+    void loadClass_manifestClassPath_shouldIndexReferencedJars() throws Exception {
+        // Given: a plugin jar referencing a library jar in its manifest
+        Files.createDirectories(dir.resolve("lib"));
+        Files.move(writeJar("dep.jar"), dir.resolve("lib/dep.jar"));
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(Attributes.Name.CLASS_PATH, "lib/dep.jar lib/missing.jar");
+        Path jar = dir.resolve("plugin.jar");
+        try (OutputStream out = Files.newOutputStream(jar); JarOutputStream jarOut = new JarOutputStream(out, manifest)) {
+            jarOut.putNextEntry(new JarEntry("other/"));
+            jarOut.closeEntry();
+        }
+        try (Sps4jPluginClassLoader cl = new Sps4jPluginClassLoader(new URL[]{jar.toUri().toURL()}, getClass().getClassLoader())) {
+            // When / Then
+            assertSame(cl, cl.loadClass("synthetic.Child").getClassLoader());
+            assertNotNull(cl.findResource("synthetic/data.txt"));
+            assertNull(cl.findResource("synthetic/missing.txt"));
+        }
+    }
+
+    @Test
+    void loadClass_directoryUrl_shouldFallBackToSearch() throws Exception {
+        // Given: a class loader that cannot be indexed
+        Path classes = dir.resolve("classes");
+        Files.createDirectories(classes.resolve("synthetic"));
+        Files.write(classes.resolve("synthetic/Child.class"),
+                new ByteBuddy().subclass(Object.class).name("synthetic.Child").make().getBytes());
+        try (CountingClassLoader cl = new CountingClassLoader(new URL[]{classes.toUri().toURL()}, getClass().getClassLoader())) {
+            // When / Then
+            assertSame(cl, cl.loadClass("synthetic.Child").getClassLoader());
+            int calls = cl.findClassCalls.get();
+            assertSame(ConcurrentHashMapHolder.TYPE, cl.loadClass(ConcurrentHashMapHolder.TYPE.getName()));
+            assertEquals(calls + 1, cl.findClassCalls.get());
+            assertNotNull(cl.findResource("synthetic/Child.class"));
+        }
+    }
+
+    @Test
+    void loadClass_packageRules_shouldApplyMostSpecificRule() throws Exception {
+        // Given: the same classes in the parent and in the plugin
+        Path hostJar = writeJar("host.jar");
+        Path pluginJar = writeJar("plugin.jar");
+        try (URLClassLoader host = new URLClassLoader(new URL[]{hostJar.toUri().toURL()}, getClass().getClassLoader());
+             Sps4jPluginClassLoader cl = new Sps4jPluginClassLoader(new URL[]{pluginJar.toUri().toURL()}, host)) {
+            cl.addPackageRules(PluginDesc.builder()
+                    .parentFirstPackages(Collections.singletonList("synthetic.*"))
+                    .childFirstPackages(Collections.singletonList("synthetic.Child"))
+                    .build());
+
+            // When / Then
+            assertSame(host, cl.loadClass("synthetic.Parent").getClassLoader());
+            assertSame(cl, cl.loadClass("synthetic.Child").getClassLoader());
+            assertEquals(Collections.singleton("synthetic"), cl.getParentFirstPackages());
+            assertEquals(Collections.singleton("synthetic.Child"), cl.getChildFirstPackages());
+        }
+    }
+
+    @Test
+    void getParentFirstPackages_modified_shouldChangeRules() throws Exception {
+        // Given
+        Path hostJar = writeJar("host.jar");
+        Path pluginJar = writeJar("plugin.jar");
+        try (URLClassLoader host = new URLClassLoader(new URL[]{hostJar.toUri().toURL()}, getClass().getClassLoader());
+             Sps4jPluginClassLoader cl = new Sps4jPluginClassLoader(new URL[]{pluginJar.toUri().toURL()}, host)) {
+
+            // When
+            assertTrue(cl.getParentFirstPackages().add("synthetic"));
+
+            // Then
+            assertSame(host, cl.loadClass("synthetic.Parent").getClassLoader());
+            assertTrue(cl.getParentFirstPackages().contains("synthetic"));
+
+            // When
+            assertTrue(cl.getParentFirstPackages().remove("synthetic"));
+            assertFalse(cl.getParentFirstPackages().remove("io.github.sps4j"));
+
+            // Then: the framework package stays parent-first
+            assertSame(cl, cl.loadClass("synthetic.Child").getClassLoader());
+            assertTrue(cl.getParentFirstPackages().isEmpty());
+            assertSame(Sps4jPluginClassLoader.class, cl.loadClass(Sps4jPluginClassLoader.class.getName()));
+        }
+    }
+
+    @Test
+    void loadClass_parentFirstPackage_shouldNotMatchSiblingPrefix() throws Exception {
+        // Given
+        Path hostJar = writeJar("host.jar");
+        Path pluginJar = writeJar("plugin.jar");
+        try (URLClassLoader host = new URLClassLoader(new URL[]{hostJar.toUri().toURL()}, getClass().getClassLoader());
+             Sps4jPluginClassLoader cl = new Sps4jPluginClassLoader(new URL[]{pluginJar.toUri().toURL()}, host)) {
+            cl.addParentFirstPackages("synth");
+
+            // When / Then: package names are matched by segments, not by string prefix
+            assertSame(cl, cl.loadClass("synthetic.Parent").getClassLoader());
+        }
+    }
+
+    @Test
+    void getResource_ignoredParentResource_shouldReflectAddedPatterns() throws Exception {
+        // Given
+        Path jar = writeJar("plugin.jar");
+        try (Sps4jPluginClassLoader cl = new Sps4jPluginClassLoader(new URL[]{jar.toUri().toURL()}, getClass().getClassLoader())) {
+            String test = "org/junit/jupiter/api/Test.class";
+            String assertions = "org/junit/jupiter/api/Assertions.class";
+            assertNotNull(cl.getResource(assertions));
+
+            // When
+            cl.addIgnoreParentResourceNamePattern("^Test\\.class$");
+
+            // Then
+            assertNull(cl.getResource(test));
+            assertFalse(cl.getResources(test).hasMoreElements());
+            assertNotNull(cl.getResource(assertions));
+
+            // When: patterns added later invalidate the previous decisions
+            cl.addIgnoreParentResourceNamePattern("Assert");
+
+            // Then
+            assertNull(cl.getResource(assertions));
+            assertNull(cl.getResource(test));
+            assertNotNull(cl.getResource("synthetic/data.txt"));
+        }
+    }
+
+    @Test
+    void loadClass_mappedArchives_shouldDefineClassesFromMapping() throws Exception {
+        // Given: a jar with a manifest, a compressed class and a stored class
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(Attributes.Name.IMPLEMENTATION_VERSION, "1.2.3");
+        Path jar = dir.resolve("mapped.jar");
+        byte[] stored = new ByteBuddy().subclass(Object.class).name("synthetic.Stored").make().getBytes();
+        try (OutputStream out = Files.newOutputStream(jar); JarOutputStream jarOut = new JarOutputStream(out, manifest)) {
+            jarOut.putNextEntry(new JarEntry("synthetic/Child.class"));
+            jarOut.write(new ByteBuddy().subclass(Object.class).name("synthetic.Child").make().getBytes());
+            jarOut.closeEntry();
+            JarEntry entry = new JarEntry("synthetic/Stored.class");
+            entry.setMethod(JarEntry.STORED);
+            CRC32 crc = new CRC32();
+            crc.update(stored);
+            entry.setCrc(crc.getValue());
+            entry.setSize(stored.length);
+            jarOut.putNextEntry(entry);
+            jarOut.write(stored);
+            jarOut.closeEntry();
+        }
+        ClassLoaderOptions options = ClassLoaderOptions.builder().mappedArchives(true).build();
+
+        // When
+        try (Sps4jPluginClassLoader cl = new Sps4jPluginClassLoader(new URL[]{jar.toUri().toURL()},
+                getClass().getClassLoader(), Collections.emptyList(), options)) {
+            // Then
+            Class<?> child = cl.loadClass("synthetic.Child");
+            Class<?> storedClass = cl.loadClass("synthetic.Stored");
+            assertSame(cl, child.getClassLoader());
+            assertSame(cl, storedClass.getClassLoader());
+            assertEquals(jar.toUri().toURL(), storedClass.getProtectionDomain().getCodeSource().getLocation());
+            assertEquals("1.2.3", child.getPackage().getImplementationVersion());
+            assertThrows(ClassNotFoundException.class, () -> cl.loadClass("synthetic.Missing"));
+            assertNotNull(cl.getResource("synthetic/Stored.class"));
+        }
+    }
+
+    @Test
+    void loadClass_closedMappedArchives_shouldNotDefineClasses() throws Exception {
+        // Given
+        Path jar = dir.resolve("closed.jar");
+        try (OutputStream out = Files.newOutputStream(jar); JarOutputStream jarOut = new JarOutputStream(out)) {
+            jarOut.putNextEntry(new JarEntry("synthetic/Closed.class"));
+            jarOut.write(new ByteBuddy().subclass(Object.class).name("synthetic.Closed").make().getBytes());
+            jarOut.closeEntry();
+        }
+        ClassLoaderOptions options = ClassLoaderOptions.builder().mappedArchives(true).build();
+        Sps4jPluginClassLoader cl = new Sps4jPluginClassLoader(new URL[]{jar.toUri().toURL()},
+                getClass().getClassLoader(), Collections.emptyList(), options);
+
+        // When
+        cl.close();
+
+        // Then
+        assertThrows(ClassNotFoundException.class, () -> cl.loadClass("synthetic.Closed"));
+    }
+
+    @Test
+    void loadClass_repeatedMiss_shouldBeAnsweredFromNegativeCache() throws Exception {
+        // Given
+        Path classes = dir.resolve("classes");
+        Files.createDirectories(classes);
+        try (CountingClassLoader cl = new CountingClassLoader(new URL[]{classes.toUri().toURL()}, getClass().getClassLoader())) {
+            assertThrows(ClassNotFoundException.class, () -> cl.loadClass("synthetic.Child"));
+            assertNull(cl.getResource("synthetic/data.txt"));
+            int calls = cl.findClassCalls.get();
+
+            // When / Then
+            assertThrows(ClassNotFoundException.class, () -> cl.loadClass("synthetic.Child"));
+            assertNull(cl.getResource("synthetic/data.txt"));
+            assertFalse(cl.getResources("synthetic/data.txt").hasMoreElements());
+            assertEquals(calls, cl.findClassCalls.get());
+            assertEquals(3, cl.getNegativeLookupHits());
+            assertEquals(2, cl.getNegativeLookupMisses());
+
+            // When: new URLs may provide the missing names
+            cl.addURL(writeJar("plugin.jar").toUri().toURL());
+
+            // Then
+            assertSame(cl, cl.loadClass("synthetic.Child").getClassLoader());
+            assertNotNull(cl.getResource("synthetic/data.txt"));
+        }
+    }
+
+    @Test
+    void loadClass_concurrentWarmup_shouldDefineEachClassOnce() throws Exception {
+        // Given: a large plugin and threads loading its classes in different orders
+        final int classes = 500;
+        final int threads = 8;
+        Path jar = dir.resolve("large.jar");
+        try (OutputStream out = Files.newOutputStream(jar); JarOutputStream jarOut = new JarOutputStream(out)) {
+            for (int i = 0; i < classes; i++) {
+                jarOut.putNextEntry(new JarEntry("synthetic/large/C" + i + ".class"));
+                jarOut.write(new ByteBuddy().subclass(Object.class).name("synthetic.large.C" + i).make().getBytes());
+                jarOut.closeEntry();
+            }
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try (Sps4jPluginClassLoader cl = new Sps4jPluginClassLoader(new URL[]{jar.toUri().toURL()}, getClass().getClassLoader())) {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Class<?>[]>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final int offset = t * classes / threads;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    Class<?>[] loaded = new Class<?>[classes];
+                    for (int i = 0; i < classes; i++) {
+                        int index = (i + offset) % classes;
+                        loaded[index] = cl.loadClass("synthetic.large.C" + index);
+                        if (index % 50 == 0) {
+                            // configuration changes while classes are loaded
+                            cl.addParentFirstPackages("synthetic.other" + index);
+                            cl.addIgnoreParentResourceNamePattern("^other" + index + "$");
+                        }
+                    }
+                    return loaded;
+                }));
+            }
+
+            // When
+            start.countDown();
+
+            // Then
+            Class<?>[] first = futures.get(0).get(30, TimeUnit.SECONDS);
+            for (Future<Class<?>[]> future : futures) {
+                assertArrayEquals(first, future.get(30, TimeUnit.SECONDS));
+            }
+            for (Class<?> c : first) {
+                assertSame(cl, c.getClassLoader());
+            }
+            assertEquals(classes / 50, cl.getIgnoreParentResourceNamePatterns().size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Path writeJar(String name) throws IOException {
+        Path jar = dir.resolve(name);
+        try (OutputStream out = Files.newOutputStream(jar); JarOutputStream jarOut = new JarOutputStream(out)) {
+            jarOut.putNextEntry(new JarEntry("synthetic/"));
+            jarOut.closeEntry();
+            jarOut.putNextEntry(new JarEntry("synthetic/Child.class"));
+            jarOut.write(new ByteBuddy().subclass(Object.class).name("synthetic.Child").make().getBytes());
+            jarOut.closeEntry();
+            jarOut.putNextEntry(new JarEntry("synthetic/Parent.class"));
+            jarOut.write(new ByteBuddy().subclass(Object.class).name("synthetic.Parent").make().getBytes());
+            jarOut.closeEntry();
+            jarOut.putNextEntry(new JarEntry("synthetic/data.txt"));
+            jarOut.write("data".getBytes(StandardCharsets.UTF_8));
+            jarOut.closeEntry();
+        }
+        return jar;
+    }
+
+    private static final class ConcurrentHashMapHolder {
+        static final Class<?> TYPE = java.util.concurrent.ConcurrentHashMap.class;
+    }
+
+    private static final class CountingClassLoader extends Sps4jPluginClassLoader {
+        private final AtomicInteger findClassCalls = new AtomicInteger();
+
+        CountingClassLoader(URL[] urls, ClassLoader parent) {
+            super(urls, parent);
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            findClassCalls.incrementAndGet();
+            return super.findClass(name);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package io.github.sps4j.core.load;
+
+import io.github.sps4j.common.utils.YamlUtils;
+import net.bytebuddy.ByteBuddy;
+import net.bytebuddy.implementation.MethodCall;
+import net.bytebuddy.implementation.StubMethod;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static net.bytebuddy.matcher.ElementMatchers.isDeclaredBy;
+import static net.bytebuddy.matcher.ElementMatchers.named;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class StandardLeakCleanerTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void close_jdbcDrivers_shouldDeregisterPluginDrivers() throws Exception {
+        // Given: a plugin registering a driver, which only the plugin can see
+        Path jar = dir.resolve("driver.jar");
+        try (OutputStream out = Files.newOutputStream(jar); JarOutputStream jarOut = new JarOutputStream(out)) {
+            jarOut.putNextEntry(new JarEntry("synthetic/SyntheticDriver.class"));
+            jarOut.write(new ByteBuddy().subclass(Object.class).implement(Driver.class).name("synthetic.SyntheticDriver")
+                    .method(isDeclaredBy(Driver.class)).intercept(StubMethod.INSTANCE).make().getBytes());
+            jarOut.closeEntry();
+            jarOut.putNextEntry(new JarEntry("synthetic/DriverLister.class"));
+            jarOut.write(new ByteBuddy().subclass(Object.class).implement(Callable.class).name("synthetic.DriverLister")
+                    .method(named("call")).intercept(MethodCall.invoke(DriverManager.class.getMethod("getDrivers")))
+                    .make().getBytes());
+            jarOut.closeEntry();
+        }
+        Sps4jPluginClassLoader cl = newClassLoader(new URL[]{jar.toUri().toURL()}, StandardLeakCleaner.JDBC_DRIVERS);
+        Driver driver = (Driver) cl.loadClass("synthetic.SyntheticDriver").getDeclaredConstructor().newInstance();
+        DriverManager.registerDriver(driver);
+        Callable<?> lister = (Callable<?>) cl.loadClass("synthetic.DriverLister").getDeclaredConstructor().newInstance();
+        assertTrue(driverClasses(lister).contains("synthetic.SyntheticDriver"));
+
+        // When
+        cl.close();
+
+        // Then
+        assertFalse(driverClasses(lister).contains("synthetic.SyntheticDriver"));
+    }
+
+    @Test
+    void close_threads_shouldInterruptPluginThreads() throws Exception {
+        // Given: a thread started by the plugin
+        Sps4jPluginClassLoader cl = newClassLoader(new URL[0], StandardLeakCleaner.THREADS);
+        Thread pluginThread = new Thread(() -> {
+            try {
+                Thread.sleep(60_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "plugin-thread");
+        pluginThread.setContextClassLoader(cl);
+        pluginThread.start();
+
+        // When
+        cl.close();
+
+        // Then
+        pluginThread.join(5_000);
+        assertFalse(pluginThread.isAlive());
+    }
+
+    @Test
+    void close_contextClassLoaders_shouldResetRunningThreads() throws Exception {
+        // Given
+        Sps4jPluginClassLoader cl = newClassLoader(new URL[0], StandardLeakCleaner.CONTEXT_CLASS_LOADERS);
+        CountDownLatch stop = new CountDownLatch(1);
+        Thread thread = new Thread(() -> {
+            try {
+                stop.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "pooled-thread");
+        thread.setContextClassLoader(cl);
+        thread.start();
+
+        try {
+            // When
+            cl.close();
+
+            // Then
+            assertSame(getClass().getClassLoader(), thread.getContextClassLoader());
+            assertTrue(thread.isAlive());
+        } finally {
+            stop.countDown();
+            thread.join();
+        }
+    }
+
+    @Test
+    void close_yamlMappers_shouldRemoveCachedMapper() throws Exception {
+        // Given
+        Sps4jPluginClassLoader cl = newClassLoader(new URL[0], StandardLeakCleaner.YAML_MAPPERS);
+        ClassLoader previous = Thread.currentThread().getContextClassLoader();
+        Thread.currentThread().setContextClassLoader(cl);
+        try {
+            YamlUtils.getYamlMapper();
+        } finally {
+            Thread.currentThread().setContextClassLoader(previous);
+        }
+        assertTrue(YamlUtils.hasYamlMapper(cl));
+
+        // When
+        cl.close();
+
+        // Then
+        assertFalse(YamlUtils.hasYamlMapper(cl));
+    }
+
+    @Test
+    void close_threadLocals_shouldClearPluginValues() throws Exception {
+        assumeTrue(LeakRoots.canReadThreadLocals(), "thread locals are not readable on this JDK");
+        // Given
+        Path jar = dir.resolve("value.jar");
+        try (OutputStream out = Files.newOutputStream(jar); JarOutputStream jarOut = new JarOutputStream(out)) {
+            jarOut.putNextEntry(new JarEntry("synthetic/Value.class"));
+            jarOut.write(new ByteBuddy().subclass(Object.class).name("synthetic.Value").make().getBytes());
+            jarOut.closeEntry();
+        }
+        Sps4jPluginClassLoader cl = newClassLoader(new URL[]{jar.toUri().toURL()}, StandardLeakCleaner.THREAD_LOCALS);
+        ThreadLocal<Object> threadLocal = new ThreadLocal<>();
+        threadLocal.set(cl.loadClass("synthetic.Value").getDeclaredConstructor().newInstance());
+
+        // When
+        cl.close();
+
+        // Then
+        assertNull(threadLocal.get());
+    }
+
+    @Test
+    void close_defaultOptions_shouldRunNoCleaner() throws Exception {
+        // Given
+        Sps4jPluginClassLoader cl = new Sps4jPluginClassLoader(new URL[0], getClass().getClassLoader(),
+                Collections.emptyList(), ClassLoaderOptions.DEFAULT);
+        CountDownLatch stop = new CountDownLatch(1);
+        Thread thread = new Thread(() -> {
+            try {
+                stop.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "pooled-thread");
+        thread.setContextClassLoader(cl);
+        thread.start();
+
+        try {
+            // When
+            cl.close();
+
+            // Then
+            assertTrue(ClassLoaderOptions.DEFAULT.getLeakCleaners().isEmpty());
+            assertSame(cl, thread.getContextClassLoader());
+        } finally {
+            stop.countDown();
+            thread.join();
+        }
+    }
+
+    @Test
+    void close_failingCleaner_shouldRunOtherCleaners() throws Exception {
+        // Given
+        List<String> cleaned = new ArrayList<>();
+        ClassLoaderLeakCleaner failing = classLoader -> {
+            throw new IllegalStateException("failing cleaner");
+        };
+        Sps4jPluginClassLoader cl = newClassLoader(new URL[0], failing, classLoader -> cleaned.add("second"));
+
+        // When
+        cl.close();
+
+        // Then
+        assertEquals(Collections.singletonList("second"), cleaned);
+    }
+
+    private Sps4jPluginClassLoader newClassLoader(URL[] urls, ClassLoaderLeakCleaner... cleaners) {
+        return new Sps4jPluginClassLoader(urls, getClass().getClassLoader(), Collections.emptyList(),
+                ClassLoaderOptions.builder().leakCleaners(Arrays.asList(cleaners)).build());
+    }
+
+    private static List<String> driverClasses(Callable<?> lister) throws Exception {
+        List<String> classes = new ArrayList<>();
+        Enumeration<?> drivers = (Enumeration<?>) lister.call();
+        while (drivers.hasMoreElements()) {
+            classes.add(drivers.nextElement().getClass().getName());
+        }
+        return classes;
+    }
+
+}
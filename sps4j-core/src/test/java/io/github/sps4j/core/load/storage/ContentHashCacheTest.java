@@ -0,0 +1,80 @@
+package io.github.sps4j.core.load.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContentHashCacheTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void hash_changedFile_shouldReplacePreviousStamp() throws IOException {
+        // Given
+        File file = write("a.jar", "content-a", 1_000L);
+        ContentHashCache cache = new ContentHashCache();
+        String first = cache.hash(file);
+
+        // When
+        write("a.jar", "content-b", 2_000L);
+        String second = cache.hash(file);
+
+        // Then
+        assertEquals(ContentHashes.sha256(file.toPath()), second);
+        assertNotEquals(first, second);
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void hash_beyondMaxSize_shouldEvictLeastRecentlyUsedFile() throws IOException {
+        // Given
+        File a = write("a.jar", "content-a", 1_000L);
+        File b = write("b.jar", "content-b", 1_000L);
+        File c = write("c.jar", "content-c", 1_000L);
+        ContentHashCache cache = new ContentHashCache(2);
+        cache.hash(a);
+        cache.hash(b);
+        cache.hash(a);
+
+        // When
+        cache.hash(c);
+
+        // Then
+        assertEquals(2, cache.size());
+        cache.retainAll(Collections.singletonList(b.getAbsolutePath()));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void retainAll_shouldEvictOtherFiles() throws IOException {
+        // Given
+        File a = write("a.jar", "content-a", 1_000L);
+        File b = write("b.jar", "content-b", 1_000L);
+        ContentHashCache cache = new ContentHashCache();
+        cache.hash(a);
+        cache.hash(b);
+
+        // When
+        cache.retainAll(Collections.singletonList(a.getAbsolutePath()));
+
+        // Then
+        assertEquals(1, cache.size());
+    }
+
+    private File write(String name, String content, long lastModified) throws IOException {
+        Path file = dir.resolve(name);
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(lastModified));
+        return file.toFile();
+    }
+}
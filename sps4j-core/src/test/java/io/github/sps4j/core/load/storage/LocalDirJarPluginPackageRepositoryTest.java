@@ -0,0 +1,159 @@
+package io.github.sps4j.core.load.storage;
+
+import io.github.sps4j.common.Const;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalDirJarPluginPackageRepositoryTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void streamPackages_shouldMatchListPackages() throws Exception {
+        // Given
+        writeJar(dir.resolve("a.jar"));
+        writeJar(dir.resolve("sub").resolve("b.jar"));
+        Files.write(dir.resolve("readme.txt"), "not a jar".getBytes(StandardCharsets.UTF_8));
+        LocalDirJarPluginPackageRepository repository = new LocalDirJarPluginPackageRepository(dir.toString());
+
+        // When
+        List<String> listed = repository.listPackages().stream()
+                .map(PluginPackage::getBaseUrl).collect(Collectors.toList());
+        List<String> streamed;
+        try (Stream<PluginPackage> packages = repository.streamPackages()) {
+            streamed = packages.map(PluginPackage::getBaseUrl).collect(Collectors.toList());
+        }
+
+        // Then
+        assertEquals(2, listed.size());
+        assertEquals(listed, streamed);
+    }
+
+    @Test
+    void streamPackages_maxOpenPackages_shouldWaitForClosedPackage() throws Exception {
+        // Given: a repository allowing one open jar at a time
+        writeJar(dir.resolve("a.jar"));
+        writeJar(dir.resolve("b.jar"));
+        LocalDirJarPluginPackageRepository repository = new LocalDirJarPluginPackageRepository(dir.toString(), null, 1);
+        List<PluginPackage> packages = repository.listPackages();
+        PluginPackage first = packages.get(0);
+        PluginPackage second = packages.get(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // When: the first jar is open
+            assertTrue(first.contains(Const.DESC_FILE));
+            Future<Boolean> secondRead = executor.submit(() -> second.contains(Const.DESC_FILE));
+
+            // Then: the second jar is opened only once the first is closed
+            assertThrows(TimeoutException.class, () -> secondRead.get(200, TimeUnit.MILLISECONDS));
+            first.close();
+            assertTrue(secondRead.get(5, TimeUnit.SECONDS));
+            second.close();
+            assertTrue(first.contains(Const.DESC_FILE));
+            first.close();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void getResource_mappedPackages_shouldReadFromMapping() throws Exception {
+        // Given
+        writeJar(dir.resolve("a.jar"));
+        LocalDirJarPluginPackageRepository repository =
+                new LocalDirJarPluginPackageRepository(dir.toString(), null, 0, true);
+
+        // When
+        try (PluginPackage pack = repository.listPackages().get(0)) {
+            // Then
+            assertInstanceOf(MappedJarPackage.class, pack);
+            assertTrue(pack.contains(Const.DESC_FILE));
+            assertFalse(pack.contains("missing.txt"));
+            try (InputStream in = pack.getResource(Const.DESC_FILE)) {
+                assertEquals("type: test\n", IOUtils.toString(in, StandardCharsets.UTF_8));
+            }
+            assertThrows(IOException.class, () -> pack.getResource("missing.txt"));
+        }
+    }
+
+    @Test
+    void constructor_negativeMaxOpenPackages_shouldThrow() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new LocalDirJarPluginPackageRepository(dir.toString(), null, -1));
+    }
+
+    @Test
+    void watch_shouldReportChangedJarsOnce() throws Exception {
+        // Given
+        writeJar(dir.resolve("a.jar"));
+        LocalDirJarPluginPackageRepository repository = new LocalDirJarPluginPackageRepository(dir.toString());
+        BlockingQueue<Set<String>> notifications = new LinkedBlockingQueue<>();
+        try (Closeable ignored = repository.watch(200, new RepositoryChangeListener<String>() {
+            @Override
+            public void onChanged(@Nonnull Set<String> changed) {
+                notifications.add(changed);
+            }
+
+            @Override
+            public void onOverflow() {
+                notifications.add(Collections.singleton("overflow"));
+            }
+        })) {
+            // When: several changes happen in a burst
+            Path b = dir.resolve("sub").resolve("b.jar");
+            writeJar(b);
+            writeJar(b);
+            Files.delete(dir.resolve("a.jar"));
+            Files.write(dir.resolve("readme.txt"), "not a jar".getBytes(StandardCharsets.UTF_8));
+
+            // Then: they are reported together, each jar once
+            Set<String> changed = new HashSet<>();
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (changed.size() < 2 && System.currentTimeMillis() < deadline) {
+                Set<String> notification = notifications.poll(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+                if (notification != null) {
+                    changed.addAll(notification);
+                }
+            }
+            assertEquals(new HashSet<>(Arrays.asList(JarPackage.toBaseUrl(dir.resolve("a.jar").toFile()),
+                    JarPackage.toBaseUrl(b.toFile()))), changed);
+            assertNull(repository.getPackage(JarPackage.toBaseUrl(dir.resolve("a.jar").toFile())));
+            PluginPackage pack = repository.getPackage(JarPackage.toBaseUrl(b.toFile()));
+            assertNotNull(pack);
+            assertTrue(pack.contains(Const.DESC_FILE));
+            pack.close();
+        }
+    }
+
+    private static void writeJar(Path path) throws IOException {
+        Files.createDirectories(path.getParent());
+        try (OutputStream out = Files.newOutputStream(path); JarOutputStream jar = new JarOutputStream(out)) {
+            jar.putNextEntry(new JarEntry(Const.DESC_FILE));
+            jar.write("type: test\n".getBytes(StandardCharsets.UTF_8));
+            jar.closeEntry();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package io.github.sps4j.core.load.storage;
+
+import com.github.zafarkhaja.semver.Version;
+import io.github.sps4j.common.meta.PluginDesc;
+import io.github.sps4j.common.utils.YamlUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PluginCatalogTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void save_shouldPersistEntriesForNextCatalog() throws IOException {
+        // Given
+        Path jar = writePackage("a.jar", "content-a");
+        PackageStamp stamp = new JarPackage(jar.toFile()).getStamp();
+        PluginCatalog catalog = PluginCatalog.inDirectory(dir, false);
+        assertNull(catalog.lookup(stamp));
+
+        // When
+        catalog.record(stamp, Collections.singletonList(descriptor("my-plugin")));
+        catalog.save();
+
+        // Then
+        assertTrue(Files.isRegularFile(dir.resolve(PluginCatalog.DEFAULT_FILE_NAME)));
+        List<PluginDesc> descriptors = PluginCatalog.inDirectory(dir, false).lookup(stamp);
+        assertNotNull(descriptors);
+        assertEquals(1, descriptors.size());
+        assertEquals("my-plugin", descriptors.get(0).getName());
+        assertEquals(Version.parse("1.0.0"), descriptors.get(0).getVersion());
+        assertEquals("com.example.MyPlugin", descriptors.get(0).getClassName());
+    }
+
+    @Test
+    void lookup_changedPackage_shouldReturnNull() throws IOException {
+        // Given
+        Path jar = writePackage("a.jar", "content-a");
+        PackageStamp stamp = new JarPackage(jar.toFile()).getStamp();
+        PluginCatalog catalog = PluginCatalog.inDirectory(dir, false);
+        catalog.record(stamp, Collections.emptyList());
+
+        // When / Then
+        assertEquals(Collections.emptyList(), catalog.lookup(stamp));
+        assertNull(catalog.lookup(new PackageStamp(stamp.getPath(), stamp.getSize() + 1, stamp.getLastModified())));
+        assertNull(catalog.lookup(new PackageStamp(stamp.getPath(), stamp.getSize(), stamp.getLastModified() + 1000)));
+    }
+
+    @Test
+    void lookup_verifyContentHash_shouldDetectChangeWithSameStamp() throws IOException {
+        // Given
+        Path jar = writePackage("a.jar", "content-a");
+        PackageStamp stamp = new JarPackage(jar.toFile()).getStamp();
+        PluginCatalog catalog = PluginCatalog.inDirectory(dir, true);
+        catalog.record(stamp, Collections.singletonList(descriptor("my-plugin")));
+        catalog.save();
+
+        // When: content changed but size and modification time are kept
+        Files.write(jar, "content-b".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(jar, FileTime.fromMillis(stamp.getLastModified()));
+
+        // Then
+        assertEquals(stamp, new JarPackage(jar.toFile()).getStamp());
+        assertNull(PluginCatalog.inDirectory(dir, true).lookup(stamp));
+        assertNotNull(PluginCatalog.inDirectory(dir, false).lookup(stamp));
+    }
+
+    @Test
+    void retainAll_shouldPruneRemovedPackages() throws IOException {
+        // Given
+        PackageStamp a = new JarPackage(writePackage("a.jar", "a").toFile()).getStamp();
+        PackageStamp b = new JarPackage(writePackage("b.jar", "b").toFile()).getStamp();
+        PluginCatalog catalog = PluginCatalog.inDirectory(dir, false);
+        catalog.record(a, Collections.emptyList());
+        catalog.record(b, Collections.emptyList());
+
+        // When
+        catalog.retainAll(Collections.singletonList(a.getPath()));
+        catalog.save();
+
+        // Then
+        PluginCatalog reloaded = PluginCatalog.inDirectory(dir, false);
+        assertNotNull(reloaded.lookup(a));
+        assertNull(reloaded.lookup(b));
+    }
+
+    @Test
+    void constructor_unreadableCatalog_shouldBeIgnored() throws IOException {
+        // Given
+        Files.write(dir.resolve(PluginCatalog.DEFAULT_FILE_NAME), ": not [ yaml".getBytes(StandardCharsets.UTF_8));
+        PackageStamp stamp = new JarPackage(writePackage("a.jar", "a").toFile()).getStamp();
+
+        // When
+        PluginCatalog catalog = PluginCatalog.inDirectory(dir, false);
+
+        // Then
+        assertNull(catalog.lookup(stamp));
+        catalog.record(stamp, Collections.emptyList());
+        catalog.save();
+        assertNotNull(PluginCatalog.inDirectory(dir, false).lookup(stamp));
+    }
+
+    @Test
+    void constructor_catalogOfAnotherFrameworkVersion_shouldBeIgnored() throws IOException {
+        // Given: a catalog saved by another version of SPS4J
+        PackageStamp stamp = new JarPackage(writePackage("a.jar", "a").toFile()).getStamp();
+        PluginCatalog catalog = PluginCatalog.inDirectory(dir, false);
+        catalog.record(stamp, Collections.singletonList(descriptor("my-plugin")));
+        catalog.save();
+        Path file = dir.resolve(PluginCatalog.DEFAULT_FILE_NAME);
+        PluginCatalog.Content content = YamlUtils.getYamlMapper().readValue(file.toFile(), PluginCatalog.Content.class);
+        content.setFrameworkVersion("0.0.1");
+        YamlUtils.getYamlMapper().writeValue(file.toFile(), content);
+
+        // When
+        PluginCatalog reopened = PluginCatalog.inDirectory(dir, false);
+
+        // Then
+        assertNull(reopened.lookup(stamp));
+    }
+
+    private Path writePackage(String name, String content) throws IOException {
+        return Files.write(dir.resolve(name), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static PluginDesc descriptor(String name) {
+        return PluginDesc.builder()
+                .type("test")
+                .name(name)
+                .version(Version.parse("1.0.0"))
+                .className("com.example.MyPlugin")
+                .productVersionConstraint("*")
+                .build();
+    }
+}
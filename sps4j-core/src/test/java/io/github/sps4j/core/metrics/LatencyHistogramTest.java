@@ -0,0 +1,50 @@
+package io.github.sps4j.core.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void getValueAtPercentile_shouldBeWithinBucketPrecision() {
+        // Given
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        // When
+        for (long i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000);
+        }
+
+        // Then
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1_000_000, histogram.getMax(TimeUnit.NANOSECONDS));
+        double median = histogram.getValueAtPercentile(0.5, TimeUnit.NANOSECONDS);
+        assertTrue(median >= 500_000 && median <= 500_000 * 1.125, String.valueOf(median));
+        double p99 = histogram.getValueAtPercentile(0.99, TimeUnit.NANOSECONDS);
+        assertTrue(p99 >= 990_000 && p99 <= 1_000_000, String.valueOf(p99));
+        assertEquals(1_000_000, histogram.getValueAtPercentile(1, TimeUnit.NANOSECONDS));
+        assertEquals(1, histogram.getValueAtPercentile(0, TimeUnit.MICROSECONDS), 0.125);
+    }
+
+    @Test
+    void record_shouldCountSmallAndHugeValues() {
+        // Given
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        // When
+        histogram.record(-1);
+        histogram.record(3);
+        histogram.record(TimeUnit.DAYS.toNanos(1));
+
+        // Then
+        assertEquals(3, histogram.getCount());
+        assertEquals(0, histogram.getValueAtPercentile(0.3, TimeUnit.NANOSECONDS));
+        assertEquals(3, histogram.getValueAtPercentile(0.6, TimeUnit.NANOSECONDS));
+        assertEquals(1, histogram.getValueAtPercentile(1, TimeUnit.DAYS));
+        assertEquals(0, new LatencyHistogram().getValueAtPercentile(0.5, TimeUnit.NANOSECONDS));
+        assertThrows(IllegalArgumentException.class, () -> histogram.getValueAtPercentile(2, TimeUnit.NANOSECONDS));
+    }
+}
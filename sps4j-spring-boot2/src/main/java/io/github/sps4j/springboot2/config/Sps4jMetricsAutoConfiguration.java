@@ -0,0 +1,23 @@
+package io.github.sps4j.springboot2.config;
+
+import io.github.sps4j.core.PluginManager;
+import io.github.sps4j.springboot2.metrics.InvocationMetricsBinder;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnClass(MeterRegistry.class)
+@ConditionalOnBean(PluginManager.class)
+public class Sps4jMetricsAutoConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public InvocationMetricsBinder sps4jInvocationMetricsBinder(PluginManager pluginManager) {
+        return new InvocationMetricsBinder(pluginManager);
+    }
+
+}
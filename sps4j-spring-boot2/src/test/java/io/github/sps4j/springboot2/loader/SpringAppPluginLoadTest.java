@@ -0,0 +1,113 @@
+package io.github.sps4j.springboot2.loader;
+
+import io.github.sps4j.annotation.PluginProcessor;
+import io.github.sps4j.common.Const;
+import io.github.sps4j.common.meta.MetaInfo;
+import io.github.sps4j.common.meta.PluginDesc;
+import io.github.sps4j.common.utils.YamlUtils;
+import io.github.sps4j.core.Sps4jPlugin;
+import io.github.sps4j.core.load.Sps4jPluginClassLoader;
+import io.github.sps4j.core.load.Sps4jProxy;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.*;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Loads a Spring Boot application plugin built with the SPS4J annotation processor, as the examples are.
+ */
+class SpringAppPluginLoadTest {
+    private static final String PLUGIN_INTERFACE =
+            "package com.example.spring;\n"
+                    + "@io.github.sps4j.annotation.Sps4jPluginInterface(\"probe\")\n"
+                    + "public interface Probe extends io.github.sps4j.core.Sps4jPlugin {\n"
+                    + "    ClassLoader contextLoader();\n"
+                    + "}\n";
+    private static final String PLUGIN_CLASS =
+            "package com.example.spring;\n"
+                    + "@io.github.sps4j.annotation.Sps4jPlugin(name = \"spring-probe\", version = \"1.0.0\", tags = \"spring-noweb\")\n"
+                    + "@org.springframework.boot.autoconfigure.SpringBootApplication\n"
+                    + "public class SpringProbePlugin extends io.github.sps4j.springboot2.SpringBoot2AppPlugin implements Probe {\n"
+                    + "    public ClassLoader contextLoader() { return Thread.currentThread().getContextClassLoader(); }\n"
+                    + "}\n";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void load_springAppPlugin_shouldReturnProxiedBean() throws Exception {
+        // Given
+        Path classes = Files.createDirectories(dir.resolve("classes"));
+        compile(classes, Arrays.asList(PLUGIN_INTERFACE, PLUGIN_CLASS));
+        PluginDesc desc = YamlUtils.getYamlMapper().readValue(classes.resolve(Const.DESC_FILE).toFile(), PluginDesc.class);
+        MetaInfo meta = new MetaInfo(desc, jar(classes, dir.resolve("spring-probe.jar")).toUri().toURL());
+
+        // When
+        Sps4jPlugin plugin = new SpringAppSupportPluginLoader().load(meta, null, Collections.emptyMap());
+
+        // Then: the bean of the plugin class switches the context class loader
+        Sps4jPluginClassLoader classLoader = (Sps4jPluginClassLoader) plugin.getClass().getClassLoader();
+        try {
+            assertNull(desc.getProxyClassName());
+            assertInstanceOf(Sps4jProxy.class, plugin);
+            assertSame(classLoader, plugin.getClass().getMethod("contextLoader").invoke(plugin));
+            assertNotSame(classLoader, Thread.currentThread().getContextClassLoader());
+        } finally {
+            classLoader.close();
+        }
+    }
+
+    private static void compile(Path output, List<String> sources) {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assumeTrue(compiler != null, "requires a JDK");
+        List<JavaFileObject> units = new ArrayList<>();
+        for (String source : sources) {
+            String packageName = source.substring("package ".length(), source.indexOf(';'));
+            String typeName = source.replaceAll("(?s).*?public (?:class|interface) (\\w+).*", "$1");
+            units.add(new SimpleJavaFileObject(
+                    URI.create("string:///" + (packageName + "." + typeName).replace('.', '/') + ".java"),
+                    JavaFileObject.Kind.SOURCE) {
+                @Override
+                public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                    return source;
+                }
+            });
+        }
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        List<String> options = Arrays.asList("-d", output.toString(), "-classpath", System.getProperty("java.class.path"));
+        JavaCompiler.CompilationTask task = compiler.getTask(null, null, diagnostics, options, null, units);
+        task.setProcessors(Collections.singletonList(new PluginProcessor()));
+        assertTrue(task.call(), diagnostics.getDiagnostics().toString());
+    }
+
+    private static Path jar(Path classes, Path jar) throws IOException {
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(classes)) {
+            files = walk.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+        try (OutputStream out = Files.newOutputStream(jar); JarOutputStream jarOut = new JarOutputStream(out)) {
+            for (Path file : files) {
+                jarOut.putNextEntry(new JarEntry(classes.relativize(file).toString().replace('\\', '/')));
+                jarOut.write(Files.readAllBytes(file));
+                jarOut.closeEntry();
+            }
+        }
+        return jar;
+    }
+}
@@ -0,0 +1,73 @@
+package io.github.sps4j.springboot2.metrics;
+
+import io.github.sps4j.common.meta.PluginArtifact;
+import io.github.sps4j.core.PluginManager;
+import io.github.sps4j.core.metrics.InvocationMetrics;
+import io.github.sps4j.core.metrics.PluginInvocationMetrics;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class InvocationMetricsBinderTest {
+    private static final PluginArtifact ARTIFACT = PluginArtifact.builder().type("greeter").name("hello").build();
+
+    @Mock
+    private PluginManager pluginManager;
+
+    @Test
+    void bindTo_shouldPublishMethodsUntilPluginRemoved() {
+        // Given: a method called before binding
+        InvocationMetrics invocationMetrics = new InvocationMetrics();
+        when(pluginManager.getInvocationMetrics()).thenReturn(invocationMetrics);
+        PluginInvocationMetrics plugin = invocationMetrics.forPlugin(ARTIFACT);
+        plugin.method("greet(java.lang.String)").record(TimeUnit.MILLISECONDS.toNanos(2), false);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+        // When
+        new InvocationMetricsBinder(pluginManager).bindTo(registry);
+        plugin.method("greet(java.lang.String)").record(TimeUnit.MILLISECONDS.toNanos(4), true);
+        plugin.method("bye()").record(TimeUnit.MILLISECONDS.toNanos(1), false);
+
+        // Then: methods called before and after binding are published
+        FunctionTimer greet = registry.get(InvocationMetricsBinder.INVOCATIONS)
+                .tags("plugin.type", "greeter", "plugin.name", "hello", "method", "greet(java.lang.String)")
+                .functionTimer();
+        assertEquals(2, greet.count());
+        assertEquals(6, greet.totalTime(TimeUnit.MILLISECONDS), 0.001);
+        assertEquals(1, registry.get(InvocationMetricsBinder.ERRORS).tag("method", "greet(java.lang.String)")
+                .functionCounter().count());
+        assertEquals(4, registry.get(InvocationMetricsBinder.MAX).tag("method", "greet(java.lang.String)")
+                .timeGauge().value(TimeUnit.MILLISECONDS), 0.001);
+        double median = registry.get(InvocationMetricsBinder.PERCENTILE)
+                .tags("method", "greet(java.lang.String)", "phi", "0.5").timeGauge().value(TimeUnit.MILLISECONDS);
+        assertTrue(median >= 2 && median <= 2.25, String.valueOf(median));
+        assertEquals(1, registry.get(InvocationMetricsBinder.INVOCATIONS).tag("method", "bye()").functionTimer().count());
+
+        // When
+        invocationMetrics.remove(ARTIFACT);
+
+        // Then
+        assertTrue(registry.getMeters().isEmpty());
+    }
+
+    @Test
+    void bindTo_withoutInvocationMetrics_shouldPublishNothing() {
+        // Given
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+        // When
+        new InvocationMetricsBinder(pluginManager).bindTo(registry);
+
+        // Then
+        assertTrue(registry.getMeters().isEmpty());
+    }
+}
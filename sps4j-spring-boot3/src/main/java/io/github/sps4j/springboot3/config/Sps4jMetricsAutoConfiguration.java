@@ -0,0 +1,23 @@
+package io.github.sps4j.springboot3.config;
+
+import io.github.sps4j.core.PluginManager;
+import io.github.sps4j.springboot3.metrics.InvocationMetricsBinder;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+
+@AutoConfiguration
+@ConditionalOnClass(MeterRegistry.class)
+@ConditionalOnBean(PluginManager.class)
+public class Sps4jMetricsAutoConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public InvocationMetricsBinder sps4jInvocationMetricsBinder(PluginManager pluginManager) {
+        return new InvocationMetricsBinder(pluginManager);
+    }
+
+}
@@ -0,0 +1,116 @@
+package io.github.sps4j.springboot3.metrics;
+
+import io.github.sps4j.common.meta.PluginArtifact;
+import io.github.sps4j.core.PluginManager;
+import io.github.sps4j.core.metrics.InvocationMetrics;
+import io.github.sps4j.core.metrics.MethodInvocationMetrics;
+import io.github.sps4j.core.metrics.PluginInvocationMetrics;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Publishes the {@link InvocationMetrics} of a {@link PluginManager} as Micrometer meters, tagged with the plugin type,
+ * the plugin name and the method:
+ * <ul>
+ *     <li>{@value #INVOCATIONS}: a function timer of the calls,</li>
+ *     <li>{@value #ERRORS}: a function counter of the calls that threw an exception,</li>
+ *     <li>{@value #MAX} and {@value #PERCENTILE}: time gauges of the maximum and percentiles of the latencies,
+ *     the latter tagged with the {@code phi} percentile.</li>
+ * </ul>
+ * Meters are registered on the first call of a method and removed when the plugin is unloaded.
+ * Nothing is published if the plugin manager does not record calls.
+ *
+ * @author Allan-QLB
+ */
+public class InvocationMetricsBinder implements MeterBinder, InvocationMetrics.Listener {
+    public static final String INVOCATIONS = "sps4j.plugin.invocations";
+    public static final String ERRORS = "sps4j.plugin.invocation.errors";
+    public static final String MAX = "sps4j.plugin.invocations.max";
+    public static final String PERCENTILE = "sps4j.plugin.invocations.percentile";
+    private static final double[] PERCENTILES = {0.5, 0.95, 0.99};
+
+    private final PluginManager pluginManager;
+    private final List<MeterRegistry> registries = new CopyOnWriteArrayList<>();
+    private final Map<PluginArtifact, List<Meter.Id>> meters = new ConcurrentHashMap<>();
+    private final AtomicBoolean listening = new AtomicBoolean();
+
+    /**
+     * Constructs a binder of the metrics of a plugin manager.
+     *
+     * @param pluginManager The plugin manager, whose metrics are read when the binder is bound to a registry.
+     */
+    public InvocationMetricsBinder(@Nonnull PluginManager pluginManager) {
+        this.pluginManager = pluginManager;
+    }
+
+    @Override
+    public void bindTo(@Nonnull MeterRegistry registry) {
+        final InvocationMetrics invocationMetrics = pluginManager.getInvocationMetrics();
+        if (invocationMetrics == null) {
+            return;
+        }
+        registries.add(registry);
+        for (PluginInvocationMetrics plugin : invocationMetrics.getPlugins()) {
+            plugin.getMethods().forEach(m -> register(registry, plugin, m));
+        }
+        if (listening.compareAndSet(false, true)) {
+            invocationMetrics.addListener(this);
+        }
+    }
+
+    @Override
+    public void methodAdded(@Nonnull PluginInvocationMetrics plugin, @Nonnull MethodInvocationMetrics method) {
+        registries.forEach(r -> register(r, plugin, method));
+    }
+
+    @Override
+    public void pluginRemoved(@Nonnull PluginInvocationMetrics plugin) {
+        final List<Meter.Id> ids = meters.remove(plugin.getArtifact());
+        if (ids != null) {
+            for (MeterRegistry registry : registries) {
+                ids.forEach(registry::remove);
+            }
+        }
+    }
+
+    private void register(MeterRegistry registry, PluginInvocationMetrics plugin, MethodInvocationMetrics method) {
+        final Tags tags = Tags.of("plugin.type", plugin.getArtifact().getType(),
+                "plugin.name", plugin.getArtifact().getName(), "method", method.getMethod());
+        final List<Meter.Id> ids = meters.computeIfAbsent(plugin.getArtifact(), a -> new CopyOnWriteArrayList<>());
+        ids.add(FunctionTimer.builder(INVOCATIONS, method, MethodInvocationMetrics::getCalls,
+                        m -> m.getTotalTime(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS)
+                .tags(tags)
+                .description("Calls of plugin methods")
+                .register(registry).getId());
+        ids.add(FunctionCounter.builder(ERRORS, method, MethodInvocationMetrics::getErrors)
+                .tags(tags)
+                .description("Calls of plugin methods that threw an exception")
+                .register(registry).getId());
+        ids.add(TimeGauge.builder(MAX, method, TimeUnit.NANOSECONDS,
+                        m -> m.getLatency().getMax(TimeUnit.NANOSECONDS))
+                .tags(tags)
+                .description("Maximum latency of the calls of plugin methods")
+                .register(registry).getId());
+        for (double percentile : PERCENTILES) {
+            ids.add(TimeGauge.builder(PERCENTILE, method, TimeUnit.NANOSECONDS,
+                            m -> m.getLatency().getValueAtPercentile(percentile, TimeUnit.NANOSECONDS))
+                    .tags(tags)
+                    .tag("phi", String.valueOf(percentile))
+                    .description("Percentiles of the latency of the calls of plugin methods")
+                    .register(registry).getId());
+        }
+    }
+}